@@ -0,0 +1,82 @@
+package com.jasminefortich.crawler.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+
+/**
+ * Canned pages and seed documents stored under src/jmh/resources/corpus, so every run measures the same input
+ */
+class Corpus {
+
+    /** Base url the corpus pages are treated as being fetched from */
+    static final String BASE_URL = "https://www.example.com/archive/index.html";
+
+    /**
+     * Reads a corpus file
+     *
+     * @param name The file name
+     * @return The file contents
+     */
+    static byte[] read(String name) {
+        try (InputStream in = Corpus.class.getResourceAsStream("/corpus/" + name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("No corpus file " + name);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Creates a url serving the given bytes from memory, so url based readers can be measured without the network
+     *
+     * @param name The name used in the url
+     * @param content The content of the url
+     * @return The url
+     */
+    static URL inMemoryUrl(String name, byte[] content) {
+        URLStreamHandler handler = new URLStreamHandler() {
+            @Override
+            protected URLConnection openConnection(URL url) {
+                return new URLConnection(url) {
+                    @Override
+                    public void connect() { }
+
+                    @Override
+                    public InputStream getInputStream() {
+                        return new ByteArrayInputStream(content);
+                    }
+                };
+            }
+        };
+
+        try {
+            return new URL(null, "corpus:" + name, handler);
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Generates distinct links spread over a number of hosts
+     *
+     * @param count The number of links
+     * @param hosts The number of hosts
+     * @return The links
+     */
+    static String[] links(int count, int hosts) {
+        String[] links = new String[count];
+        for (int i = 0; i < count; i++) {
+            links[i] = "https://host" + (i % hosts) + ".example.com/archive/" + (i / hosts) + "/page-" + i + ".html";
+        }
+        return links;
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.jasminefortich.crawler.benchmarks;
+
+import com.jasminefortich.crawler.services.CrawlFrontier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enqueueing and dequeueing links of many hosts, alone and with producers and consumers contending on the frontier.
+ * Politeness limits are lifted so only the queue itself is measured.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CrawlFrontierBenchmark {
+
+    private static final int LINK_COUNT = 1 << 16;
+
+    private String[] links;
+    private CrawlFrontier frontier;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        private String next(String[] links) {
+            return links[next++ & (LINK_COUNT - 1)];
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setupLinks() {
+        links = Corpus.links(LINK_COUNT, 1000);
+    }
+
+    @Setup(Level.Iteration)
+    public void setupFrontier() {
+        frontier = new CrawlFrontier(Integer.MAX_VALUE, 0);
+    }
+
+    @Benchmark
+    @Group("single")
+    public String addTakeComplete(Cursor cursor) throws InterruptedException {
+        frontier.add(cursor.next(links));
+        String link = frontier.take();
+        frontier.complete(link);
+        return link;
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(2)
+    public void produce(Cursor cursor) {
+        frontier.add(cursor.next(links));
+    }
+
+    /**
+     * Returns without a link once the frontier is drained, so the iteration can end when producers stop
+     */
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(2)
+    public String consume() throws InterruptedException {
+        String link = frontier.take();
+        if (link != null) {
+            frontier.complete(link);
+        }
+        return link;
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.jasminefortich.crawler.benchmarks;
+
+import com.jasminefortich.crawler.models.CrawlStatistics;
+import com.jasminefortich.crawler.services.CrawlMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recording crawl statistics from several crawler threads. The synchronized counters they replaced only
+ * counted requests and are kept as a baseline for the cost of the added detail.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+public class CrawlMetricsBenchmark {
+
+    private static final String[] LINKS = Corpus.links(1024, 16);
+
+    private CrawlMetrics metrics;
+    private SynchronizedCounters counters;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        private int next() {
+            return next++ & (LINKS.length - 1);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        metrics = new CrawlMetrics();
+        counters = new SynchronizedCounters();
+    }
+
+    @Benchmark
+    public void recordResponse(Cursor cursor) {
+        int i = cursor.next();
+        metrics.recordResponse(LINKS[i], i % 10 == 0 ? 404 : 200, i % 10 != 0, 20_000 + i, 5_000_000 + i * 1000L);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public CrawlStatistics snapshot() {
+        return metrics.snapshot(0, 0, 0);
+    }
+
+    @Benchmark
+    public void synchronizedCounters(Cursor cursor) {
+        counters.record(cursor.next() % 10 != 0);
+    }
+
+    /**
+     * The boxed counters updated under the service monitor before crawl metrics existed
+     */
+    private static class SynchronizedCounters {
+        private Integer requestCount = 0, successCount = 0, failedCount = 0;
+
+        private synchronized void record(boolean successful) {
+            requestCount++;
+            if (successful) {
+                successCount++;
+            } else {
+                failedCount++;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.jasminefortich.crawler.benchmarks;
+
+import com.jasminefortich.crawler.models.FetchResult;
+import com.jasminefortich.crawler.models.LinkExtractorType;
+import com.jasminefortich.crawler.services.JsoupLinkExtractor;
+import com.jasminefortich.crawler.services.LinkExtractor;
+import com.jasminefortich.crawler.services.StreamingLinkExtractor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extracting the links of a fetched page, the per page work done after every successful fetch
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LinkExtractorBenchmark {
+
+    @Param({"STREAMING", "JSOUP"})
+    private LinkExtractorType extractorType;
+
+    @Param({"listing.html", "article.html"})
+    private String page;
+
+    private LinkExtractor extractor;
+    private FetchResult fetchResult;
+
+    @Setup
+    public void setup() {
+        extractor = extractorType == LinkExtractorType.JSOUP ? new JsoupLinkExtractor() : new StreamingLinkExtractor();
+        fetchResult = new FetchResult(Corpus.BASE_URL, 200, "text/html", "UTF-8", Corpus.read(page), null, null);
+    }
+
+    @Benchmark
+    public void extract(Blackhole blackhole) throws IOException {
+        extractor.extract(fetchResult, blackhole::consume);
+    }
+
+}
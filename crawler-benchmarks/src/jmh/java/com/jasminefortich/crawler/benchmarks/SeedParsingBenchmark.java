@@ -0,0 +1,48 @@
+package com.jasminefortich.crawler.benchmarks;
+
+import com.jasminefortich.crawler.utils.JsonUtil;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the links of a start endpoint, as a whole document and streamed
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SeedParsingBenchmark {
+
+    private URL seeds;
+
+    @Setup
+    public void setup() {
+        seeds = Corpus.inMemoryUrl("seeds.json", Corpus.read("seeds.json"));
+    }
+
+    @Benchmark
+    public void readJsonDocument(Blackhole blackhole) throws IOException {
+        JSONObject json = JsonUtil.readJsonFromUrl(seeds);
+        JSONArray links = json.getJSONArray("links");
+        for (int i = 0; i < links.length(); i++) {
+            blackhole.consume(links.getString(i));
+        }
+    }
+
+    @Benchmark
+    public int streamLinks(Blackhole blackhole) throws IOException {
+        return JsonUtil.readLinksFromUrl(seeds, blackhole::consume);
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.jasminefortich.crawler.benchmarks;
+
+import com.jasminefortich.crawler.models.SeenUrlStoreType;
+import com.jasminefortich.crawler.services.BloomFilterSeenUrlStore;
+import com.jasminefortich.crawler.services.FingerprintSeenUrlStore;
+import com.jasminefortich.crawler.services.HashSetSeenUrlStore;
+import com.jasminefortich.crawler.services.SeenUrlStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserting and looking up links in the seen url stores from several crawler threads.
+ *
+ * The store is recreated every iteration and half of the links are added up front, so inserts see a mix of
+ * new and already seen links like a crawl does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+public class SeenUrlStoreBenchmark {
+
+    private static final int LINK_COUNT = 1 << 18;
+
+    @Param({"HASH_SET", "FINGERPRINT", "BLOOM_FILTER"})
+    private SeenUrlStoreType storeType;
+
+    private String[] links;
+    private SeenUrlStore store;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        @Setup
+        public void setup() {
+            next = (int) (Thread.currentThread().getId() * 7919);
+        }
+
+        private int next() {
+            return next++ & (LINK_COUNT - 1);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setupLinks() {
+        links = Corpus.links(LINK_COUNT, 1000);
+    }
+
+    @Setup(Level.Iteration)
+    public void setupStore() {
+        switch (storeType) {
+            case HASH_SET:
+                store = new HashSetSeenUrlStore();
+                break;
+            case BLOOM_FILTER:
+                store = new BloomFilterSeenUrlStore(LINK_COUNT, 0.01, null);
+                break;
+            default:
+                store = new FingerprintSeenUrlStore(LINK_COUNT, 64);
+                break;
+        }
+        for (int i = 0; i < LINK_COUNT; i += 2) {
+            store.add(links[i]);
+        }
+    }
+
+    @Benchmark
+    public boolean add(Cursor cursor) {
+        return store.add(links[cursor.next()]);
+    }
+
+    @Benchmark
+    public boolean contains(Cursor cursor) {
+        return store.contains(links[cursor.next()]);
+    }
+
+}
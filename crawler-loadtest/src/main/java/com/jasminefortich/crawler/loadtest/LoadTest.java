@@ -0,0 +1,118 @@
+package com.jasminefortich.crawler.loadtest;
+
+import com.jasminefortich.crawler.Application;
+import com.jasminefortich.crawler.models.CrawlStatistics;
+import com.jasminefortich.crawler.services.CrawlJobService;
+import com.jasminefortich.crawler.services.CrawlerService;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Crawls a {@link SyntheticWeb} with the crawler service and reports pages per second, p99 fetch latency and
+ * peak heap use.
+ *
+ * The crawler runs with its regular configuration, except that the per host politeness limits are lifted
+ * since every synthetic host is the same local server, per link logging is turned off and no web server is
+ * started. Any of these can be overridden with "crawler." system properties, and the web is shaped with
+ * "synthetic." system properties, see {@link SyntheticWebConfig}.
+ */
+public class LoadTest {
+
+    private static final Logger LOGGER = Logger.getLogger(LoadTest.class.getSimpleName());
+
+    public static void main(String[] args) throws IOException {
+        run(SyntheticWebConfig.fromSystemProperties());
+    }
+
+    /**
+     * Serves a synthetic web, crawls it and logs a report of the crawl
+     *
+     * @param config The shape of the web
+     * @return The report
+     * @throws IOException Thrown if the synthetic web can't be served
+     */
+    public static LoadTestReport run(SyntheticWebConfig config) throws IOException {
+        try (SyntheticWeb web = new SyntheticWeb(config).start()) {
+            Map<String, String> previous = setDefaultProperties(web.getSeedUrl());
+            try {
+                resetPeakHeap();
+
+                SpringApplication application = new SpringApplication(Application.class);
+                application.setWebApplicationType(WebApplicationType.NONE);
+
+                // The crawl is queued as a job once the application is ready, wait for it to finish
+                try (ConfigurableApplicationContext context = application.run()) {
+                    context.getBean(CrawlJobService.class).getJobs().forEach(job -> job.getCompletion().join());
+                    CrawlStatistics statistics = context.getBean(CrawlerService.class).getCrawlStatistics();
+                    LoadTestReport report = new LoadTestReport(statistics, web.countReachableUrls(), web.countRepeatedFetches(), getPeakHeap());
+
+                    // Logged before the context closes, closing it takes the log handlers down with it
+                    LOGGER.info("Load test finished\n" + report);
+                    return report;
+                }
+            } finally {
+                previous.forEach((key, value) -> {
+                    if (value == null) {
+                        System.clearProperty(key);
+                    } else {
+                        System.setProperty(key, value);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Sets the load test configuration as system properties so it overrides application.properties,
+     * leaving properties that are already set alone
+     *
+     * @return The previous values of the properties, null for unset properties
+     */
+    private static Map<String, String> setDefaultProperties(String startEndpoint) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("crawler.start-endpoint", startEndpoint);
+        properties.put("crawler.politeness.max-requests-per-host", "1000000");
+        properties.put("crawler.politeness.min-delay-millis", "0");
+        properties.put("crawler.fetcher.max-requests-per-host", "64");
+        properties.put("logging.level.CrawlerService", "ERROR");
+
+        Map<String, String> previous = new HashMap<>();
+        properties.forEach((key, value) -> {
+            previous.put(key, System.getProperty(key));
+            if (key.equals("crawler.start-endpoint") || System.getProperty(key) == null) {
+                System.setProperty(key, value);
+            }
+        });
+        return previous;
+    }
+
+    private static void resetPeakHeap() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long getPeakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+}
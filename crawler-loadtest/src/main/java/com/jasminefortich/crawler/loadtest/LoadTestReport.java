@@ -0,0 +1,61 @@
+package com.jasminefortich.crawler.loadtest;
+
+import com.jasminefortich.crawler.models.CrawlStatistics;
+
+/**
+ * Outcome of a load test run
+ */
+public class LoadTestReport {
+
+    private final CrawlStatistics statistics;
+    private final long reachableUrls;
+    private final long repeatedFetches;
+    private final long peakHeapBytes;
+
+    public LoadTestReport(CrawlStatistics statistics, long reachableUrls, long repeatedFetches, long peakHeapBytes) {
+        this.statistics = statistics;
+        this.reachableUrls = reachableUrls;
+        this.repeatedFetches = repeatedFetches;
+        this.peakHeapBytes = peakHeapBytes;
+    }
+
+    /** Statistics of the crawl as recorded by the crawler service */
+    public CrawlStatistics getStatistics() {
+        return statistics;
+    }
+
+    /** Number of distinct urls the synthetic web links to, a complete crawl requests each once */
+    public long getReachableUrls() {
+        return reachableUrls;
+    }
+
+    /** Number of urls the server was asked for more than once */
+    public long getRepeatedFetches() {
+        return repeatedFetches;
+    }
+
+    /** Peak heap use during the crawl, the sum of the peaks of the heap memory pools */
+    public long getPeakHeapBytes() {
+        return peakHeapBytes;
+    }
+
+    public double getPagesPerSecond() {
+        return statistics.getRequestCount() * 1000.0 / Math.max(1, statistics.getElapsedMillis());
+    }
+
+    public double getP99LatencyMillis() {
+        return statistics.getLatencyMicros().getP99() / 1000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Crawled %d of %d urls (%d ok, %d failed, %d fetched more than once) in %.1f s%n"
+                        + "Pages/sec       : %.0f%n"
+                        + "p99 latency (ms): %.1f%n"
+                        + "Peak heap (MB)  : %.1f",
+                statistics.getRequestCount(), reachableUrls, statistics.getSuccessCount(), statistics.getFailedCount(),
+                repeatedFetches, statistics.getElapsedMillis() / 1000.0, getPagesPerSecond(), getP99LatencyMillis(),
+                peakHeapBytes / (1024.0 * 1024.0));
+    }
+
+}
@@ -0,0 +1,326 @@
+package com.jasminefortich.crawler.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Local web server serving a deterministic, generated link graph so the crawler can be driven end to end
+ * without network access.
+ *
+ * Pages form a tree rooted at page 0 where page i links to pages i * fanOut + 1 to i * fanOut + fanOut, so
+ * every page is reachable. On top of that each page links to random pages to reach the configured duplicate
+ * ratio, and some pages link to a missing page answering with a 404 or 500 to reach the configured error rate.
+ * Pages are generated on request from the seed and the page id, so any size of web costs no memory beyond
+ * a hit counter per page. Requests are served on virtual threads so simulated latency doesn't tie up threads.
+ */
+public class SyntheticWeb implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(SyntheticWeb.class.getSimpleName());
+
+    private static final String FILLER = "Synthetic page content used to pad the page to its size. ";
+    private static final double P99_STANDARD_DEVIATIONS = 2.3263;
+
+    private final SyntheticWebConfig config;
+    private final double duplicatesPerPage;
+    private final double errorLinkProbability;
+    private final double latencySigma;
+
+    private final AtomicIntegerArray pageHits;
+    private final AtomicIntegerArray missingHits;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytesServed = new AtomicLong();
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private int port;
+
+    /**
+     * Creates a synthetic web, call {@link #start()} to serve it
+     *
+     * @param config The shape of the web
+     */
+    public SyntheticWeb(SyntheticWebConfig config) {
+        this.config = config.validate();
+        this.duplicatesPerPage = config.getFanOut() * config.getDuplicateRatio() / (1 - config.getDuplicateRatio());
+        this.errorLinkProbability = config.getErrorRate() / (1 - config.getErrorRate());
+        this.latencySigma = config.getLatencyP99Millis() > config.getLatencyMedianMillis() && config.getLatencyMedianMillis() > 0
+                ? Math.log((double) config.getLatencyP99Millis() / config.getLatencyMedianMillis()) / P99_STANDARD_DEVIATIONS
+                : 0;
+        this.pageHits = new AtomicIntegerArray(config.getPages());
+        this.missingHits = new AtomicIntegerArray(config.getPages());
+    }
+
+    /**
+     * Starts serving on an ephemeral port. A single host web only listens on 127.0.0.1, a multi host web
+     * listens on every address so all of its loopback hosts reach it.
+     *
+     * @return This web
+     * @throws IOException Thrown if the server can't be started
+     */
+    public SyntheticWeb start() throws IOException {
+        InetSocketAddress address = config.getHosts() == 1
+                ? new InetSocketAddress(InetAddress.getLoopbackAddress(), 0)
+                : new InetSocketAddress(0);
+
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server = HttpServer.create(address, 1024);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        port = server.getAddress().getPort();
+
+        LOGGER.info("Synthetic web serving " + config + " on port " + port);
+        return this;
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    /**
+     * Getter for the seed document url
+     *
+     * @return The url of the json document linking to the seed pages
+     */
+    public String getSeedUrl() {
+        return "http://" + host(0) + ":" + port + "/seeds.json";
+    }
+
+    /**
+     * Getter for the url of a page
+     *
+     * @param id The page id
+     * @return The page url
+     */
+    public String pageUrl(int id) {
+        return "http://" + host(id) + ":" + port + "/page/" + id;
+    }
+
+    /**
+     * Getter for the url of the missing page linked from a page
+     *
+     * @param id The id of the linking page
+     * @return The missing page url
+     */
+    public String missingUrl(int id) {
+        return "http://" + host(id) + ":" + port + "/missing/" + id;
+    }
+
+    /**
+     * Generates the links of a page in document order
+     *
+     * @param id The page id
+     * @return The absolute links of the page
+     */
+    public List<String> links(int id) {
+        SplittableRandom random = random(id);
+        List<String> links = new ArrayList<>();
+
+        long firstChild = (long) id * config.getFanOut() + 1;
+        for (long child = firstChild; child < firstChild + config.getFanOut() && child < config.getPages(); child++) {
+            links.add(pageUrl((int) child));
+        }
+
+        int duplicates = (int) duplicatesPerPage + (random.nextDouble() < duplicatesPerPage % 1 ? 1 : 0);
+        for (int i = 0; i < duplicates; i++) {
+            String link = pageUrl(random.nextInt(config.getPages()));
+            links.add(i % 2 == 0 ? link : link + "#duplicate");
+        }
+
+        if (hasMissingLink(id)) {
+            links.add(missingUrl(id));
+        }
+        return links;
+    }
+
+    /**
+     * Counts the pages a complete crawl fetches: every page plus every missing page linked to
+     *
+     * @return The number of distinct urls reachable from the seed document
+     */
+    public long countReachableUrls() {
+        long urls = config.getPages();
+        for (int id = 0; id < config.getPages(); id++) {
+            if (hasMissingLink(id)) {
+                urls++;
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * Counts the missing pages a complete crawl fetches
+     *
+     * @return The number of urls answering with an error
+     */
+    public long countErrorUrls() {
+        return countReachableUrls() - config.getPages();
+    }
+
+    /**
+     * Getter for the number of requests served, including the seed document
+     *
+     * @return The number of requests
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Getter for the number of response body bytes served
+     *
+     * @return The number of bytes
+     */
+    public long getBytesServed() {
+        return bytesServed.get();
+    }
+
+    /**
+     * Counts the pages and missing pages that were requested more than once
+     *
+     * @return The number of urls fetched repeatedly
+     */
+    public long countRepeatedFetches() {
+        long repeated = 0;
+        for (int id = 0; id < config.getPages(); id++) {
+            if (pageHits.get(id) > 1) {
+                repeated++;
+            }
+            if (missingHits.get(id) > 1) {
+                repeated++;
+            }
+        }
+        return repeated;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            requests.incrementAndGet();
+            String path = exchange.getRequestURI().getPath();
+
+            if (path.equals("/seeds.json")) {
+                respond(exchange, 200, "application/json", seedDocument());
+            } else if (path.startsWith("/page/")) {
+                int id = parseId(path, "/page/".length());
+                if (id < 0) {
+                    respond(exchange, 404, "text/plain", "Not found");
+                    return;
+                }
+                pageHits.incrementAndGet(id);
+                delay(id);
+                respond(exchange, 200, "text/html; charset=utf-8", page(id));
+            } else if (path.startsWith("/missing/")) {
+                int id = parseId(path, "/missing/".length());
+                if (id >= 0) {
+                    missingHits.incrementAndGet(id);
+                    delay(id);
+                }
+                respond(exchange, id % 2 == 0 ? 404 : 500, "text/plain", "Missing page");
+            } else {
+                respond(exchange, 404, "text/plain", "Not found");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+        bytesServed.addAndGet(bytes.length);
+    }
+
+    private String seedDocument() {
+        StringBuilder json = new StringBuilder("{ \"links\": [");
+        int seeds = Math.min(config.getSeeds(), config.getPages());
+        for (int id = 0; id < seeds; id++) {
+            json.append(id == 0 ? " \"" : ", \"").append(pageUrl(id)).append('"');
+        }
+        return json.append(" ] }").toString();
+    }
+
+    private String page(int id) {
+        SplittableRandom random = random(id ^ 0x5bd1e995);
+        int size = config.getPageSizeBytes() / 2 + (config.getPageSizeBytes() > 0 ? random.nextInt(config.getPageSizeBytes() + 1) : 0);
+
+        StringBuilder html = new StringBuilder(size + 256);
+        html.append("<!DOCTYPE html><html><head><title>Page ").append(id).append("</title></head><body><h1>Page ")
+                .append(id).append("</h1><ul>");
+        for (String link : links(id)) {
+            html.append("<li><a href=\"").append(link).append("\">").append(link).append("</a></li>");
+        }
+        html.append("</ul><p>");
+        while (html.length() < size) {
+            html.append(FILLER);
+        }
+        return html.append("</p></body></html>").toString();
+    }
+
+    /**
+     * Sleeps for the latency of a page, drawn from a log-normal distribution
+     */
+    private void delay(int id) {
+        if (config.getLatencyMedianMillis() <= 0) {
+            return;
+        }
+        double gaussian = random(id ^ 0x27d4eb2f).nextGaussian();
+        long millis = Math.round(config.getLatencyMedianMillis() * Math.exp(latencySigma * gaussian));
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean hasMissingLink(int id) {
+        return errorLinkProbability > 0 && random(id ^ 0x165667b1).nextDouble() < errorLinkProbability;
+    }
+
+    private SplittableRandom random(int id) {
+        return new SplittableRandom(config.getSeed() * 0x9e3779b97f4a7c15L + id);
+    }
+
+    private int parseId(String path, int start) {
+        try {
+            int id = Integer.parseInt(path.substring(start));
+            return id >= 0 && id < config.getPages() ? id : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Spreads page ids over loopback addresses 127.0.x.y
+     */
+    private String host(int id) {
+        if (config.getHosts() == 1) {
+            return "127.0.0.1";
+        }
+        int host = id % config.getHosts();
+        return "127.0." + (host / 254) + "." + (host % 254 + 1);
+    }
+
+}
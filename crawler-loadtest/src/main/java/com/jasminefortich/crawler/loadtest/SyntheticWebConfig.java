@@ -0,0 +1,180 @@
+package com.jasminefortich.crawler.loadtest;
+
+/**
+ * Shape of a synthetic web. Every property can be set with a "synthetic." system property, for example
+ * {@code -Dsynthetic.pages=1000000}.
+ */
+public class SyntheticWebConfig {
+
+    private long seed = 42;
+    private int pages = 10_000;
+    private int seeds = 10;
+    private int fanOut = 8;
+    private double duplicateRatio = 0.5;
+    private double errorRate = 0.01;
+    private int hosts = 1;
+    private long latencyMedianMillis = 0;
+    private long latencyP99Millis = 0;
+    private int pageSizeBytes = 8 * 1024;
+
+    /**
+     * Reads the config from "synthetic." system properties, using the defaults for unset properties
+     *
+     * @return The config
+     */
+    public static SyntheticWebConfig fromSystemProperties() {
+        SyntheticWebConfig config = new SyntheticWebConfig();
+        config.seed = Long.getLong("synthetic.seed", config.seed);
+        config.pages = Integer.getInteger("synthetic.pages", config.pages);
+        config.seeds = Integer.getInteger("synthetic.seeds", config.seeds);
+        config.fanOut = Integer.getInteger("synthetic.fan-out", config.fanOut);
+        config.duplicateRatio = getDouble("synthetic.duplicate-ratio", config.duplicateRatio);
+        config.errorRate = getDouble("synthetic.error-rate", config.errorRate);
+        config.hosts = Integer.getInteger("synthetic.hosts", config.hosts);
+        config.latencyMedianMillis = Long.getLong("synthetic.latency-median-millis", config.latencyMedianMillis);
+        config.latencyP99Millis = Long.getLong("synthetic.latency-p99-millis", config.latencyP99Millis);
+        config.pageSizeBytes = Integer.getInteger("synthetic.page-size-bytes", config.pageSizeBytes);
+        return config.validate();
+    }
+
+    /**
+     * Checks the config describes a web that can be generated
+     *
+     * @return This config
+     * @throws IllegalArgumentException Thrown if a property is out of range
+     */
+    public SyntheticWebConfig validate() {
+        if (pages < 1 || seeds < 1 || fanOut < 1 || hosts < 1 || pageSizeBytes < 0) {
+            throw new IllegalArgumentException("Pages, seeds, fan out and hosts must be positive");
+        }
+        if (duplicateRatio < 0 || duplicateRatio > 0.95) {
+            throw new IllegalArgumentException("Duplicate ratio must be between 0 and 0.95");
+        }
+        if (errorRate < 0 || errorRate > 0.5) {
+            throw new IllegalArgumentException("Error rate must be between 0 and 0.5");
+        }
+        if (latencyMedianMillis < 0 || latencyP99Millis < 0) {
+            throw new IllegalArgumentException("Latencies must not be negative");
+        }
+        if (hosts > 254 * 254) {
+            throw new IllegalArgumentException("At most " + 254 * 254 + " hosts are supported");
+        }
+        return this;
+    }
+
+    private static double getDouble(String name, double defaultValue) {
+        String value = System.getProperty(name);
+        return value != null ? Double.parseDouble(value) : defaultValue;
+    }
+
+    /** Seed of the generated graph, the same seed always generates the same web */
+    public long getSeed() {
+        return seed;
+    }
+
+    public SyntheticWebConfig setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /** Number of pages reachable from the seed document */
+    public int getPages() {
+        return pages;
+    }
+
+    public SyntheticWebConfig setPages(int pages) {
+        this.pages = pages;
+        return this;
+    }
+
+    /** Number of links in the seed document */
+    public int getSeeds() {
+        return seeds;
+    }
+
+    public SyntheticWebConfig setSeeds(int seeds) {
+        this.seeds = seeds;
+        return this;
+    }
+
+    /** Number of links from a page to pages not linked from anywhere else */
+    public int getFanOut() {
+        return fanOut;
+    }
+
+    public SyntheticWebConfig setFanOut(int fanOut) {
+        this.fanOut = fanOut;
+        return this;
+    }
+
+    /** Fraction of the links on a page that point to a page linked from elsewhere too */
+    public double getDuplicateRatio() {
+        return duplicateRatio;
+    }
+
+    public SyntheticWebConfig setDuplicateRatio(double duplicateRatio) {
+        this.duplicateRatio = duplicateRatio;
+        return this;
+    }
+
+    /** Fraction of the distinct links that answer with a 404 or 500 */
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    public SyntheticWebConfig setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * Number of hosts the pages are spread over. Hosts are loopback addresses 127.0.x.y, which all reach the
+     * server on Linux, other systems may only route 127.0.0.1.
+     */
+    public int getHosts() {
+        return hosts;
+    }
+
+    public SyntheticWebConfig setHosts(int hosts) {
+        this.hosts = hosts;
+        return this;
+    }
+
+    /** Median response delay, latencies are log-normally distributed between the median and the 99th percentile */
+    public long getLatencyMedianMillis() {
+        return latencyMedianMillis;
+    }
+
+    public SyntheticWebConfig setLatencyMedianMillis(long latencyMedianMillis) {
+        this.latencyMedianMillis = latencyMedianMillis;
+        return this;
+    }
+
+    /** 99th percentile response delay */
+    public long getLatencyP99Millis() {
+        return latencyP99Millis;
+    }
+
+    public SyntheticWebConfig setLatencyP99Millis(long latencyP99Millis) {
+        this.latencyP99Millis = latencyP99Millis;
+        return this;
+    }
+
+    /** Average page size, page sizes are spread evenly between half and one and a half times the average */
+    public int getPageSizeBytes() {
+        return pageSizeBytes;
+    }
+
+    public SyntheticWebConfig setPageSizeBytes(int pageSizeBytes) {
+        this.pageSizeBytes = pageSizeBytes;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "pages=" + pages + ", seeds=" + seeds + ", fanOut=" + fanOut + ", duplicateRatio=" + duplicateRatio
+                + ", errorRate=" + errorRate + ", hosts=" + hosts + ", latencyMedianMillis=" + latencyMedianMillis
+                + ", latencyP99Millis=" + latencyP99Millis + ", pageSizeBytes=" + pageSizeBytes + ", seed=" + seed;
+    }
+
+}
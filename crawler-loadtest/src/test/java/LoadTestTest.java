@@ -0,0 +1,35 @@
+import com.jasminefortich.crawler.loadtest.LoadTest;
+import com.jasminefortich.crawler.loadtest.LoadTestReport;
+import com.jasminefortich.crawler.loadtest.SyntheticWeb;
+import com.jasminefortich.crawler.loadtest.SyntheticWebConfig;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class LoadTestTest {
+
+    @Test
+    public void crawlsWholeSyntheticWebOnce() throws IOException {
+        SyntheticWebConfig config = new SyntheticWebConfig()
+                .setPages(3000)
+                .setFanOut(5)
+                .setDuplicateRatio(0.6)
+                .setErrorRate(0.02)
+                .setLatencyMedianMillis(2)
+                .setLatencyP99Millis(20)
+                .setPageSizeBytes(2048);
+        long errorUrls = new SyntheticWeb(config).countErrorUrls();
+
+        LoadTestReport report = LoadTest.run(config);
+
+        Assert.assertEquals(report.getReachableUrls(), report.getStatistics().getRequestCount());
+        Assert.assertEquals(3000, report.getStatistics().getSuccessCount());
+        Assert.assertEquals(errorUrls, report.getStatistics().getFailedCount());
+        Assert.assertEquals(0, report.getRepeatedFetches());
+        Assert.assertTrue(report.getPagesPerSecond() > 0);
+        Assert.assertTrue(report.getP99LatencyMillis() > 0);
+        Assert.assertTrue(report.getPeakHeapBytes() > 0);
+    }
+
+}
@@ -0,0 +1,112 @@
+import com.jasminefortich.crawler.loadtest.SyntheticWeb;
+import com.jasminefortich.crawler.loadtest.SyntheticWebConfig;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+
+public class SyntheticWebTest {
+
+    @Test
+    public void sameSeedGeneratesSameWeb() {
+        SyntheticWeb first = new SyntheticWeb(new SyntheticWebConfig().setPages(1000));
+        SyntheticWeb second = new SyntheticWeb(new SyntheticWebConfig().setPages(1000));
+        SyntheticWeb other = new SyntheticWeb(new SyntheticWebConfig().setPages(1000).setSeed(7));
+
+        Assert.assertEquals(first.links(5), second.links(5));
+        Assert.assertEquals(first.countReachableUrls(), second.countReachableUrls());
+        Assert.assertNotEquals(first.links(5), other.links(5));
+    }
+
+    @Test
+    public void everyPageIsReachable() {
+        SyntheticWebConfig config = new SyntheticWebConfig().setPages(5000).setFanOut(3).setDuplicateRatio(0);
+        SyntheticWeb web = new SyntheticWeb(config);
+
+        BitSet seen = new BitSet();
+        Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(0);
+        seen.set(0);
+        while (!queue.isEmpty()) {
+            for (String link : web.links(queue.poll())) {
+                if (link.contains("/page/")) {
+                    int id = Integer.parseInt(link.substring(link.lastIndexOf('/') + 1));
+                    if (!seen.get(id)) {
+                        seen.set(id);
+                        queue.add(id);
+                    }
+                }
+            }
+        }
+
+        Assert.assertEquals(5000, seen.cardinality());
+    }
+
+    @Test
+    public void linksMatchDuplicateRatioAndErrorRate() {
+        SyntheticWebConfig config = new SyntheticWebConfig().setPages(100_000).setFanOut(4).setDuplicateRatio(0.5).setErrorRate(0.05);
+        SyntheticWeb web = new SyntheticWeb(config);
+
+        long links = 0, duplicates = 0;
+        for (int id = 0; id < 10_000; id++) {
+            List<String> pageLinks = web.links(id);
+            for (int i = 0; i < pageLinks.size(); i++) {
+                String link = pageLinks.get(i);
+                if (link.contains("/page/")) {
+                    links++;
+                    if (i >= 4) {
+                        duplicates++;
+                    }
+                }
+            }
+        }
+
+        Assert.assertEquals(0.5, (double) duplicates / links, 0.02);
+        Assert.assertEquals(0.05, (double) web.countErrorUrls() / web.countReachableUrls(), 0.005);
+    }
+
+    @Test
+    public void servesPagesAndErrors() throws IOException {
+        try (SyntheticWeb web = new SyntheticWeb(new SyntheticWebConfig().setPages(100).setPageSizeBytes(4096)).start()) {
+            String seeds = read(web.getSeedUrl());
+            Assert.assertTrue(seeds.contains(web.pageUrl(0)));
+
+            String page = read(web.pageUrl(3));
+            Assert.assertTrue(page.length() >= 2048);
+            for (String link : web.links(3)) {
+                Assert.assertTrue(page.contains("href=\"" + link + "\""));
+            }
+
+            Assert.assertEquals(404, status(web.missingUrl(2)));
+            Assert.assertEquals(500, status(web.missingUrl(3)));
+            Assert.assertEquals(404, status(web.pageUrl(0).replace("/page/0", "/page/100")));
+
+            read(web.pageUrl(3));
+            Assert.assertEquals(1, web.countRepeatedFetches());
+        }
+    }
+
+    private static String read(String url) throws IOException {
+        try (InputStream in = new URL(url).openStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static int status(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+}
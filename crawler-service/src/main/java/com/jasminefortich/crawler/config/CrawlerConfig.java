@@ -1,39 +1,147 @@
 package com.jasminefortich.crawler.config;
 
-import com.jasminefortich.crawler.exceptions.CrawlerException;
-import com.jasminefortich.crawler.services.CrawlerService;
-import org.springframework.beans.factory.annotation.Autowired;
+import com.jasminefortich.crawler.models.ExecutionMode;
+import com.jasminefortich.crawler.models.LinkExtractorType;
+import com.jasminefortich.crawler.services.ClusterTransport;
+import com.jasminefortich.crawler.services.CrawlJobService;
+import com.jasminefortich.crawler.services.DnsCache;
+import com.jasminefortich.crawler.services.Fetcher;
+import com.jasminefortich.crawler.services.HttpClusterTransport;
+import com.jasminefortich.crawler.services.JsoupLinkExtractor;
+import com.jasminefortich.crawler.services.LinkExtractor;
+import com.jasminefortich.crawler.services.OkHttpFetcher;
+import com.jasminefortich.crawler.services.StreamingLinkExtractor;
+import com.jasminefortich.crawler.services.VirtualThreadTaskExecutor;
+import okhttp3.Dns;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.ThreadPoolExecutor;
+
 @Component
 @Configuration
 public class CrawlerConfig {
 
-    @Autowired
-    private CrawlerService crawlerService;
-
-    @Value("${crawler.start-endpoint}")
+    @Value("${crawler.start-endpoint:}")
     private String startEndpoint;
 
+    @Value("${crawler.execution.mode:PLATFORM}")
+    private ExecutionMode executionMode;
+
+    @Value("${crawler.execution.core-pool-size:5}")
+    private int corePoolSize;
+
+    @Value("${crawler.execution.max-pool-size:10}")
+    private int maxPoolSize;
+
+    @Value("${crawler.execution.max-outstanding-requests:1000}")
+    private int maxOutstandingRequests;
+
+    @Value("${crawler.execution.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${crawler.link-extractor:STREAMING}")
+    private LinkExtractorType linkExtractorType;
+
+    // Follows the outstanding request limit, so a permitted request runs straight away instead of waiting in the dispatcher
+    @Value("${crawler.fetcher.max-requests:${crawler.execution.max-outstanding-requests:1000}}")
+    private int fetcherMaxRequests;
+
+    @Value("${crawler.fetcher.max-requests-per-host:8}")
+    private int fetcherMaxRequestsPerHost;
+
+    @Value("${crawler.fetcher.max-idle-connections:32}")
+    private int fetcherMaxIdleConnections;
+
+    @Value("${crawler.fetcher.keep-alive-millis:300000}")
+    private long fetcherKeepAliveMillis;
+
+    @Value("${crawler.fetcher.timeout-millis:30000}")
+    private long fetcherTimeoutMillis;
+
+    @Value("${crawler.dns.ttl-millis:300000}")
+    private long dnsTtlMillis;
+
+    @Value("${crawler.dns.negative-ttl-millis:60000}")
+    private long dnsNegativeTtlMillis;
+
+    @Value("${crawler.dns.max-hosts:100000}")
+    private int dnsMaxHosts;
+
+    @Value("${crawler.dns.prefetch-threads:4}")
+    private int dnsPrefetchThreads;
+
+    @Value("${crawler.dns.max-pending-prefetches:1000}")
+    private int dnsMaxPendingPrefetches;
+
+    @Value("${crawler.cluster.timeout-millis:10000}")
+    private long clusterTimeoutMillis;
+
     @Bean(name = "crawlerThreadExecutor")
-    public ThreadPoolTaskExecutor taskExecutor() {
+    public TaskExecutor taskExecutor() {
+        if (executionMode == ExecutionMode.VIRTUAL) {
+            return new VirtualThreadTaskExecutor(maxOutstandingRequests, "VirtualCrawlerThread-");
+        }
+
         ThreadPoolTaskExecutor pool = new ThreadPoolTaskExecutor();
-        pool.setCorePoolSize(5);
-        pool.setMaxPoolSize(10);
+        pool.setCorePoolSize(corePoolSize);
+        pool.setMaxPoolSize(maxPoolSize);
+        // A full queue runs the task on the submitting thread, slowing down whoever is producing the work
+        pool.setQueueCapacity(queueCapacity);
+        pool.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
         pool.setThreadNamePrefix("AsyncCrawlerThread-");
         pool.setWaitForTasksToCompleteOnShutdown(true);
         return pool;
     }
 
-    @EventListener(ApplicationReadyEvent.class)
-    public void startCrawler() throws CrawlerException {
-        crawlerService.crawlEndpoint(startEndpoint);
+    @Bean
+    public Fetcher fetcher() {
+        return new OkHttpFetcher(fetcherMaxRequests, fetcherMaxRequestsPerHost, fetcherMaxIdleConnections,
+                fetcherKeepAliveMillis, fetcherTimeoutMillis, dnsCache());
+    }
+
+    @Bean
+    public DnsCache dnsCache() {
+        ThreadPoolTaskExecutor prefetchPool = new ThreadPoolTaskExecutor();
+        prefetchPool.setCorePoolSize(dnsPrefetchThreads);
+        prefetchPool.setMaxPoolSize(dnsPrefetchThreads);
+        prefetchPool.setDaemon(true);
+        prefetchPool.setThreadNamePrefix("DnsPrefetchThread-");
+        prefetchPool.initialize();
+        return new DnsCache(Dns.SYSTEM, prefetchPool, dnsTtlMillis, dnsNegativeTtlMillis, dnsMaxHosts, dnsMaxPendingPrefetches);
+    }
+
+    @Bean
+    public ClusterTransport clusterTransport() {
+        return new HttpClusterTransport(clusterTimeoutMillis);
+    }
+
+    @Bean
+    public LinkExtractor linkExtractor() {
+        if (linkExtractorType == LinkExtractorType.JSOUP) {
+            return new JsoupLinkExtractor();
+        }
+        return new StreamingLinkExtractor();
+    }
+
+    /**
+     * Queues a crawl of the configured start endpoint once the application is ready, if one is configured. The
+     * crawl runs in the background and keeps its files in the configured directories. The job service is looked
+     * up from the context since the crawler service depends on beans defined here, injecting it into this
+     * configuration would be a circular reference.
+     */
+    @EventListener
+    public void startCrawler(ApplicationReadyEvent event) {
+        if (startEndpoint.isEmpty()) {
+            return;
+        }
+        event.getApplicationContext().getBean(CrawlJobService.class).submit(startEndpoint, null);
     }
 
 }
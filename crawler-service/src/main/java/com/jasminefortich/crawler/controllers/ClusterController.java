@@ -0,0 +1,60 @@
+package com.jasminefortich.crawler.controllers;
+
+import com.jasminefortich.crawler.models.ClusterStatus;
+import com.jasminefortich.crawler.services.CrawlerService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+public class ClusterController {
+
+    @Autowired
+    private CrawlerService crawlerService;
+
+    /**
+     * Receives links forwarded by another node of the cluster
+     *
+     * @param batch The header with the sender id and sequence number, then the links, one per line after their
+     * depth and a tab
+     * @return 204 once the links are queued, 503 if this node isn't crawling so the batch is sent again later,
+     * 400 if the batch is malformed
+     */
+    @PostMapping(value = "/cluster/links", consumes = "text/plain")
+    public ResponseEntity<Void> receiveLinks(@RequestBody String batch) {
+        try {
+            if (!crawlerService.receiveClusterLinks(batch)) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+            }
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Status of this node's shard of the crawl, polled by the coordinating node
+     *
+     * @return The cluster status
+     */
+    @GetMapping("/cluster/status")
+    public ClusterStatus getStatus() {
+        return crawlerService.getClusterStatus();
+    }
+
+    /**
+     * Finishes this node's shard of the crawl, called by the coordinating node
+     *
+     * @return 204
+     */
+    @PostMapping("/cluster/finish")
+    public ResponseEntity<Void> finish() {
+        crawlerService.finishClusterCrawl();
+        return ResponseEntity.noContent().build();
+    }
+
+}
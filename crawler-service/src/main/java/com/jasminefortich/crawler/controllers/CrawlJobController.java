@@ -0,0 +1,192 @@
+package com.jasminefortich.crawler.controllers;
+
+import com.jasminefortich.crawler.models.ConcurrencyLimits;
+import com.jasminefortich.crawler.models.CrawlJobRequest;
+import com.jasminefortich.crawler.models.CrawlJobStatus;
+import com.jasminefortich.crawler.models.CrawlProgress;
+import com.jasminefortich.crawler.services.CrawlJob;
+import com.jasminefortich.crawler.services.CrawlJobService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+@RestController
+public class CrawlJobController {
+
+    @Autowired
+    private CrawlJobService crawlJobService;
+
+    @Value("${crawler.jobs.progress-timeout-millis:600000}")
+    private long progressTimeoutMillis = 600_000;
+
+    /**
+     * Queues a crawl job, which starts as soon as a job slot is free
+     *
+     * @param request The start endpoint to crawl
+     * @return 202 with the queued job, 400 if the start endpoint is missing, 409 if it is already being crawled
+     * or the service runs in cluster mode
+     */
+    @PostMapping("/crawler/jobs")
+    public ResponseEntity<CrawlJobStatus> submit(@RequestBody CrawlJobRequest request) {
+        CrawlJob job;
+        try {
+            job = crawlJobService.submit(request.getStartEndpoint());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.accepted().location(URI.create("/crawler/jobs/" + job.getId())).body(job.getStatus());
+    }
+
+    /**
+     * Lists the queued, running and retained jobs
+     *
+     * @return The jobs, in submission order
+     */
+    @GetMapping("/crawler/jobs")
+    public List<CrawlJobStatus> getJobs() {
+        return crawlJobService.getJobs().stream().map(CrawlJob::getStatus).collect(Collectors.toList());
+    }
+
+    /**
+     * A job and the statistics of its crawl, readable while the job runs
+     *
+     * @param id The job id
+     * @return The job, 404 if there is no such job
+     */
+    @GetMapping("/crawler/jobs/{id}")
+    public ResponseEntity<CrawlJobStatus> getJob(@PathVariable String id) {
+        CrawlJob job = crawlJobService.getJob(id);
+        return job != null ? ResponseEntity.ok(job.getStatus()) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Pauses a job, its requests in flight still finish
+     *
+     * @param id The job id
+     * @return The job, 404 if there is no such job, 409 if it is done or cancelled
+     */
+    @PostMapping("/crawler/jobs/{id}/pause")
+    public ResponseEntity<CrawlJobStatus> pause(@PathVariable String id) {
+        CrawlJob job = crawlJobService.getJob(id);
+        return control(job, () -> job.pause());
+    }
+
+    /**
+     * Resumes a paused job
+     *
+     * @param id The job id
+     * @return The job, 404 if there is no such job, 409 if it is done or cancelled
+     */
+    @PostMapping("/crawler/jobs/{id}/resume")
+    public ResponseEntity<CrawlJobStatus> resume(@PathVariable String id) {
+        CrawlJob job = crawlJobService.getJob(id);
+        return control(job, () -> job.resume());
+    }
+
+    /**
+     * Cancels a job, a running job is done once its requests in flight finish
+     *
+     * @param id The job id
+     * @return The job, 404 if there is no such job, 409 if it is done
+     */
+    @PostMapping("/crawler/jobs/{id}/cancel")
+    public ResponseEntity<CrawlJobStatus> cancel(@PathVariable String id) {
+        CrawlJob job = crawlJobService.getJob(id);
+        return control(job, () -> job.cancel());
+    }
+
+    /**
+     * Changes the concurrency limits of a job, a queued job starts with them
+     *
+     * @param id The job id
+     * @param limits The new maximums, a missing maximum keeps the current one
+     * @return The maximums now in effect, 400 if a maximum is less than 1, 404 if there is no such job, 409 if it
+     * is done
+     */
+    @PutMapping("/crawler/jobs/{id}/concurrency")
+    public ResponseEntity<ConcurrencyLimits> setConcurrency(@PathVariable String id, @RequestBody ConcurrencyLimits limits) {
+        CrawlJob job = crawlJobService.getJob(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (job.getState().isDone()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        try {
+            return ResponseEntity.ok(job.setConcurrencyLimits(limits));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Streams the progress of a job as server-sent events until the job is done, or until the stream times out,
+     * after which the client reconnects to go on following the job
+     *
+     * @param id The job id
+     * @return A "progress" event per sample, the last one once the job is done, 404 if there is no such job
+     */
+    @GetMapping(value = "/crawler/jobs/{id}/progress", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamProgress(@PathVariable String id) {
+        CrawlJob job = crawlJobService.getJob(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        SseEmitter emitter = new SseEmitter(progressTimeoutMillis);
+        Runnable[] unsubscribe = new Runnable[1];
+        unsubscribe[0] = crawlJobService.subscribe(job, progress -> send(emitter, progress, unsubscribe[0]));
+        emitter.onCompletion(() -> unsubscribe[0].run());
+        emitter.onTimeout(() -> {
+            unsubscribe[0].run();
+            emitter.complete();
+        });
+        emitter.onError(error -> unsubscribe[0].run());
+        return ResponseEntity.ok(emitter);
+    }
+
+    private ResponseEntity<CrawlJobStatus> control(CrawlJob job, BooleanSupplier action) {
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!action.getAsBoolean()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.ok(job.getStatus());
+    }
+
+    /**
+     * Sends a progress sample, completing the stream once the job is done and unsubscribing once the client
+     * has gone
+     */
+    private static void send(SseEmitter emitter, CrawlProgress progress, Runnable unsubscribe) {
+        try {
+            emitter.send(SseEmitter.event().name("progress").data(progress, MediaType.APPLICATION_JSON));
+            if (progress.getState().isDone()) {
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            if (unsubscribe != null) {
+                unsubscribe.run();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.jasminefortich.crawler.controllers;
+
+import com.jasminefortich.crawler.models.CrawlStatistics;
+import com.jasminefortich.crawler.services.CrawlerService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+public class CrawlStatisticsController {
+
+    @Autowired
+    private CrawlerService crawlerService;
+
+    /**
+     * Statistics of the current or last crawl, readable while the crawl is running. With several jobs running these
+     * are the statistics of the job started last, each job's statistics are reported by the jobs endpoints.
+     *
+     * @return The crawl statistics
+     */
+    @GetMapping("/crawler/statistics")
+    public CrawlStatistics getStatistics() {
+        return crawlerService.getCrawlStatistics();
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.jasminefortich.crawler.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * What a cluster node reports to the coordinating node, which decides from it when the crawl is finished
+ */
+@Data
+@AllArgsConstructor
+public class ClusterStatus {
+
+    /** Whether the node is taking part in a crawl */
+    private boolean crawling;
+
+    /** Whether the node has read its seed links, has nothing queued or in flight and has delivered every forwarded link */
+    private boolean idle;
+
+    /** Links delivered to other nodes */
+    private long sentLinks;
+
+    /** Links received from other nodes */
+    private long receivedLinks;
+
+}
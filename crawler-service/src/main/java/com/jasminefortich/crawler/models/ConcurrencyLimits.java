@@ -0,0 +1,21 @@
+package com.jasminefortich.crawler.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The maximum number of requests a crawl keeps in flight, changeable while it runs
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConcurrencyLimits {
+
+    /** The maximum number of requests in flight, null to keep the current maximum */
+    private Integer maxOutstandingRequests;
+
+    /** The maximum number of requests in flight per host, null to keep the current maximum */
+    private Integer maxRequestsPerHost;
+
+}
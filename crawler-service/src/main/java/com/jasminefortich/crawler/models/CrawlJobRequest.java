@@ -0,0 +1,18 @@
+package com.jasminefortich.crawler.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A request to crawl a start endpoint as a job
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CrawlJobRequest {
+
+    /** The url of the json document listing the seed links */
+    private String startEndpoint;
+
+}
@@ -0,0 +1,47 @@
+package com.jasminefortich.crawler.models;
+
+/**
+ * Where a crawl job is in its life
+ */
+public enum CrawlJobState {
+
+    /**
+     * Waiting for a free job slot
+     */
+    QUEUED,
+
+    /**
+     * Crawling
+     */
+    RUNNING,
+
+    /**
+     * Not taking new links, requests already in flight still finish
+     */
+    PAUSED,
+
+    /**
+     * Crawled until its frontier drained or its budget ran out
+     */
+    FINISHED,
+
+    /**
+     * Stopped by a cancel request, before or while crawling
+     */
+    CANCELLED,
+
+    /**
+     * Stopped by an error, such as an unreadable start endpoint
+     */
+    FAILED;
+
+    /**
+     * Getter for whether the job is over
+     *
+     * @return True if the job will not crawl again
+     */
+    public boolean isDone() {
+        return this == FINISHED || this == CANCELLED || this == FAILED;
+    }
+
+}
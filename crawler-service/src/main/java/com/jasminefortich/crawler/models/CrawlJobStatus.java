@@ -0,0 +1,33 @@
+package com.jasminefortich.crawler.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A crawl job and the statistics of its crawl
+ */
+@Data
+@AllArgsConstructor
+public class CrawlJobStatus {
+
+    private String id;
+
+    private String startEndpoint;
+
+    private CrawlJobState state;
+
+    /** Why the job failed, null unless it failed */
+    private String error;
+
+    private long submittedAtMillis;
+
+    /** When the crawl started, 0 while the job is queued */
+    private long startedAtMillis;
+
+    /** When the job was done, 0 until then */
+    private long finishedAtMillis;
+
+    /** The statistics of the crawl, null while the job is queued */
+    private CrawlStatistics statistics;
+
+}
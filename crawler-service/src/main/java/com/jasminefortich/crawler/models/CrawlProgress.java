@@ -0,0 +1,33 @@
+package com.jasminefortich.crawler.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A sample of a crawl job's progress, streamed to subscribers while the job runs
+ */
+@Data
+@AllArgsConstructor
+public class CrawlProgress {
+
+    private String jobId;
+
+    private CrawlJobState state;
+
+    private long elapsedMillis;
+
+    private long requestCount;
+
+    /** Requests finished per second since the previous sample */
+    private double pagesPerSecond;
+
+    private long queuedLinks;
+
+    private long inFlightLinks;
+
+    private long seenLinks;
+
+    /** The current limit of requests in flight */
+    private long concurrencyLimit;
+
+}
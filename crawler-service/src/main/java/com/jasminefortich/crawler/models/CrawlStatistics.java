@@ -0,0 +1,108 @@
+package com.jasminefortich.crawler.models;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+public class CrawlStatistics {
+
+    private boolean running;
+
+    private long elapsedMillis;
+
+    /** The budget limit that stopped the crawl early, null if the crawl ran until the frontier drained */
+    private String budgetExhausted;
+
+    private long requestCount;
+
+    private long successCount;
+
+    private long failedCount;
+
+    /** Failed requests that never got a response, such as connection failures and invalid links */
+    private long errorCount;
+
+    private long bytesTransferred;
+
+    /** Pages that hadn't changed since the previous crawl, whose stored links were reused without parsing */
+    private long unchangedCount;
+
+    /** Pages whose body wasn't downloaded or parsed because its content type isn't parsed */
+    private long skippedBodies;
+
+    /** Pages whose body was cut off at the maximum size of its content type, and parsed up to there */
+    private long truncatedBodies;
+
+    private long queuedLinks;
+
+    private long inFlightLinks;
+
+    private long seenLinks;
+
+    /** Queued links spilled to disk, included in the queued links */
+    private long spilledLinks;
+
+    /** Links discovered while the frontier was at its limit, dropped without being marked as seen */
+    private long droppedLinks;
+
+    /** Links rejected by the crawl scope for their depth, host or path */
+    private long outOfScopeLinks;
+
+    /** Links rejected because a page cap was reached or the budget was exhausted */
+    private long overBudgetLinks;
+
+    /** Links taken from the frontier but not fetched because robots.txt disallows them */
+    private long robotsDisallowedLinks;
+
+    /** The frontier limit, 0 if the frontier is unbounded */
+    private long maxQueuedLinks;
+
+    private long outstandingRequests;
+
+    private long maxOutstandingRequests;
+
+    /** Time the coordinator spent waiting for an outstanding request to finish */
+    private long backpressureWaitMillis;
+
+    /** The current limit on outstanding requests, at most the max outstanding requests */
+    private long concurrencyLimit;
+
+    /** Hosts whose in flight limit is currently below the per host maximum, up to 100 */
+    private Map<String, Integer> throttledHostLimits;
+
+    /** Host lookups answered by the DNS cache since the service started, including lookups that waited for a prefetch */
+    private long dnsCacheHits;
+
+    /** Host lookups that had to resolve the host themselves since the service started */
+    private long dnsCacheMisses;
+
+    /** Failed host resolutions since the service started, cached for the negative time to live */
+    private long dnsFailures;
+
+    /** Hosts resolved ahead of their first fetch since the service started */
+    private long dnsPrefetches;
+
+    /** Links of other nodes' hosts delivered to them, in cluster mode */
+    private long forwardedLinks;
+
+    /** Links of this node's hosts received from other nodes, in cluster mode */
+    private long receivedLinks;
+
+    /** Page results written to the result files */
+    private long writtenResults;
+
+    /** Page results dropped because the result writer fell behind or failed */
+    private long droppedResults;
+
+    private Map<Integer, Long> statusCounts;
+
+    private Map<String, Long> hostCounts;
+
+    private HistogramSnapshot latencyMicros;
+
+    private HistogramSnapshot pageSizeBytes;
+
+}
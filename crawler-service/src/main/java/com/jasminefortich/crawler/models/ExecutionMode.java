@@ -0,0 +1,18 @@
+package com.jasminefortich.crawler.models;
+
+/**
+ * How the crawler service runs its fetches
+ */
+public enum ExecutionMode {
+
+    /**
+     * Asynchronous fetches with responses handled on a bounded platform thread pool
+     */
+    PLATFORM,
+
+    /**
+     * One virtual thread per blocking fetch, bounded by the number of outstanding requests
+     */
+    VIRTUAL
+
+}
@@ -0,0 +1,40 @@
+package com.jasminefortich.crawler.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class FetchResult {
+
+    private String url;
+
+    private int statusCode;
+
+    private String contentType;
+
+    private String charset;
+
+    private byte[] body;
+
+    private String etag;
+
+    private String lastModified;
+
+    /** The body wasn't downloaded because its content type isn't parsed */
+    private boolean skipped;
+
+    /** The body was cut off at the maximum size of its content type */
+    private boolean truncated;
+
+    /** How long the request took from when the client started running it until the body was read, 0 if unknown */
+    private long fetchNanos;
+
+    /**
+     * Creates the result of a response whose body was read in full
+     */
+    public FetchResult(String url, int statusCode, String contentType, String charset, byte[] body, String etag, String lastModified) {
+        this(url, statusCode, contentType, charset, body, etag, lastModified, false, false, 0);
+    }
+
+}
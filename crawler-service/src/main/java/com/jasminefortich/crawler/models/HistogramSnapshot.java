@@ -0,0 +1,24 @@
+package com.jasminefortich.crawler.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class HistogramSnapshot {
+
+    private long count;
+
+    private long min;
+
+    private long max;
+
+    private double mean;
+
+    private long p50;
+
+    private long p90;
+
+    private long p99;
+
+}
@@ -0,0 +1,18 @@
+package com.jasminefortich.crawler.models;
+
+/**
+ * How links are extracted from fetched pages
+ */
+public enum LinkExtractorType {
+
+    /**
+     * Scans the page incrementally for anchors without building a document
+     */
+    STREAMING,
+
+    /**
+     * Parses the page into a full jsoup document
+     */
+    JSOUP
+
+}
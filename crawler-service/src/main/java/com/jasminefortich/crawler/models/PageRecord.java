@@ -0,0 +1,22 @@
+package com.jasminefortich.crawler.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * What an incremental crawl remembers about a page between crawls
+ */
+@Data
+@AllArgsConstructor
+public class PageRecord {
+
+    private String etag;
+
+    private String lastModified;
+
+    private long contentHash;
+
+    /** The canonical links found on the page, front coded by {@link com.jasminefortich.crawler.utils.LinkListCodec} */
+    private byte[] outlinks;
+
+}
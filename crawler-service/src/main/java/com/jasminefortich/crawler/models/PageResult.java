@@ -0,0 +1,40 @@
+package com.jasminefortich.crawler.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * The outcome of crawling a page, written to the crawl results
+ */
+@Data
+@AllArgsConstructor
+public class PageResult {
+
+    private String link;
+
+    /** The number of links followed from a seed link to reach the page */
+    private int depth;
+
+    /** The response status code, 0 if the request failed without a response */
+    private int statusCode;
+
+    /** Why the request failed without a response, null if there was a response */
+    private String error;
+
+    private long latencyMicros;
+
+    /** The number of body bytes read */
+    private long bytes;
+
+    /** The fingerprint of the body, 0 if no body was downloaded, as for failed responses */
+    private long contentHash;
+
+    /** When the response was handled, in milliseconds since the epoch */
+    private long fetchedAtMillis;
+
+    /** The links found on the page, as found, empty for a failed page */
+    private List<String> outlinks;
+
+}
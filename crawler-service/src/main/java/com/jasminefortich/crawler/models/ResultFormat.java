@@ -0,0 +1,18 @@
+package com.jasminefortich.crawler.models;
+
+/**
+ * How crawl results are written
+ */
+public enum ResultFormat {
+
+    /**
+     * One JSON object per page per line
+     */
+    NDJSON,
+
+    /**
+     * Binary blocks of pages with each field stored as its own column
+     */
+    COLUMNAR
+
+}
@@ -0,0 +1,23 @@
+package com.jasminefortich.crawler.models;
+
+/**
+ * How a crawl remembers the links it has already queued
+ */
+public enum SeenUrlStoreType {
+
+    /**
+     * Exact set of the full link strings
+     */
+    HASH_SET,
+
+    /**
+     * Striped set of 64 bit link fingerprints held in primitive arrays
+     */
+    FINGERPRINT,
+
+    /**
+     * Bloom filter alone, fixed memory with a configurable false positive rate
+     */
+    BLOOM_FILTER
+
+}
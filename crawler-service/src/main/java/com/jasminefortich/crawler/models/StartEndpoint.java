@@ -1,12 +0,0 @@
-package com.jasminefortich.crawler.models;
-
-import lombok.Data;
-
-import java.util.List;
-
-@Data
-public class StartEndpoint {
-
-    private List<String> links;
-
-}
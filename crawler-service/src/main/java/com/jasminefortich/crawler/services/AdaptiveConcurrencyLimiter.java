@@ -0,0 +1,340 @@
+package com.jasminefortich.crawler.services;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of requests in flight, globally and per host.
+ *
+ * When adaptive, both limits are {@link AimdLimit}s tuned from the latency and failures of the requests they
+ * cover, so the crawl finds the parallelism each target copes with instead of relying on a fixed pool size.
+ * Otherwise the limits stay at their maximums. The global limit is enforced here through
+ * {@link #acquire()} and {@link #release(String, long, boolean)}, the host limits are enforced by the
+ * frontier, which reads them through {@link #getHostLimit(String)}. A host's limit only grows while the host has
+ * that many requests in flight, counted from {@link #requestStarted(String)}. A host with nothing in flight is
+ * forgotten once its limit is back at the initial value or it has been idle for the host idle timeout, so the limiter
+ * doesn't grow with every host ever crawled.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final int MAX_REPORTED_HOSTS = 100;
+    private static final long DEFAULT_HOST_IDLE_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final boolean adaptive;
+    private final int initialHostLimit;
+    private volatile int maxHostLimit;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+    private final long hostIdleTimeoutNanos;
+
+    private volatile AimdLimit limit;
+    private final Map<String, HostLimit> hostLimits = new ConcurrentHashMap<>();
+    private final AtomicLong nextHostSweepNanos = new AtomicLong(System.nanoTime());
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private int inFlight = 0;
+
+    /**
+     * Creates a limiter that keeps its limits at their maximums
+     *
+     * @param maxLimit The maximum number of requests in flight
+     * @param maxHostLimit The maximum number of requests in flight per host
+     */
+    public AdaptiveConcurrencyLimiter(int maxLimit, int maxHostLimit) {
+        this(false, maxLimit, maxLimit, maxHostLimit, maxHostLimit, 0.5, Double.MAX_VALUE);
+    }
+
+    /**
+     * Creates a limiter
+     *
+     * @param adaptive Whether to tune the limits from the outcome of requests
+     * @param initialLimit The starting number of requests in flight
+     * @param maxLimit The maximum number of requests in flight
+     * @param initialHostLimit The starting number of requests in flight per host
+     * @param maxHostLimit The maximum number of requests in flight per host
+     * @param backoffRatio The factor a limit is multiplied by on congestion
+     * @param latencyTolerance How far latency may rise above its long term average before it counts as congestion
+     */
+    public AdaptiveConcurrencyLimiter(boolean adaptive, int initialLimit, int maxLimit, int initialHostLimit, int maxHostLimit,
+                                      double backoffRatio, double latencyTolerance) {
+        this(adaptive, initialLimit, maxLimit, initialHostLimit, maxHostLimit, backoffRatio, latencyTolerance,
+                DEFAULT_HOST_IDLE_TIMEOUT_NANOS);
+    }
+
+    /**
+     * Creates a limiter
+     *
+     * @param adaptive Whether to tune the limits from the outcome of requests
+     * @param initialLimit The starting number of requests in flight
+     * @param maxLimit The maximum number of requests in flight
+     * @param initialHostLimit The starting number of requests in flight per host
+     * @param maxHostLimit The maximum number of requests in flight per host
+     * @param backoffRatio The factor a limit is multiplied by on congestion
+     * @param latencyTolerance How far latency may rise above its long term average before it counts as congestion
+     * @param hostIdleTimeoutNanos How long a host without requests in flight keeps its limit before it is forgotten
+     */
+    public AdaptiveConcurrencyLimiter(boolean adaptive, int initialLimit, int maxLimit, int initialHostLimit, int maxHostLimit,
+                                      double backoffRatio, double latencyTolerance, long hostIdleTimeoutNanos) {
+        this.adaptive = adaptive;
+        this.initialHostLimit = adaptive ? initialHostLimit : maxHostLimit;
+        this.maxHostLimit = maxHostLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.hostIdleTimeoutNanos = hostIdleTimeoutNanos;
+        this.limit = new AimdLimit(adaptive ? initialLimit : maxLimit, 1, maxLimit, backoffRatio, latencyTolerance);
+    }
+
+    /**
+     * Takes a slot for a request, blocking while the limit is reached
+     *
+     * @throws InterruptedException Thrown if the calling thread is interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            while (inFlight >= limit.get()) {
+                released.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes a slot for a request if the limit isn't reached
+     *
+     * @return True if a slot was taken
+     */
+    public boolean tryAcquire() {
+        lock.lock();
+        try {
+            if (inFlight >= limit.get()) {
+                return false;
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Counts a request to a host as in flight until it is released with {@link #release(String, long, boolean)}
+     *
+     * @param host The host of the request
+     */
+    public void requestStarted(String host) {
+        if (!adaptive || host == null) {
+            return;
+        }
+        hostLimits.compute(host, (name, hostLimit) -> {
+            HostLimit started = hostLimit != null ? hostLimit : new HostLimit(createHostLimit());
+            started.inFlight++;
+            return started;
+        });
+    }
+
+    /**
+     * Gives back the slot of a finished request and adjusts the limits from its outcome
+     *
+     * @param host The host of the request
+     * @param latencyNanos The request latency
+     * @param failed Whether the request failed in a way that suggests the target is overloaded
+     */
+    public void release(String host, long latencyNanos, boolean failed) {
+        if (adaptive) {
+            limit.onSample(latencyNanos, failed, getInFlight());
+            if (host != null) {
+                hostLimits.compute(host, (name, hostLimit) -> {
+                    HostLimit finished = hostLimit != null ? hostLimit : new HostLimit(createHostLimit());
+                    // Counts itself, a request released without being started is the host's only request
+                    finished.limit.onSample(latencyNanos, failed, Math.max(1, finished.inFlight));
+                    finished.inFlight = Math.max(0, finished.inFlight - 1);
+                    if (finished.inFlight > 0) {
+                        return finished;
+                    }
+                    finished.idleSinceNanos = System.nanoTime();
+                    return finished.limit.get() == getInitialHostLimit() ? null : finished;
+                });
+                forgetIdleHosts();
+            }
+        }
+        release();
+    }
+
+    /**
+     * Forgets the hosts that have been idle for the host idle timeout, at most once per timeout so the hosts aren't
+     * scanned on every request
+     */
+    private void forgetIdleHosts() {
+        long now = System.nanoTime();
+        long next = nextHostSweepNanos.get();
+        if (now - next < 0 || !nextHostSweepNanos.compareAndSet(next, now + hostIdleTimeoutNanos)) {
+            return;
+        }
+        for (String host : hostLimits.keySet()) {
+            hostLimits.computeIfPresent(host, (name, hostLimit) ->
+                    hostLimit.inFlight == 0 && now - hostLimit.idleSinceNanos >= hostIdleTimeoutNanos ? null : hostLimit);
+        }
+    }
+
+    /**
+     * Gives back a slot without adjusting the limits, for a slot that wasn't used for a request
+     */
+    public void release() {
+        lock.lock();
+        try {
+            if (inFlight == 0) {
+                throw new IllegalStateException("No request in flight");
+            }
+            inFlight--;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Changes the maximum limits while requests are running. Limits above a lower maximum are lowered straight
+     * away, requests already in flight finish. An adaptive limiter grows into a higher maximum, a fixed one moves
+     * its limits to the new maximums.
+     *
+     * @param maxLimit The maximum number of requests in flight
+     * @param maxHostLimit The maximum number of requests in flight per host
+     */
+    public void setMaxLimits(int maxLimit, int maxHostLimit) {
+        if (maxLimit < 1 || maxHostLimit < 1) {
+            throw new IllegalArgumentException("Limits must be at least 1");
+        }
+
+        lock.lock();
+        try {
+            // Set first so a host limit created meanwhile gets the new maximum
+            this.maxHostLimit = maxHostLimit;
+            if (adaptive) {
+                limit.setMaxLimit(maxLimit);
+                hostLimits.values().forEach(hostLimit -> hostLimit.limit.setMaxLimit(maxHostLimit));
+            } else {
+                limit = new AimdLimit(maxLimit, 1, maxLimit, backoffRatio, latencyTolerance);
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Getter for the limit of a host
+     *
+     * @param host The host
+     * @return The number of requests the host may have in flight
+     */
+    public int getHostLimit(String host) {
+        if (!adaptive || host == null) {
+            return maxHostLimit;
+        }
+        HostLimit hostLimit = hostLimits.get(host);
+        return hostLimit != null ? hostLimit.limit.get() : getInitialHostLimit();
+    }
+
+    /**
+     * Getter for the number of hosts whose limits are tracked
+     *
+     * @return The hosts with requests in flight or a limit away from the initial value that haven't been idle for the timeout
+     */
+    public int getHostCount() {
+        return hostLimits.size();
+    }
+
+    /**
+     * Getter for the global limit
+     *
+     * @return The number of requests that may be in flight
+     */
+    public int getLimit() {
+        return limit.get();
+    }
+
+    /**
+     * Getter for the maximum global limit
+     *
+     * @return The most requests that may ever be in flight
+     */
+    public int getMaxLimit() {
+        return limit.getMaxLimit();
+    }
+
+    /**
+     * Getter for the maximum host limit
+     *
+     * @return The most requests a host may ever have in flight
+     */
+    public int getMaxHostLimit() {
+        return maxHostLimit;
+    }
+
+    /**
+     * Getter for the number of requests in flight
+     *
+     * @return The number of slots taken
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Getter for the hosts held below the maximum host limit
+     *
+     * @return The limits of up to 100 throttled hosts, by host name
+     */
+    public Map<String, Integer> getThrottledHostLimits() {
+        Map<String, Integer> throttled = new TreeMap<>();
+        for (Map.Entry<String, HostLimit> entry : hostLimits.entrySet()) {
+            int hostLimit = entry.getValue().limit.get();
+            if (hostLimit < maxHostLimit) {
+                throttled.put(entry.getKey(), hostLimit);
+                if (throttled.size() == MAX_REPORTED_HOSTS) {
+                    break;
+                }
+            }
+        }
+        return throttled;
+    }
+
+    private AimdLimit createHostLimit() {
+        return new AimdLimit(initialHostLimit, 1, maxHostLimit, backoffRatio, latencyTolerance);
+    }
+
+    /**
+     * The limit a host starts at, clamped to the maximum host limit
+     */
+    private int getInitialHostLimit() {
+        return Math.min(initialHostLimit, maxHostLimit);
+    }
+
+    /**
+     * The limit of a host and its requests in flight, only changed inside the map's compute functions
+     */
+    private static class HostLimit {
+        private final AimdLimit limit;
+        private int inFlight = 0;
+        private long idleSinceNanos;
+
+        private HostLimit(AimdLimit limit) {
+            this.limit = limit;
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+package com.jasminefortich.crawler.services;
+
+/**
+ * Concurrency limit adjusted by additive increase, multiplicative decrease from the outcome of each request.
+ *
+ * Requests are judged in rounds of a limit's worth of requests. A round is congested if its average latency has
+ * grown past a tolerated multiple of the long term average, the latency the target manages when it isn't
+ * overloaded, and a failed request counts as congestion straight away. Congestion multiplies the limit by the
+ * backoff ratio, at most once per round so a burst of slow or failed responses counts as a single congestion
+ * event, and a single slow response among fast ones doesn't count at all. Every successful request grows the
+ * limit, by one until the first congestion and by one per limit's worth of requests after that, but only while
+ * the limit is actually in use so an idle limit doesn't drift upwards.
+ */
+public class AimdLimit {
+
+    private static final double LONG_LATENCY_WEIGHT = 0.1;
+
+    private final int minLimit;
+    private volatile int maxLimit;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+
+    private double limit;
+    private volatile int currentLimit;
+    private boolean slowStart = true;
+
+    private double longLatency = -1;
+    private int roundSamples = 0;
+    private int roundSuccesses = 0;
+    private long roundLatencyNanos = 0;
+    private long samplesSinceBackoff = Long.MAX_VALUE;
+
+    /**
+     * Creates a limit
+     *
+     * @param initialLimit The starting limit
+     * @param minLimit The lowest the limit backs off to
+     * @param maxLimit The highest the limit grows to
+     * @param backoffRatio The factor the limit is multiplied by on congestion, between 0 and 1
+     * @param latencyTolerance How many times the long term average latency the average latency of a round may
+     *                         reach before it counts as congestion
+     */
+    public AimdLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio, double latencyTolerance) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min <= max");
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Backoff ratio must be between 0 and 1");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.currentLimit = (int) limit;
+    }
+
+    /**
+     * Adjusts the limit from the outcome of a request
+     *
+     * @param latencyNanos The request latency
+     * @param failed Whether the request failed in a way that suggests the target is overloaded
+     * @param inFlight The number of requests in flight when the request finished, including itself
+     */
+    public synchronized void onSample(long latencyNanos, boolean failed, int inFlight) {
+        if (samplesSinceBackoff < Long.MAX_VALUE) {
+            samplesSinceBackoff++;
+        }
+
+        if (failed) {
+            backOff();
+        } else {
+            roundSuccesses++;
+            roundLatencyNanos += latencyNanos;
+            if (inFlight >= limit / 2) {
+                limit = Math.min(maxLimit, limit + (slowStart ? 1 : 1 / limit));
+            }
+        }
+
+        if (++roundSamples >= limit) {
+            endRound();
+        }
+        currentLimit = (int) limit;
+    }
+
+    /**
+     * Compares the average latency of the round with the long term average, then folds it into the long term
+     * average so the baseline follows lasting changes in the target's latency
+     */
+    private void endRound() {
+        if (roundSuccesses > 0) {
+            double average = (double) roundLatencyNanos / roundSuccesses;
+            if (longLatency < 0) {
+                longLatency = average;
+            } else {
+                if (average > longLatency * latencyTolerance) {
+                    backOff();
+                }
+                longLatency += (average - longLatency) * LONG_LATENCY_WEIGHT;
+            }
+        }
+
+        roundSamples = 0;
+        roundSuccesses = 0;
+        roundLatencyNanos = 0;
+    }
+
+    /**
+     * Multiplies the limit by the backoff ratio, unless it already backed off within the last round
+     */
+    private void backOff() {
+        if (samplesSinceBackoff < limit) {
+            return;
+        }
+        limit = Math.max(minLimit, limit * backoffRatio);
+        slowStart = false;
+        samplesSinceBackoff = 0;
+    }
+
+    /**
+     * Changes the maximum limit while requests are running. A lower maximum lowers the limit straight away, a
+     * higher one is grown into by later requests.
+     *
+     * @param maxLimit The highest the limit grows to, at least the minimum limit
+     */
+    public synchronized void setMaxLimit(int maxLimit) {
+        if (maxLimit < minLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min <= max");
+        }
+        this.maxLimit = maxLimit;
+        limit = Math.min(limit, maxLimit);
+        currentLimit = (int) limit;
+    }
+
+    /**
+     * Getter for the current limit, safe to call without synchronizing
+     *
+     * @return The current limit
+     */
+    public int get() {
+        return currentLimit;
+    }
+
+    /**
+     * Getter for the maximum limit
+     *
+     * @return The highest the limit grows to
+     */
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+}
@@ -0,0 +1,205 @@
+package com.jasminefortich.crawler.services;
+
+import com.jasminefortich.crawler.utils.FingerprintUtil;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Seen url store backed by a lock free Bloom filter sized for an expected number of links and a false
+ * positive rate.
+ *
+ * With a delegate store the filter is a front layer: a link the filter has never seen is answered without
+ * touching the delegate, and the delegate stays the source of truth for everything else. Without a delegate
+ * the filter is the whole store, using about 1.2 bytes per link at a 1% false positive rate, and a new link
+ * is wrongly treated as seen with the configured probability. Without a delegate the bits of a link are set
+ * under a lock striped by its fingerprint, so two threads adding the same new link can't both be told it is new.
+ */
+public class BloomFilterSeenUrlStore implements SeenUrlStore {
+
+    private static final String FORMAT = "bloom-filter";
+    private static final int LOCK_STRIPES = 64;
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final SeenUrlStore delegate;
+    private final LongAdder size = new LongAdder();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    /**
+     * Creates a Bloom filter store
+     *
+     * @param expectedUrls The number of links the false positive rate is sized for
+     * @param falsePositiveRate The probability of an unseen link being reported as seen at the expected size
+     * @param delegate The exact store behind the filter, or null to use the filter alone
+     */
+    public BloomFilterSeenUrlStore(long expectedUrls, double falsePositiveRate, SeenUrlStore delegate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+        }
+
+        long expected = Math.max(1, expectedUrls);
+        long optimalBits = (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, (optimalBits + 63) / 64);
+
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = words * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expected * Math.log(2)));
+        this.delegate = delegate;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    public boolean add(String link) {
+        long fingerprint = FingerprintUtil.fingerprint(link);
+        if (delegate != null) {
+            setBits(fingerprint);
+            return delegate.add(link);
+        }
+
+        boolean changed;
+        synchronized (locks[(int) (fingerprint >>> 40) & (LOCK_STRIPES - 1)]) {
+            changed = setBits(fingerprint);
+        }
+        if (changed) {
+            size.increment();
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean contains(String link) {
+        if (!mightContain(FingerprintUtil.fingerprint(link))) {
+            return false;
+        }
+        return delegate == null || delegate.contains(link);
+    }
+
+    @Override
+    public long size() {
+        return delegate != null ? delegate.size() : size.sum();
+    }
+
+    @Override
+    public long getMemoryBytes() {
+        long filterBytes = bitCount / 8;
+        return delegate != null ? filterBytes + delegate.getMemoryBytes() : filterBytes;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < bits.length(); i++) {
+            bits.set(i, 0);
+        }
+        size.reset();
+        if (delegate != null) {
+            delegate.clear();
+        }
+    }
+
+    /**
+     * Writes the filter bits followed by the delegate store. The filter can only be read back by a filter of the same size.
+     */
+    @Override
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeUTF(FORMAT);
+        out.writeLong(bitCount);
+        out.writeInt(hashCount);
+        out.writeLong(size.sum());
+        for (int i = 0; i < bits.length(); i++) {
+            out.writeLong(bits.get(i));
+        }
+
+        out.writeBoolean(delegate != null);
+        if (delegate != null) {
+            delegate.writeTo(out);
+        }
+    }
+
+    @Override
+    public void readFrom(DataInputStream in) throws IOException {
+        SeenUrlStores.checkFormat(in, FORMAT);
+        if (in.readLong() != bitCount || in.readInt() != hashCount) {
+            throw new IOException("Bloom filter was written with a different size");
+        }
+        size.add(in.readLong());
+        for (int i = 0; i < bits.length(); i++) {
+            long word = in.readLong();
+            bits.getAndAccumulate(i, word, (current, set) -> current | set);
+        }
+
+        if (in.readBoolean() != (delegate != null)) {
+            throw new IOException("Bloom filter was written with a different delegate");
+        }
+        if (delegate != null) {
+            delegate.readFrom(in);
+        }
+    }
+
+    /**
+     * Getter for the number of hash functions
+     *
+     * @return The number of bits set per link
+     */
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * Sets the bits of a fingerprint
+     *
+     * @param fingerprint The fingerprint
+     * @return True if at least one bit was not set before
+     */
+    private boolean setBits(long fingerprint) {
+        boolean changed = false;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = bitIndex(fingerprint, i);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+
+            long previous = bits.getAndAccumulate(word, mask, (current, set) -> current | set);
+            if ((previous & mask) == 0) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Checks the bits of a fingerprint
+     *
+     * @param fingerprint The fingerprint
+     * @return False if the fingerprint was definitely never added
+     */
+    private boolean mightContain(long fingerprint) {
+        for (int i = 0; i < hashCount; i++) {
+            long bit = bitIndex(fingerprint, i);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Derives the i-th bit index from the two halves of the fingerprint (Kirsch-Mitzenmacher double hashing)
+     *
+     * @param fingerprint The fingerprint
+     * @param i The hash function number
+     * @return The bit index
+     */
+    private long bitIndex(long fingerprint, int i) {
+        long hash1 = fingerprint & 0xffffffffL;
+        long hash2 = fingerprint >>> 32;
+        long combined = hash1 + i * hash2 + ((long) i * i);
+        return (combined & Long.MAX_VALUE) % bitCount;
+    }
+
+}
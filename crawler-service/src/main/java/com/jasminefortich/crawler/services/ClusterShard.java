@@ -0,0 +1,427 @@
+package com.jasminefortich.crawler.services;
+
+import com.jasminefortich.crawler.models.ClusterStatus;
+import com.jasminefortich.crawler.utils.UrlUtil;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.ObjIntConsumer;
+import java.util.logging.Logger;
+
+/**
+ * The part of a clustered crawl run by one node.
+ *
+ * Hosts are assigned to nodes by a {@link ConsistentHashRing}, and each node only queues and crawls the links
+ * of its own hosts, so its frontier and seen links hold its shard of the crawl. Links discovered for another
+ * node's hosts are buffered per node and delivered in batches through a {@link ClusterTransport}, once a batch
+ * is full or every flush interval. A batch that can't be delivered is kept and sent again, unchanged, at the next
+ * flush, so a node that starts late or restarts its transport doesn't lose links. Each batch carries the id of
+ * its sender and a sequence number, and a receiver ignores a batch it has already queued, which happens when a
+ * batch arrived but its answer was lost, so links are only counted as received once.
+ *
+ * The first node coordinates the end of the crawl. Every status interval it asks each node whether it is idle
+ * and how many links it has sent and received, and the crawl is finished once two consecutive rounds find every
+ * node idle with the same counts and as many links received as sent. A link is only counted as sent once its
+ * owner has queued it, and a node with links waiting to be delivered isn't idle, so a finished round can't miss
+ * a link in transit. The coordinator then tells the other nodes and finishes itself.
+ */
+public class ClusterShard implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(ClusterShard.class.getSimpleName());
+
+    private static final String BATCH_HEADER = "#batch\t";
+
+    private final ConsistentHashRing ring;
+    private final int nodeIndex;
+    private final ClusterTransport transport;
+    private final int batchSize;
+    private final BooleanSupplier localIdle;
+    private final Runnable onFinished;
+    private final long flushIntervalMillis;
+    private final long statusIntervalMillis;
+
+    private final String senderId;
+    private final List<List<String>> outbound = new ArrayList<>();
+    // Only used on the scheduler thread, batches are delivered to a node in sequence order
+    private final List<Deque<Batch>> undelivered = new ArrayList<>();
+    private long nextSequence = 0;
+    private final Map<String, AtomicLong> appliedSequences = new ConcurrentHashMap<>();
+    private final AtomicLong pendingLinks = new AtomicLong();
+    private final AtomicLong sentLinks = new AtomicLong();
+    private final AtomicLong receivedLinks = new AtomicLong();
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private final ScheduledExecutorService scheduler;
+
+    // Only used by the coordinator, on the scheduler thread
+    private List<ClusterStatus> previousRound = null;
+    private Set<Integer> unnotifiedNodes = null;
+
+    /**
+     * Creates the shard of a crawl, which delivers forwarded links once it is started with {@link #start()}
+     *
+     * @param ring The ring of the cluster nodes, the same on every node
+     * @param nodeIndex The index of this node in the ring's nodes, 0 for the coordinator
+     * @param transport The transport to the other nodes
+     * @param batchSize The number of links sent to a node at once
+     * @param flushIntervalMillis How often partial batches are sent, and failed batches sent again
+     * @param statusIntervalMillis How often the coordinator asks every node for its status
+     * @param localIdle Whether this node has read its seed links and has nothing queued or in flight
+     * @param onFinished Called once when the crawl is finished across the cluster
+     */
+    public ClusterShard(ConsistentHashRing ring, int nodeIndex, ClusterTransport transport, int batchSize,
+                        long flushIntervalMillis, long statusIntervalMillis, BooleanSupplier localIdle, Runnable onFinished) {
+        if (nodeIndex < 0 || nodeIndex >= ring.getNodes().size()) {
+            throw new IllegalArgumentException("Node index " + nodeIndex + " is not one of the " + ring.getNodes().size() + " nodes");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.ring = ring;
+        this.nodeIndex = nodeIndex;
+        this.transport = transport;
+        this.batchSize = batchSize;
+        this.localIdle = localIdle;
+        this.onFinished = onFinished;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.statusIntervalMillis = statusIntervalMillis;
+        // Unique per run, so a restarted node's batches aren't mistaken for ones already applied
+        this.senderId = nodeIndex + "-" + UUID.randomUUID();
+        for (int i = 0; i < ring.getNodes().size(); i++) {
+            outbound.add(new ArrayList<>());
+            undelivered.add(new ArrayDeque<>());
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ClusterShard");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts delivering forwarded links, and on the coordinator, watching for the end of the crawl. Called once
+     * the shard is constructed, so the scheduler thread never sees a partly built shard.
+     */
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::flushAll, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        if (nodeIndex == 0) {
+            scheduler.scheduleWithFixedDelay(this::checkFinished, statusIntervalMillis, statusIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Determines whether this node crawls the links of a host
+     *
+     * @param host The lowercase host
+     * @return True if the host belongs to this node
+     */
+    public boolean owns(String host) {
+        return ring.getOwner(host) == nodeIndex;
+    }
+
+    /**
+     * Buffers a link for the node that owns its host, sending the node's batch once it is full
+     *
+     * @param link The canonical link, owned by another node
+     * @param depth The depth of the link
+     */
+    public void forward(String link, int depth) {
+        int owner = ring.getOwner(UrlUtil.getHost(link));
+        List<String> batch = null;
+        pendingLinks.incrementAndGet();
+
+        List<String> buffer = outbound.get(owner);
+        synchronized (buffer) {
+            buffer.add(depth + "\t" + link);
+            if (buffer.size() >= batchSize) {
+                batch = new ArrayList<>(buffer);
+                buffer.clear();
+            }
+        }
+
+        if (batch != null) {
+            List<String> full = batch;
+            try {
+                scheduler.execute(() -> send(owner, full));
+            } catch (RejectedExecutionException e) {
+                // The shard is closed, the crawl is over
+            }
+        }
+    }
+
+    /**
+     * Queues a batch of links forwarded by another node, unless the batch was already queued
+     *
+     * @param batch The encoded links, after the header with the sender id and sequence number
+     * @param links Called with each link and its depth, must queue the link before returning
+     * @return The number of links received, 0 for a batch that was already queued
+     * @throws IllegalArgumentException Thrown if the batch is malformed
+     */
+    public int receive(String batch, ObjIntConsumer<String> links) {
+        if (!batch.startsWith(BATCH_HEADER)) {
+            int count = decode(batch, links);
+            receivedLinks.addAndGet(count);
+            return count;
+        }
+
+        int tab = batch.indexOf('\t', BATCH_HEADER.length());
+        int end = batch.indexOf('\n');
+        if (tab < 0 || end < tab) {
+            throw new IllegalArgumentException("Malformed link batch header");
+        }
+        String sender = batch.substring(BATCH_HEADER.length(), tab);
+        long sequence;
+        try {
+            sequence = Long.parseLong(batch.substring(tab + 1, end));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed link batch header", e);
+        }
+
+        AtomicLong applied = appliedSequences.computeIfAbsent(sender, id -> new AtomicLong(-1));
+        // Held while the links are queued, so a resent batch arriving meanwhile waits and is then ignored
+        synchronized (applied) {
+            if (sequence <= applied.get()) {
+                LOGGER.fine(() -> "Ignoring batch " + sequence + " of " + sender + ", already received");
+                return 0;
+            }
+            int count = decode(batch.substring(end + 1), links);
+            applied.set(sequence);
+            receivedLinks.addAndGet(count);
+            return count;
+        }
+    }
+
+    /**
+     * Getter for the status of this node
+     *
+     * @return The status reported to the coordinator
+     */
+    public ClusterStatus getStatus() {
+        long sent = sentLinks.get();
+        long received = receivedLinks.get();
+        boolean idle = pendingLinks.get() == 0 && localIdle.getAsBoolean();
+        return new ClusterStatus(!finished.get(), idle, sent, received);
+    }
+
+    /**
+     * Finishes this node's part of the crawl, called once the coordinator found the cluster idle
+     */
+    public void finish() {
+        if (finished.compareAndSet(false, true)) {
+            LOGGER.info("Cluster crawl finished");
+            onFinished.run();
+        }
+    }
+
+    /**
+     * Determines whether the crawl is still running on this node
+     *
+     * @return False once the crawl is finished across the cluster
+     */
+    public boolean isCrawling() {
+        return !finished.get();
+    }
+
+    /**
+     * Getter for the number of links delivered to other nodes
+     *
+     * @return The number of links sent
+     */
+    public long getSentLinks() {
+        return sentLinks.get();
+    }
+
+    /**
+     * Getter for the number of links received from other nodes
+     *
+     * @return The number of links received
+     */
+    public long getReceivedLinks() {
+        return receivedLinks.get();
+    }
+
+    /**
+     * Stops delivering links and watching for the end of the crawl, links received afterwards are refused
+     */
+    @Override
+    public void close() {
+        finished.set(true);
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Decodes a batch of links, one link per line after its depth and a tab
+     *
+     * @param batch The encoded batch
+     * @param links Called with each link and its depth
+     * @return The number of links decoded
+     * @throws IllegalArgumentException Thrown if the batch is malformed
+     */
+    public static int decode(String batch, ObjIntConsumer<String> links) {
+        int count = 0;
+        int start = 0;
+        while (start < batch.length()) {
+            int end = batch.indexOf('\n', start);
+            if (end < 0) {
+                end = batch.length();
+            }
+            int tab = batch.indexOf('\t', start);
+            if (tab < 0 || tab > end) {
+                throw new IllegalArgumentException("Malformed link batch line " + (count + 1));
+            }
+            links.accept(batch.substring(tab + 1, end), Integer.parseInt(batch, start, tab, 10));
+            count++;
+            start = end + 1;
+        }
+        return count;
+    }
+
+    /**
+     * Sends the buffered links and undelivered batches of every other node
+     */
+    private void flushAll() {
+        for (int node = 0; node < outbound.size(); node++) {
+            List<String> buffer = outbound.get(node);
+            List<String> batch = null;
+            synchronized (buffer) {
+                if (!buffer.isEmpty()) {
+                    batch = new ArrayList<>(buffer);
+                    buffer.clear();
+                }
+            }
+            if (batch != null) {
+                send(node, batch);
+            } else if (!undelivered.get(node).isEmpty()) {
+                deliver(node);
+            }
+        }
+    }
+
+    /**
+     * Numbers links for a node in batches and delivers them after the node's earlier batches
+     */
+    private void send(int node, List<String> lines) {
+        Deque<Batch> batches = undelivered.get(node);
+        for (int from = 0; from < lines.size(); from += batchSize) {
+            List<String> links = lines.subList(from, Math.min(lines.size(), from + batchSize));
+            StringBuilder body = new StringBuilder(BATCH_HEADER).append(senderId).append('\t').append(nextSequence++).append('\n');
+            links.forEach(line -> body.append(line).append('\n'));
+            batches.add(new Batch(body.toString(), links.size()));
+        }
+        deliver(node);
+    }
+
+    /**
+     * Delivers the batches of a node in order, keeping whatever couldn't be delivered for the next flush
+     */
+    private void deliver(int node) {
+        String url = ring.getNodes().get(node);
+        Deque<Batch> batches = undelivered.get(node);
+        while (!batches.isEmpty()) {
+            Batch batch = batches.peek();
+            try {
+                transport.sendLinks(url, batch.body);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warning("Failed to send " + batches.size() + " batches of links to " + url + ", retrying: " + e.getMessage());
+                return;
+            }
+            batches.poll();
+            sentLinks.addAndGet(batch.size);
+            pendingLinks.addAndGet(-batch.size);
+        }
+    }
+
+    /**
+     * Runs a round of the coordinator's end of crawl detection, and once the crawl is finished tells the other
+     * nodes, finishing this node after all of them have been told
+     */
+    private void checkFinished() {
+        if (finished.get()) {
+            return;
+        }
+        if (unnotifiedNodes == null && !isClusterFinished()) {
+            return;
+        }
+
+        if (unnotifiedNodes == null) {
+            unnotifiedNodes = new HashSet<>();
+            for (int node = 1; node < ring.getNodes().size(); node++) {
+                unnotifiedNodes.add(node);
+            }
+        }
+        unnotifiedNodes.removeIf(node -> {
+            try {
+                transport.finish(ring.getNodes().get(node));
+                return true;
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warning("Failed to finish crawl on " + ring.getNodes().get(node) + ", retrying: " + e.getMessage());
+                return false;
+            }
+        });
+        if (unnotifiedNodes.isEmpty()) {
+            finish();
+        }
+    }
+
+    /**
+     * Asks every node for its status, and compares the round with the previous one
+     *
+     * @return True if this round and the previous one found every node idle with the same counts, and the
+     * links sent add up to the links received
+     */
+    private boolean isClusterFinished() {
+        List<ClusterStatus> round = new ArrayList<>();
+        long sent = 0;
+        long received = 0;
+        for (int node = 0; node < ring.getNodes().size(); node++) {
+            ClusterStatus status;
+            try {
+                status = node == nodeIndex ? getStatus() : transport.getStatus(ring.getNodes().get(node));
+            } catch (IOException | RuntimeException e) {
+                LOGGER.fine("Failed to get the status of " + ring.getNodes().get(node) + ": " + e.getMessage());
+                previousRound = null;
+                return false;
+            }
+            if (!status.isCrawling() || !status.isIdle()) {
+                previousRound = null;
+                return false;
+            }
+            round.add(status);
+            sent += status.getSentLinks();
+            received += status.getReceivedLinks();
+        }
+
+        boolean stable = round.equals(previousRound);
+        previousRound = round;
+        return stable && sent == received;
+    }
+
+    /**
+     * An encoded batch of links waiting to be delivered
+     */
+    private static class Batch {
+        private final String body;
+        private final int size;
+
+        private Batch(String body, int size) {
+            this.body = body;
+            this.size = size;
+        }
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.jasminefortich.crawler.services;
+
+import com.jasminefortich.crawler.models.ClusterStatus;
+
+import java.io.IOException;
+
+/**
+ * Carries messages between the nodes of a crawler cluster. Every call blocks until the other node has answered.
+ */
+public interface ClusterTransport {
+
+    /**
+     * Delivers a batch of forwarded links to the node that owns them
+     *
+     * @param node The base url of the node
+     * @param batch The header with the sender id and sequence number, then the links, one per line after their
+     * depth and a tab
+     * @throws IOException Thrown if the node couldn't be reached or didn't accept the batch, which is then sent again
+     */
+    void sendLinks(String node, String batch) throws IOException;
+
+    /**
+     * Asks a node for its crawl status
+     *
+     * @param node The base url of the node
+     * @return The status of the node
+     * @throws IOException Thrown if the node couldn't be reached
+     */
+    ClusterStatus getStatus(String node) throws IOException;
+
+    /**
+     * Tells a node the crawl is finished
+     *
+     * @param node The base url of the node
+     * @throws IOException Thrown if the node couldn't be reached
+     */
+    void finish(String node) throws IOException;
+
+}
@@ -0,0 +1,195 @@
+package com.jasminefortich.crawler.services;
+
+import com.jasminefortich.crawler.models.PageResult;
+import com.jasminefortich.crawler.utils.LinkListCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Writes results as blocks of columns, one block per batch.
+ *
+ * A file starts with a magic number and a version. Each block is its row count followed by ten columns, each
+ * prefixed by its length in bytes: the links, depths, status codes, errors, latencies in microseconds, body
+ * sizes, content hashes, fetch times, outlink counts and the outlinks of every row in turn. Links, errors and
+ * outlinks are front coded by {@link LinkListCodec}, with an empty string for a row without an error, content
+ * hashes are 8 byte big endian longs, fetch times are zigzag encoded differences from the previous row and every
+ * other number is a variable length int. Values of the same field sit next to each other, so they encode small
+ * and compress well, and a reader can skip the columns it doesn't need.
+ */
+public class ColumnarResultEncoder implements ResultEncoder {
+
+    private static final int MAGIC = 0x43524553;
+    private static final int VERSION = 1;
+    private static final int COLUMNS = 10;
+
+    private final ByteArrayOutputStream[] columns = new ByteArrayOutputStream[COLUMNS];
+
+    public ColumnarResultEncoder() {
+        for (int i = 0; i < COLUMNS; i++) {
+            columns[i] = new ByteArrayOutputStream();
+        }
+    }
+
+    @Override
+    public String getExtension() {
+        return "crc";
+    }
+
+    @Override
+    public void writeHeader(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.flush();
+    }
+
+    @Override
+    public void writeBatch(List<PageResult> results, OutputStream out) throws IOException {
+        for (ByteArrayOutputStream column : columns) {
+            column.reset();
+        }
+
+        List<String> links = new ArrayList<>(results.size());
+        List<String> errors = new ArrayList<>(results.size());
+        List<String> outlinks = new ArrayList<>();
+        long previousFetchedAt = 0;
+        for (PageResult result : results) {
+            links.add(result.getLink());
+            writeVarLong(columns[1], result.getDepth());
+            writeVarLong(columns[2], result.getStatusCode());
+            errors.add(result.getError() != null ? result.getError() : "");
+            writeVarLong(columns[4], result.getLatencyMicros());
+            writeVarLong(columns[5], result.getBytes());
+            writeLong(columns[6], result.getContentHash());
+            long delta = result.getFetchedAtMillis() - previousFetchedAt;
+            writeVarLong(columns[7], (delta << 1) ^ (delta >> 63));
+            previousFetchedAt = result.getFetchedAtMillis();
+            writeVarLong(columns[8], result.getOutlinks().size());
+            outlinks.addAll(result.getOutlinks());
+        }
+        columns[0].write(LinkListCodec.encode(links));
+        columns[3].write(LinkListCodec.encode(errors));
+        columns[9].write(LinkListCodec.encode(outlinks));
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(results.size());
+        for (ByteArrayOutputStream column : columns) {
+            data.writeInt(column.size());
+            column.writeTo(data);
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads a file written in this format
+     *
+     * @param in The uncompressed file contents
+     * @param results Receives every result in the order written
+     * @throws IOException Thrown if the stream can't be read or isn't in this format
+     */
+    public static void read(InputStream in, Consumer<PageResult> results) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+            throw new IOException("Unknown result format");
+        }
+
+        while (true) {
+            int rows;
+            try {
+                rows = data.readInt();
+            } catch (EOFException e) {
+                return;
+            }
+
+            byte[][] columns = new byte[COLUMNS][];
+            for (int i = 0; i < COLUMNS; i++) {
+                columns[i] = new byte[data.readInt()];
+                data.readFully(columns[i]);
+            }
+
+            try {
+                readBlock(rows, columns, results);
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new IOException("Malformed result block", e);
+            }
+        }
+    }
+
+    private static void readBlock(int rows, byte[][] columns, Consumer<PageResult> results) {
+        List<String> links = new ArrayList<>(rows);
+        LinkListCodec.decode(columns[0], links::add);
+        List<String> errors = new ArrayList<>(rows);
+        LinkListCodec.decode(columns[3], errors::add);
+        List<String> outlinks = new ArrayList<>();
+        LinkListCodec.decode(columns[9], outlinks::add);
+        if (links.size() != rows || errors.size() != rows) {
+            throw new IllegalArgumentException("Row count mismatch");
+        }
+
+        int[][] positions = new int[COLUMNS][1];
+        long fetchedAt = 0;
+        int outlink = 0;
+        for (int row = 0; row < rows; row++) {
+            int depth = (int) readVarLong(columns[1], positions[1]);
+            int statusCode = (int) readVarLong(columns[2], positions[2]);
+            long latencyMicros = readVarLong(columns[4], positions[4]);
+            long bytes = readVarLong(columns[5], positions[5]);
+            long contentHash = readLong(columns[6], positions[6]);
+            long zigzag = readVarLong(columns[7], positions[7]);
+            fetchedAt += (zigzag >>> 1) ^ -(zigzag & 1);
+            int outlinkCount = (int) readVarLong(columns[8], positions[8]);
+
+            String error = errors.get(row);
+            results.accept(new PageResult(links.get(row), depth, statusCode, error.isEmpty() ? null : error, latencyMicros,
+                    bytes, contentHash, fetchedAt, new ArrayList<>(outlinks.subList(outlink, outlink + outlinkCount))));
+            outlink += outlinkCount;
+        }
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static void writeLong(ByteArrayOutputStream out, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+
+    private static long readVarLong(byte[] bytes, int[] position) {
+        long value = 0;
+        for (int shift = 0; shift < 64 && position[0] < bytes.length; shift += 7) {
+            int b = bytes[position[0]++] & 0xff;
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed number");
+    }
+
+    private static long readLong(byte[] bytes, int[] position) {
+        if (position[0] + 8 > bytes.length) {
+            throw new IllegalArgumentException("Malformed number");
+        }
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[position[0]++] & 0xff);
+        }
+        return value;
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.jasminefortich.crawler.services;
+
+import com.jasminefortich.crawler.utils.FingerprintUtil;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Assigns hosts to the nodes of a cluster by consistent hashing.
+ *
+ * Every node is placed on a ring of 64 bit hashes at a number of virtual node points, hashed from the node name
+ * and the point's index, and a host belongs to the node owning the first point at or after the host's hash,
+ * wrapping around at the end of the ring. The points are kept in a sorted array, so finding the owner of a host
+ * is a binary search. Many points per node spread the hosts evenly, and adding or removing a node only moves
+ * the hosts of the points it gains or loses.
+ *
+ * Nodes that list the same node names build the same ring, whatever order they are listed in. The ring is
+ * immutable and safe to share between threads.
+ */
+public class ConsistentHashRing {
+
+    private final List<String> nodes;
+    private final long[] points;
+    private final int[] owners;
+
+    /**
+     * Creates a ring
+     *
+     * @param nodes The node names, unique
+     * @param virtualNodes The number of points each node is placed at
+     */
+    public ConsistentHashRing(List<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("A ring needs at least one node");
+        }
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("Virtual nodes must be at least 1");
+        }
+        this.nodes = List.copyOf(nodes);
+
+        int count = nodes.size() * virtualNodes;
+        long[] hashes = new long[count];
+        Integer[] order = new Integer[count];
+        for (int node = 0; node < nodes.size(); node++) {
+            for (int point = 0; point < virtualNodes; point++) {
+                int index = node * virtualNodes + point;
+                hashes[index] = FingerprintUtil.fingerprint(nodes.get(node) + "#" + point);
+                order[index] = index;
+            }
+        }
+        // Ties are broken by node name so every node builds the same ring from the same names
+        Arrays.sort(order, (a, b) -> hashes[a] != hashes[b]
+                ? Long.compare(hashes[a], hashes[b])
+                : nodes.get(a / virtualNodes).compareTo(nodes.get(b / virtualNodes)));
+
+        this.points = new long[count];
+        this.owners = new int[count];
+        for (int i = 0; i < count; i++) {
+            points[i] = hashes[order[i]];
+            owners[i] = order[i] / virtualNodes;
+        }
+    }
+
+    /**
+     * Finds the node a host belongs to
+     *
+     * @param host The lowercase host
+     * @return The index of the owning node in the node list
+     */
+    public int getOwner(String host) {
+        int index = Arrays.binarySearch(points, FingerprintUtil.fingerprint(host));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    /**
+     * Getter for the nodes
+     *
+     * @return The node names, in the order given
+     */
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.jasminefortich.crawler.services;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides from the headers of a response how much of its body the fetcher downloads.
+ *
+ * Only the bodies of parsed content types are read, other bodies are skipped without being downloaded. A response
+ * without a content type is parsed, since many servers leave it out of their html pages. A parsed body is read up
+ * to the maximum of its content type and truncated beyond it, the maximum of a type is looked up as "type/subtype",
+ * then as "type/*", then the default maximum applies. When head requests are enabled only the status and headers
+ * are fetched, for crawls that just check their links.
+ *
+ * The policy is immutable and safe to share between threads.
+ */
+public class ContentPolicy {
+
+    private final Set<String> parsedTypes;
+    private final long maxBodyBytes;
+    private final Map<String, Long> typeMaxBodyBytes;
+    private final boolean headRequests;
+
+    /**
+     * Creates a policy that parses html and xhtml pages and reads their bodies in full
+     */
+    public ContentPolicy() {
+        this(Arrays.asList("text/html", "application/xhtml+xml"), 0, Collections.emptyMap(), false);
+    }
+
+    /**
+     * Creates a policy
+     *
+     * @param parsedTypes The content types whose bodies are read and parsed for links
+     * @param maxBodyBytes The most bytes read of a parsed body, 0 for no limit
+     * @param typeMaxBodyBytes The most bytes read of a body by content type or "type/*", 0 for no limit
+     * @param headRequests Whether only the status and headers are fetched
+     * @throws IllegalArgumentException Thrown if a maximum is negative
+     */
+    public ContentPolicy(Collection<String> parsedTypes, long maxBodyBytes, Map<String, Long> typeMaxBodyBytes,
+                         boolean headRequests) {
+        if (maxBodyBytes < 0 || typeMaxBodyBytes.values().stream().anyMatch(max -> max < 0)) {
+            throw new IllegalArgumentException("Maximum body sizes can't be negative");
+        }
+
+        this.parsedTypes = new HashSet<>();
+        for (String type : parsedTypes) {
+            String normalized = normalize(type);
+            if (!normalized.isEmpty()) {
+                this.parsedTypes.add(normalized);
+            }
+        }
+        this.maxBodyBytes = maxBodyBytes;
+        this.typeMaxBodyBytes = new HashMap<>();
+        typeMaxBodyBytes.forEach((type, max) -> this.typeMaxBodyBytes.put(normalize(type), max));
+        this.headRequests = headRequests;
+    }
+
+    /**
+     * Parses maximum body sizes by content type
+     *
+     * @param entries Entries of the form "type/subtype=bytes" or "type/*=bytes", blank entries are ignored
+     * @return The maximums by content type
+     * @throws IllegalArgumentException Thrown if an entry is malformed
+     */
+    public static Map<String, Long> parseTypeMaxBodyBytes(Collection<String> entries) {
+        Map<String, Long> maximums = new HashMap<>();
+        for (String entry : entries) {
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+
+            int separator = entry.indexOf('=');
+            if (separator < 1) {
+                throw new IllegalArgumentException("Expected type=bytes but got \"" + entry + "\"");
+            }
+            try {
+                maximums.put(entry.substring(0, separator).trim(), Long.parseLong(entry.substring(separator + 1).trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Expected type=bytes but got \"" + entry + "\"", e);
+            }
+        }
+        return maximums;
+    }
+
+    /**
+     * Determines whether bodies of a content type are read and parsed for links
+     *
+     * @param contentType The media type without parameters, or null if the response has none
+     * @return True if the body is parsed
+     */
+    public boolean isParsed(String contentType) {
+        return contentType == null || parsedTypes.contains(normalize(contentType));
+    }
+
+    /**
+     * Getter for the maximum body size of a content type
+     *
+     * @param contentType The media type without parameters, or null if the response has none
+     * @return The most bytes read of the body, 0 for no limit
+     */
+    public long getMaxBodyBytes(String contentType) {
+        if (contentType == null || typeMaxBodyBytes.isEmpty()) {
+            return maxBodyBytes;
+        }
+
+        String type = normalize(contentType);
+        Long max = typeMaxBodyBytes.get(type);
+        if (max == null) {
+            int slash = type.indexOf('/');
+            max = slash > 0 ? typeMaxBodyBytes.get(type.substring(0, slash) + "/*") : null;
+        }
+        return max != null ? max : maxBodyBytes;
+    }
+
+    /**
+     * Getter for whether only the status and headers are fetched
+     *
+     * @return True if pages are fetched with head requests
+     */
+    public boolean isHeadRequests() {
+        return headRequests;
+    }
+
+    private static String normalize(String contentType) {
+        return contentType.trim().toLowerCase(Locale.ROOT);
+    }
+
+}
@@ -0,0 +1,124 @@
+package com.jasminefortich.crawler.services;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resource limits of a single crawl.
+ *
+ * Page caps are applied when a link is admitted to the frontier, so links beyond a cap are never queued and
+ * every admitted link is crawled unless the crawl stops early. The byte and wall clock limits can only be
+ * checked while crawling. Once either is reached the budget is exhausted for good, and the crawl stops handing
+ * out links, lets the requests in flight finish and discards the rest of the frontier.
+ *
+ * A limit of 0 means no limit. The budget is safe to use from multiple threads.
+ */
+public class CrawlBudget {
+
+    public static final String BYTE_LIMIT = "byte limit";
+    public static final String TIME_LIMIT = "time limit";
+
+    private final long maxPages;
+    private final int maxPagesPerHost;
+    private final long maxBytes;
+    private final long maxDurationNanos;
+    private final long startNanos;
+
+    private final AtomicLong pages = new AtomicLong();
+    private final Map<String, AtomicInteger> hostPages = new ConcurrentHashMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+    private volatile String exhaustedReason = null;
+
+    /**
+     * Creates a budget without limits
+     */
+    public CrawlBudget() {
+        this(0, 0, 0, 0);
+    }
+
+    /**
+     * Creates a budget whose wall clock limit starts now
+     *
+     * @param maxPages The maximum number of pages crawled
+     * @param maxPagesPerHost The maximum number of pages crawled per host
+     * @param maxBytes The maximum number of body bytes read
+     * @param maxDurationMillis The maximum crawl duration
+     */
+    public CrawlBudget(long maxPages, int maxPagesPerHost, long maxBytes, long maxDurationMillis) {
+        this.maxPages = maxPages;
+        this.maxPagesPerHost = maxPagesPerHost;
+        this.maxBytes = maxBytes;
+        this.maxDurationNanos = TimeUnit.MILLISECONDS.toNanos(maxDurationMillis);
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Reserves a page of the global and host page caps for a link about to be queued
+     *
+     * @param host The host of the link
+     * @return True if the link may be queued, false if a page cap is reached or the budget is exhausted
+     */
+    public boolean tryAdmit(String host) {
+        if (isExhausted()) {
+            return false;
+        }
+
+        AtomicInteger hostCount = null;
+        if (maxPagesPerHost > 0) {
+            hostCount = hostPages.computeIfAbsent(host, name -> new AtomicInteger());
+            if (hostCount.incrementAndGet() > maxPagesPerHost) {
+                hostCount.decrementAndGet();
+                return false;
+            }
+        }
+
+        if (maxPages > 0 && pages.incrementAndGet() > maxPages) {
+            pages.decrementAndGet();
+            if (hostCount != null) {
+                hostCount.decrementAndGet();
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Records body bytes read
+     *
+     * @param count The number of bytes
+     */
+    public void recordBytes(long count) {
+        if (maxBytes > 0 && bytes.addAndGet(count) >= maxBytes && exhaustedReason == null) {
+            exhaustedReason = BYTE_LIMIT;
+        }
+    }
+
+    /**
+     * Determines whether the byte or wall clock limit has been reached
+     *
+     * @return True if the crawl should stop
+     */
+    public boolean isExhausted() {
+        if (exhaustedReason != null) {
+            return true;
+        }
+        if (maxDurationNanos > 0 && System.nanoTime() - startNanos >= maxDurationNanos) {
+            exhaustedReason = TIME_LIMIT;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Getter for the limit that exhausted the budget
+     *
+     * @return {@link #BYTE_LIMIT} or {@link #TIME_LIMIT}, or null if the budget isn't exhausted
+     */
+    public String getExhaustedReason() {
+        return exhaustedReason;
+    }
+
+}
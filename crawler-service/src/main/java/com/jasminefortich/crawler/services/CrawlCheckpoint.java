@@ -0,0 +1,436 @@
+package com.jasminefortich.crawler.services;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Makes a crawl resumable after a crash or redeploy.
+ *
+ * Every link queued and every link crawled is appended to a journal of memory-mapped segment files. An append
+ * only copies the record into the mapped pages under a short lock, and a background thread forces the pages to
+ * disk once per flush interval, so durability costs one sync per interval instead of one per link. Records are
+ * checksummed so a record torn by a crash ends the replay of its segment.
+ *
+ * Every snapshot interval the seen links and the pending links are written to a compact snapshot, after which
+ * the journal segments it covers are deleted. On open the latest snapshot is loaded and the journal after it
+ * is replayed to rebuild the seen links and the frontier. The checkpoint belongs to a single start endpoint
+ * and is deleted once its crawl finishes.
+ */
+public class CrawlCheckpoint implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(CrawlCheckpoint.class.getSimpleName());
+
+    private static final byte ENQUEUED = 1;
+    private static final byte VISITED = 2;
+
+    // Record layout: payload length, CRC32C of the payload, payload of a type byte and the UTF-8 link
+    private static final int RECORD_HEADER_BYTES = Integer.BYTES + Integer.BYTES;
+    private static final int MIN_SEGMENT_BYTES = 1 << 20;
+
+    private static final int SNAPSHOT_MAGIC = 0x43524b53;
+    private static final int SNAPSHOT_VERSION = 2;
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String ENDPOINT_FILE = "start-endpoint";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final long flushIntervalMillis;
+    private final long snapshotIntervalMillis;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final CRC32C checksum = new CRC32C();
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long segmentNumber;
+
+    private SeenUrlStore seenLinks;
+    private CrawlFrontier frontier;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Creates a checkpoint, call {@link #open(String, SeenUrlStore, CrawlFrontier)} to start journaling
+     *
+     * @param directory The directory holding the journal and snapshots
+     * @param segmentBytes The size of a journal segment file, at least 1 MB
+     * @param flushIntervalMillis How often appended records are forced to disk
+     * @param snapshotIntervalMillis How often a snapshot is taken and the journal compacted
+     */
+    public CrawlCheckpoint(Path directory, int segmentBytes, long flushIntervalMillis, long snapshotIntervalMillis) {
+        this.directory = directory;
+        this.segmentBytes = Math.max(MIN_SEGMENT_BYTES, segmentBytes);
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+    }
+
+    /**
+     * Restores the checkpointed state of a crawl of the start endpoint into empty stores, then starts journaling.
+     * The checkpoint of a different start endpoint or one that can't be read is discarded.
+     *
+     * @param startEndpoint The start endpoint of the crawl
+     * @param seenLinks The empty seen url store of the crawl
+     * @param frontier The empty frontier of the crawl
+     * @return The number of pending links restored into the frontier, or -1 if there was nothing to resume
+     * @throws IOException Thrown if the checkpoint directory can't be written
+     */
+    public synchronized int open(String startEndpoint, SeenUrlStore seenLinks, CrawlFrontier frontier) throws IOException {
+        this.seenLinks = seenLinks;
+        this.frontier = frontier;
+        Files.createDirectories(directory);
+
+        int restored = -1;
+        Path endpointFile = directory.resolve(ENDPOINT_FILE);
+        if (Files.exists(endpointFile) && new String(Files.readAllBytes(endpointFile), StandardCharsets.UTF_8).equals(startEndpoint)) {
+            try {
+                restored = restore();
+            } catch (IOException e) {
+                LOGGER.warning("Discarding unreadable checkpoint in " + directory + ": " + e.getMessage());
+                seenLinks.clear();
+                frontier.clear();
+            }
+        }
+
+        if (restored < 0) {
+            deleteFiles(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+            deleteFiles(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+            Files.write(endpointFile, startEndpoint.getBytes(StandardCharsets.UTF_8));
+        }
+
+        List<Long> segments = list(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        openSegment(segments.isEmpty() ? 0 : segments.get(segments.size() - 1) + 1);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "CrawlCheckpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (IOException e) {
+                LOGGER.warning("Failed to snapshot crawl: " + e.getMessage());
+            }
+        }, snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+
+        return restored;
+    }
+
+    /**
+     * Journals a link added to the frontier, must be called after the link is in the frontier
+     *
+     * @param link The queued link
+     */
+    public void enqueued(String link) {
+        append(ENQUEUED, link);
+    }
+
+    /**
+     * Journals a crawled link, must be called after the link is completed in the frontier
+     *
+     * @param link The crawled link
+     */
+    public void visited(String link) {
+        append(VISITED, link);
+    }
+
+    /**
+     * Writes a snapshot of the seen and pending links and deletes the journal segments and snapshot it replaces.
+     *
+     * The journal is rolled to a new segment before the seen links and then the pending links are captured.
+     * Since a link is in the seen links before it is in the frontier, and in the frontier before it is journaled,
+     * every link journaled to the replaced segments is either captured or crawled, and everything after is replayed.
+     * Pending links are streamed from the frontier, including those it spilled to disk, so the snapshot never
+     * holds them all in memory.
+     *
+     * @throws IOException Thrown if the snapshot can't be written
+     */
+    public synchronized void snapshot() throws IOException {
+        long cut;
+        appendLock.lock();
+        try {
+            if (segment == null) {
+                return;
+            }
+            rollSegment();
+            cut = segmentNumber;
+        } finally {
+            appendLock.unlock();
+        }
+
+        long[] pending = { 0 };
+        Path temporary = directory.resolve(SNAPSHOT_PREFIX + "next.tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(cut);
+            seenLinks.writeTo(out);
+            frontier.forEachPendingLink(link -> {
+                try {
+                    out.writeBoolean(true);
+                    out.writeUTF(link);
+                    pending[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.writeBoolean(false);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        try (FileChannel file = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            file.force(true);
+        }
+        Files.move(temporary, path(SNAPSHOT_PREFIX, cut, SNAPSHOT_SUFFIX), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        for (long number : list(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (number < cut) {
+                Files.deleteIfExists(path(SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+            }
+        }
+        for (long number : list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (number < cut) {
+                Files.deleteIfExists(path(SNAPSHOT_PREFIX, number, SNAPSHOT_SUFFIX));
+            }
+        }
+        LOGGER.info("Checkpointed " + seenLinks.size() + " seen and " + pending[0] + " pending links");
+    }
+
+    /**
+     * Stops journaling and deletes the checkpoint, for a crawl that has finished
+     *
+     * @throws IOException Thrown if the checkpoint can't be deleted
+     */
+    public synchronized void finish() throws IOException {
+        close();
+        deleteFiles(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        deleteFiles(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        Files.deleteIfExists(directory.resolve(ENDPOINT_FILE));
+    }
+
+    /**
+     * Stops journaling and forces the journal to disk, keeping the checkpoint to resume from
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+
+        appendLock.lock();
+        try {
+            closeSegment();
+        } catch (IOException e) {
+            LOGGER.warning("Failed to close crawl journal: " + e.getMessage());
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Loads the latest snapshot and replays the journal segments after it
+     *
+     * @return The number of pending links restored
+     */
+    private int restore() throws IOException {
+        Set<String> pending = new LinkedHashSet<>();
+        long firstSegment = 0;
+
+        List<Long> snapshots = list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        if (!snapshots.isEmpty()) {
+            long latest = snapshots.get(snapshots.size() - 1);
+            Path snapshot = path(SNAPSHOT_PREFIX, latest, SNAPSHOT_SUFFIX);
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16))) {
+                if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                    throw new IOException("Unknown snapshot format");
+                }
+                firstSegment = in.readLong();
+                seenLinks.readFrom(in);
+                while (in.readBoolean()) {
+                    pending.add(in.readUTF());
+                }
+            }
+        }
+
+        for (long number : list(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (number >= firstSegment) {
+                replay(path(SEGMENT_PREFIX, number, SEGMENT_SUFFIX), pending);
+            }
+        }
+
+        frontier.addAll(pending);
+        LOGGER.info("Restored " + seenLinks.size() + " seen and " + pending.size() + " pending links from " + directory);
+        return pending.size();
+    }
+
+    /**
+     * Replays the records of a journal segment up to its end or its first torn record
+     */
+    private void replay(Path path, Set<String> pending) throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+            CRC32C crc = new CRC32C();
+
+            while (buffer.remaining() > RECORD_HEADER_BYTES) {
+                int length = buffer.getInt();
+                if (length < 2 || length > buffer.remaining() - Integer.BYTES) {
+                    return;
+                }
+                int expected = buffer.getInt();
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != expected) {
+                    return;
+                }
+
+                String link = new String(payload, 1, length - 1, StandardCharsets.UTF_8);
+                if (payload[0] == ENQUEUED) {
+                    seenLinks.add(link);
+                    pending.add(link);
+                } else if (payload[0] == VISITED) {
+                    pending.remove(link);
+                }
+            }
+        }
+    }
+
+    private void append(byte type, String link) {
+        byte[] bytes = link.getBytes(StandardCharsets.UTF_8);
+        int length = bytes.length + 1;
+        if (RECORD_HEADER_BYTES + length > segmentBytes) {
+            LOGGER.warning("Link too long to checkpoint " + link);
+            return;
+        }
+
+        appendLock.lock();
+        try {
+            if (segment == null) {
+                return;
+            }
+            if (segment.remaining() < RECORD_HEADER_BYTES + length) {
+                rollSegment();
+            }
+
+            checksum.reset();
+            checksum.update(type);
+            checksum.update(bytes);
+            segment.putInt(length);
+            segment.putInt((int) checksum.getValue());
+            segment.put(type);
+            segment.put(bytes);
+
+        } catch (IOException e) {
+            // Losing the checkpoint must not stop the crawl
+            LOGGER.severe("Crawl journal failed, checkpointing stopped: " + e.getMessage());
+            segment = null;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Forces the appended records of the current segment to disk
+     */
+    private void flush() {
+        MappedByteBuffer current;
+        appendLock.lock();
+        try {
+            current = segment;
+        } finally {
+            appendLock.unlock();
+        }
+        if (current != null) {
+            current.force();
+        }
+    }
+
+    /**
+     * Closes the current segment and maps the next one. Must be called while holding the append lock.
+     */
+    private void rollSegment() throws IOException {
+        long next = segmentNumber + 1;
+        closeSegment();
+        openSegment(next);
+    }
+
+    private void openSegment(long number) throws IOException {
+        channel = FileChannel.open(path(SEGMENT_PREFIX, number, SEGMENT_SUFFIX),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        segmentNumber = number;
+    }
+
+    private void closeSegment() throws IOException {
+        if (segment != null) {
+            segment.force();
+            segment = null;
+        }
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private Path path(String prefix, long number, String suffix) {
+        return directory.resolve(String.format("%s%012d%s", prefix, number, suffix));
+    }
+
+    /**
+     * Lists the numbers of the files with a prefix and suffix in ascending order
+     */
+    private List<Long> list(String prefix, String suffix) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return numbers;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+                    .forEach(name -> {
+                        try {
+                            numbers.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+                        } catch (NumberFormatException e) {
+                            // Not one of ours
+                        }
+                    });
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+
+    private void deleteFiles(String prefix, String suffix) throws IOException {
+        for (long number : list(prefix, suffix)) {
+            Files.deleteIfExists(path(prefix, number, suffix));
+        }
+    }
+
+}
@@ -0,0 +1,284 @@
+package com.jasminefortich.crawler.services;
+
+import com.jasminefortich.crawler.utils.UrlCanonicalizer;
+
+import java.util.Map;
+
+/**
+ * The state of a single crawl run by the {@link CrawlerService}.
+ *
+ * Each call to crawl an endpoint gets a context of its own, with its own frontier, seen links, limits, budget and
+ * statistics, so crawls running at the same time on one crawler service don't see each other's links. The worker
+ * pool, fetcher, DNS cache and robots.txt rules are shared by every crawl of the service. The checkpoint, page
+ * records, cluster shard and result sink are opened by the crawl once it starts and are kept afterwards for their
+ * statistics.
+ */
+public class CrawlContext {
+
+    private final String startEndpoint;
+    private final String storagePartition;
+    private final CrawlControl control;
+    private final SeenUrlStore visitedLinks;
+    private final CrawlFrontier frontier;
+    private final UrlCanonicalizer canonicalizer;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final CrawlScope scope;
+    private final CrawlBudget budget;
+    private final ContentPolicy contentPolicy;
+    private final Map<String, Integer> linkDepths;
+    private final CrawlMetrics metrics = new CrawlMetrics();
+
+    private volatile CrawlCheckpoint checkpoint = null;
+    private volatile PageRecordStore pageRecords = null;
+    private volatile ClusterShard cluster = null;
+    private volatile ResultSink resultSink = null;
+
+    /**
+     * Creates the context of a crawl that never runs, reporting empty statistics
+     */
+    public CrawlContext() {
+        this(null, null, new CrawlControl(), new HashSetSeenUrlStore(), new CrawlFrontier(), new UrlCanonicalizer(),
+                new AdaptiveConcurrencyLimiter(1000, 4), new CrawlScope(), new CrawlBudget(), new ContentPolicy(), null);
+    }
+
+    /**
+     * Creates the context of a crawl
+     *
+     * @param startEndpoint The url of the json document listing the seed links
+     * @param storagePartition The subdirectory of the configured directories the crawl keeps its files in, or null
+     * @param control Pauses, resumes and cancels the crawl from other threads
+     * @param visitedLinks The links queued so far
+     * @param frontier The links waiting to be crawled, limited by the concurrency limiter's host limits
+     * @param canonicalizer Canonicalizes links before they are checked and queued
+     * @param concurrencyLimiter Limits the requests of the crawl in flight, overall and per host
+     * @param scope The links the crawl may follow
+     * @param budget The pages, bytes and time the crawl may use
+     * @param contentPolicy The content types the crawl parses and how much of their bodies it downloads
+     * @param linkDepths The depth of each queued link, or null if depths aren't tracked
+     */
+    public CrawlContext(String startEndpoint, String storagePartition, CrawlControl control, SeenUrlStore visitedLinks,
+                        CrawlFrontier frontier, UrlCanonicalizer canonicalizer, AdaptiveConcurrencyLimiter concurrencyLimiter,
+                        CrawlScope scope, CrawlBudget budget, ContentPolicy contentPolicy, Map<String, Integer> linkDepths) {
+        this.startEndpoint = startEndpoint;
+        this.storagePartition = storagePartition;
+        this.control = control;
+        this.visitedLinks = visitedLinks;
+        this.frontier = frontier;
+        this.canonicalizer = canonicalizer;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.scope = scope;
+        this.budget = budget;
+        this.contentPolicy = contentPolicy;
+        this.linkDepths = linkDepths;
+    }
+
+    /**
+     * Changes the concurrency limits of the crawl while it runs
+     *
+     * @param maxOutstandingRequests The maximum number of requests in flight
+     * @param maxRequestsPerHost The maximum number of requests in flight per host
+     * @throws IllegalArgumentException Thrown if a limit is less than 1
+     */
+    public void setConcurrencyLimits(int maxOutstandingRequests, int maxRequestsPerHost) {
+        concurrencyLimiter.setMaxLimits(maxOutstandingRequests, maxRequestsPerHost);
+    }
+
+    /**
+     * Getter for the maximum number of requests in flight
+     *
+     * @return The maximum number of requests of the crawl in flight
+     */
+    public int getMaxOutstandingRequests() {
+        return concurrencyLimiter.getMaxLimit();
+    }
+
+    /**
+     * Getter for the maximum number of requests in flight per host
+     *
+     * @return The maximum number of requests of the crawl in flight per host
+     */
+    public int getMaxRequestsPerHost() {
+        return concurrencyLimiter.getMaxHostLimit();
+    }
+
+    /**
+     * Getter for the start endpoint
+     *
+     * @return The url of the json document listing the seed links
+     */
+    public String getStartEndpoint() {
+        return startEndpoint;
+    }
+
+    /**
+     * Getter for the storage partition
+     *
+     * @return The subdirectory the crawl keeps its files in, or null to use the configured directories
+     */
+    public String getStoragePartition() {
+        return storagePartition;
+    }
+
+    /**
+     * Getter for the control of the crawl
+     *
+     * @return Pauses, resumes and cancels the crawl
+     */
+    public CrawlControl getControl() {
+        return control;
+    }
+
+    /**
+     * Getter for the seen links
+     *
+     * @return The links queued so far
+     */
+    public SeenUrlStore getVisitedLinks() {
+        return visitedLinks;
+    }
+
+    /**
+     * Getter for the frontier
+     *
+     * @return The links waiting to be crawled
+     */
+    public CrawlFrontier getFrontier() {
+        return frontier;
+    }
+
+    /**
+     * Getter for the url canonicalizer
+     *
+     * @return Canonicalizes links before they are checked and queued
+     */
+    public UrlCanonicalizer getCanonicalizer() {
+        return canonicalizer;
+    }
+
+    /**
+     * Getter for the concurrency limiter
+     *
+     * @return Limits the requests of the crawl in flight
+     */
+    public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    /**
+     * Getter for the crawl scope
+     *
+     * @return The links the crawl may follow
+     */
+    public CrawlScope getScope() {
+        return scope;
+    }
+
+    /**
+     * Getter for the crawl budget
+     *
+     * @return The pages, bytes and time the crawl may use
+     */
+    public CrawlBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * Getter for the content policy
+     *
+     * @return The content types the crawl parses and how much of their bodies it downloads
+     */
+    public ContentPolicy getContentPolicy() {
+        return contentPolicy;
+    }
+
+    /**
+     * Getter for the link depths
+     *
+     * @return The depth of each queued link, or null if depths aren't tracked
+     */
+    public Map<String, Integer> getLinkDepths() {
+        return linkDepths;
+    }
+
+    /**
+     * Getter for the crawl metrics
+     *
+     * @return The counters and histograms of the crawl
+     */
+    public CrawlMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Getter for the checkpoint
+     *
+     * @return The checkpoint journaling the crawl, or null if checkpointing is disabled or stopped
+     */
+    public CrawlCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Setter for the checkpoint
+     *
+     * @param checkpoint The checkpoint journaling the crawl, or null once it is stopped
+     */
+    public void setCheckpoint(CrawlCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Getter for the page records
+     *
+     * @return The page records of an incremental crawl, or null
+     */
+    public PageRecordStore getPageRecords() {
+        return pageRecords;
+    }
+
+    /**
+     * Setter for the page records
+     *
+     * @param pageRecords The page records of an incremental crawl, or null
+     */
+    public void setPageRecords(PageRecordStore pageRecords) {
+        this.pageRecords = pageRecords;
+    }
+
+    /**
+     * Getter for the cluster shard
+     *
+     * @return This node's part of a cluster crawl, or null if cluster mode is disabled
+     */
+    public ClusterShard getCluster() {
+        return cluster;
+    }
+
+    /**
+     * Setter for the cluster shard
+     *
+     * @param cluster This node's part of a cluster crawl, or null
+     */
+    public void setCluster(ClusterShard cluster) {
+        this.cluster = cluster;
+    }
+
+    /**
+     * Getter for the result sink
+     *
+     * @return Writes the result of every crawled page, or null if results are disabled
+     */
+    public ResultSink getResultSink() {
+        return resultSink;
+    }
+
+    /**
+     * Setter for the result sink
+     *
+     * @param resultSink Writes the result of every crawled page, or null
+     */
+    public void setResultSink(ResultSink resultSink) {
+        this.resultSink = resultSink;
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.jasminefortich.crawler.services;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pauses, resumes and cancels a running crawl from outside it.
+ *
+ * A paused crawl stops taking links from its frontier, requests already in flight finish and their child links
+ * are still queued. A cancelled crawl discards its frontier and finishes once the requests in flight do, the same
+ * way a crawl that runs out of budget does. Cancelling can't be undone and also ends a pause.
+ */
+public class CrawlControl {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private volatile boolean paused = false;
+    private volatile boolean cancelled = false;
+
+    /**
+     * Pauses the crawl
+     *
+     * @return False if the crawl is cancelled
+     */
+    public boolean pause() {
+        lock.lock();
+        try {
+            if (cancelled) {
+                return false;
+            }
+            paused = true;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Resumes a paused crawl
+     *
+     * @return False if the crawl is cancelled
+     */
+    public boolean resume() {
+        lock.lock();
+        try {
+            if (cancelled) {
+                return false;
+            }
+            paused = false;
+            changed.signalAll();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cancels the crawl
+     */
+    public void cancel() {
+        lock.lock();
+        try {
+            cancelled = true;
+            paused = false;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks while the crawl is paused
+     *
+     * @throws InterruptedException Thrown if the calling thread is interrupted while waiting
+     */
+    public void awaitResumed() throws InterruptedException {
+        if (!paused) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            while (paused) {
+                changed.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Getter for whether the crawl is paused
+     *
+     * @return True if the crawl is paused
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Getter for whether the crawl is cancelled
+     *
+     * @return True if the crawl is cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+}
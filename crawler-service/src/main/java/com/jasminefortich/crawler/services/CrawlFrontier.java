@@ -0,0 +1,578 @@
+package com.jasminefortich.crawler.services;
+
+import com.jasminefortich.crawler.utils.UrlUtil;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.logging.Logger;
+
+/**
+ * Thread safe queue of links waiting to be crawled, partitioned by host.
+ *
+ * Each host has its own queue, a limit on the number of its links in flight and a minimum delay between
+ * handing out two of its links. The limit can be lowered per host by a host limit function, which is consulted
+ * whenever a host is scheduled, and the delay can be raised per host by a host delay function, which is consulted
+ * whenever a link of the host is handed out. {@link #take()} round-robins across the hosts that are allowed to be
+ * fetched right now, so one host with many queued links can't starve the others.
+ *
+ * The frontier also counts the links that have been handed out but not yet completed, so the
+ * coordinator can block in {@link #take()} until either a host becomes ready or the crawl is finished.
+ *
+ * A frontier with a spill directory keeps at most a fixed number of queued links in its host queues. Once
+ * those are full, new links are appended to a {@link LinkSpillQueue} on disk instead, and while anything is
+ * on disk every new link goes there too so links are handed out in the order they were added. The host
+ * queues are refilled from disk in batches of half the window whenever they drop to half full.
+ */
+public class CrawlFrontier {
+
+    private static final Logger LOGGER = Logger.getLogger(CrawlFrontier.class.getSimpleName());
+    private static final int SPILL_SEGMENT_LINKS = 1 << 16;
+
+    private final int maxInFlightPerHost;
+    private final long minDelayNanos;
+    private final int maxQueuedInMemory;
+    private final LinkSpillQueue spill;
+    private final ToIntFunction<String> hostLimit;
+    private final ToLongFunction<String> hostDelayMillis;
+
+    private final Map<String, HostQueue> hosts = new HashMap<>();
+    private final Queue<HostQueue> readyHosts = new ArrayDeque<>();
+    private final PriorityQueue<HostQueue> delayedHosts = new PriorityQueue<>(Comparator.comparingLong(host -> host.nextFetchNanos));
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    private int queued = 0;
+    private int inFlight = 0;
+    private boolean spillFailed = false;
+    private int holds = 0;
+
+    /**
+     * Creates a frontier without per host limits
+     */
+    public CrawlFrontier() {
+        this(Integer.MAX_VALUE, 0);
+    }
+
+    /**
+     * Creates a frontier
+     *
+     * @param maxInFlightPerHost The maximum number of links of a single host in flight at once
+     * @param minDelayMillis The minimum delay between handing out two links of the same host
+     */
+    public CrawlFrontier(int maxInFlightPerHost, long minDelayMillis) {
+        this(maxInFlightPerHost, minDelayMillis, Integer.MAX_VALUE, null);
+    }
+
+    /**
+     * Creates a frontier that spills queued links to disk
+     *
+     * @param maxInFlightPerHost The maximum number of links of a single host in flight at once
+     * @param minDelayMillis The minimum delay between handing out two links of the same host
+     * @param maxQueuedInMemory The maximum number of queued links kept in memory
+     * @param spillDirectory The directory to spill queued links to, or null to keep every link in memory
+     */
+    public CrawlFrontier(int maxInFlightPerHost, long minDelayMillis, int maxQueuedInMemory, Path spillDirectory) {
+        this(maxInFlightPerHost, minDelayMillis, maxQueuedInMemory, spillDirectory, host -> Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a frontier that spills queued links to disk and limits hosts individually
+     *
+     * @param maxInFlightPerHost The maximum number of links of a single host in flight at once
+     * @param minDelayMillis The minimum delay between handing out two links of the same host
+     * @param maxQueuedInMemory The maximum number of queued links kept in memory
+     * @param spillDirectory The directory to spill queued links to, or null to keep every link in memory
+     * @param hostLimit The current in flight limit of a host, capped by the maximum in flight per host
+     */
+    public CrawlFrontier(int maxInFlightPerHost, long minDelayMillis, int maxQueuedInMemory, Path spillDirectory,
+                         ToIntFunction<String> hostLimit) {
+        this(maxInFlightPerHost, minDelayMillis, maxQueuedInMemory, spillDirectory, hostLimit, host -> 0);
+    }
+
+    /**
+     * Creates a frontier that spills queued links to disk and limits and delays hosts individually
+     *
+     * @param maxInFlightPerHost The maximum number of links of a single host in flight at once
+     * @param minDelayMillis The minimum delay between handing out two links of the same host
+     * @param maxQueuedInMemory The maximum number of queued links kept in memory
+     * @param spillDirectory The directory to spill queued links to, or null to keep every link in memory
+     * @param hostLimit The current in flight limit of a host, capped by the maximum in flight per host
+     * @param hostDelayMillis The current delay of a host, raising the minimum delay for that host
+     */
+    public CrawlFrontier(int maxInFlightPerHost, long minDelayMillis, int maxQueuedInMemory, Path spillDirectory,
+                         ToIntFunction<String> hostLimit, ToLongFunction<String> hostDelayMillis) {
+        if (maxInFlightPerHost < 1) {
+            throw new IllegalArgumentException("Max in flight per host must be at least 1");
+        }
+        if (maxQueuedInMemory < 2) {
+            throw new IllegalArgumentException("Max queued in memory must be at least 2");
+        }
+        this.maxInFlightPerHost = maxInFlightPerHost;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMillis);
+        this.maxQueuedInMemory = spillDirectory != null ? maxQueuedInMemory : Integer.MAX_VALUE;
+        this.spill = spillDirectory != null ? new LinkSpillQueue(spillDirectory, SPILL_SEGMENT_LINKS) : null;
+        this.hostLimit = hostLimit;
+        this.hostDelayMillis = hostDelayMillis;
+    }
+
+    /**
+     * Adds a link to the frontier and wakes up a waiting coordinator
+     *
+     * @param link The link to add
+     */
+    public void add(String link) {
+        if (link == null) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            enqueue(link);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds all links to the frontier and wakes up a waiting coordinator
+     *
+     * @param links The links to add
+     */
+    public void addAll(Collection<String> links) {
+        lock.lock();
+        try {
+            links.forEach(link -> {
+                if (link != null) {
+                    enqueue(link);
+                }
+            });
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the next link to crawl from the next ready host, blocking while no host is ready and links are
+     * still queued or in flight. Every link returned must be handed back through {@link #complete(String)}
+     * once it has been crawled.
+     *
+     * @return The next link to crawl, or null once the frontier is empty and nothing is in flight or held
+     * @throws InterruptedException Thrown if the calling thread is interrupted while waiting
+     */
+    public String take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                refillFromSpill();
+
+                long now = System.nanoTime();
+                promoteDelayedHosts(now);
+
+                HostQueue host = readyHosts.poll();
+                if (host != null) {
+                    return takeFrom(host, now);
+                }
+
+                if (queued == 0 && spilled() == 0 && inFlight == 0 && holds == 0) {
+                    return null;
+                }
+
+                HostQueue nextDelayed = delayedHosts.peek();
+                if (nextDelayed != null) {
+                    changed.awaitNanos(nextDelayed.nextFetchNanos - now);
+                } else {
+                    changed.await();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks a link returned by {@link #take()} as crawled, freeing a slot for its host
+     *
+     * @param link The crawled link
+     */
+    public void complete(String link) {
+        lock.lock();
+        try {
+            HostQueue host = hosts.get(UrlUtil.getHost(link));
+            if (host == null || !host.inFlightLinks.remove(link)) {
+                throw new IllegalStateException("No link in flight for " + link);
+            }
+
+            inFlight--;
+            schedule(host, System.nanoTime());
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Keeps {@link #take()} from reporting the crawl as finished while links may still be added from outside
+     * the crawl, such as seed links being streamed in. Every hold must be released through {@link #release()}.
+     */
+    public void hold() {
+        lock.lock();
+        try {
+            holds++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases a hold taken through {@link #hold()}
+     */
+    public void release() {
+        lock.lock();
+        try {
+            if (holds == 0) {
+                throw new IllegalStateException("Frontier is not held");
+            }
+            holds--;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Visits the links that haven't been crawled yet, for checkpointing a crawl. Spilled links are read back
+     * from disk and the frontier stays locked until every link has been visited.
+     *
+     * @param links Receives the in flight links, then the queued links host by host in queue order, then the
+     *              spilled links in queue order
+     * @throws IOException Thrown if the spilled links can't be read
+     */
+    public void forEachPendingLink(Consumer<String> links) throws IOException {
+        lock.lock();
+        try {
+            hosts.values().forEach(host -> host.inFlightLinks.forEach(links));
+            hosts.values().forEach(host -> host.links.forEach(links));
+            if (spill != null) {
+                spill.forEach(links);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Getter for the links that haven't been crawled yet
+     *
+     * @return The pending links in the order of {@link #forEachPendingLink(Consumer)}
+     */
+    public List<String> getPendingLinks() {
+        List<String> links = new ArrayList<>();
+        try {
+            forEachPendingLink(links::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return links;
+    }
+
+    /**
+     * Getter for the number of queued links
+     *
+     * @return The number of links waiting to be crawled, in memory or spilled to disk
+     */
+    public long size() {
+        lock.lock();
+        try {
+            return queued + spilled();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Getter for the number of links spilled to disk
+     *
+     * @return The number of queued links on disk
+     */
+    public long getSpilledCount() {
+        lock.lock();
+        try {
+            return spilled();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Getter for the in flight count
+     *
+     * @return The number of links taken but not yet completed
+     */
+    public int getInFlightCount() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Determines whether every link has been crawled, ignoring holds
+     *
+     * @return True if no link is queued or in flight
+     */
+    public boolean isDrained() {
+        lock.lock();
+        try {
+            return queued == 0 && spilled() == 0 && inFlight == 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Getter for the number of hosts with queued or in flight links, or a pending delay
+     *
+     * @return The number of tracked hosts
+     */
+    public int getHostCount() {
+        lock.lock();
+        try {
+            return hosts.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Discards the queued links, deleting any spilled to disk, while the links in flight still complete as usual
+     *
+     * @return The number of links discarded
+     */
+    public long discardQueued() {
+        lock.lock();
+        try {
+            long discarded = queued + spilled();
+            closeSpill();
+            readyHosts.clear();
+            delayedHosts.clear();
+            hosts.values().removeIf(host -> {
+                host.links.clear();
+                host.state = HostState.IDLE;
+                return host.inFlightLinks.isEmpty();
+            });
+            queued = 0;
+            changed.signalAll();
+            return discarded;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Clears all queued links, deleting any spilled to disk, and resets the in flight count
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            closeSpill();
+            hosts.clear();
+            readyHosts.clear();
+            delayedHosts.clear();
+            queued = 0;
+            inFlight = 0;
+            holds = 0;
+            spillFailed = false;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds a link to its host queue, or to the spilled links if the host queues are full or links are already
+     * spilled. Must be called while holding the lock.
+     *
+     * @param link The link to add
+     */
+    private void enqueue(String link) {
+        if (spill != null && !spillFailed && (queued >= maxQueuedInMemory || spill.size() > 0)) {
+            try {
+                spill.add(link);
+                return;
+            } catch (IOException e) {
+                LOGGER.severe("Failed to spill links to disk, keeping every link in memory: " + e.getMessage());
+                spillFailed = true;
+            }
+        }
+        enqueueInMemory(link);
+    }
+
+    /**
+     * Adds a link to its host queue. Must be called while holding the lock.
+     *
+     * @param link The link to add
+     */
+    private void enqueueInMemory(String link) {
+        String hostName = UrlUtil.getHost(link);
+        HostQueue host = hosts.get(hostName);
+        if (host == null) {
+            host = new HostQueue(hostName);
+            hosts.put(hostName, host);
+        }
+
+        host.links.add(link);
+        queued++;
+        schedule(host, System.nanoTime());
+    }
+
+    /**
+     * Moves a batch of spilled links back into the host queues once they are half empty. Must be called while
+     * holding the lock.
+     */
+    private void refillFromSpill() {
+        if (spilled() == 0 || queued > maxQueuedInMemory / 2) {
+            return;
+        }
+
+        try {
+            spill.poll(maxQueuedInMemory - queued, this::enqueueInMemory);
+            if (spill.size() == 0) {
+                spill.close();
+            }
+        } catch (IOException e) {
+            LOGGER.severe("Failed to read spilled links, dropping " + spill.size() + " links: " + e.getMessage());
+            closeSpill();
+        }
+    }
+
+    private long spilled() {
+        return spill != null ? spill.size() : 0;
+    }
+
+    /**
+     * Deletes the spilled links. Must be called while holding the lock.
+     */
+    private void closeSpill() {
+        if (spill == null) {
+            return;
+        }
+        try {
+            spill.close();
+        } catch (IOException e) {
+            LOGGER.warning("Failed to delete spilled links: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Takes the next link of a ready host and reschedules the host. Must be called while holding the lock.
+     *
+     * @param host The ready host
+     * @param now The current time in nanoseconds
+     * @return The next link of the host
+     */
+    private String takeFrom(HostQueue host, long now) {
+        host.state = HostState.IDLE;
+        String link = host.links.poll();
+        queued--;
+
+        host.inFlightLinks.add(link);
+        inFlight++;
+        host.nextFetchNanos = now + Math.max(minDelayNanos, TimeUnit.MILLISECONDS.toNanos(hostDelayMillis.applyAsLong(host.name)));
+
+        schedule(host, now);
+        return link;
+    }
+
+    /**
+     * Moves an idle host with queued links to the ready or delayed hosts if it is allowed another link in
+     * flight. Hosts with nothing queued or in flight are dropped once their delay has passed, until then
+     * they wait in the delayed hosts so a newly discovered link still honours the delay. Must be called
+     * while holding the lock.
+     *
+     * @param host The host to schedule
+     * @param now The current time in nanoseconds
+     */
+    private void schedule(HostQueue host, long now) {
+        if (host.state != HostState.IDLE) {
+            return;
+        }
+
+        boolean delayed = host.nextFetchNanos - now > 0;
+
+        if (host.links.isEmpty()) {
+            if (!host.inFlightLinks.isEmpty()) {
+                return;
+            }
+            if (!delayed) {
+                hosts.remove(host.name);
+                return;
+            }
+        } else if (host.inFlightLinks.size() >= Math.min(maxInFlightPerHost, hostLimit.applyAsInt(host.name))) {
+            return;
+        }
+
+        if (delayed) {
+            host.state = HostState.DELAYED;
+            delayedHosts.add(host);
+        } else {
+            host.state = HostState.READY;
+            readyHosts.add(host);
+        }
+    }
+
+    /**
+     * Reschedules delayed hosts whose delay has passed, moving them to the back of the ready hosts. Must be
+     * called while holding the lock.
+     *
+     * @param now The current time in nanoseconds
+     */
+    private void promoteDelayedHosts(long now) {
+        HostQueue host;
+        while ((host = delayedHosts.peek()) != null && host.nextFetchNanos - now <= 0) {
+            delayedHosts.poll();
+            host.state = HostState.IDLE;
+            schedule(host, now);
+        }
+    }
+
+    private enum HostState { IDLE, READY, DELAYED }
+
+    /**
+     * Queued links and politeness state of a single host
+     */
+    private static class HostQueue {
+        private final String name;
+        private final Queue<String> links = new ArrayDeque<>();
+        private final Set<String> inFlightLinks = new HashSet<>();
+        private long nextFetchNanos = System.nanoTime();
+        private HostState state = HostState.IDLE;
+
+        private HostQueue(String name) {
+            this.name = name;
+        }
+    }
+
+}
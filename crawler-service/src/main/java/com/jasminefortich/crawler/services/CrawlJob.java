@@ -0,0 +1,315 @@
+package com.jasminefortich.crawler.services;
+
+import com.jasminefortich.crawler.exceptions.CrawlerException;
+import com.jasminefortich.crawler.models.ConcurrencyLimits;
+import com.jasminefortich.crawler.models.CrawlJobState;
+import com.jasminefortich.crawler.models.CrawlJobStatus;
+import com.jasminefortich.crawler.models.CrawlProgress;
+import com.jasminefortich.crawler.models.CrawlStatistics;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * A crawl of one start endpoint, run by the {@link CrawlJobService} in a crawl context of its own.
+ *
+ * The job is paused, resumed and cancelled through a {@link CrawlControl}, which also works before the crawl has
+ * started: a paused job starts paused and a cancelled job never starts. Concurrency limits changed before the crawl
+ * has started apply once it starts. Progress listeners are sent a sample whenever {@link #publishProgress()} is
+ * called and a last sample once the job is done. Once done the job keeps the final statistics of its crawl and lets
+ * go of the crawl's frontier and seen links.
+ */
+public class CrawlJob {
+
+    private static final Logger LOGGER = Logger.getLogger(CrawlJob.class.getSimpleName());
+
+    private final String id;
+    private final String startEndpoint;
+    private final String storagePartition;
+    private final CrawlerService crawler;
+    private final long submittedAtMillis = System.currentTimeMillis();
+
+    private final CrawlControl control = new CrawlControl();
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private final List<Consumer<CrawlProgress>> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean started = false;
+    private volatile CrawlContext crawl = null;
+    private volatile CrawlStatistics finalStatistics = null;
+    private volatile CrawlJobState finalState = null;
+    private volatile String error = null;
+    private volatile long startedAtMillis = 0;
+    private volatile long finishedAtMillis = 0;
+
+    private Integer maxOutstandingRequests = null;
+    private Integer maxRequestsPerHost = null;
+    private long sampleRequestCount = 0;
+    private long sampleNanos = System.nanoTime();
+
+    /**
+     * Creates a queued job
+     *
+     * @param id The job id
+     * @param startEndpoint The url of the json document listing the seed links
+     * @param storagePartition The subdirectory the crawl keeps its files in, or null to use the configured directories
+     * @param crawler The crawler service the job crawls with
+     */
+    public CrawlJob(String id, String startEndpoint, String storagePartition, CrawlerService crawler) {
+        this.id = id;
+        this.startEndpoint = startEndpoint;
+        this.storagePartition = storagePartition;
+        this.crawler = crawler;
+    }
+
+    /**
+     * Crawls the start endpoint on the calling thread, unless the job was cancelled while queued
+     */
+    public void run() {
+        CrawlContext crawl;
+        synchronized (this) {
+            if (finalState != null) {
+                return;
+            }
+            started = true;
+            startedAtMillis = System.currentTimeMillis();
+            try {
+                crawl = crawler.createCrawl(startEndpoint, control, storagePartition);
+            } catch (RuntimeException e) {     // Invalid crawler configuration
+                LOGGER.warning("Crawl job " + id + " failed: " + e.getMessage());
+                finish(CrawlJobState.FAILED, e.getMessage());
+                return;
+            }
+            if (maxOutstandingRequests != null) {
+                crawl.setConcurrencyLimits(maxOutstandingRequests, maxRequestsPerHost);
+            }
+            this.crawl = crawl;
+        }
+
+        try {
+            crawler.crawl(crawl);
+            finish(control.isCancelled() ? CrawlJobState.CANCELLED : CrawlJobState.FINISHED, null);
+        } catch (CrawlerException | RuntimeException e) {
+            LOGGER.warning("Crawl job " + id + " failed: " + e.getMessage());
+            finish(CrawlJobState.FAILED, e.getMessage());
+        }
+    }
+
+    /**
+     * Pauses the job
+     *
+     * @return False if the job is done or cancelled
+     */
+    public boolean pause() {
+        return finalState == null && control.pause();
+    }
+
+    /**
+     * Resumes a paused job
+     *
+     * @return False if the job is done or cancelled
+     */
+    public boolean resume() {
+        return finalState == null && control.resume();
+    }
+
+    /**
+     * Cancels the job, a queued job is done straight away and a running job once its requests in flight finish
+     *
+     * @return False if the job is already done
+     */
+    public synchronized boolean cancel() {
+        if (finalState != null) {
+            return false;
+        }
+        control.cancel();
+        if (!started) {
+            finish(CrawlJobState.CANCELLED, null);
+        }
+        return true;
+    }
+
+    /**
+     * Changes the concurrency limits of the job's crawl, a queued job starts with them
+     *
+     * @param limits The new maximums, a null maximum keeps the current one
+     * @return The maximums now in effect
+     * @throws IllegalArgumentException Thrown if a maximum is less than 1
+     */
+    public synchronized ConcurrencyLimits setConcurrencyLimits(ConcurrencyLimits limits) {
+        ConcurrencyLimits current = getConcurrencyLimits();
+        int maxOutstandingRequests = limits.getMaxOutstandingRequests() != null
+                ? limits.getMaxOutstandingRequests() : current.getMaxOutstandingRequests();
+        int maxRequestsPerHost = limits.getMaxRequestsPerHost() != null ? limits.getMaxRequestsPerHost() : current.getMaxRequestsPerHost();
+        if (maxOutstandingRequests < 1 || maxRequestsPerHost < 1) {
+            throw new IllegalArgumentException("Limits must be at least 1");
+        }
+
+        CrawlContext crawl = this.crawl;
+        if (crawl != null) {
+            crawl.setConcurrencyLimits(maxOutstandingRequests, maxRequestsPerHost);
+        }
+        this.maxOutstandingRequests = maxOutstandingRequests;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        return new ConcurrencyLimits(maxOutstandingRequests, maxRequestsPerHost);
+    }
+
+    /**
+     * Getter for the concurrency limits of the job's crawl
+     *
+     * @return The maximums in effect, or that the crawl starts with while the job is queued
+     */
+    public synchronized ConcurrencyLimits getConcurrencyLimits() {
+        CrawlContext crawl = this.crawl;
+        if (crawl != null) {
+            return new ConcurrencyLimits(crawl.getMaxOutstandingRequests(), crawl.getMaxRequestsPerHost());
+        }
+        if (maxOutstandingRequests != null) {
+            return new ConcurrencyLimits(maxOutstandingRequests, maxRequestsPerHost);
+        }
+        return new ConcurrencyLimits(crawler.getMaxOutstandingRequests(), crawler.getMaxRequestsPerHost());
+    }
+
+    /**
+     * Adds a progress listener, which is sent the last sample straight away if the job is already done
+     *
+     * @param listener Receives progress samples, from the thread publishing them
+     * @return Removes the listener
+     */
+    public Runnable subscribe(Consumer<CrawlProgress> listener) {
+        listeners.add(listener);
+        if (finalState != null && listeners.remove(listener)) {
+            listener.accept(sampleProgress());
+        }
+        return () -> listeners.remove(listener);
+    }
+
+    /**
+     * Sends a progress sample to the listeners, if there are any
+     */
+    public void publishProgress() {
+        if (!listeners.isEmpty()) {
+            CrawlProgress progress = sampleProgress();
+            listeners.forEach(listener -> listener.accept(progress));
+        }
+    }
+
+    /**
+     * Takes a progress sample, the rate is measured since the previous sample
+     *
+     * @return The progress sample
+     */
+    public synchronized CrawlProgress sampleProgress() {
+        CrawlStatistics statistics = getStatistics();
+        long requestCount = statistics != null ? statistics.getRequestCount() : 0;
+        long now = System.nanoTime();
+        double seconds = (now - sampleNanos) / 1e9;
+        double pagesPerSecond = seconds > 0 ? (requestCount - sampleRequestCount) / seconds : 0;
+        sampleRequestCount = requestCount;
+        sampleNanos = now;
+
+        if (statistics == null) {
+            return new CrawlProgress(id, getState(), 0, 0, 0, 0, 0, 0, 0);
+        }
+        return new CrawlProgress(id, getState(), statistics.getElapsedMillis(), requestCount, pagesPerSecond,
+                statistics.getQueuedLinks(), statistics.getInFlightLinks(), statistics.getSeenLinks(), statistics.getConcurrencyLimit());
+    }
+
+    /**
+     * Takes a snapshot of the job
+     *
+     * @return The job status, with the statistics of its crawl once it has started
+     */
+    public CrawlJobStatus getStatus() {
+        return new CrawlJobStatus(id, startEndpoint, getState(), error, submittedAtMillis, startedAtMillis, finishedAtMillis,
+                getStatistics());
+    }
+
+    /**
+     * Takes a snapshot of the statistics of the job's crawl
+     *
+     * @return The statistics, the final ones once the job is done, or null if the crawl hasn't started
+     */
+    public CrawlStatistics getStatistics() {
+        CrawlStatistics statistics = finalStatistics;
+        if (statistics != null) {
+            return statistics;
+        }
+        CrawlContext crawl = this.crawl;
+        return crawl != null ? crawler.getCrawlStatistics(crawl) : null;
+    }
+
+    /**
+     * Getter for the state of the job
+     *
+     * @return The job state
+     */
+    public CrawlJobState getState() {
+        CrawlJobState state = finalState;
+        if (state != null) {
+            return state;
+        }
+        if (control.isPaused()) {
+            return CrawlJobState.PAUSED;
+        }
+        return started ? CrawlJobState.RUNNING : CrawlJobState.QUEUED;
+    }
+
+    /**
+     * Getter for the job id
+     *
+     * @return The job id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Getter for the start endpoint
+     *
+     * @return The url of the json document listing the seed links
+     */
+    public String getStartEndpoint() {
+        return startEndpoint;
+    }
+
+    /**
+     * Getter for the completion of the job
+     *
+     * @return Completes once the job is done, whatever its final state
+     */
+    public CompletableFuture<Void> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * Records the final state of the job and sends the listeners their last sample
+     *
+     * @param state The final state
+     * @param error Why the job failed, or null
+     */
+    private void finish(CrawlJobState state, String error) {
+        synchronized (this) {
+            CrawlContext crawl = this.crawl;
+            if (crawl != null) {
+                finalStatistics = crawler.getCrawlStatistics(crawl);
+                this.crawl = null;
+            }
+            this.error = error;
+            this.finishedAtMillis = System.currentTimeMillis();
+            this.finalState = state;
+        }
+
+        // Whoever removes a listener sends it the last sample, so a listener subscribing meanwhile gets it once
+        CrawlProgress progress = sampleProgress();
+        for (Consumer<CrawlProgress> listener : listeners) {
+            if (listeners.remove(listener)) {
+                listener.accept(progress);
+            }
+        }
+        completion.complete(null);
+    }
+
+}
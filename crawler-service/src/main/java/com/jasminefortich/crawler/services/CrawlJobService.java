@@ -0,0 +1,276 @@
+package com.jasminefortich.crawler.services;
+
+import com.jasminefortich.crawler.models.CrawlProgress;
+import com.jasminefortich.crawler.utils.FingerprintUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Runs crawl jobs in the background, several at once.
+ *
+ * Every job crawls on the application's crawler service in a crawl context of its own, so it shares the worker
+ * pool, fetcher and DNS cache with the other jobs but has its own frontier, seen links and statistics, and the jobs
+ * take turns for the service's request slots. The checkpoint, page records and results of a submitted job are kept
+ * in a subdirectory named after its start endpoint. Up to crawler.jobs.max-running jobs crawl at once, further jobs
+ * wait in submission order. A start endpoint can only have one job queued or running at a time, since those jobs
+ * would share files.
+ *
+ * Jobs that are done are kept for their statistics until crawler.jobs.max-retained newer jobs are done. Progress
+ * is published to each job's listeners every crawler.jobs.progress-interval-millis. Listeners subscribed through
+ * {@link #subscribe(CrawlJob, Consumer)} are sent their samples on threads of their own, so a slow listener doesn't
+ * hold up the others, and only get the latest sample once they catch up.
+ */
+@Service
+public class CrawlJobService {
+
+    private static final Logger LOGGER = Logger.getLogger(CrawlJobService.class.getSimpleName());
+
+    @Autowired
+    private CrawlerService crawlerService;
+
+    @Value("${crawler.jobs.max-running:4}")
+    private int maxRunningJobs = 4;
+
+    @Value("${crawler.jobs.max-retained:100}")
+    private int maxRetainedJobs = 100;
+
+    @Value("${crawler.jobs.progress-interval-millis:1000}")
+    private long progressIntervalMillis = 1000;
+
+    @Value("${crawler.cluster.enabled:false}")
+    private boolean clusterEnabled = false;
+
+    private final Map<String, CrawlJob> jobs = new LinkedHashMap<>();
+    private ExecutorService jobExecutor;
+    private ScheduledExecutorService progressScheduler;
+    private ExecutorService progressSender;
+
+    /**
+     * Queues a crawl of a start endpoint, keeping its files in a subdirectory named after the start endpoint
+     *
+     * @param startEndpoint The url of the json document listing the seed links
+     * @return The queued job
+     * @throws IllegalArgumentException Thrown if the start endpoint is not set
+     * @throws IllegalStateException Thrown if cluster mode is enabled or the start endpoint is already being crawled
+     */
+    public CrawlJob submit(String startEndpoint) {
+        if (clusterEnabled) {
+            // The cluster endpoints reach the most recently started crawl only, which is the configured start endpoint
+            throw new IllegalStateException("Crawl jobs can't be submitted in cluster mode");
+        }
+        if (startEndpoint == null || startEndpoint.isEmpty()) {
+            throw new IllegalArgumentException("Crawler endpoint is not set!");
+        }
+
+        return submit(startEndpoint, Long.toHexString(FingerprintUtil.fingerprint(startEndpoint)));
+    }
+
+    /**
+     * Queues a crawl of a start endpoint, such as the configured start endpoint
+     *
+     * @param startEndpoint The url of the json document listing the seed links
+     * @param storagePartition The subdirectory the crawl keeps its files in, or null to use the configured directories
+     * @return The queued job
+     * @throws IllegalStateException Thrown if the start endpoint is already being crawled
+     */
+    public CrawlJob submit(String startEndpoint, String storagePartition) {
+        CrawlJob job = new CrawlJob(UUID.randomUUID().toString(), startEndpoint, storagePartition, crawlerService);
+        synchronized (jobs) {
+            for (CrawlJob other : jobs.values()) {
+                if (!other.getState().isDone() && other.getStartEndpoint().equals(startEndpoint)) {
+                    throw new IllegalStateException("Start endpoint is already being crawled by job " + other.getId());
+                }
+            }
+            start();
+            jobs.put(job.getId(), job);
+        }
+
+        job.getCompletion().thenRun(this::evictDoneJobs);
+        jobExecutor.execute(job::run);
+        LOGGER.info("Queued crawl job " + job.getId() + " for " + startEndpoint);
+        return job;
+    }
+
+    /**
+     * Getter for a job
+     *
+     * @param id The job id
+     * @return The job, or null if there is no such job or it has been evicted
+     */
+    public CrawlJob getJob(String id) {
+        synchronized (jobs) {
+            return jobs.get(id);
+        }
+    }
+
+    /**
+     * Getter for the jobs
+     *
+     * @return The queued, running and retained jobs, in submission order
+     */
+    public List<CrawlJob> getJobs() {
+        synchronized (jobs) {
+            return new ArrayList<>(jobs.values());
+        }
+    }
+
+    /**
+     * Subscribes to the progress of a job, sending the samples from a thread of the service
+     *
+     * @param job The job
+     * @param listener Receives progress samples one at a time, the last one once the job is done
+     * @return Removes the listener
+     */
+    public Runnable subscribe(CrawlJob job, Consumer<CrawlProgress> listener) {
+        ExecutorService sender;
+        synchronized (jobs) {
+            start();
+            sender = progressSender;
+        }
+        return job.subscribe(new AsyncProgressListener(listener, sender));
+    }
+
+    /**
+     * Cancels every job and stops the job threads without waiting for the crawls to finish
+     */
+    @PreDestroy
+    public void shutdown() {
+        getJobs().forEach(CrawlJob::cancel);
+        synchronized (jobs) {
+            if (jobExecutor != null) {
+                jobExecutor.shutdown();
+                progressScheduler.shutdownNow();
+                progressSender.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Starts the job threads and the progress publisher on the first job. Must be called while holding the jobs
+     * lock.
+     */
+    private void start() {
+        if (jobExecutor != null) {
+            return;
+        }
+
+        AtomicInteger threads = new AtomicInteger();
+        jobExecutor = Executors.newFixedThreadPool(Math.max(1, maxRunningJobs), runnable -> {
+            Thread thread = new Thread(runnable, "CrawlJob-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        progressScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "CrawlJobProgress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        progressScheduler.scheduleAtFixedRate(this::publishProgress, progressIntervalMillis, progressIntervalMillis, TimeUnit.MILLISECONDS);
+        AtomicInteger senders = new AtomicInteger();
+        progressSender = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "CrawlJobProgressSender-" + senders.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private void publishProgress() {
+        for (CrawlJob job : getJobs()) {
+            if (!job.getState().isDone()) {
+                try {
+                    job.publishProgress();
+                } catch (RuntimeException e) {
+                    LOGGER.warning("Failed to publish progress of crawl job " + job.getId() + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the oldest jobs that are done beyond the number retained
+     */
+    private void evictDoneJobs() {
+        synchronized (jobs) {
+            long done = jobs.values().stream().filter(job -> job.getState().isDone()).count();
+            Iterator<CrawlJob> iterator = jobs.values().iterator();
+            while (done > maxRetainedJobs && iterator.hasNext()) {
+                if (iterator.next().getState().isDone()) {
+                    iterator.remove();
+                    done--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Hands progress samples to a listener on an executor, one at a time. Samples arriving while the listener is
+     * busy replace each other, so a slow listener gets the latest sample instead of a backlog, and the last sample
+     * of a done job is never replaced.
+     */
+    private static class AsyncProgressListener implements Consumer<CrawlProgress> {
+        private final Consumer<CrawlProgress> listener;
+        private final Executor executor;
+        private final AtomicReference<CrawlProgress> pending = new AtomicReference<>();
+        private final AtomicBoolean sending = new AtomicBoolean();
+
+        private AsyncProgressListener(Consumer<CrawlProgress> listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+
+        @Override
+        public void accept(CrawlProgress progress) {
+            pending.updateAndGet(current -> current != null && current.getState().isDone() ? current : progress);
+            schedule();
+        }
+
+        private void schedule() {
+            if (sending.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this::send);
+                } catch (RejectedExecutionException e) {
+                    // The service is shutting down
+                    sending.set(false);
+                }
+            }
+        }
+
+        private void send() {
+            try {
+                CrawlProgress progress;
+                while ((progress = pending.getAndSet(null)) != null) {
+                    listener.accept(progress);
+                }
+            } catch (RuntimeException e) {
+                LOGGER.warning("Failed to send crawl job progress: " + e.getMessage());
+            } finally {
+                sending.set(false);
+            }
+            // A sample that arrived after the last check but before the flag was cleared
+            if (pending.get() != null) {
+                schedule();
+            }
+        }
+    }
+
+}
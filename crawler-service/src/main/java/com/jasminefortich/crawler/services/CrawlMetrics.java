@@ -0,0 +1,205 @@
+package com.jasminefortich.crawler.services;
+
+import com.jasminefortich.crawler.models.CrawlStatistics;
+import com.jasminefortich.crawler.utils.LogHistogram;
+import com.jasminefortich.crawler.utils.UrlUtil;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of a single crawl, recorded by the crawler threads without locking.
+ *
+ * Counters are striped {@link LongAdder}s so concurrent updates don't contend on a single field, and fetch
+ * latency and page size go into {@link LogHistogram}s. A consistent enough {@link CrawlStatistics} snapshot
+ * can be taken at any time, including while the crawl is running.
+ */
+public class CrawlMetrics {
+
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder successCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder errorCount = new LongAdder();
+    private final LongAdder bytesTransferred = new LongAdder();
+    private final LongAdder unchangedCount = new LongAdder();
+    private final LongAdder skippedBodies = new LongAdder();
+    private final LongAdder truncatedBodies = new LongAdder();
+    private final LongAdder droppedLinks = new LongAdder();
+    private final LongAdder outOfScopeLinks = new LongAdder();
+    private final LongAdder overBudgetLinks = new LongAdder();
+    private final LongAdder robotsDisallowedLinks = new LongAdder();
+    private final LongAdder backpressureWaitNanos = new LongAdder();
+
+    private final ConcurrentHashMap<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> hostCounts = new ConcurrentHashMap<>();
+
+    private final LogHistogram latencyMicros = new LogHistogram();
+    private final LogHistogram pageSizeBytes = new LogHistogram();
+
+    private final long startNanos = System.nanoTime();
+    private volatile long endNanos = -1;
+
+    /**
+     * Records a fetch that got a response
+     *
+     * @param link The fetched link
+     * @param statusCode The response status code
+     * @param successful Whether the response counts as a successful crawl
+     * @param bytes The number of body bytes read
+     * @param latencyNanos The time from sending the request to reading the body
+     */
+    public void recordResponse(String link, int statusCode, boolean successful, long bytes, long latencyNanos) {
+        recordRequest(link, latencyNanos);
+        (successful ? successCount : failedCount).increment();
+        statusCounts.computeIfAbsent(statusCode, code -> new LongAdder()).increment();
+
+        bytesTransferred.add(bytes);
+        pageSizeBytes.record(bytes);
+    }
+
+    /**
+     * Records a fetch that failed without a response
+     *
+     * @param link The link that failed
+     * @param latencyNanos The time until the failure
+     */
+    public void recordError(String link, long latencyNanos) {
+        recordRequest(link, latencyNanos);
+        failedCount.increment();
+        errorCount.increment();
+    }
+
+    private void recordRequest(String link, long latencyNanos) {
+        requestCount.increment();
+        hostCounts.computeIfAbsent(UrlUtil.getHost(link), host -> new LongAdder()).increment();
+        latencyMicros.record(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+    }
+
+    /**
+     * Marks the crawl as finished, freezing the elapsed time
+     */
+    public void finish() {
+        endNanos = System.nanoTime();
+    }
+
+    public long getRequestCount() {
+        return requestCount.sum();
+    }
+
+    public long getSuccessCount() {
+        return successCount.sum();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * Records a page that hadn't changed since the previous crawl
+     */
+    public void recordUnchanged() {
+        unchangedCount.increment();
+    }
+
+    /**
+     * Records a page whose body wasn't downloaded or parsed because of its content type
+     */
+    public void recordSkippedBody() {
+        skippedBodies.increment();
+    }
+
+    /**
+     * Records a page whose body was cut off at the maximum size of its content type
+     */
+    public void recordTruncatedBody() {
+        truncatedBodies.increment();
+    }
+
+    /**
+     * Records a discovered link that was dropped because the frontier was full
+     */
+    public void recordDropped() {
+        droppedLinks.increment();
+    }
+
+    /**
+     * Records a discovered link that was outside the crawl scope
+     */
+    public void recordOutOfScope() {
+        outOfScopeLinks.increment();
+    }
+
+    /**
+     * Records a discovered link that was rejected by the crawl budget
+     */
+    public void recordOverBudget() {
+        overBudgetLinks.increment();
+    }
+
+    /**
+     * Records a link that wasn't fetched because robots.txt disallows it
+     */
+    public void recordRobotsDisallowed() {
+        robotsDisallowedLinks.increment();
+    }
+
+    /**
+     * Records time spent waiting for an outstanding request to finish before starting another
+     *
+     * @param waitNanos The time waited
+     */
+    public void recordBackpressureWait(long waitNanos) {
+        backpressureWaitNanos.add(waitNanos);
+    }
+
+    /**
+     * Takes a snapshot of the statistics. The budget, frontier, request limits, DNS cache, cluster and result
+     * sink aren't known to the metrics and are left at 0 for the caller to fill in.
+     *
+     * @param queuedLinks The number of links waiting in the frontier
+     * @param inFlightLinks The number of links being fetched
+     * @param seenLinks The number of distinct links seen
+     * @return The snapshot
+     */
+    public CrawlStatistics snapshot(long queuedLinks, long inFlightLinks, long seenLinks) {
+        long end = endNanos;
+        boolean running = end < 0;
+        long elapsedNanos = (running ? System.nanoTime() : end) - startNanos;
+
+        CrawlStatistics statistics = new CrawlStatistics();
+        statistics.setRunning(running);
+        statistics.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        statistics.setRequestCount(requestCount.sum());
+        statistics.setSuccessCount(successCount.sum());
+        statistics.setFailedCount(failedCount.sum());
+        statistics.setErrorCount(errorCount.sum());
+        statistics.setBytesTransferred(bytesTransferred.sum());
+        statistics.setUnchangedCount(unchangedCount.sum());
+        statistics.setSkippedBodies(skippedBodies.sum());
+        statistics.setTruncatedBodies(truncatedBodies.sum());
+        statistics.setQueuedLinks(queuedLinks);
+        statistics.setInFlightLinks(inFlightLinks);
+        statistics.setSeenLinks(seenLinks);
+        statistics.setDroppedLinks(droppedLinks.sum());
+        statistics.setOutOfScopeLinks(outOfScopeLinks.sum());
+        statistics.setOverBudgetLinks(overBudgetLinks.sum());
+        statistics.setRobotsDisallowedLinks(robotsDisallowedLinks.sum());
+        statistics.setBackpressureWaitMillis(TimeUnit.NANOSECONDS.toMillis(backpressureWaitNanos.sum()));
+        statistics.setThrottledHostLimits(new TreeMap<>());
+        statistics.setStatusCounts(sums(statusCounts));
+        statistics.setHostCounts(sums(hostCounts));
+        statistics.setLatencyMicros(latencyMicros.snapshot());
+        statistics.setPageSizeBytes(pageSizeBytes.snapshot());
+        return statistics;
+    }
+
+    private static <K> Map<K, Long> sums(Map<K, LongAdder> counters) {
+        Map<K, Long> sums = new TreeMap<>();
+        counters.forEach((key, counter) -> sums.put(key, counter.sum()));
+        return sums;
+    }
+
+}
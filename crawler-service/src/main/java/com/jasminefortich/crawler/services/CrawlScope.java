@@ -0,0 +1,171 @@
+package com.jasminefortich.crawler.services;
+
+import com.jasminefortich.crawler.utils.UrlUtil;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.regex.Pattern;
+
+/**
+ * Decides which discovered links belong to a crawl, from their depth, host and path.
+ *
+ * The rules are compiled once when the scope is created: host lists become hash sets, so a host is matched
+ * against a domain list with one lookup per label of the host, and each path list becomes a single
+ * alternation pattern. Denied hosts and domains always win. When any allow list is set a host must be in
+ * the allowed hosts or under an allowed domain. When include patterns are set a path must match one of them,
+ * and it must match none of the exclude patterns. Patterns are searched for anywhere in the path and query
+ * unless they are anchored.
+ *
+ * The scope is immutable and safe to share between threads.
+ */
+public class CrawlScope {
+
+    private final int maxDepth;
+    private final Set<String> allowedHosts;
+    private final Set<String> deniedHosts;
+    private final Set<String> allowedDomains;
+    private final Set<String> deniedDomains;
+    private final Pattern includePaths;
+    private final Pattern excludePaths;
+
+    /**
+     * Creates a scope that allows every link
+     */
+    public CrawlScope() {
+        this(-1, Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList());
+    }
+
+    /**
+     * Creates a scope
+     *
+     * @param maxDepth The maximum number of links followed from a seed link, or -1 for no limit
+     * @param allowedHosts Hosts to crawl, empty to allow any host not otherwise denied
+     * @param deniedHosts Hosts never to crawl
+     * @param allowedDomains Domains to crawl, including their subdomains
+     * @param deniedDomains Domains never to crawl, including their subdomains
+     * @param includePaths Regular expressions of the paths to crawl, empty to allow any path
+     * @param excludePaths Regular expressions of the paths never to crawl
+     * @throws java.util.regex.PatternSyntaxException Thrown if a path expression is invalid
+     */
+    public CrawlScope(int maxDepth, Collection<String> allowedHosts, Collection<String> deniedHosts,
+                      Collection<String> allowedDomains, Collection<String> deniedDomains,
+                      Collection<String> includePaths, Collection<String> excludePaths) {
+        this.maxDepth = maxDepth;
+        this.allowedHosts = hosts(allowedHosts);
+        this.deniedHosts = hosts(deniedHosts);
+        this.allowedDomains = hosts(allowedDomains);
+        this.deniedDomains = hosts(deniedDomains);
+        this.includePaths = compile(includePaths);
+        this.excludePaths = compile(excludePaths);
+    }
+
+    /**
+     * Determines whether a link belongs to the crawl
+     *
+     * @param link The canonical link
+     * @param depth The number of links followed from a seed link to reach the link, 0 for a seed link
+     * @return True if the link should be crawled
+     */
+    public boolean allows(String link, int depth) {
+        if (maxDepth >= 0 && depth > maxDepth) {
+            return false;
+        }
+        return allowsHost(UrlUtil.getHost(link)) && allowsPath(link);
+    }
+
+    /**
+     * Determines whether links of a host belong to the crawl
+     *
+     * @param host The lowercase host
+     * @return True if the host isn't denied and, when allow lists are set, is allowed
+     */
+    public boolean allowsHost(String host) {
+        if (deniedHosts.contains(host) || underDomain(host, deniedDomains)) {
+            return false;
+        }
+        if (allowedHosts.isEmpty() && allowedDomains.isEmpty()) {
+            return true;
+        }
+        return allowedHosts.contains(host) || underDomain(host, allowedDomains);
+    }
+
+    /**
+     * Getter for the maximum depth
+     *
+     * @return The maximum number of links followed from a seed link, or -1 for no limit
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    private boolean allowsPath(String link) {
+        if (includePaths == null && excludePaths == null) {
+            return true;
+        }
+
+        String path = UrlUtil.getPath(link);
+        if (includePaths != null && !includePaths.matcher(path).find()) {
+            return false;
+        }
+        return excludePaths == null || !excludePaths.matcher(path).find();
+    }
+
+    /**
+     * Determines whether a host is one of the domains or a subdomain of one, looking up the host and each of its
+     * parent domains in turn
+     */
+    private static boolean underDomain(String host, Set<String> domains) {
+        if (domains.isEmpty() || host.isEmpty()) {
+            return false;
+        }
+
+        String domain = host;
+        while (true) {
+            if (domains.contains(domain)) {
+                return true;
+            }
+            int dot = domain.indexOf('.');
+            if (dot < 0) {
+                return false;
+            }
+            domain = domain.substring(dot + 1);
+        }
+    }
+
+    private static Set<String> hosts(Collection<String> names) {
+        Set<String> hosts = new HashSet<>();
+        for (String name : names) {
+            String host = name.trim().toLowerCase();
+            if (host.startsWith(".")) {
+                host = host.substring(1);
+            }
+            if (!host.isEmpty()) {
+                hosts.add(host);
+            }
+        }
+        return hosts;
+    }
+
+    /**
+     * Compiles path expressions into a single alternation, so a path is matched in one pass
+     *
+     * @return The pattern, or null if there are no expressions
+     */
+    private static Pattern compile(Collection<String> expressions) {
+        StringJoiner alternation = new StringJoiner("|");
+        for (String expression : expressions) {
+            String trimmed = expression.trim();
+            if (!trimmed.isEmpty()) {
+                // Compiled on its own first so an invalid expression is reported by itself
+                Pattern.compile(trimmed);
+                alternation.add("(?:" + trimmed + ")");
+            }
+        }
+        return alternation.length() > 0 ? Pattern.compile(alternation.toString()) : null;
+    }
+
+}
@@ -1,25 +1,46 @@
 package com.jasminefortich.crawler.services;
 
-import com.google.gson.Gson;
 import com.jasminefortich.crawler.exceptions.CrawlerException;
-import com.jasminefortich.crawler.models.StartEndpoint;
+import com.jasminefortich.crawler.models.ClusterStatus;
+import com.jasminefortich.crawler.models.CrawlStatistics;
+import com.jasminefortich.crawler.models.ExecutionMode;
+import com.jasminefortich.crawler.models.FetchResult;
+import com.jasminefortich.crawler.models.HistogramSnapshot;
+import com.jasminefortich.crawler.models.PageRecord;
+import com.jasminefortich.crawler.models.PageResult;
+import com.jasminefortich.crawler.models.ResultFormat;
+import com.jasminefortich.crawler.models.SeenUrlStoreType;
+import com.jasminefortich.crawler.utils.FingerprintUtil;
 import com.jasminefortich.crawler.utils.JsonUtil;
+import com.jasminefortich.crawler.utils.LinkListCodec;
+import com.jasminefortich.crawler.utils.UrlCanonicalizer;
+import com.jasminefortich.crawler.utils.UrlUtil;
 import org.json.JSONException;
-import org.json.JSONObject;
-import org.jsoup.Connection;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.select.Elements;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.*;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 @Service
@@ -27,58 +48,406 @@ public class CrawlerService {
 
     private static final Logger LOGGER = Logger.getLogger(CrawlerService.class.getSimpleName());
 
-    private volatile Set<String> VISITED_LINKS = Collections.synchronizedSet(new HashSet<>());
-    private volatile Queue<String> LINK_QUEUE  = new LinkedList<>();
-    private volatile List<CrawlerThread> CRAWLER_THREADS = new ArrayList<>();
+    // The most recently started crawl, reported by the statistics and cluster endpoints
+    private volatile CrawlContext CURRENT_CRAWL = new CrawlContext();
+    // Shared by every crawl of the service, as are the worker pool and fetcher
+    private volatile RobotsCache ROBOTS_CACHE = null;
+    private volatile Semaphore REQUEST_SLOTS = null;
 
-    private Integer REQUEST_COUNT = 0, SUCCESS_COUNT = 0, FAILED_COUNT = 0;
+    @Autowired
+    private TaskExecutor threadPool;
+
+    @Autowired
+    private Fetcher fetcher;
+
+    @Autowired
+    private LinkExtractor linkExtractor;
+
+    @Autowired
+    private DnsCache dnsCache;
 
     @Autowired
-    private ThreadPoolTaskExecutor threadPool;
+    private ClusterTransport clusterTransport;
+
+    @Value("${crawler.execution.mode:PLATFORM}")
+    private ExecutionMode executionMode = ExecutionMode.PLATFORM;
+
+    @Value("${crawler.execution.max-outstanding-requests:1000}")
+    private int maxOutstandingRequests = 1000;
+
+    @Value("${crawler.concurrency.adaptive:true}")
+    private boolean adaptiveConcurrency = true;
+
+    @Value("${crawler.concurrency.initial-limit:16}")
+    private int initialConcurrencyLimit = 16;
+
+    @Value("${crawler.concurrency.initial-host-limit:1}")
+    private int initialHostConcurrencyLimit = 1;
+
+    @Value("${crawler.concurrency.backoff-ratio:0.9}")
+    private double concurrencyBackoffRatio = 0.9;
+
+    @Value("${crawler.concurrency.latency-tolerance:2.0}")
+    private double concurrencyLatencyTolerance = 2.0;
+
+    @Value("${crawler.concurrency.host-idle-timeout-millis:60000}")
+    private long hostIdleTimeoutMillis = 60000;
+
+    @Value("${crawler.politeness.max-requests-per-host:4}")
+    private int maxRequestsPerHost = 4;
+
+    @Value("${crawler.politeness.min-delay-millis:0}")
+    private long minDelayMillis = 0;
+
+    @Value("${crawler.frontier.max-in-memory-links:100000}")
+    private int frontierMaxInMemoryLinks = 100_000;
+
+    @Value("${crawler.frontier.spill-directory:}")
+    private String frontierSpillDirectory = "";
+
+    @Value("${crawler.frontier.max-queued-links:0}")
+    private long frontierMaxQueuedLinks = 0;
+
+    @Value("${crawler.scope.max-depth:-1}")
+    private int scopeMaxDepth = -1;
+
+    @Value("${crawler.scope.allowed-hosts:}")
+    private String[] scopeAllowedHosts = {};
+
+    @Value("${crawler.scope.denied-hosts:}")
+    private String[] scopeDeniedHosts = {};
+
+    @Value("${crawler.scope.allowed-domains:}")
+    private String[] scopeAllowedDomains = {};
+
+    @Value("${crawler.scope.denied-domains:}")
+    private String[] scopeDeniedDomains = {};
+
+    @Value("${crawler.scope.include-paths:}")
+    private String[] scopeIncludePaths = {};
+
+    @Value("${crawler.scope.exclude-paths:}")
+    private String[] scopeExcludePaths = {};
+
+    @Value("${crawler.budget.max-pages:0}")
+    private long budgetMaxPages = 0;
+
+    @Value("${crawler.budget.max-pages-per-host:0}")
+    private int budgetMaxPagesPerHost = 0;
+
+    @Value("${crawler.budget.max-bytes:0}")
+    private long budgetMaxBytes = 0;
+
+    @Value("${crawler.budget.max-duration-millis:0}")
+    private long budgetMaxDurationMillis = 0;
+
+    @Value("${crawler.robots.enabled:true}")
+    private boolean robotsEnabled = true;
+
+    @Value("${crawler.robots.user-agent:CyberCodersCrawler}")
+    private String robotsUserAgent = "CyberCodersCrawler";
+
+    @Value("${crawler.robots.ttl-millis:86400000}")
+    private long robotsTtlMillis = 24 * 60 * 60 * 1000;
+
+    @Value("${crawler.robots.error-ttl-millis:60000}")
+    private long robotsErrorTtlMillis = 60_000;
+
+    @Value("${crawler.robots.max-hosts:10000}")
+    private int robotsMaxHosts = 10_000;
+
+    @Value("${crawler.robots.max-crawl-delay-millis:30000}")
+    private long robotsMaxCrawlDelayMillis = 30_000;
+
+    @Value("${crawler.cluster.enabled:false}")
+    private boolean clusterEnabled = false;
+
+    @Value("${crawler.cluster.nodes:}")
+    private String[] clusterNodes = {};
+
+    @Value("${crawler.cluster.node-index:0}")
+    private int clusterNodeIndex = 0;
+
+    @Value("${crawler.cluster.virtual-nodes:128}")
+    private int clusterVirtualNodes = 128;
+
+    @Value("${crawler.cluster.batch-size:500}")
+    private int clusterBatchSize = 500;
+
+    @Value("${crawler.cluster.flush-interval-millis:100}")
+    private long clusterFlushIntervalMillis = 100;
+
+    @Value("${crawler.cluster.status-interval-millis:500}")
+    private long clusterStatusIntervalMillis = 500;
+
+    @Value("${crawler.results.enabled:false}")
+    private boolean resultsEnabled = false;
+
+    @Value("${crawler.results.format:NDJSON}")
+    private ResultFormat resultsFormat = ResultFormat.NDJSON;
+
+    @Value("${crawler.results.directory:results}")
+    private String resultsDirectory = "results";
+
+    @Value("${crawler.results.buffer-size:65536}")
+    private int resultsBufferSize = 65_536;
+
+    @Value("${crawler.results.batch-size:1024}")
+    private int resultsBatchSize = 1024;
+
+    @Value("${crawler.results.max-file-bytes:268435456}")
+    private long resultsMaxFileBytes = 256 * 1024 * 1024;
+
+    @Value("${crawler.results.compress:true}")
+    private boolean resultsCompress = true;
+
+    @Value("${crawler.results.flush-interval-millis:200}")
+    private long resultsFlushIntervalMillis = 200;
+
+    @Value("${crawler.seen-store.type:FINGERPRINT}")
+    private SeenUrlStoreType seenStoreType = SeenUrlStoreType.FINGERPRINT;
+
+    @Value("${crawler.seen-store.expected-urls:1000000}")
+    private long seenStoreExpectedUrls = 1_000_000;
+
+    @Value("${crawler.seen-store.stripes:64}")
+    private int seenStoreStripes = 64;
+
+    @Value("${crawler.seen-store.bloom-filter:false}")
+    private boolean seenStoreBloomFilter = false;
+
+    @Value("${crawler.seen-store.bloom-false-positive-rate:0.01}")
+    private double seenStoreFalsePositiveRate = 0.01;
+
+    @Value("${crawler.canonicalizer.sort-query:true}")
+    private boolean sortQuery = true;
+
+    @Value("${crawler.canonicalizer.drop-params:}")
+    private String[] dropParams = {};
+
+    @Value("${crawler.content.parsed-types:text/html,application/xhtml+xml}")
+    private String[] contentParsedTypes = {"text/html", "application/xhtml+xml"};
+
+    @Value("${crawler.content.max-body-bytes:10485760}")
+    private long contentMaxBodyBytes = 10 * 1024 * 1024;
+
+    @Value("${crawler.content.type-max-body-bytes:}")
+    private String[] contentTypeMaxBodyBytes = {};
+
+    @Value("${crawler.content.head-requests:false}")
+    private boolean contentHeadRequests = false;
+
+    @Value("${crawler.incremental.enabled:false}")
+    private boolean incrementalEnabled = false;
+
+    @Value("${crawler.incremental.directory:incremental}")
+    private String incrementalDirectory = "incremental";
+
+    @Value("${crawler.checkpoint.enabled:false}")
+    private boolean checkpointEnabled = false;
+
+    @Value("${crawler.checkpoint.directory:checkpoint}")
+    private String checkpointDirectory = "checkpoint";
+
+    @Value("${crawler.checkpoint.segment-bytes:67108864}")
+    private int checkpointSegmentBytes = 64 * 1024 * 1024;
+
+    @Value("${crawler.checkpoint.flush-interval-millis:1000}")
+    private long checkpointFlushIntervalMillis = 1000;
+
+    @Value("${crawler.checkpoint.snapshot-interval-millis:60000}")
+    private long checkpointSnapshotIntervalMillis = 60_000;
 
     /**
-     * Getter for failed count
+     * Getter for failed count of the most recently started crawl, with several jobs running that is the job started last
      *
      * @return The current failed count
      */
-    public Integer getFailedCount() {
-        return FAILED_COUNT;
+    public Long getFailedCount() {
+        return CURRENT_CRAWL.getMetrics().getFailedCount();
     }
 
     /**
-     * Getter for success count
+     * Getter for success count of the most recently started crawl, with several jobs running that is the job started last
      *
      * @return The current success count
      */
-    public Integer getSuccessCount() {
-        return SUCCESS_COUNT;
+    public Long getSuccessCount() {
+        return CURRENT_CRAWL.getMetrics().getSuccessCount();
     }
 
     /**
-     * Getter for request count
+     * Getter for request count of the most recently started crawl, with several jobs running that is the job started last
      *
      * @return The current request count
      */
-    public Integer getRequestCount() {
-        return REQUEST_COUNT;
+    public Long getRequestCount() {
+        return CURRENT_CRAWL.getMetrics().getRequestCount();
+    }
+
+    /**
+     * Takes a snapshot of the statistics of the most recently started crawl. With several jobs running that is
+     * the job started last, the statistics of each job are read through {@link #getCrawlStatistics(CrawlContext)}.
+     *
+     * @return The crawl statistics
+     */
+    public CrawlStatistics getCrawlStatistics() {
+        return getCrawlStatistics(CURRENT_CRAWL);
+    }
+
+    /**
+     * Takes a snapshot of the statistics of a crawl, while it runs or once it is done. The DNS cache counts are
+     * shared by every crawl of the service.
+     *
+     * @param crawl The crawl
+     * @return The crawl statistics
+     */
+    public CrawlStatistics getCrawlStatistics(CrawlContext crawl) {
+        CrawlFrontier queue = crawl.getFrontier();
+        CrawlStatistics statistics = crawl.getMetrics().snapshot(queue.size(), queue.getInFlightCount(), crawl.getVisitedLinks().size());
+        statistics.setBudgetExhausted(crawl.getBudget().getExhaustedReason());
+        statistics.setSpilledLinks(queue.getSpilledCount());
+        statistics.setMaxQueuedLinks(frontierMaxQueuedLinks);
+        AdaptiveConcurrencyLimiter limiter = crawl.getConcurrencyLimiter();
+        statistics.setOutstandingRequests(limiter.getInFlight());
+        statistics.setMaxOutstandingRequests(limiter.getMaxLimit());
+        statistics.setConcurrencyLimit(limiter.getLimit());
+        statistics.setThrottledHostLimits(limiter.getThrottledHostLimits());
+        DnsCache dns = dnsCache;
+        if (dns != null) {
+            statistics.setDnsCacheHits(dns.getHitCount());
+            statistics.setDnsCacheMisses(dns.getMissCount());
+            statistics.setDnsFailures(dns.getFailureCount());
+            statistics.setDnsPrefetches(dns.getPrefetchCount());
+        }
+        ClusterShard cluster = crawl.getCluster();
+        if (cluster != null) {
+            statistics.setForwardedLinks(cluster.getSentLinks());
+            statistics.setReceivedLinks(cluster.getReceivedLinks());
+        }
+        ResultSink sink = crawl.getResultSink();
+        if (sink != null) {
+            statistics.setWrittenResults(sink.getWrittenCount());
+            statistics.setDroppedResults(sink.getDroppedCount());
+        }
+        return statistics;
+    }
+
+    /**
+     * Getter for the maximum number of requests in flight of new crawls, which is also the most requests every
+     * crawl of the service has in flight together
+     *
+     * @return The maximum number of requests in flight
+     */
+    public int getMaxOutstandingRequests() {
+        return maxOutstandingRequests;
+    }
+
+    /**
+     * Getter for the maximum number of requests in flight per host of new crawls
+     *
+     * @return The maximum number of requests in flight per host
+     */
+    public int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
     }
 
     /**
-     * Resets the crawler service by clearing the 'visited' and 'to visit' lists
+     * Resolves a configured directory in the storage partition of a crawl
+     *
+     * @param crawl The crawl
+     * @param directory The configured directory
+     * @return The directory of the crawl's files
+     */
+    private Path resolveDirectory(CrawlContext crawl, String directory) {
+        String partition = crawl.getStoragePartition();
+        return partition != null ? Paths.get(directory, partition) : Paths.get(directory);
+    }
+
+    /**
+     * Creates the context of a new crawl from the current configuration, with its own frontier, seen links,
+     * limits, budget and statistics
+     *
+     * @param startEndpoint The url of the json document listing the seed links
+     * @param control Pauses, resumes and cancels the crawl from other threads
+     * @param storagePartition The subdirectory of the configured checkpoint, incremental and results directories
+     *                         the crawl keeps its files in, so crawls running side by side don't share files, or
+     *                         null to use the configured directories
+     * @return The crawl context, to be passed to {@link #crawl(CrawlContext)}
+     */
+    public CrawlContext createCrawl(String startEndpoint, CrawlControl control, String storagePartition) {
+        synchronized (this) {
+            // Robots rules outlive a crawl, they are only dropped once they expire or are evicted
+            if (robotsEnabled && ROBOTS_CACHE == null) {
+                ROBOTS_CACHE = new RobotsCache(fetcher, robotsUserAgent, robotsTtlMillis, robotsErrorTtlMillis, robotsMaxHosts,
+                        robotsMaxCrawlDelayMillis);
+            } else if (!robotsEnabled) {
+                ROBOTS_CACHE = null;
+            }
+            // Handed out first come first served, so crawls waiting for a slot take turns
+            if (REQUEST_SLOTS == null) {
+                REQUEST_SLOTS = new Semaphore(maxOutstandingRequests, true);
+            }
+        }
+
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(adaptiveConcurrency, initialConcurrencyLimit, maxOutstandingRequests,
+                initialHostConcurrencyLimit, maxRequestsPerHost, concurrencyBackoffRatio, concurrencyLatencyTolerance,
+                TimeUnit.MILLISECONDS.toNanos(hostIdleTimeoutMillis));
+        CrawlScope scope = new CrawlScope(scopeMaxDepth, Arrays.asList(scopeAllowedHosts), Arrays.asList(scopeDeniedHosts),
+                Arrays.asList(scopeAllowedDomains), Arrays.asList(scopeDeniedDomains),
+                Arrays.asList(scopeIncludePaths), Arrays.asList(scopeExcludePaths));
+        CrawlBudget budget = new CrawlBudget(budgetMaxPages, budgetMaxPagesPerHost, budgetMaxBytes, budgetMaxDurationMillis);
+        ContentPolicy contentPolicy = new ContentPolicy(Arrays.asList(contentParsedTypes), contentMaxBodyBytes,
+                ContentPolicy.parseTypeMaxBodyBytes(Arrays.asList(contentTypeMaxBodyBytes)), contentHeadRequests);
+        // Depths are only tracked when something needs them, since every queued link holds an entry
+        Map<String, Integer> depths = scopeMaxDepth >= 0 || resultsEnabled ? new ConcurrentHashMap<>() : null;
+        return new CrawlContext(startEndpoint, storagePartition, control, createSeenUrlStore(), createFrontier(limiter),
+                new UrlCanonicalizer(sortQuery, Arrays.asList(dropParams)), limiter, scope, budget, contentPolicy, depths);
+    }
+
+    /**
+     * Creates the frontier for a crawl, spilling queued links beyond the configured window to disk, limiting
+     * hosts by the concurrency limiter and delaying them by their robots.txt crawl delay. The frontier leaves the
+     * maximum per host to the limiter, since it can be changed while the crawl runs.
+     *
+     * @param limiter The concurrency limiter of the crawl
+     * @return The crawl frontier
      */
-    private void resetCrawlerService() {
-        LINK_QUEUE.clear();
-        VISITED_LINKS.clear();
-        resetCrawlerStatistics();
+    private CrawlFrontier createFrontier(AdaptiveConcurrencyLimiter limiter) {
+        Path spillDirectory = Paths.get(frontierSpillDirectory.isEmpty() ? System.getProperty("java.io.tmpdir") : frontierSpillDirectory);
+        return new CrawlFrontier(Integer.MAX_VALUE, minDelayMillis, frontierMaxInMemoryLinks, spillDirectory,
+                limiter::getHostLimit, this::getCrawlDelayMillis);
     }
 
     /**
-     * Resets the crawler statistic counts to 0
+     * Getter for the robots.txt crawl delay of a host
+     *
+     * @param host The host
+     * @return The crawl delay, 0 if robots.txt is ignored or not yet fetched for the host
      */
-    private void resetCrawlerStatistics() {
-        REQUEST_COUNT = 0;
-        SUCCESS_COUNT = 0;
-        FAILED_COUNT  = 0;
+    private long getCrawlDelayMillis(String host) {
+        RobotsCache robots = ROBOTS_CACHE;
+        return robots != null ? robots.getCrawlDelayMillis(host) : 0;
+    }
+
+    /**
+     * Creates the store of seen links for a crawl from the configured type
+     *
+     * @return The seen url store
+     */
+    private SeenUrlStore createSeenUrlStore() {
+        if (seenStoreType == SeenUrlStoreType.BLOOM_FILTER) {
+            return new BloomFilterSeenUrlStore(seenStoreExpectedUrls, seenStoreFalsePositiveRate, null);
+        }
+
+        SeenUrlStore store = seenStoreType == SeenUrlStoreType.HASH_SET
+                ? new HashSetSeenUrlStore()
+                : new FingerprintSeenUrlStore(seenStoreExpectedUrls, seenStoreStripes);
+
+        if (seenStoreBloomFilter) {
+            return new BloomFilterSeenUrlStore(seenStoreExpectedUrls, seenStoreFalsePositiveRate, store);
+        }
+        return store;
     }
 
     /**
@@ -87,8 +456,33 @@ public class CrawlerService {
      * @throws CrawlerException Thrown if crawler endpoint is not set or the endpoint is not valid
      */
     public void crawlEndpoint(String startEndpoint) throws CrawlerException {
+        crawlEndpoint(startEndpoint, new CrawlControl());
+    }
+
+    /**
+     * Starts crawling a URL recursively and gathers statistics from the hit sites, paused, resumed and cancelled
+     * through a control
+     *
+     * @param startEndpoint The url of the json document listing the seed links
+     * @param control Pauses, resumes and cancels the crawl from other threads
+     * @throws CrawlerException Thrown if crawler endpoint is not set or the endpoint is not valid
+     */
+    public void crawlEndpoint(String startEndpoint, CrawlControl control) throws CrawlerException {
+        crawl(createCrawl(startEndpoint, control, null));
+    }
+
+    /**
+     * Runs a crawl created by {@link #createCrawl(String, CrawlControl, String)} on the calling thread. Crawls run
+     * at the same time on this service share its worker pool and fetcher, and take turns for the request slots
+     * once all of them are in use.
+     *
+     * @param crawl The crawl to run, not run before
+     * @throws CrawlerException Thrown if crawler endpoint is not set or the endpoint is not valid
+     */
+    public void crawl(CrawlContext crawl) throws CrawlerException {
         Instant start = Instant.now();
-        resetCrawlerService();
+        String startEndpoint = crawl.getStartEndpoint();
+        CURRENT_CRAWL = crawl;
 
         LOGGER.info("Crawler started: " + startEndpoint);
 
@@ -96,83 +490,601 @@ public class CrawlerService {
             throw new CrawlerException("Crawler endpoint is not set!");
         }
 
-        queueStartEndpointLinks(startEndpoint);
+        CrawlFrontier queue = crawl.getFrontier();
+        CrawlControl control = crawl.getControl();
+        boolean finished = false;
+        try {
+            // Opened inside the try so whatever was opened is closed again if a later one fails
+            openCheckpoint(crawl);
+            openPageRecords(crawl);
+            openResultSink(crawl, start);
+            CompletableFuture<Void> seedsRead = new CompletableFuture<>();
+            openCluster(crawl, seedsRead);
+            CompletableFuture<Integer> seeds = queueStartEndpointLinks(crawl);
+            seeds.whenComplete((count, error) -> seedsRead.complete(null));
 
-        // While there are still links to visit or if crawl threads are still executing, continue to poll queue
-        while (LINK_QUEUE.size() > 0 || CRAWLER_THREADS.size() > 0) {
-            String link = LINK_QUEUE.poll();
-            if (link != null) {
-                // If we haven't visited this link, let's crawl it
-                if (!VISITED_LINKS.contains(link)) {
-                    crawlSite(link);
-                    VISITED_LINKS.add(link);
-                } else {
-                    LOGGER.info("Skipping " + link + "...");
+            // Blocks until a request may be started and a host is ready to be crawled, returns null once the queue
+            // is drained and no crawl threads are running
+            try {
+                while (true) {
+                    control.awaitResumed();
+                    acquireRequestPermit(crawl);
+                    String link = queue.take();
+                    if (link == null) {
+                        releaseRequestPermit(crawl);
+                        break;
+                    }
+                    if (control.isCancelled()) {
+                        skipSite(crawl, link, "cancelled");
+                        continue;
+                    }
+                    if (crawl.getBudget().isExhausted()) {
+                        skipSite(crawl, link, "budget " + crawl.getBudget().getExhaustedReason() + " reached");
+                        continue;
+                    }
+                    dispatchSite(crawl, link);
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CrawlerException("Crawler was interrupted", e);
             }
+
+            crawl.getMetrics().finish();
+            awaitStartEndpointLinks(seeds);
+            finished = true;
+        } finally {
+            closeCluster(crawl);
+            closeCheckpoint(crawl, finished);
+            closePageRecords(crawl, finished);
+            closeResultSink(crawl);
+            // Drops the links of an unfinished crawl and its spill files, the crawl is only kept for its statistics
+            queue.clear();
         }
 
         Instant end = Instant.now();
-        LOGGER.info("Finished crawling in " + Duration.between(start, end).getSeconds() + " seconds");
-        printCrawlSummary();
+        LOGGER.info("Finished crawling " + startEndpoint + " in " + Duration.between(start, end).getSeconds() + " seconds");
+        printCrawlSummary(crawl);
+
+    }
+
+    /**
+     * Joins the cluster when cluster mode is enabled. The frontier is held until the coordinating node finds the
+     * crawl finished on every node, since links forwarded by other nodes can arrive after this node's own links
+     * have all been crawled.
+     *
+     * @param crawl The crawl
+     * @param seedsRead Completes once the seed links have been read, until then the node isn't idle
+     * @throws CrawlerException Throws a crawler exception if the cluster configuration is invalid
+     */
+    private void openCluster(CrawlContext crawl, CompletableFuture<?> seedsRead) throws CrawlerException {
+        if (!clusterEnabled) {
+            return;
+        }
+
+        List<String> nodes = new ArrayList<>();
+        for (String node : clusterNodes) {
+            String trimmed = node.trim();
+            if (!trimmed.isEmpty()) {
+                nodes.add(trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed);
+            }
+        }
+        if (nodes.isEmpty()) {
+            throw new CrawlerException("Cluster nodes are not set!");
+        }
+
+        CrawlFrontier queue = crawl.getFrontier();
+        queue.hold();
+        try {
+            ClusterShard cluster = new ClusterShard(new ConsistentHashRing(nodes, clusterVirtualNodes), clusterNodeIndex, clusterTransport,
+                    clusterBatchSize, clusterFlushIntervalMillis, clusterStatusIntervalMillis,
+                    () -> seedsRead.isDone() && queue.isDrained(), queue::release);
+            cluster.start();
+            crawl.setCluster(cluster);
+        } catch (IllegalArgumentException e) {
+            queue.release();
+            throw new CrawlerException("Invalid cluster configuration", e);
+        }
+        LOGGER.info("Crawling as node " + clusterNodeIndex + " of " + nodes.size());
+    }
+
+    /**
+     * Stops delivering forwarded links, keeping the shard for its statistics
+     *
+     * @param crawl The crawl
+     */
+    private void closeCluster(CrawlContext crawl) {
+        ClusterShard cluster = crawl.getCluster();
+        if (cluster != null) {
+            cluster.close();
+        }
+    }
+
+    /**
+     * Queues links forwarded by another cluster node into the most recently started crawl
+     *
+     * @param batch The header with the sender id and sequence number, then the links, one per line after their
+     * depth and a tab
+     * @return False if this node isn't taking part in a crawl, the batch should be sent again later
+     * @throws IllegalArgumentException Thrown if the batch is malformed
+     */
+    public boolean receiveClusterLinks(String batch) {
+        CrawlContext crawl = CURRENT_CRAWL;
+        ClusterShard cluster = crawl.getCluster();
+        if (cluster == null || !cluster.isCrawling()) {
+            return false;
+        }
+        cluster.receive(batch, (link, depth) -> admitLink(crawl, link, depth));
+        return true;
+    }
+
+    /**
+     * Getter for the cluster status of this node
+     *
+     * @return The status of this node's shard, not crawling if cluster mode is disabled or no crawl is running
+     */
+    public ClusterStatus getClusterStatus() {
+        ClusterShard cluster = CURRENT_CRAWL.getCluster();
+        return cluster != null ? cluster.getStatus() : new ClusterStatus(false, false, 0, 0);
+    }
+
+    /**
+     * Finishes this node's part of a cluster crawl, once the coordinating node found every node idle
+     */
+    public void finishClusterCrawl() {
+        ClusterShard cluster = CURRENT_CRAWL.getCluster();
+        if (cluster != null) {
+            cluster.finish();
+        }
+    }
+
+    /**
+     * Restores the checkpoint of an interrupted crawl of the start endpoint when checkpointing is enabled, and
+     * starts checkpointing this crawl
+     *
+     * @param crawl The crawl
+     * @throws CrawlerException Throws a crawler exception if the checkpoint directory can't be written
+     */
+    private void openCheckpoint(CrawlContext crawl) throws CrawlerException {
+        if (!checkpointEnabled) {
+            return;
+        }
+
+        Path directory = resolveDirectory(crawl, checkpointDirectory);
+        CrawlCheckpoint checkpoint = new CrawlCheckpoint(directory, checkpointSegmentBytes,
+                checkpointFlushIntervalMillis, checkpointSnapshotIntervalMillis);
+        try {
+            int restored = checkpoint.open(crawl.getStartEndpoint(), crawl.getVisitedLinks(), crawl.getFrontier());
+            if (restored >= 0) {
+                LOGGER.info("Resuming crawl with " + restored + " pending links");
+            }
+        } catch (IOException e) {
+            checkpoint.close();
+            throw new CrawlerException("Could not open checkpoint in " + directory, e);
+        }
+        crawl.setCheckpoint(checkpoint);
+    }
+
+    /**
+     * Stops checkpointing, deleting the checkpoint of a finished crawl and keeping it to resume an unfinished one
+     *
+     * @param crawl The crawl
+     * @param finished Whether the crawl finished
+     */
+    private void closeCheckpoint(CrawlContext crawl, boolean finished) {
+        CrawlCheckpoint checkpoint = crawl.getCheckpoint();
+        if (checkpoint == null) {
+            return;
+        }
+        crawl.setCheckpoint(null);
 
+        try {
+            if (finished) {
+                checkpoint.finish();
+            } else {
+                checkpoint.close();
+            }
+        } catch (IOException e) {
+            LOGGER.warning("Failed to delete checkpoint: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads the page records of the previous crawl when incremental crawling is enabled. Records that can't be
+     * read are discarded and every page is fetched in full.
+     *
+     * @param crawl The crawl
+     */
+    private void openPageRecords(CrawlContext crawl) {
+        if (!incrementalEnabled) {
+            return;
+        }
+
+        PageRecordStore records = new PageRecordStore(resolveDirectory(crawl, incrementalDirectory));
+        try {
+            records.load();
+        } catch (IOException e) {
+            LOGGER.warning("Failed to load page records, crawling every page in full: " + e.getMessage());
+            records = new PageRecordStore(resolveDirectory(crawl, incrementalDirectory));
+        }
+        crawl.setPageRecords(records);
     }
 
     /**
-     * Queues all links found on the starting endpoint
+     * Saves the page records of a finished crawl for the next incremental crawl, an unfinished crawl keeps the
+     * records of the previous crawl
      *
-     * @throws CrawlerException Throws a crawler exception if the starting endpoint is invalid
+     * @param crawl The crawl
+     * @param finished Whether the crawl finished
      */
-    private void queueStartEndpointLinks(String startEndpoint) throws CrawlerException {
-        JSONObject json;
+    private void closePageRecords(CrawlContext crawl, boolean finished) {
+        PageRecordStore records = crawl.getPageRecords();
+        if (records == null || !finished) {
+            return;
+        }
+
         try {
-            URL url  = new URL(startEndpoint);
-            json = JsonUtil.readJsonFromUrl(url);
+            records.save();
+        } catch (IOException e) {
+            LOGGER.warning("Failed to save page records: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Starts writing the result of every crawled page when results are enabled. Each crawl writes its own files,
+     * named after the time it started.
+     *
+     * @param crawl The crawl
+     * @param start When the crawl started
+     * @throws CrawlerException Throws a crawler exception if the results directory can't be created
+     */
+    private void openResultSink(CrawlContext crawl, Instant start) throws CrawlerException {
+        if (!resultsEnabled) {
+            return;
+        }
+
+        ResultEncoder encoder = resultsFormat == ResultFormat.COLUMNAR ? new ColumnarResultEncoder() : new NdjsonResultEncoder();
+        Path directory = resolveDirectory(crawl, resultsDirectory);
+        try {
+            crawl.setResultSink(new ResultSink(directory, "results-" + start.toEpochMilli(), encoder, resultsBufferSize,
+                    resultsBatchSize, resultsMaxFileBytes, resultsCompress, resultsFlushIntervalMillis));
+        } catch (IOException e) {
+            throw new CrawlerException("Could not open results directory " + directory, e);
+        }
+    }
+
+    /**
+     * Writes the results still buffered and closes the result files, keeping the sink for its statistics
+     *
+     * @param crawl The crawl
+     */
+    private void closeResultSink(CrawlContext crawl) {
+        ResultSink sink = crawl.getResultSink();
+        if (sink != null) {
+            sink.close();
+        }
+    }
+
+    /**
+     * Streams the links found on the starting endpoint into the queue on a crawler thread, so crawling
+     * starts with the first link instead of after the whole document has been downloaded and parsed.
+     * The queue is held until every link has been read, or until the crawl is cancelled, which stops the read.
+     *
+     * @param crawl The crawl
+     * @return Completes with the number of links read once the starting endpoint has been read
+     * @throws CrawlerException Throws a crawler exception if the starting endpoint is not a valid url
+     */
+    private CompletableFuture<Integer> queueStartEndpointLinks(CrawlContext crawl) throws CrawlerException {
+        String startEndpoint = crawl.getStartEndpoint();
+        URL url;
+        try {
+            url = new URL(startEndpoint);
         } catch (MalformedURLException e) {
             throw new CrawlerException("Invalid starting endpoint \"" + startEndpoint + "\"" , e);
-        } catch (IOException e) {
-            throw new CrawlerException("Could not crawl starting endpoint", e);
-        } catch (JSONException e) {
-            throw new CrawlerException("Invalid json", e);
         }
 
-        if (json != null) {
-            Gson gson = new Gson();
-            StartEndpoint endpoint = gson.fromJson(json.toString(), StartEndpoint.class);
+        CrawlFrontier queue = crawl.getFrontier();
+        queue.hold();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                AtomicInteger read = new AtomicInteger();
+                try {
+                    return JsonUtil.readLinksFromUrl(url, link -> {
+                        // Thrown out of the reader so a cancelled crawl stops downloading its seeds
+                        if (crawl.getControl().isCancelled()) {
+                            throw new SeedsCancelledException();
+                        }
+                        read.incrementAndGet();
+                        enqueueLink(crawl, link, 0);
+                    });
+                } catch (SeedsCancelledException e) {
+                    LOGGER.info("Crawl cancelled, stopped reading starting endpoint");
+                    return read.get();
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                } finally {
+                    queue.release();
+                }
+            }, threadPool);
+        } catch (RuntimeException e) {
+            queue.release();
+            throw e;
+        }
+    }
 
-            if (endpoint != null) {
-                LINK_QUEUE.addAll(endpoint.getLinks());
+    /**
+     * Waits for the starting endpoint to be read and surfaces any failure reading it
+     *
+     * @param seeds The result of {@link #queueStartEndpointLinks(CrawlContext)}
+     * @throws CrawlerException Throws a crawler exception if the starting endpoint could not be read
+     */
+    private void awaitStartEndpointLinks(CompletableFuture<Integer> seeds) throws CrawlerException {
+        try {
+            LOGGER.info("Read " + seeds.join() + " links from starting endpoint");
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof JSONException) {
+                throw new CrawlerException("Invalid json", cause);
+            }
+            throw new CrawlerException("Could not crawl starting endpoint", cause);
+        }
+    }
+
+    /**
+     * Waits until fewer requests are outstanding than the crawl's concurrency limit and a request slot of the
+     * service is free, so links stay in the frontier, where they can be spilled to disk, instead of piling up in
+     * the fetcher and executor queues. Crawls waiting for a slot are served in turn, so a crawl with a large
+     * frontier can't starve the others of the shared worker pool.
+     *
+     * @param crawl The crawl
+     * @throws InterruptedException Thrown if the coordinator is interrupted while waiting
+     */
+    private void acquireRequestPermit(CrawlContext crawl) throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = crawl.getConcurrencyLimiter();
+        Semaphore slots = REQUEST_SLOTS;
+        long startNanos = System.nanoTime();
+        boolean waited = false;
+        if (!limiter.tryAcquire()) {
+            limiter.acquire();
+            waited = true;
+        }
+        // A timed try keeps to the queue of waiting crawls, the untimed one would jump it
+        if (!slots.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+            try {
+                slots.acquire();
+            } catch (InterruptedException e) {
+                limiter.release();
+                throw e;
             }
+            waited = true;
+        }
+        if (waited) {
+            crawl.getMetrics().recordBackpressureWait(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Hands back a request permit without a response to learn from
+     *
+     * @param crawl The crawl
+     */
+    private void releaseRequestPermit(CrawlContext crawl) {
+        crawl.getConcurrencyLimiter().release();
+        REQUEST_SLOTS.release();
+    }
+
+    /**
+     * Hands a link back to the frontier without crawling it once the budget is exhausted or the crawl is
+     * cancelled, discarding the rest of the frontier so the crawl finishes as soon as the requests in flight do
+     *
+     * @param crawl The crawl
+     * @param link The link taken from the frontier
+     * @param reason Why the crawl is stopping, for the log
+     */
+    private void skipSite(CrawlContext crawl, String link, String reason) {
+        long discarded = crawl.getFrontier().discardQueued();
+        if (discarded > 0) {
+            LOGGER.info("Crawl " + reason + ", discarding " + discarded + " queued links");
+        }
+
+        Map<String, Integer> depths = crawl.getLinkDepths();
+        if (depths != null) {
+            depths.clear();
+        }
+        releaseSite(crawl, link);
+    }
+
+    /**
+     * Crawls a site once the robots.txt of its host allows it. The rules of a host seen for the first time are
+     * fetched asynchronously and the site is crawled from the thread that completes them, so the coordinator
+     * goes on with other hosts in the meantime. The site keeps its request permit and frontier slot while it
+     * waits, which holds back the rest of its host.
+     *
+     * @param crawl The crawl
+     * @param link The link taken from the frontier
+     */
+    private void dispatchSite(CrawlContext crawl, String link) {
+        RobotsCache robots = ROBOTS_CACHE;
+        if (robots == null) {
+            crawlSite(crawl, link);
+            return;
+        }
+
+        CompletableFuture<RobotsRules> rules = robots.getRules(link);
+        if (rules.isDone()) {
+            crawlAllowedSite(crawl, link, rules.join());
+        } else {
+            rules.thenAccept(loaded -> crawlAllowedSite(crawl, link, loaded));
+        }
+    }
+
+    /**
+     * Crawls a site if the robots.txt rules of its host allow it, otherwise hands the link back without a request
+     *
+     * @param crawl The crawl
+     * @param link The link to crawl
+     * @param rules The robots.txt rules of the host
+     */
+    private void crawlAllowedSite(CrawlContext crawl, String link, RobotsRules rules) {
+        if (rules.allows(UrlUtil.getPath(link))) {
+            crawlSite(crawl, link);
+            return;
+        }
+
+        LOGGER.fine("Robots.txt disallows " + link);
+        crawl.getMetrics().recordRobotsDisallowed();
+        takeLinkDepth(crawl, link);
+        releaseSite(crawl, link);
+    }
+
+    /**
+     * Hands back the request permit and frontier slot of a link that was taken but not crawled
+     *
+     * @param crawl The crawl
+     * @param link The link taken from the frontier
+     */
+    private void releaseSite(CrawlContext crawl, String link) {
+        releaseRequestPermit(crawl);
+        crawl.getFrontier().complete(link);
+
+        CrawlCheckpoint checkpoint = crawl.getCheckpoint();
+        if (checkpoint != null) {
+            checkpoint.visited(link);
         }
     }
 
     /**
      * Crawls a site and queues any child links to the crawler service
+     * @param crawl The crawl
+     * @param link The link to crawl
+     */
+    private void crawlSite(CrawlContext crawl, String link) {
+        LOGGER.fine(() -> "Crawling " + link);
+
+        PageRecordStore records = crawl.getPageRecords();
+        PageRecord record = records != null ? records.get(link) : null;
+        String etag = record != null ? record.getEtag() : null;
+        String lastModified = record != null ? record.getLastModified() : null;
+
+        crawl.getConcurrencyLimiter().requestStarted(UrlUtil.getHost(link));
+        long startNanos = System.nanoTime();
+        try {
+            if (executionMode == ExecutionMode.VIRTUAL) {
+                // Blocking fetch on its own virtual thread
+                threadPool.execute(() -> fetchSite(crawl, link, etag, lastModified));
+            } else {
+                fetcher.fetch(link, etag, lastModified, crawl.getContentPolicy()).whenCompleteAsync((response, error) -> handleResponse(crawl, link, startNanos, response, error), threadPool);
+            }
+        } catch (RuntimeException e) {     // The executor rejected the task
+            handleResponse(crawl, link, startNanos, null, e);
+        }
+    }
+
+    /**
+     * Fetches a site on the calling thread and handles the response
+     *
+     * @param crawl The crawl
      * @param link The link to crawl
+     * @param etag The ETag of the page from the previous crawl, or null
+     * @param lastModified The Last-Modified date of the page from the previous crawl, or null
      */
-    private void crawlSite(String link) {
-        CrawlerThread thread = new CrawlerThread(link);
-        threadPool.execute(thread);
-        CRAWLER_THREADS.add(thread);
+    private void fetchSite(CrawlContext crawl, String link, String etag, String lastModified) {
+        long startNanos = System.nanoTime();
+        FetchResult response;
+        try {
+            response = fetcher.execute(link, etag, lastModified, crawl.getContentPolicy());
+        } catch (IOException | IllegalArgumentException e) {
+            handleResponse(crawl, link, startNanos, null, e);
+            return;
+        }
+        handleResponse(crawl, link, startNanos, response, null);
     }
 
     /**
-     * Adds a link to the queue
+     * Canonicalizes a link and queues it if it is in scope. In cluster mode a link whose host belongs to another
+     * node is forwarded to that node instead.
+     * @param crawl The crawl
      * @param link The link to queue
+     * @param depth The number of links followed from a seed link to reach the link
      */
-    private synchronized void enqueueLink(String link) {
-        if (!VISITED_LINKS.contains(link)) {
-            LINK_QUEUE.add(link);
+    private void enqueueLink(CrawlContext crawl, String link, int depth) {
+        if (link == null) {
+            return;
+        }
+
+        String canonicalLink = crawl.getCanonicalizer().canonicalize(link);
+        if (!crawl.getScope().allows(canonicalLink, depth)) {
+            crawl.getMetrics().recordOutOfScope();
+            return;
         }
+
+        ClusterShard cluster = crawl.getCluster();
+        if (cluster != null && !cluster.owns(UrlUtil.getHost(canonicalLink))) {
+            // Every node reads the seed links itself, so only discovered links are forwarded
+            if (depth > 0) {
+                cluster.forward(canonicalLink, depth);
+            }
+            return;
+        }
+        admitLink(crawl, canonicalLink, depth);
     }
 
     /**
-     * Adds a link to the visited list
+     * Adds a canonical link to the queue if it hasn't been queued before and fits the crawl budget. While the
+     * queue is at its limit new links are dropped without being marked as seen, so they are queued if found
+     * again later. A cancelled crawl queues nothing.
+     * @param crawl The crawl
+     * @param canonicalLink The canonical link to queue, in scope
+     * @param depth The number of links followed from a seed link to reach the link
+     */
+    private void admitLink(CrawlContext crawl, String canonicalLink, int depth) {
+        if (crawl.getControl().isCancelled()) {
+            return;
+        }
+
+        CrawlFrontier queue = crawl.getFrontier();
+        SeenUrlStore visitedLinks = crawl.getVisitedLinks();
+        if (frontierMaxQueuedLinks > 0 && queue.size() >= frontierMaxQueuedLinks) {
+            if (!visitedLinks.contains(canonicalLink)) {
+                crawl.getMetrics().recordDropped();
+            }
+            return;
+        }
+
+        if (visitedLinks.add(canonicalLink)) {
+            // Admitted after the seen check so duplicates don't use up the page caps, and left marked as seen
+            // when over budget since the caps only ever fill up
+            if (!crawl.getBudget().tryAdmit(UrlUtil.getHost(canonicalLink))) {
+                crawl.getMetrics().recordOverBudget();
+                return;
+            }
+
+            Map<String, Integer> depths = crawl.getLinkDepths();
+            if (depths != null) {
+                depths.put(canonicalLink, depth);
+            }
+            // Prefetched before it is queued, otherwise the link can be fetched and its host looked up first
+            prefetchHost(canonicalLink);
+            queue.add(canonicalLink);
+
+            // Journaled after it is queued so a checkpoint snapshot can't miss it
+            CrawlCheckpoint checkpoint = crawl.getCheckpoint();
+            if (checkpoint != null) {
+                checkpoint.enqueued(canonicalLink);
+            }
+        }
+    }
+
+    /**
+     * Starts resolving the host of a link being queued in the background, so its first fetch doesn't wait on
+     * the lookup. Hosts that are already cached or being resolved are skipped by the cache.
      *
-     * @param link The link to add
+     * @param link The link being queued
      */
-    private synchronized void addVisitedLink(String link) {
-        VISITED_LINKS.add(link);
+    private void prefetchHost(String link) {
+        DnsCache dns = dnsCache;
+        if (dns != null) {
+            dns.prefetch(UrlUtil.getHost(link));
+        }
     }
 
     /**
@@ -188,84 +1100,259 @@ public class CrawlerService {
     }
 
     /**
-     * Increments the number of requests and success count
-     */
-    private synchronized void logSuccessfulResponse() {
-        REQUEST_COUNT++;
-        SUCCESS_COUNT++;
-    }
-
-    /**
-     * Increments the number of requests and failed count
+     * Determines whether a failed response suggests the target is overloaded, which lowers the concurrency limits.
+     * 429 TOO MANY REQUESTS, 502 BAD GATEWAY, 503 SERVICE UNAVAILABLE and 504 GATEWAY TIMEOUT count, other errors
+     * such as 404 NOT FOUND or 500 INTERNAL SERVER ERROR are answered by a healthy server and don't.
+     *
+     * @param code The response status code
+     * @return True if the target may be overloaded
      */
-    private synchronized void logFailedResponse() {
-        REQUEST_COUNT++;
-        FAILED_COUNT++;
+    private boolean isOverloadedResponse(int code) {
+        return code == 429 || (code >= 502 && code <= 504);
     }
 
     /**
      * Prints the crawl summary
+     *
+     * @param crawl The crawl
      */
-    private void printCrawlSummary() {
+    private void printCrawlSummary(CrawlContext crawl) {
+        CrawlStatistics statistics = getCrawlStatistics(crawl);
+        HistogramSnapshot latency = statistics.getLatencyMicros();
+        HistogramSnapshot pageSize = statistics.getPageSizeBytes();
+
         LOGGER.info("");
         LOGGER.info("Summary");
-        LOGGER.info("Total requests: " + REQUEST_COUNT);
-        LOGGER.info("Success count : " + SUCCESS_COUNT);
-        LOGGER.info("Failed count  : " + FAILED_COUNT);
+        LOGGER.info("Total requests: " + statistics.getRequestCount());
+        LOGGER.info("Success count : " + statistics.getSuccessCount());
+        LOGGER.info("Failed count  : " + statistics.getFailedCount());
+        LOGGER.info("Bytes read    : " + statistics.getBytesTransferred());
+        LOGGER.info("Unchanged     : " + statistics.getUnchangedCount());
+        LOGGER.info("Skipped bodies: " + statistics.getSkippedBodies());
+        LOGGER.info("Truncated     : " + statistics.getTruncatedBodies());
+        LOGGER.info("Dropped links : " + statistics.getDroppedLinks());
+        LOGGER.info("Out of scope  : " + statistics.getOutOfScopeLinks());
+        LOGGER.info("Over budget   : " + statistics.getOverBudgetLinks());
+        LOGGER.info("Robots denied : " + statistics.getRobotsDisallowedLinks());
+        if (statistics.getBudgetExhausted() != null) {
+            LOGGER.info("Stopped at    : " + statistics.getBudgetExhausted());
+        }
+        LOGGER.info("Throttled (ms): " + statistics.getBackpressureWaitMillis());
+        LOGGER.info("Concurrency   : " + statistics.getConcurrencyLimit() + " of " + statistics.getMaxOutstandingRequests());
+        LOGGER.info("Status counts : " + statistics.getStatusCounts());
+        LOGGER.info("Hosts crawled : " + statistics.getHostCounts().size());
+        if (crawl.getCluster() != null) {
+            LOGGER.info("Cluster links : " + statistics.getForwardedLinks() + " forwarded, " + statistics.getReceivedLinks() + " received");
+        }
+        if (crawl.getResultSink() != null) {
+            LOGGER.info("Results       : " + statistics.getWrittenResults() + " written, " + statistics.getDroppedResults() + " dropped");
+        }
+        LOGGER.info("DNS cache     : " + statistics.getDnsCacheHits() + " hits, " + statistics.getDnsCacheMisses() + " misses, "
+                + statistics.getDnsFailures() + " failures");
+        LOGGER.info(String.format("Latency (ms)  : p50 %.1f, p90 %.1f, p99 %.1f, max %.1f",
+                latency.getP50() / 1000.0, latency.getP90() / 1000.0, latency.getP99() / 1000.0, latency.getMax() / 1000.0));
+        LOGGER.info(String.format("Page size (B) : p50 %d, p90 %d, p99 %d, max %d",
+                pageSize.getP50(), pageSize.getP90(), pageSize.getP99(), pageSize.getMax()));
     }
 
     /**
-     * Crawler Thread class
+     * Queues the links of a successfully fetched page. An incremental crawl reuses the links recorded by the
+     * previous crawl for a page that is unchanged, either because the server answered the conditional request
+     * with a 304 or because the body hashes the same, and records the links of a changed page for the next crawl.
+     *
+     * @param crawl The crawl
+     * @param link The crawled link
+     * @param depth The depth of the crawled link
+     * @param response The successful response
+     * @param contentHash The fingerprint of the body, only used by an incremental crawl
+     * @param outlinks Collects the links queued from the page, or null
+     * @throws IOException Thrown if the page can't be parsed
      */
-    private class CrawlerThread extends Thread {
-        private String link;
+    private void extractLinks(CrawlContext crawl, String link, int depth, FetchResult response, long contentHash,
+                              List<String> outlinks) throws IOException {
+        Consumer<String> enqueueChild = child -> {
+            if (outlinks != null && child != null) {
+                outlinks.add(child);
+            }
+            enqueueLink(crawl, child, depth + 1);
+        };
 
-        public CrawlerThread() { super(); }
+        PageRecordStore records = crawl.getPageRecords();
+        if (records == null) {
+            extract(response, enqueueChild);
+            return;
+        }
 
-        public CrawlerThread(String link) {
-            super();
-            this.link = link;
+        if (response.getStatusCode() == 304) {
+            PageRecord record = records.keep(link);
+            if (record != null) {
+                crawl.getMetrics().recordUnchanged();
+                LinkListCodec.decode(record.getOutlinks(), enqueueChild);
+            }
+            return;
         }
 
-        @Override
-        public void run() {
-            try {
-                LOGGER.info("Crawling " + link);
+        PageRecord previous = records.get(link);
+        if (previous != null && previous.getContentHash() == contentHash) {
+            records.put(link, new PageRecord(response.getEtag(), response.getLastModified(), contentHash, previous.getOutlinks()));
+            crawl.getMetrics().recordUnchanged();
+            LinkListCodec.decode(previous.getOutlinks(), enqueueChild);
+            return;
+        }
 
-                Connection connection = Jsoup.connect(link);
+        Set<String> found = new LinkedHashSet<>();
+        extract(response, child -> {
+            if (child != null) {
+                found.add(crawl.getCanonicalizer().canonicalize(child));
+            }
+        });
+        records.put(link, new PageRecord(response.getEtag(), response.getLastModified(), contentHash, LinkListCodec.encode(found)));
+        found.forEach(enqueueChild);
+    }
+
+    /**
+     * Runs the link extractor over a response, reporting a runtime error of the extractor as a parse failure so
+     * it doesn't escape the response handler
+     *
+     * @param response The fetched response
+     * @param links Receives each link found
+     * @throws IOException If the body couldn't be parsed
+     */
+    private void extract(FetchResult response, Consumer<String> links) throws IOException {
+        try {
+            linkExtractor.extract(response, links);
+        } catch (RuntimeException e) {
+            throw new IOException("Failed to extract links", e);
+        }
+    }
+
+    /**
+     * Removes the depth of a link that is being handled. Links restored from a checkpoint have no recorded depth
+     * and count as seed links.
+     *
+     * @param crawl The crawl
+     * @param link The crawled link
+     * @return The depth of the link, 0 if depth isn't tracked or unknown
+     */
+    private int takeLinkDepth(CrawlContext crawl, String link) {
+        Map<String, Integer> depths = crawl.getLinkDepths();
+        Integer depth = depths != null ? depths.remove(link) : null;
+        return depth != null ? depth : 0;
+    }
+
+    /**
+     * Handles the fetched response of a link, queueing any child links found on a successful page and handing
+     * the page's result to the result sink
+     *
+     * @param crawl The crawl
+     * @param link The crawled link
+     * @param startNanos When the fetch was started, for the latency of a fetch the fetcher didn't time itself
+     * @param response The fetched response, null if the fetch failed
+     * @param error The fetch failure, null if the fetch succeeded
+     */
+    private void handleResponse(CrawlContext crawl, String link, long startNanos, FetchResult response, Throwable error) {
+        // The fetcher's own timing leaves out time spent queued in the client and waiting for a crawler thread
+        long latencyNanos = response != null && response.getFetchNanos() > 0 ? response.getFetchNanos() : System.nanoTime() - startNanos;
+        int depth = takeLinkDepth(crawl, link);
+        boolean overloaded = false;
+        CrawlMetrics metrics = crawl.getMetrics();
+        ResultSink sink = crawl.getResultSink();
+        List<String> outlinks = sink != null ? new ArrayList<>() : null;
+        long contentHash = 0;
+        try {
+            if (error instanceof CompletionException && error.getCause() != null) {
+                error = error.getCause();
+            }
 
-                Connection.Response siteResponse = connection.execute();
+            if (error instanceof IllegalArgumentException) {   // Invalid link
+                LOGGER.warning(String.format("Invalid link %s", link));
+                metrics.recordError(link, latencyNanos);
 
-                int responseCode = siteResponse.statusCode();
-                if (isSuccessfulRequest(responseCode)) {
-                    logSuccessfulResponse();
+            } else if (error != null) {     // Thrown when the connection fails or times out
+                LOGGER.warning(String.format("Failed to crawl %s", link));
+                metrics.recordError(link, latencyNanos);
+                overloaded = true;
 
-                    Document site = connection.get();
+            } else if (isSuccessfulRequest(response.getStatusCode())) {
+                metrics.recordResponse(link, response.getStatusCode(), true, response.getBody().length, latencyNanos);
+                crawl.getBudget().recordBytes(response.getBody().length);
+                if (response.isTruncated()) {
+                    metrics.recordTruncatedBody();
+                }
 
-                    Elements siteLinkTags = site.select("a[href]");
-                    siteLinkTags.forEach(element -> {
-                        String siteLink = element.absUrl("href");
-                        enqueueLink(siteLink);
-                    });
-                } else {
-                    logFailedResponse();
+                ContentPolicy contentPolicy = crawl.getContentPolicy();
+                if (response.isSkipped() || !contentPolicy.isParsed(response.getContentType())) {
+                    metrics.recordSkippedBody();
+                } else if (!contentPolicy.isHeadRequests()) {
+                    // A 304 has no body to hash, an incremental crawl reuses the stored links without one
+                    if ((sink != null || crawl.getPageRecords() != null) && response.getStatusCode() != 304) {
+                        contentHash = FingerprintUtil.fingerprint(response.getBody());
+                    }
+                    extractLinks(crawl, link, depth, response, contentHash, outlinks);
                 }
 
-            } catch (IOException e) {   // Thrown when response is 400, 404, 500, or 502
+            } else {    // 400, 404, 500, 502 etc.
                 LOGGER.warning(String.format("Failed to crawl %s", link));
-                logFailedResponse();
+                overloaded = isOverloadedResponse(response.getStatusCode());
+                metrics.recordResponse(link, response.getStatusCode(), false, response.getBody().length, latencyNanos);
+                // The body of a failed response isn't downloaded, so its content hash stays 0
+                crawl.getBudget().recordBytes(response.getBody().length);
+            }
 
-            } catch (IllegalArgumentException e) {  // Invalid link
-                LOGGER.warning(String.format("Invalid link %s", link));
-                logFailedResponse();
+        } catch (IOException e) {
+            LOGGER.warning(String.format("Failed to parse %s", link));
+
+        } finally {
+            // Offered before the link completes, since the sink is closed once the last link has completed
+            if (sink != null) {
+                sink.offer(createPageResult(link, depth, latencyNanos, response, error, contentHash, outlinks));
             }
 
-            addVisitedLink(link);
+            // The limits are adjusted before the link completes so the frontier schedules its host with the new limit
+            crawl.getConcurrencyLimiter().release(UrlUtil.getHost(link), latencyNanos, overloaded);
+            REQUEST_SLOTS.release();
+            crawl.getFrontier().complete(link);
 
-            synchronized (this) {
-                CRAWLER_THREADS.remove(this);
+            CrawlCheckpoint checkpoint = crawl.getCheckpoint();
+            if (checkpoint != null) {
+                checkpoint.visited(link);
             }
         }
     }
 
+    /**
+     * Creates the result of a crawled page for the result sink
+     *
+     * @param link The crawled link
+     * @param depth The depth of the crawled link
+     * @param latencyNanos How long the fetch took
+     * @param response The fetched response, null if the fetch failed
+     * @param error The fetch failure, null if the fetch succeeded
+     * @param contentHash The fingerprint of the body, 0 if no body was downloaded
+     * @param outlinks The links queued from the page
+     * @return The page result
+     */
+    private PageResult createPageResult(String link, int depth, long latencyNanos, FetchResult response, Throwable error,
+                                        long contentHash, List<String> outlinks) {
+        if (response == null) {
+            String message = error != null && error.getMessage() != null ? error.getMessage()
+                    : error != null ? error.getClass().getSimpleName() : "No response";
+            return new PageResult(link, depth, 0, message, latencyNanos / 1000, 0, 0, System.currentTimeMillis(), outlinks);
+        }
+        return new PageResult(link, depth, response.getStatusCode(), null, latencyNanos / 1000, response.getBody().length,
+                contentHash, System.currentTimeMillis(), outlinks);
+    }
+
+    /**
+     * Thrown out of the seed reader once the crawl is cancelled. Not an {@link IllegalStateException}, which the
+     * reader takes for invalid json.
+     */
+    private static class SeedsCancelledException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private SeedsCancelledException() {
+            super(null, null, false, false);
+        }
+    }
+
 }
@@ -0,0 +1,226 @@
+package com.jasminefortich.crawler.services;
+
+import okhttp3.Dns;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches host name lookups for the fetcher, and resolves newly discovered hosts ahead of their first fetch.
+ *
+ * Addresses are kept for a fixed time to live, and failed lookups for a shorter negative time to live so a
+ * dead host isn't looked up again for every one of its links. The cache holds a maximum number of hosts,
+ * evicting the least recently used host first. A prefetch resolves a host on the prefetch executor so the
+ * fetch that follows finds it cached instead of stalling a worker on the lookup, and a lookup that arrives
+ * while a prefetch of its host is running waits for that prefetch instead of resolving the host again.
+ *
+ * Record time to lives aren't visible through the JVM resolver, so every entry uses the configured ones.
+ */
+public class DnsCache implements Dns {
+
+    private final Dns resolver;
+    private final Executor prefetchExecutor;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final int maxPendingPrefetches;
+
+    private final Map<String, Entry> entries;
+    private final AtomicInteger pendingPrefetches = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder prefetches = new LongAdder();
+
+    /**
+     * Creates an empty cache
+     *
+     * @param resolver The resolver looked up on a cache miss
+     * @param prefetchExecutor The executor prefetches resolve hosts on
+     * @param ttlMillis How long resolved addresses are kept
+     * @param negativeTtlMillis How long a failed lookup is kept
+     * @param maxHosts The maximum number of hosts kept
+     * @param maxPendingPrefetches The maximum number of prefetches queued or running, further prefetches are skipped
+     */
+    public DnsCache(Dns resolver, Executor prefetchExecutor, long ttlMillis, long negativeTtlMillis, int maxHosts,
+                    int maxPendingPrefetches) {
+        if (maxHosts < 1) {
+            throw new IllegalArgumentException("Max hosts must be at least 1");
+        }
+        this.resolver = resolver;
+        this.prefetchExecutor = prefetchExecutor;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(negativeTtlMillis);
+        this.maxPendingPrefetches = maxPendingPrefetches;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxHosts;
+            }
+        };
+    }
+
+    /**
+     * Looks up the addresses of a host, from the cache when possible
+     *
+     * @param hostname The host name
+     * @return The addresses of the host
+     * @throws UnknownHostException Thrown if the host can't be resolved, now or within the negative time to live
+     */
+    @Override
+    public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+        String host = hostname.toLowerCase();
+        Entry entry;
+        boolean resolve = false;
+        synchronized (entries) {
+            entry = entries.get(host);
+            if (entry == null || entry.isExpired(System.nanoTime())) {
+                entry = new Entry();
+                entries.put(host, entry);
+                resolve = true;
+            }
+        }
+
+        if (resolve) {
+            misses.increment();
+            resolve(host, entry);
+        } else {
+            hits.increment();
+        }
+
+        try {
+            return entry.addresses.join();
+        } catch (CompletionException e) {
+            UnknownHostException failure = new UnknownHostException(hostname);
+            failure.initCause(e.getCause());
+            throw failure;
+        }
+    }
+
+    /**
+     * Resolves a host in the background if it isn't cached or being resolved already
+     *
+     * @param hostname The host name
+     */
+    public void prefetch(String hostname) {
+        if (hostname == null || hostname.isEmpty()) {
+            return;
+        }
+
+        String host = hostname.toLowerCase();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(host);
+            if (entry != null && !entry.isExpired(System.nanoTime())) {
+                return;
+            }
+            if (pendingPrefetches.get() >= maxPendingPrefetches) {
+                return;
+            }
+            entry = new Entry();
+            entries.put(host, entry);
+        }
+
+        Entry prefetched = entry;
+        pendingPrefetches.incrementAndGet();
+        prefetches.increment();
+        try {
+            prefetchExecutor.execute(() -> {
+                try {
+                    resolve(host, prefetched);
+                } finally {
+                    pendingPrefetches.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The executor is shutting down, lookups already waiting on the entry resolve the host themselves
+            pendingPrefetches.decrementAndGet();
+            synchronized (entries) {
+                entries.remove(host, prefetched);
+            }
+            resolve(host, prefetched);
+        }
+    }
+
+    /**
+     * Getter for the number of lookups answered from the cache, including lookups that waited for a prefetch
+     *
+     * @return The number of cache hits
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Getter for the number of lookups that resolved the host themselves
+     *
+     * @return The number of cache misses
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Getter for the number of failed resolutions, by lookups or prefetches
+     *
+     * @return The number of failures
+     */
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    /**
+     * Getter for the number of prefetches started
+     *
+     * @return The number of prefetches
+     */
+    public long getPrefetchCount() {
+        return prefetches.sum();
+    }
+
+    /**
+     * Getter for the number of hosts cached or being resolved
+     *
+     * @return The number of hosts
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private void resolve(String host, Entry entry) {
+        try {
+            List<InetAddress> addresses = resolver.lookup(host);
+            entry.expiresNanos = System.nanoTime() + ttlNanos;
+            entry.addresses.complete(addresses);
+        } catch (UnknownHostException | RuntimeException e) {
+            failures.increment();
+            entry.expiresNanos = System.nanoTime() + negativeTtlNanos;
+            entry.addresses.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * The addresses of a host, pending until the host has been resolved
+     */
+    private static class Entry {
+        private final CompletableFuture<List<InetAddress>> addresses = new CompletableFuture<>();
+        private volatile long expiresNanos;
+
+        private boolean isExpired(long now) {
+            return addresses.isDone() && expiresNanos - now <= 0;
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.jasminefortich.crawler.services;
+
+import com.jasminefortich.crawler.models.FetchResult;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Downloads pages for the crawler service
+ */
+public interface Fetcher extends AutoCloseable {
+
+    /**
+     * Fetches a link without blocking the calling thread.
+     * The future completes with the response for any status code, and completes exceptionally with an
+     * IOException if the request could not be made or an IllegalArgumentException if the link is invalid.
+     *
+     * @param link The link to fetch
+     * @return Future of the fetched response
+     */
+    default CompletableFuture<FetchResult> fetch(String link) {
+        return fetch(link, null, null);
+    }
+
+    /**
+     * Fetches a link without blocking the calling thread, only if it changed since it was last fetched.
+     * An unchanged page completes with a 304 response without a body.
+     *
+     * @param link The link to fetch
+     * @param etag The ETag of the last response, or null
+     * @param lastModified The Last-Modified date of the last response, or null
+     * @return Future of the fetched response
+     */
+    CompletableFuture<FetchResult> fetch(String link, String etag, String lastModified);
+
+    /**
+     * Fetches a link without blocking the calling thread, downloading only as much of the response as the content
+     * policy allows. Fetchers that don't apply content policies download the body in full.
+     *
+     * @param link The link to fetch
+     * @param etag The ETag of the last response, or null
+     * @param lastModified The Last-Modified date of the last response, or null
+     * @param policy Decides from the headers whether and how much of the body is read
+     * @return Future of the fetched response
+     */
+    default CompletableFuture<FetchResult> fetch(String link, String etag, String lastModified, ContentPolicy policy) {
+        return fetch(link, etag, lastModified);
+    }
+
+    /**
+     * Fetches a link, blocking the calling thread until the response has been read
+     *
+     * @param link The link to fetch
+     * @return The fetched response for any status code
+     * @throws IOException Thrown if the request could not be made
+     * @throws IllegalArgumentException Thrown if the link is invalid
+     */
+    default FetchResult execute(String link) throws IOException {
+        return execute(link, null, null);
+    }
+
+    /**
+     * Fetches a link only if it changed since it was last fetched, blocking the calling thread until the
+     * response has been read. An unchanged page returns a 304 response without a body.
+     *
+     * @param link The link to fetch
+     * @param etag The ETag of the last response, or null
+     * @param lastModified The Last-Modified date of the last response, or null
+     * @return The fetched response for any status code
+     * @throws IOException Thrown if the request could not be made
+     * @throws IllegalArgumentException Thrown if the link is invalid
+     */
+    FetchResult execute(String link, String etag, String lastModified) throws IOException;
+
+    /**
+     * Fetches a link, blocking the calling thread until as much of the response as the content policy allows has
+     * been read. Fetchers that don't apply content policies download the body in full.
+     *
+     * @param link The link to fetch
+     * @param etag The ETag of the last response, or null
+     * @param lastModified The Last-Modified date of the last response, or null
+     * @param policy Decides from the headers whether and how much of the body is read
+     * @return The fetched response for any status code
+     * @throws IOException Thrown if the request could not be made
+     * @throws IllegalArgumentException Thrown if the link is invalid
+     */
+    default FetchResult execute(String link, String etag, String lastModified, ContentPolicy policy) throws IOException {
+        return execute(link, etag, lastModified);
+    }
+
+    /**
+     * Releases the connections and threads held by the fetcher
+     */
+    @Override
+    void close();
+
+}
@@ -0,0 +1,237 @@
+package com.jasminefortich.crawler.services;
+
+import com.jasminefortich.crawler.utils.FingerprintUtil;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Seen url store holding 64 bit link fingerprints instead of the link strings.
+ *
+ * Fingerprints are kept in open addressing tables of primitive longs, split into independently locked
+ * stripes so concurrent crawler threads rarely contend. Each link costs 8 to 16 bytes of heap depending on
+ * the table load. Two different links share a fingerprint with a probability of roughly n² / 2^65, at which
+ * point the second link is treated as already seen.
+ */
+public class FingerprintSeenUrlStore implements SeenUrlStore {
+
+    private static final double MAX_LOAD = 0.75;
+    private static final int MIN_STRIPE_CAPACITY = 16;
+    private static final String FORMAT = "fingerprint";
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+
+    /**
+     * Creates a fingerprint store
+     *
+     * @param expectedUrls The number of links the store is presized for
+     * @param stripeCount The number of independently locked stripes, rounded up to a power of two
+     */
+    public FingerprintSeenUrlStore(long expectedUrls, int stripeCount) {
+        int stripeTotal = stripeCount <= 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        long perStripe = Math.max(MIN_STRIPE_CAPACITY, (long) Math.ceil(expectedUrls / MAX_LOAD / stripeTotal));
+
+        this.stripes = new Stripe[stripeTotal];
+        this.stripeMask = stripeTotal - 1;
+        for (int i = 0; i < stripeTotal; i++) {
+            stripes[i] = new Stripe(tableSizeFor(perStripe));
+        }
+    }
+
+    @Override
+    public boolean add(String link) {
+        return addFingerprint(FingerprintUtil.fingerprint(link));
+    }
+
+    /**
+     * Records a fingerprint as seen
+     *
+     * @param fingerprint The non zero fingerprint
+     * @return True if the fingerprint had not been seen before, else false
+     */
+    public boolean addFingerprint(long fingerprint) {
+        return stripeFor(fingerprint).add(fingerprint);
+    }
+
+    @Override
+    public boolean contains(String link) {
+        return containsFingerprint(FingerprintUtil.fingerprint(link));
+    }
+
+    /**
+     * Checks whether a fingerprint has been seen
+     *
+     * @param fingerprint The non zero fingerprint
+     * @return True if the fingerprint has been seen
+     */
+    public boolean containsFingerprint(long fingerprint) {
+        return stripeFor(fingerprint).contains(fingerprint);
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    @Override
+    public long getMemoryBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            bytes += stripe.capacity() * (long) Long.BYTES;
+        }
+        return bytes;
+    }
+
+    @Override
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    /**
+     * Writes every fingerprint, 8 bytes per link, stripe by stripe
+     */
+    @Override
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeUTF(FORMAT);
+        for (Stripe stripe : stripes) {
+            long[] fingerprints = stripe.fingerprints();
+            out.writeInt(fingerprints.length);
+            for (long fingerprint : fingerprints) {
+                out.writeLong(fingerprint);
+            }
+        }
+        out.writeInt(-1);
+    }
+
+    @Override
+    public void readFrom(DataInputStream in) throws IOException {
+        SeenUrlStores.checkFormat(in, FORMAT);
+        int count;
+        while ((count = in.readInt()) >= 0) {
+            for (int i = 0; i < count; i++) {
+                addFingerprint(in.readLong());
+            }
+        }
+    }
+
+    /**
+     * Picks the stripe of a fingerprint from its high bits, the low bits index the stripe table
+     *
+     * @param fingerprint The fingerprint
+     * @return The stripe holding the fingerprint
+     */
+    private Stripe stripeFor(long fingerprint) {
+        return stripes[(int) (fingerprint >>> 40) & stripeMask];
+    }
+
+    /**
+     * Rounds a capacity up to a power of two table size
+     *
+     * @param capacity The required capacity
+     * @return The table size
+     */
+    private static int tableSizeFor(long capacity) {
+        if (capacity >= 1 << 30) {
+            return 1 << 30;
+        }
+        return Integer.highestOneBit((int) Math.max(1, capacity - 1) << 1);
+    }
+
+    /**
+     * Linear probing hash set of non zero longs, guarded by its own monitor
+     */
+    private static class Stripe {
+        private long[] table;
+        private int size;
+
+        private Stripe(int capacity) {
+            this.table = new long[capacity];
+        }
+
+        private synchronized boolean add(long fingerprint) {
+            if (insert(table, fingerprint)) {
+                size++;
+                if (size > table.length * MAX_LOAD) {
+                    resize();
+                }
+                return true;
+            }
+            return false;
+        }
+
+        private synchronized boolean contains(long fingerprint) {
+            int mask = table.length - 1;
+            for (int i = (int) fingerprint & mask; ; i = (i + 1) & mask) {
+                long slot = table[i];
+                if (slot == fingerprint) {
+                    return true;
+                }
+                if (slot == 0) {
+                    return false;
+                }
+            }
+        }
+
+        private synchronized int size() {
+            return size;
+        }
+
+        private synchronized int capacity() {
+            return table.length;
+        }
+
+        private synchronized long[] fingerprints() {
+            long[] fingerprints = new long[size];
+            int next = 0;
+            for (long slot : table) {
+                if (slot != 0) {
+                    fingerprints[next++] = slot;
+                }
+            }
+            return fingerprints;
+        }
+
+        private synchronized void clear() {
+            Arrays.fill(table, 0);
+            size = 0;
+        }
+
+        private void resize() {
+            if (table.length >= 1 << 30) {
+                throw new IllegalStateException("Fingerprint stripe is full");
+            }
+
+            long[] resized = new long[table.length << 1];
+            for (long fingerprint : table) {
+                if (fingerprint != 0) {
+                    insert(resized, fingerprint);
+                }
+            }
+            table = resized;
+        }
+
+        private static boolean insert(long[] table, long fingerprint) {
+            int mask = table.length - 1;
+            for (int i = (int) fingerprint & mask; ; i = (i + 1) & mask) {
+                long slot = table[i];
+                if (slot == fingerprint) {
+                    return false;
+                }
+                if (slot == 0) {
+                    table[i] = fingerprint;
+                    return true;
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.jasminefortich.crawler.services;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Exact seen url store holding the full link strings in a concurrent set
+ */
+public class HashSetSeenUrlStore implements SeenUrlStore {
+
+    // Approximate per entry cost of a ConcurrentHashMap node plus a String header and its backing array
+    private static final long ENTRY_OVERHEAD_BYTES = 32 + 24 + 16;
+
+    private static final String FORMAT = "hash-set";
+
+    private final Set<String> links = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public boolean add(String link) {
+        return links.add(link);
+    }
+
+    @Override
+    public boolean contains(String link) {
+        return links.contains(link);
+    }
+
+    @Override
+    public long size() {
+        return links.size();
+    }
+
+    @Override
+    public long getMemoryBytes() {
+        long bytes = 0;
+        for (String link : links) {
+            bytes += ENTRY_OVERHEAD_BYTES + link.length();
+        }
+        return bytes;
+    }
+
+    @Override
+    public void clear() {
+        links.clear();
+    }
+
+    @Override
+    public void writeTo(DataOutputStream out) throws IOException {
+        List<String> snapshot = new ArrayList<>(links);
+        out.writeUTF(FORMAT);
+        out.writeInt(snapshot.size());
+        for (String link : snapshot) {
+            out.writeUTF(link);
+        }
+    }
+
+    @Override
+    public void readFrom(DataInputStream in) throws IOException {
+        SeenUrlStores.checkFormat(in, FORMAT);
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            links.add(in.readUTF());
+        }
+    }
+
+}
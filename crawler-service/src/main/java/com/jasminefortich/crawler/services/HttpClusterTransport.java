@@ -0,0 +1,81 @@
+package com.jasminefortich.crawler.services;
+
+import com.jasminefortich.crawler.models.ClusterStatus;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * Cluster transport over the cluster endpoints of the other nodes' crawler services. Link batches are posted
+ * as plain text, and a node that isn't crawling yet answers with a 503 so the batch is sent again later.
+ */
+public class HttpClusterTransport implements ClusterTransport {
+
+    private final HttpClient client;
+    private final Duration timeout;
+
+    /**
+     * Creates a transport
+     *
+     * @param timeoutMillis The connect and request timeout
+     */
+    public HttpClusterTransport(long timeoutMillis) {
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    @Override
+    public void sendLinks(String node, String batch) throws IOException {
+        send(HttpRequest.newBuilder(URI.create(node + "/cluster/links"))
+                .header("Content-Type", "text/plain; charset=utf-8")
+                .POST(HttpRequest.BodyPublishers.ofString(batch, StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public ClusterStatus getStatus(String node) throws IOException {
+        String body = send(HttpRequest.newBuilder(URI.create(node + "/cluster/status")).GET());
+        try {
+            JSONObject status = new JSONObject(body);
+            return new ClusterStatus(status.getBoolean("crawling"), status.getBoolean("idle"),
+                    status.getLong("sentLinks"), status.getLong("receivedLinks"));
+        } catch (JSONException e) {
+            throw new IOException("Invalid status from " + node, e);
+        }
+    }
+
+    @Override
+    public void finish(String node) throws IOException {
+        send(HttpRequest.newBuilder(URI.create(node + "/cluster/finish")).POST(HttpRequest.BodyPublishers.noBody()));
+    }
+
+    /**
+     * Sends a request and reads the response body
+     *
+     * @throws IOException Thrown if the request fails or the node answers with an error status
+     */
+    private String send(HttpRequest.Builder builder) throws IOException {
+        HttpRequest request = builder.timeout(timeout).build();
+        HttpResponse<String> response;
+        try {
+            response = client.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        }
+
+        if (response.statusCode() >= 300) {
+            throw new IOException(request.uri() + " answered " + response.statusCode());
+        }
+        return response.body();
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.jasminefortich.crawler.services;
+
+import com.jasminefortich.crawler.models.FetchResult;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.select.Elements;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Link extractor that parses the whole page into a jsoup document and selects its anchors
+ */
+public class JsoupLinkExtractor implements LinkExtractor {
+
+    @Override
+    public void extract(FetchResult page, Consumer<String> links) throws IOException {
+        Document site = Jsoup.parse(new ByteArrayInputStream(page.getBody()), page.getCharset(), page.getUrl());
+
+        Elements siteLinkTags = site.select("a[href]");
+        siteLinkTags.forEach(element -> links.accept(element.absUrl("href")));
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.jasminefortich.crawler.services;
+
+import com.jasminefortich.crawler.models.FetchResult;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Extracts the absolute links of the anchors on a fetched page
+ */
+public interface LinkExtractor {
+
+    /**
+     * Extracts links from a page, resolved against the page url or its {@code <base href>}
+     *
+     * @param page The fetched page
+     * @param links Receives every absolute link in document order
+     * @throws IOException Thrown if the page body can't be read
+     */
+    void extract(FetchResult page, Consumer<String> links) throws IOException;
+
+}
@@ -0,0 +1,298 @@
+package com.jasminefortich.crawler.services;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * First in, first out queue of links kept on disk, for links that don't fit in the frontier's memory.
+ *
+ * Links are appended sequentially to segment files of a fixed number of links and read back in order, a
+ * segment being deleted once it has been read. Each link is front coded against the link before it, storing
+ * only the length of the shared prefix and the remaining bytes, which keeps segments of links from the same
+ * site small. Memory use is a few buffers regardless of the number of links queued.
+ *
+ * The queue is not thread safe, the frontier only uses it while holding its lock.
+ */
+public class LinkSpillQueue implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path parentDirectory;
+    private final int segmentLinks;
+
+    private Path directory;
+    private long nextSegmentNumber = 0;
+    private long size = 0;
+
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private Segment writeSegment;
+    private DataOutputStream writer;
+    private byte[] lastWritten = new byte[0];
+
+    private SegmentReader reader;
+
+    /**
+     * Creates a spill queue, the directory holding its segments is only created once a link is added
+     *
+     * @param parentDirectory The directory to create the segment directory in
+     * @param segmentLinks The number of links per segment file
+     */
+    public LinkSpillQueue(Path parentDirectory, int segmentLinks) {
+        if (segmentLinks < 1) {
+            throw new IllegalArgumentException("Segment links must be at least 1");
+        }
+        this.parentDirectory = parentDirectory;
+        this.segmentLinks = segmentLinks;
+    }
+
+    /**
+     * Appends a link to the end of the queue
+     *
+     * @param link The link to append
+     * @throws IOException Thrown if the segment can't be written
+     */
+    public void add(String link) throws IOException {
+        if (writer == null) {
+            openWriteSegment();
+        }
+
+        byte[] bytes = link.getBytes(StandardCharsets.UTF_8);
+        int shared = sharedPrefixLength(lastWritten, bytes);
+        writeVarInt(writer, shared);
+        writeVarInt(writer, bytes.length - shared);
+        writer.write(bytes, shared, bytes.length - shared);
+        lastWritten = bytes;
+
+        writeSegment.count++;
+        size++;
+        if (writeSegment.count >= segmentLinks) {
+            closeWriteSegment();
+        }
+    }
+
+    /**
+     * Removes links from the front of the queue
+     *
+     * @param maxLinks The maximum number of links to remove
+     * @param links Receives the removed links in queue order
+     * @return The number of links removed
+     * @throws IOException Thrown if a segment can't be read
+     */
+    public int poll(int maxLinks, Consumer<String> links) throws IOException {
+        int polled = 0;
+        while (polled < maxLinks && size > 0) {
+            if (reader == null) {
+                if (segments.isEmpty()) {
+                    closeWriteSegment();
+                }
+                reader = new SegmentReader(segments.poll());
+            }
+
+            links.accept(reader.next());
+            polled++;
+            size--;
+
+            if (reader.remaining() == 0) {
+                reader.close();
+                Files.deleteIfExists(reader.segment.path);
+                reader = null;
+            }
+        }
+        return polled;
+    }
+
+    /**
+     * Reads every queued link in queue order without removing them
+     *
+     * @param links Receives the queued links
+     * @throws IOException Thrown if a segment can't be read
+     */
+    public void forEach(Consumer<String> links) throws IOException {
+        if (reader != null) {
+            try (SegmentReader segment = new SegmentReader(reader.segment)) {
+                segment.skip(reader.read);
+                while (segment.remaining() > 0) {
+                    links.accept(segment.next());
+                }
+            }
+        }
+
+        if (writer != null) {
+            writer.flush();
+        }
+        for (Segment segment : segments) {
+            readAll(segment, links);
+        }
+        if (writeSegment != null) {
+            readAll(writeSegment, links);
+        }
+    }
+
+    /**
+     * Getter for the number of queued links
+     *
+     * @return The number of links on disk
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Removes every queued link and deletes the segment directory
+     */
+    @Override
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+        writeSegment = null;
+        segments.clear();
+        lastWritten = new byte[0];
+        size = 0;
+
+        if (directory != null) {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(directory);
+            directory = null;
+        }
+    }
+
+    private void openWriteSegment() throws IOException {
+        if (directory == null) {
+            Files.createDirectories(parentDirectory);
+            directory = Files.createTempDirectory(parentDirectory, "frontier-");
+        }
+
+        writeSegment = new Segment(directory.resolve(String.format("spill-%012d.seg", nextSegmentNumber++)));
+        writer = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(writeSegment.path), BUFFER_SIZE));
+        lastWritten = new byte[0];
+    }
+
+    /**
+     * Closes the segment being written so it can be read, even if it isn't full
+     */
+    private void closeWriteSegment() throws IOException {
+        if (writer == null) {
+            return;
+        }
+        writer.close();
+        writer = null;
+        segments.add(writeSegment);
+        writeSegment = null;
+    }
+
+    private static void readAll(Segment segment, Consumer<String> links) throws IOException {
+        try (SegmentReader reader = new SegmentReader(segment)) {
+            while (reader.remaining() > 0) {
+                links.accept(reader.next());
+            }
+        }
+    }
+
+    private static int sharedPrefixLength(byte[] previous, byte[] bytes) {
+        int length = Math.min(previous.length, bytes.length);
+        int shared = 0;
+        while (shared < length && previous[shared] == bytes[shared]) {
+            shared++;
+        }
+        return shared;
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed spill segment");
+    }
+
+    /**
+     * A segment file and the number of links written to it
+     */
+    private static class Segment {
+        private final Path path;
+        private int count = 0;
+
+        private Segment(Path path) {
+            this.path = path;
+        }
+    }
+
+    /**
+     * Sequential reader of the links of a segment
+     */
+    private static class SegmentReader implements Closeable {
+        private final Segment segment;
+        private final DataInputStream in;
+        private byte[] last = new byte[0];
+        private int read = 0;
+
+        private SegmentReader(Segment segment) throws IOException {
+            this.segment = segment;
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment.path), BUFFER_SIZE));
+        }
+
+        private String next() throws IOException {
+            int shared = readVarInt(in);
+            int suffix = readVarInt(in);
+            if (shared > last.length) {
+                throw new IOException("Malformed spill segment");
+            }
+
+            byte[] bytes = new byte[shared + suffix];
+            System.arraycopy(last, 0, bytes, 0, shared);
+            in.readFully(bytes, shared, suffix);
+            last = bytes;
+            read++;
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private void skip(int links) throws IOException {
+            for (int i = 0; i < links; i++) {
+                next();
+            }
+        }
+
+        private int remaining() {
+            return segment.count - read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.jasminefortich.crawler.services;
+
+import com.jasminefortich.crawler.models.PageResult;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes each result as a JSON object on its own line. The content hash is written as 16 hex digits, since
+ * JSON readers that parse numbers as doubles would round it.
+ */
+public class NdjsonResultEncoder implements ResultEncoder {
+
+    private final StringBuilder buffer = new StringBuilder();
+
+    @Override
+    public String getExtension() {
+        return "ndjson";
+    }
+
+    @Override
+    public void writeHeader(OutputStream out) {
+        // Every line stands on its own
+    }
+
+    @Override
+    public void writeBatch(List<PageResult> results, OutputStream out) throws IOException {
+        buffer.setLength(0);
+        for (PageResult result : results) {
+            buffer.append("{\"link\":").append(JSONObject.quote(result.getLink()))
+                    .append(",\"depth\":").append(result.getDepth())
+                    .append(",\"statusCode\":").append(result.getStatusCode())
+                    .append(",\"error\":").append(result.getError() != null ? JSONObject.quote(result.getError()) : "null")
+                    .append(",\"latencyMicros\":").append(result.getLatencyMicros())
+                    .append(",\"bytes\":").append(result.getBytes())
+                    .append(",\"contentHash\":\"");
+            String hash = Long.toHexString(result.getContentHash());
+            for (int i = hash.length(); i < 16; i++) {
+                buffer.append('0');
+            }
+            buffer.append(hash)
+                    .append("\",\"fetchedAtMillis\":").append(result.getFetchedAtMillis())
+                    .append(",\"outlinks\":[");
+            List<String> outlinks = result.getOutlinks();
+            for (int i = 0; i < outlinks.size(); i++) {
+                if (i > 0) {
+                    buffer.append(',');
+                }
+                buffer.append(JSONObject.quote(outlinks.get(i)));
+            }
+            buffer.append("]}\n");
+        }
+        out.write(buffer.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+}
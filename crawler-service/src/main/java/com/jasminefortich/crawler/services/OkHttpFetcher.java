@@ -0,0 +1,244 @@
+package com.jasminefortich.crawler.services;
+
+import com.jasminefortich.crawler.models.FetchResult;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Dns;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetcher backed by a shared OkHttp client.
+ *
+ * Connections are pooled and kept alive per host, and TLS connections negotiate HTTP/2 through ALPN when
+ * the server offers it so concurrent requests to the same host are multiplexed over one connection.
+ * Asynchronous requests are limited by the total and per host request limits, blocking requests are bounded by the caller.
+ * The fetch time of a result is measured from when the client starts running the request, so time spent waiting in
+ * the dispatcher's queue isn't taken for latency.
+ * When given a {@link ContentPolicy} the body is streamed only as far as the policy allows, a body that is skipped or
+ * truncated is left unread and its connection is closed instead of returned to the pool.
+ */
+public class OkHttpFetcher implements Fetcher {
+
+    private static final byte[] NO_BODY = new byte[0];
+
+    private final OkHttpClient client;
+
+    /**
+     * Creates a fetcher
+     *
+     * @param maxRequests The maximum number of requests executing at once
+     * @param maxRequestsPerHost The maximum number of requests executing at once for a single host
+     * @param maxIdleConnections The maximum number of idle connections kept in the pool
+     * @param keepAliveMillis How long an idle connection is kept in the pool
+     * @param timeoutMillis The connect and read timeout of a request
+     */
+    public OkHttpFetcher(int maxRequests, int maxRequestsPerHost, int maxIdleConnections, long keepAliveMillis, long timeoutMillis) {
+        this(maxRequests, maxRequestsPerHost, maxIdleConnections, keepAliveMillis, timeoutMillis, Dns.SYSTEM);
+    }
+
+    /**
+     * Creates a fetcher that resolves hosts through the given resolver
+     *
+     * @param maxRequests The maximum number of requests executing at once
+     * @param maxRequestsPerHost The maximum number of requests executing at once for a single host
+     * @param maxIdleConnections The maximum number of idle connections kept in the pool
+     * @param keepAliveMillis How long an idle connection is kept in the pool
+     * @param timeoutMillis The connect and read timeout of a request
+     * @param dns The resolver looked up when a new connection is opened
+     */
+    public OkHttpFetcher(int maxRequests, int maxRequestsPerHost, int maxIdleConnections, long keepAliveMillis, long timeoutMillis,
+                         Dns dns) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+        this.client = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                // Runs once the dispatcher executes the call, not when it is queued
+                .addInterceptor(chain -> {
+                    CallTimer timer = chain.request().tag(CallTimer.class);
+                    if (timer != null) {
+                        timer.startNanos = System.nanoTime();
+                    }
+                    return chain.proceed(chain.request());
+                })
+                .dns(dns)
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveMillis, TimeUnit.MILLISECONDS))
+                .connectTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .readTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .followRedirects(true)
+                .build();
+    }
+
+    @Override
+    public CompletableFuture<FetchResult> fetch(String link, String etag, String lastModified) {
+        return fetch(link, etag, lastModified, null);
+    }
+
+    @Override
+    public CompletableFuture<FetchResult> fetch(String link, String etag, String lastModified, ContentPolicy policy) {
+        CompletableFuture<FetchResult> future = new CompletableFuture<>();
+
+        boolean head = policy != null && policy.isHeadRequests();
+        Request request;
+        try {
+            request = buildRequest(link, etag, lastModified, head);
+        } catch (IllegalArgumentException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                if ("HEAD".equals(call.request().method()) && isHeadRejected(response)) {
+                    response.close();
+                    client.newCall(buildRequest(link, etag, lastModified, false)).enqueue(this);
+                    return;
+                }
+
+                try (ResponseBody body = response.body()) {
+                    future.complete(toFetchResult(response, body, policy, call.request().tag(CallTimer.class)));
+                } catch (IOException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+
+        return future;
+    }
+
+    @Override
+    public FetchResult execute(String link, String etag, String lastModified) throws IOException {
+        return execute(link, etag, lastModified, null);
+    }
+
+    @Override
+    public FetchResult execute(String link, String etag, String lastModified, ContentPolicy policy) throws IOException {
+        boolean head = policy != null && policy.isHeadRequests();
+        Response response = client.newCall(buildRequest(link, etag, lastModified, head)).execute();
+        if (head && isHeadRejected(response)) {
+            response.close();
+            response = client.newCall(buildRequest(link, etag, lastModified, false)).execute();
+        }
+
+        try (Response fetched = response) {
+            return toFetchResult(fetched, fetched.body(), policy, fetched.request().tag(CallTimer.class));
+        }
+    }
+
+    /**
+     * Builds a GET or HEAD request, conditional on the validators of the last response when given
+     *
+     * @param link The link to fetch
+     * @param etag The ETag of the last response, or null
+     * @param lastModified The Last-Modified date of the last response, or null
+     * @param head Whether to request only the status and headers
+     * @return The request
+     * @throws IllegalArgumentException Thrown if the link is invalid
+     */
+    private Request buildRequest(String link, String etag, String lastModified, boolean head) {
+        Request.Builder request = new Request.Builder().url(link).tag(CallTimer.class, new CallTimer());
+        if (head) {
+            request.head();
+        } else {
+            request.get();
+        }
+        if (etag != null) {
+            request.header("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            request.header("If-Modified-Since", lastModified);
+        }
+        return request.build();
+    }
+
+    /**
+     * Determines whether a server refused a HEAD request, which is then made again as a GET whose body isn't read
+     *
+     * @param response The response to a HEAD request
+     * @return True for 405 METHOD NOT ALLOWED and 501 NOT IMPLEMENTED
+     */
+    private static boolean isHeadRejected(Response response) {
+        return response.code() == 405 || response.code() == 501;
+    }
+
+    /**
+     * Converts an OkHttp response to a fetch result. The body is only read for successful responses, and only as
+     * far as the content policy allows.
+     *
+     * @param response The response
+     * @param body The response body
+     * @param policy Decides whether and how much of the body is read, or null to read it in full
+     * @param timer When the client started running the request, or null if unknown
+     * @return The fetch result
+     * @throws IOException Thrown if the body could not be read
+     */
+    private FetchResult toFetchResult(Response response, ResponseBody body, ContentPolicy policy, CallTimer timer) throws IOException {
+        String contentType = null;
+        String charset = null;
+
+        MediaType mediaType = body != null ? body.contentType() : null;
+        if (mediaType != null) {
+            contentType = mediaType.type() + "/" + mediaType.subtype();
+            Charset mediaCharset = mediaType.charset();
+            charset = mediaCharset != null ? mediaCharset.name() : null;
+        }
+
+        byte[] bytes = NO_BODY;
+        boolean skipped = false;
+        boolean truncated = false;
+        if (body != null && response.code() < 400) {
+            if (policy == null) {
+                bytes = body.bytes();
+            } else if (!policy.isParsed(contentType)) {
+                skipped = true;
+            } else if (!policy.isHeadRequests()) {
+                long maxBytes = policy.getMaxBodyBytes(contentType);
+                if (maxBytes <= 0) {
+                    bytes = body.bytes();
+                } else {
+                    // Buffers one byte past the maximum to find out whether the body goes on, without reading the rest
+                    BufferedSource source = body.source();
+                    truncated = source.request(maxBytes + 1);
+                    bytes = truncated ? source.readByteArray(maxBytes) : source.readByteArray();
+                }
+            }
+        }
+
+        long fetchNanos = timer != null && timer.startNanos != 0 ? System.nanoTime() - timer.startNanos : 0;
+        return new FetchResult(response.request().url().toString(), response.code(), contentType, charset, bytes,
+                response.header("ETag"), response.header("Last-Modified"), skipped, truncated, fetchNanos);
+    }
+
+    /**
+     * Records when the client started running a request, set from the client's thread
+     */
+    private static class CallTimer {
+        private volatile long startNanos = 0;
+    }
+
+    @Override
+    public void close() {
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+    }
+
+}
@@ -0,0 +1,164 @@
+package com.jasminefortich.crawler.services;
+
+import com.jasminefortich.crawler.models.PageRecord;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Page records of an incremental crawl, kept between crawls in a single file.
+ *
+ * The records of the previous crawl are loaded when a crawl starts. Each page crawled again moves its record
+ * over to the records of the current crawl, updated or as is, and only the current records are saved when
+ * the crawl finishes. Pages that weren't reached again are forgotten, so the file doesn't grow with pages
+ * that no longer exist.
+ */
+public class PageRecordStore {
+
+    private static final Logger LOGGER = Logger.getLogger(PageRecordStore.class.getSimpleName());
+
+    private static final String FILE_NAME = "pages.bin";
+    private static final int MAGIC = 0x50414745;
+    private static final int VERSION = 1;
+
+    private final Path directory;
+    private final Map<String, PageRecord> previous = new ConcurrentHashMap<>();
+    private final Map<String, PageRecord> current = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an empty store
+     *
+     * @param directory The directory the records are kept in
+     */
+    public PageRecordStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Loads the records saved by the previous crawl
+     *
+     * @return The number of records loaded
+     * @throws IOException Thrown if the records exist but can't be read
+     */
+    public int load() throws IOException {
+        Path file = directory.resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unknown page record format");
+            }
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String link = in.readUTF();
+                String etag = in.readBoolean() ? in.readUTF() : null;
+                String lastModified = in.readBoolean() ? in.readUTF() : null;
+                long contentHash = in.readLong();
+                byte[] outlinks = new byte[in.readInt()];
+                in.readFully(outlinks);
+
+                previous.put(link, new PageRecord(etag, lastModified, contentHash, outlinks));
+            }
+        }
+
+        LOGGER.info("Loaded " + previous.size() + " page records from " + directory);
+        return previous.size();
+    }
+
+    /**
+     * Getter for the record of a page from the previous crawl
+     *
+     * @param link The page link
+     * @return The record, or null if the page wasn't crawled last time or was already crawled this time
+     */
+    public PageRecord get(String link) {
+        return previous.get(link);
+    }
+
+    /**
+     * Records a page crawled by the current crawl
+     *
+     * @param link The page link
+     * @param record The page record
+     */
+    public void put(String link, PageRecord record) {
+        current.put(link, record);
+        previous.remove(link);
+    }
+
+    /**
+     * Carries the record of an unchanged page over from the previous crawl to the current crawl
+     *
+     * @param link The page link
+     * @return The record, or null if there is no record from the previous crawl
+     */
+    public PageRecord keep(String link) {
+        PageRecord record = previous.remove(link);
+        if (record != null) {
+            current.put(link, record);
+        }
+        return record;
+    }
+
+    /**
+     * Getter for the number of records of the current crawl
+     *
+     * @return The number of pages recorded so far
+     */
+    public int size() {
+        return current.size();
+    }
+
+    /**
+     * Replaces the saved records with the records of the current crawl
+     *
+     * @throws IOException Thrown if the records can't be written
+     */
+    public void save() throws IOException {
+        Files.createDirectories(directory);
+        Path temporary = directory.resolve(FILE_NAME + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(current.size());
+            for (Map.Entry<String, PageRecord> entry : current.entrySet()) {
+                PageRecord record = entry.getValue();
+                out.writeUTF(entry.getKey());
+                writeOptional(out, record.getEtag());
+                writeOptional(out, record.getLastModified());
+                out.writeLong(record.getContentHash());
+                out.writeInt(record.getOutlinks().length);
+                out.write(record.getOutlinks());
+            }
+        }
+        try (FileChannel file = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            file.force(true);
+        }
+        Files.move(temporary, directory.resolve(FILE_NAME), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        LOGGER.info("Saved " + current.size() + " page records to " + directory);
+    }
+
+    private static void writeOptional(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.jasminefortich.crawler.services;
+
+import com.jasminefortich.crawler.models.PageResult;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Writes crawl results in an output format, called from the result sink's writer thread only
+ */
+public interface ResultEncoder {
+
+    /**
+     * Getter for the file extension of the format
+     *
+     * @return The extension, without a dot
+     */
+    String getExtension();
+
+    /**
+     * Writes the start of a new file
+     *
+     * @param out The file's stream
+     * @throws IOException Thrown if the stream can't be written
+     */
+    void writeHeader(OutputStream out) throws IOException;
+
+    /**
+     * Writes a batch of results
+     *
+     * @param results The results, in the order they were handled
+     * @param out The file's stream
+     * @throws IOException Thrown if the stream can't be written
+     */
+    void writeBatch(List<PageResult> results, OutputStream out) throws IOException;
+
+}
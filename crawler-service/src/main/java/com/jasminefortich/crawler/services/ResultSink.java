@@ -0,0 +1,236 @@
+package com.jasminefortich.crawler.services;
+
+import com.jasminefortich.crawler.models.PageResult;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the result of every crawled page to files off the crawl threads.
+ *
+ * Results are offered to a bounded ring buffer, which never blocks: when the buffer is full because the disk
+ * can't keep up, the result is dropped and counted instead of stalling the crawl. A single writer thread drains
+ * the buffer in batches, encodes each batch and writes it to the current file, gzip compressed if enabled. Once
+ * a file reaches the maximum size on disk the next batch starts a new one, so downstream jobs can pick up
+ * finished files while the crawl goes on.
+ */
+public class ResultSink implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(ResultSink.class.getSimpleName());
+
+    private final Path directory;
+    private final String filePrefix;
+    private final ResultEncoder encoder;
+    private final int batchSize;
+    private final long maxFileBytes;
+    private final boolean compress;
+    private final long flushIntervalMillis;
+
+    private final ArrayBlockingQueue<PageResult> buffer;
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean closing;
+    private volatile boolean failed;
+
+    private CountingOutputStream file;
+    private OutputStream out;
+    private int fileNumber;
+
+    /**
+     * Creates a sink and starts its writer thread
+     *
+     * @param directory The directory the result files are written to
+     * @param filePrefix The start of every result file name, followed by a file number
+     * @param encoder The output format
+     * @param bufferSize The number of results the buffer holds before dropping results
+     * @param batchSize The most results encoded as a batch
+     * @param maxFileBytes The size on disk at which a file is rotated, 0 for no limit
+     * @param compress Whether files are gzip compressed
+     * @param flushIntervalMillis The longest a result waits in the buffer when the crawl is slow
+     * @throws IOException Thrown if the directory can't be created
+     */
+    public ResultSink(Path directory, String filePrefix, ResultEncoder encoder, int bufferSize, int batchSize,
+                      long maxFileBytes, boolean compress, long flushIntervalMillis) throws IOException {
+        this.directory = directory;
+        this.filePrefix = filePrefix;
+        this.encoder = encoder;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxFileBytes = maxFileBytes;
+        this.compress = compress;
+        this.flushIntervalMillis = Math.max(1, flushIntervalMillis);
+        this.buffer = new ArrayBlockingQueue<>(Math.max(1, bufferSize));
+        Files.createDirectories(directory);
+
+        writer = new Thread(this::run, "ResultWriter");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Hands a result to the writer thread without waiting
+     *
+     * @param result The page result
+     * @return False if the result was dropped because the buffer is full or the sink is closed
+     */
+    public boolean offer(PageResult result) {
+        if (closing || failed || !buffer.offer(result)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Getter for the number of results written
+     *
+     * @return The number of results written
+     */
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    /**
+     * Getter for the number of results dropped, because the buffer was full, the sink was closed or a file
+     * couldn't be written
+     *
+     * @return The number of results dropped
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Writes the buffered results and closes the current file, waiting up to the flush interval for the writer
+     * thread to notice. The writer isn't interrupted, since that would close a file it is writing.
+     */
+    @Override
+    public void close() {
+        closing = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<PageResult> batch = new ArrayList<>(batchSize);
+        try {
+            while (!closing) {
+                PageResult first;
+                try {
+                    first = buffer.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                if (first == null) {
+                    flush();
+                    continue;
+                }
+                batch.add(first);
+                buffer.drainTo(batch, batchSize - 1);
+                write(batch);
+            }
+
+            while (!failed && buffer.drainTo(batch, batchSize) > 0) {
+                write(batch);
+            }
+        } finally {
+            dropped.addAndGet(buffer.size());
+            buffer.clear();
+            closeFile();
+        }
+    }
+
+    private void write(List<PageResult> batch) {
+        try {
+            if (!failed) {
+                if (out == null) {
+                    openFile();
+                }
+                encoder.writeBatch(batch, out);
+                written.addAndGet(batch.size());
+                if (maxFileBytes > 0 && file.count >= maxFileBytes) {
+                    closeFile();
+                }
+            } else {
+                dropped.addAndGet(batch.size());
+            }
+        } catch (IOException e) {
+            LOGGER.warning("Failed to write crawl results, dropping the rest: " + e.getMessage());
+            failed = true;
+            dropped.addAndGet(batch.size());
+        }
+        batch.clear();
+    }
+
+    private void flush() {
+        if (out == null || failed) {
+            return;
+        }
+        try {
+            out.flush();
+        } catch (IOException e) {
+            LOGGER.warning("Failed to write crawl results, dropping the rest: " + e.getMessage());
+            failed = true;
+        }
+    }
+
+    private void openFile() throws IOException {
+        String name = String.format("%s-%05d.%s%s", filePrefix, fileNumber++, encoder.getExtension(), compress ? ".gz" : "");
+        file = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(directory.resolve(name)), 1 << 16));
+        // A sync flush makes every flushed batch readable before the file is finished
+        out = compress ? new GZIPOutputStream(file, 1 << 16, true) : file;
+        encoder.writeHeader(out);
+    }
+
+    private void closeFile() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            LOGGER.warning("Failed to close crawl results: " + e.getMessage());
+        }
+        out = null;
+        file = null;
+    }
+
+    /**
+     * Counts the bytes written to a file, after compression. Compressed bytes are only counted once the
+     * compressor emits them, so a compressed file can overshoot the maximum size by a block.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+}
@@ -0,0 +1,181 @@
+package com.jasminefortich.crawler.services;
+
+import com.jasminefortich.crawler.models.FetchResult;
+import com.jasminefortich.crawler.utils.UrlUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Robots.txt rules by host, fetched once per host and kept for a fixed time.
+ *
+ * The first link of a host starts an asynchronous fetch of the host's robots.txt, from the scheme and port of
+ * that link, and every link of the host waiting for it shares the same future, so nothing blocks while a
+ * robots.txt is being fetched and hosts don't wait on each other. Rules are cached up to a maximum number of
+ * hosts, evicting the least recently used host first, and are fetched again once they expire.
+ *
+ * A missing robots.txt or any other client error allows every path, a server error disallows every path until
+ * the shorter error time to live expires, and a robots.txt that can't be fetched at all allows every path so the
+ * page fetches themselves fail and are counted as usual.
+ */
+public class RobotsCache {
+
+    private static final Logger LOGGER = Logger.getLogger(RobotsCache.class.getSimpleName());
+
+    private final Fetcher fetcher;
+    private final String userAgent;
+    private final long ttlNanos;
+    private final long errorTtlNanos;
+    private final long maxCrawlDelayMillis;
+
+    private final Map<String, Entry> entries;
+
+    /**
+     * Creates an empty cache
+     *
+     * @param fetcher The fetcher robots.txt files are downloaded with
+     * @param userAgent The product token of the crawler, matched against robots.txt groups
+     * @param ttlMillis How long fetched rules are kept
+     * @param errorTtlMillis How long the rules of a robots.txt that failed with a server error are kept
+     * @param maxHosts The maximum number of hosts whose rules are kept
+     * @param maxCrawlDelayMillis The longest crawl delay honoured, longer delays are capped
+     */
+    public RobotsCache(Fetcher fetcher, String userAgent, long ttlMillis, long errorTtlMillis, int maxHosts,
+                       long maxCrawlDelayMillis) {
+        if (maxHosts < 1) {
+            throw new IllegalArgumentException("Max hosts must be at least 1");
+        }
+        this.fetcher = fetcher;
+        this.userAgent = userAgent;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.errorTtlNanos = TimeUnit.MILLISECONDS.toNanos(errorTtlMillis);
+        this.maxCrawlDelayMillis = maxCrawlDelayMillis;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxHosts;
+            }
+        };
+    }
+
+    /**
+     * Getter for the rules of the host of a link, fetching its robots.txt if the host has no unexpired rules
+     *
+     * @param link The link about to be crawled
+     * @return Future of the rules of the host, never completes exceptionally
+     */
+    public CompletableFuture<RobotsRules> getRules(String link) {
+        String host = UrlUtil.getHost(link);
+        long now = System.nanoTime();
+
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(host);
+            if (entry != null && (!entry.rules.isDone() || entry.expiresNanos - now > 0)) {
+                return entry.rules;
+            }
+            entry = new Entry();
+            entries.put(host, entry);
+        }
+
+        fetchRules(link, entry);
+        return entry.rules;
+    }
+
+    /**
+     * Getter for the crawl delay of a host whose rules are cached
+     *
+     * @param host The host
+     * @return The crawl delay asked for by the host, capped at the maximum crawl delay, or 0 if there are no rules
+     */
+    public long getCrawlDelayMillis(String host) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(host);
+        }
+        if (entry == null || !entry.rules.isDone()) {
+            return 0;
+        }
+        return Math.min(maxCrawlDelayMillis, entry.rules.join().getCrawlDelayMillis());
+    }
+
+    /**
+     * Getter for the number of hosts with cached or pending rules
+     *
+     * @return The number of hosts
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private void fetchRules(String link, Entry entry) {
+        String robotsLink = robotsLink(link);
+        if (robotsLink == null) {
+            complete(entry, RobotsRules.ALLOW_ALL, ttlNanos);
+            return;
+        }
+
+        fetcher.fetch(robotsLink).whenComplete((response, error) -> {
+            if (error != null) {
+                LOGGER.fine("Failed to fetch " + robotsLink + ", allowing every path");
+                complete(entry, RobotsRules.ALLOW_ALL, errorTtlNanos);
+            } else {
+                complete(entry, toRules(robotsLink, response), response.getStatusCode() >= 500 ? errorTtlNanos : ttlNanos);
+            }
+        });
+    }
+
+    private RobotsRules toRules(String robotsLink, FetchResult response) {
+        int code = response.getStatusCode();
+        if (code >= 500) {
+            LOGGER.warning("Robots.txt " + robotsLink + " failed with " + code + ", disallowing every path");
+            return RobotsRules.DISALLOW_ALL;
+        }
+        if (code >= 400) {
+            return RobotsRules.ALLOW_ALL;
+        }
+        return RobotsRules.parse(new String(response.getBody(), StandardCharsets.UTF_8), userAgent);
+    }
+
+    private static void complete(Entry entry, RobotsRules rules, long ttlNanos) {
+        entry.expiresNanos = System.nanoTime() + ttlNanos;
+        entry.rules.complete(rules);
+    }
+
+    /**
+     * Builds the robots.txt link of the scheme and authority of a link
+     *
+     * @return The robots.txt link, or null if the link has no scheme
+     */
+    private static String robotsLink(String link) {
+        int schemeEnd = link.indexOf("://");
+        if (schemeEnd < 0) {
+            return null;
+        }
+
+        int end = link.length();
+        for (int i = schemeEnd + 3; i < link.length(); i++) {
+            char c = link.charAt(i);
+            if (c == '/' || c == '?' || c == '#') {
+                end = i;
+                break;
+            }
+        }
+        return link.substring(0, end) + "/robots.txt";
+    }
+
+    /**
+     * The rules of a host, pending until its robots.txt has been fetched
+     */
+    private static class Entry {
+        private final CompletableFuture<RobotsRules> rules = new CompletableFuture<>();
+        private volatile long expiresNanos;
+    }
+
+}
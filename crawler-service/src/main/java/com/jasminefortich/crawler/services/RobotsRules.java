@@ -0,0 +1,238 @@
+package com.jasminefortich.crawler.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The rules of a robots.txt file that apply to the crawler, compiled into a trie of path patterns.
+ *
+ * Only the groups naming the crawler's user agent are used, or the "*" group if none does. Allow and disallow
+ * patterns are inserted into a trie character by character, where "*" matches any run of characters and a
+ * trailing "$" anchors a pattern to the end of the path. A path is matched by walking the trie once, following
+ * every wildcard along the way, and the longest matching pattern decides whether the path is allowed, an allow
+ * winning over a disallow of the same length. A path no pattern matches is allowed.
+ *
+ * The rules are immutable and safe to share between threads.
+ */
+public class RobotsRules {
+
+    /** Rules of a host without a robots.txt, or whose robots.txt is unavailable */
+    public static final RobotsRules ALLOW_ALL = new RobotsRules(new Node(), 0);
+
+    /** Rules of a host whose robots.txt failed with a server error */
+    public static final RobotsRules DISALLOW_ALL = disallowAll();
+
+    private static final int MAX_LENGTH = 500 * 1024;
+
+    private final Node root;
+    private final long crawlDelayMillis;
+
+    private RobotsRules(Node root, long crawlDelayMillis) {
+        this.root = root;
+        this.crawlDelayMillis = crawlDelayMillis;
+    }
+
+    /**
+     * Parses a robots.txt file, ignoring anything past the first 500 KiB
+     *
+     * @param content The robots.txt content
+     * @param userAgent The product token of the crawler, matched case insensitively
+     * @return The rules for the crawler
+     */
+    public static RobotsRules parse(String content, String userAgent) {
+        String agent = userAgent.toLowerCase(Locale.ROOT);
+        if (content.length() > MAX_LENGTH) {
+            content = content.substring(0, MAX_LENGTH);
+        }
+
+        Group matched = new Group();
+        Group wildcard = new Group();
+        List<Group> current = new ArrayList<>();
+        boolean inRules = false;
+
+        for (String line : content.split("\r\n|\r|\n")) {
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+
+            String key = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+
+            if (key.equals("user-agent")) {
+                // A user agent line after rules starts a new group
+                if (inRules) {
+                    current.clear();
+                    inRules = false;
+                }
+                String name = value.toLowerCase(Locale.ROOT);
+                if (name.equals("*")) {
+                    current.add(wildcard);
+                } else if (!name.isEmpty() && agent.startsWith(name)) {
+                    current.add(matched);
+                    matched.found = true;
+                }
+            } else if (key.equals("allow") || key.equals("disallow") || key.equals("crawl-delay")) {
+                inRules = true;
+                for (Group group : current) {
+                    if (key.equals("crawl-delay")) {
+                        group.crawlDelayMillis = parseDelay(value, group.crawlDelayMillis);
+                    } else if (!value.isEmpty()) {
+                        group.rules.add(new Rule(value, key.equals("allow")));
+                    }
+                }
+            }
+        }
+
+        Group group = matched.found ? matched : wildcard;
+        Node root = new Node();
+        for (Rule rule : group.rules) {
+            insert(root, rule);
+        }
+        return new RobotsRules(root, group.crawlDelayMillis);
+    }
+
+    /**
+     * Determines whether the crawler may fetch a path
+     *
+     * @param path The path and query of a link
+     * @return True if the path is allowed
+     */
+    public boolean allows(String path) {
+        if (path.isEmpty()) {
+            path = "/";
+        }
+
+        int best = -1;
+        Set<Node> states = Collections.newSetFromMap(new IdentityHashMap<>());
+        addWithWildcards(states, root);
+
+        for (int i = 0; i < path.length() && !states.isEmpty(); i++) {
+            for (Node state : states) {
+                best = Math.max(best, state.prefixPriority);
+            }
+
+            char c = path.charAt(i);
+            Set<Node> next = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Node state : states) {
+                if (state.wildcard) {
+                    next.add(state);
+                }
+                Node child = state.children.get(c);
+                if (child != null) {
+                    addWithWildcards(next, child);
+                }
+            }
+            states = next;
+        }
+
+        for (Node state : states) {
+            best = Math.max(best, Math.max(state.prefixPriority, state.endPriority));
+        }
+        return best < 0 || (best & 1) == 1;
+    }
+
+    /**
+     * Getter for the crawl delay
+     *
+     * @return The minimum delay between two requests asked for by the host, 0 if none
+     */
+    public long getCrawlDelayMillis() {
+        return crawlDelayMillis;
+    }
+
+    /**
+     * Adds a node and the wildcard nodes reachable from it without consuming a character
+     */
+    private static void addWithWildcards(Set<Node> states, Node node) {
+        while (node != null && states.add(node)) {
+            node = node.star;
+        }
+    }
+
+    /**
+     * Inserts a pattern into the trie. The priority of a pattern is twice its length, plus one for an allow,
+     * so comparing priorities picks the longest pattern and prefers an allow on a tie.
+     */
+    private static void insert(Node root, Rule rule) {
+        String pattern = rule.pattern;
+        boolean anchored = pattern.endsWith("$");
+        if (anchored) {
+            pattern = pattern.substring(0, pattern.length() - 1);
+        }
+        int priority = rule.pattern.length() * 2 + (rule.allow ? 1 : 0);
+
+        Node node = root;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '*') {
+                if (node.star == null) {
+                    node.star = new Node();
+                    node.star.wildcard = true;
+                }
+                node = node.star;
+            } else {
+                node = node.children.computeIfAbsent(c, key -> new Node());
+            }
+        }
+
+        if (anchored) {
+            node.endPriority = Math.max(node.endPriority, priority);
+        } else {
+            node.prefixPriority = Math.max(node.prefixPriority, priority);
+        }
+    }
+
+    private static long parseDelay(String value, long fallback) {
+        try {
+            double seconds = Double.parseDouble(value);
+            return seconds >= 0 && !Double.isInfinite(seconds) ? (long) (seconds * 1000) : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private static RobotsRules disallowAll() {
+        Node root = new Node();
+        insert(root, new Rule("/", false));
+        return new RobotsRules(root, 0);
+    }
+
+    /**
+     * A node of the pattern trie. A wildcard node stands for a "*" and loops on any character.
+     */
+    private static class Node {
+        private final Map<Character, Node> children = new HashMap<>();
+        private Node star;
+        private boolean wildcard;
+        private int prefixPriority = -1;
+        private int endPriority = -1;
+    }
+
+    private static class Group {
+        private final List<Rule> rules = new ArrayList<>();
+        private long crawlDelayMillis = 0;
+        private boolean found = false;
+    }
+
+    private static class Rule {
+        private final String pattern;
+        private final boolean allow;
+
+        private Rule(String pattern, boolean allow) {
+            this.pattern = pattern;
+            this.allow = allow;
+        }
+    }
+
+}
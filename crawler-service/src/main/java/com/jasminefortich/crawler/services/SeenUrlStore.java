@@ -0,0 +1,64 @@
+package com.jasminefortich.crawler.services;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Set of the links a crawl has already queued, used to skip duplicate links
+ */
+public interface SeenUrlStore {
+
+    /**
+     * Records a link as seen
+     *
+     * @param link The link to record
+     * @return True if the link had not been seen before, else false
+     */
+    boolean add(String link);
+
+    /**
+     * Checks whether a link has been seen
+     *
+     * @param link The link to check
+     * @return True if the link has been seen
+     */
+    boolean contains(String link);
+
+    /**
+     * Getter for the number of links recorded
+     *
+     * @return The number of unique links recorded
+     */
+    long size();
+
+    /**
+     * Getter for the heap used by the store
+     *
+     * @return The approximate number of bytes used to hold the recorded links
+     */
+    long getMemoryBytes();
+
+    /**
+     * Forgets all recorded links
+     */
+    void clear();
+
+    /**
+     * Writes the recorded links in the store's compact form, for checkpointing a crawl. Links added while
+     * writing may or may not be included.
+     *
+     * @param out The stream to write to
+     * @throws IOException Thrown if writing fails
+     */
+    void writeTo(DataOutputStream out) throws IOException;
+
+    /**
+     * Adds the links written by {@link #writeTo(DataOutputStream)} of the same kind of store
+     *
+     * @param in The stream to read from
+     * @throws IOException Thrown if reading fails or the links were written by a different kind of store
+     */
+    void readFrom(DataInputStream in) throws IOException;
+
+}
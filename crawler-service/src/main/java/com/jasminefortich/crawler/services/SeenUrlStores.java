@@ -0,0 +1,25 @@
+package com.jasminefortich.crawler.services;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * Helpers shared by the seen url store implementations
+ */
+class SeenUrlStores {
+
+    /**
+     * Reads the format tag written ahead of a store's links and checks it belongs to the reading store
+     *
+     * @param in The stream to read from
+     * @param format The format tag of the reading store
+     * @throws IOException Thrown if the links were written by a different kind of store
+     */
+    static void checkFormat(DataInputStream in, String format) throws IOException {
+        String written = in.readUTF();
+        if (!written.equals(format)) {
+            throw new IOException("Seen links were written by a " + written + " store, not a " + format + " store");
+        }
+    }
+
+}
@@ -0,0 +1,421 @@
+package com.jasminefortich.crawler.services;
+
+import com.jasminefortich.crawler.models.FetchResult;
+import org.jsoup.helper.StringUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Link extractor that scans the page a buffer at a time for {@code <a href>} and {@code <base href>} tags
+ * without building a document.
+ *
+ * Comments, script and style contents are skipped and attribute entities are decoded. Links are resolved
+ * the same way jsoup's {@code absUrl} resolves them. A {@code <base href>} belongs in the head, so links found
+ * before the end of the head are held back until the base is known and a base outside the head is ignored.
+ * Pages without a charset header are read as UTF-8.
+ */
+public class StreamingLinkExtractor implements LinkExtractor {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    @Override
+    public void extract(FetchResult page, Consumer<String> links) throws IOException {
+        Charset charset = StandardCharsets.UTF_8;
+        if (page.getCharset() != null && Charset.isSupported(page.getCharset())) {
+            charset = Charset.forName(page.getCharset());
+        }
+
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(page.getBody()), charset)) {
+            extract(reader, page.getUrl(), links);
+        }
+    }
+
+    /**
+     * Extracts links from a stream of html
+     *
+     * @param reader The html
+     * @param documentUrl The url the html was fetched from
+     * @param links Receives every absolute link in document order
+     * @throws IOException Thrown if the reader fails
+     */
+    public void extract(Reader reader, String documentUrl, Consumer<String> links) throws IOException {
+        new Scanner(reader, documentUrl, links).scan();
+    }
+
+    /**
+     * Pull scanner over a single document
+     */
+    private static class Scanner {
+        private static final int EOF = -1;
+
+        private final Reader reader;
+        private final Consumer<String> links;
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private int position = 0;
+        private int limit = 0;
+
+        private final StringBuilder name = new StringBuilder(16);
+        private final StringBuilder value = new StringBuilder(128);
+
+        private String baseUrl;
+        private URL base;
+        private boolean baseKnown = false;
+        private final List<String> pendingLinks = new ArrayList<>();
+
+        private Scanner(Reader reader, String documentUrl, Consumer<String> links) {
+            this.reader = reader;
+            this.links = links;
+            setBase(documentUrl);
+        }
+
+        private void scan() throws IOException {
+            int c;
+            while ((c = next()) != EOF) {
+                if (c == '<') {
+                    readMarkup();
+                }
+            }
+            baseKnown();
+        }
+
+        /**
+         * Reads the markup following a '<'
+         */
+        private void readMarkup() throws IOException {
+            int c = next();
+            if (c == '!') {
+                int dash = next();
+                if (dash == '-' && (dash = next()) == '-') {
+                    skipPast("-->", false);
+                } else if (dash != '>') {
+                    skipPast(">", false);
+                }
+                return;
+            }
+            if (c == '?') {
+                skipPast(">", false);
+                return;
+            }
+            if (c == '/') {
+                readTagName(next());
+                if (nameEquals("head")) {
+                    baseKnown();
+                }
+                skipPast(">", false);
+                return;
+            }
+            if (!isLetter(c)) {
+                unread(c);
+                return;
+            }
+
+            readTagName(c);
+            String tag = nameEquals("a") ? "a" : nameEquals("base") ? "base" : nameEquals("body") ? "body"
+                    : nameEquals("script") ? "script" : nameEquals("style") ? "style" : null;
+
+            String href = readAttributes(tag != null && (tag.equals("a") || tag.equals("base")));
+
+            if (tag == null) {
+                return;
+            }
+            switch (tag) {
+                case "a":
+                    if (href != null) {
+                        foundLink(href);
+                    }
+                    break;
+                case "base":
+                    if (href != null && !baseKnown) {
+                        setBase(resolve(href));
+                        baseKnown();
+                    }
+                    break;
+                case "body":
+                    baseKnown();
+                    break;
+                default:    // Raw text of scripts and styles can contain anything that looks like a tag
+                    skipPast("</" + tag, true);
+                    skipPast(">", false);
+                    break;
+            }
+        }
+
+        /**
+         * Reads the attributes of a start tag up to and including its '>'
+         *
+         * @param wantHref Whether the href attribute value is needed
+         * @return The first href attribute value, or null
+         */
+        private String readAttributes(boolean wantHref) throws IOException {
+            String href = null;
+            while (true) {
+                int c = skipWhitespace();
+                while (c == '/') {
+                    c = skipWhitespace();
+                }
+                if (c == '>' || c == EOF) {
+                    return href;
+                }
+
+                name.setLength(0);
+                while (c != EOF && c != '=' && c != '>' && c != '/' && !isWhitespace(c)) {
+                    name.append(Character.toLowerCase((char) c));
+                    c = next();
+                }
+
+                if (isWhitespace(c)) {
+                    c = skipWhitespace();
+                }
+                if (c != '=') {
+                    unread(c);
+                    continue;
+                }
+
+                boolean isHref = wantHref && href == null && nameEquals("href");
+                readAttributeValue(isHref);
+                if (isHref) {
+                    href = value.toString().trim();
+                }
+            }
+        }
+
+        /**
+         * Reads a quoted or unquoted attribute value, decoding entities when the value is kept
+         *
+         * @param keep Whether to keep the value in the value buffer
+         */
+        private void readAttributeValue(boolean keep) throws IOException {
+            value.setLength(0);
+
+            int c = skipWhitespace();
+            int quote = c == '"' || c == '\'' ? c : 0;
+            if (quote == 0) {
+                unread(c);
+            }
+
+            while ((c = next()) != EOF) {
+                if (quote != 0 ? c == quote : isWhitespace(c) || c == '>') {
+                    if (quote == 0) {
+                        unread(c);
+                    }
+                    return;
+                }
+                if (keep) {
+                    if (c == '&') {
+                        readEntity();
+                    } else {
+                        value.append((char) c);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Decodes a character reference following a '&' into the value buffer, keeping unknown references as is
+         */
+        private void readEntity() throws IOException {
+            int start = value.length();
+            value.append('&');
+
+            int c;
+            while ((c = next()) != EOF && (isLetter(c) || isDigit(c) || c == '#') && value.length() - start < 10) {
+                value.append((char) c);
+            }
+            if (c != ';') {
+                unread(c);
+            }
+
+            String reference = value.substring(start + 1);
+            int decoded = decodeEntity(reference);
+            if (decoded >= 0) {
+                value.setLength(start);
+                value.appendCodePoint(decoded);
+            } else if (c == ';') {
+                value.append(';');
+            }
+        }
+
+        private int decodeEntity(String reference) {
+            try {
+                if (reference.startsWith("#x") || reference.startsWith("#X")) {
+                    return decodeCodePoint(Integer.parseInt(reference.substring(2), 16));
+                }
+                if (reference.startsWith("#")) {
+                    return decodeCodePoint(Integer.parseInt(reference.substring(1)));
+                }
+            } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+                return -1;
+            }
+
+            switch (reference) {
+                case "amp": return '&';
+                case "lt": return '<';
+                case "gt": return '>';
+                case "quot": return '"';
+                case "apos": return '\'';
+                case "nbsp": return ' ';
+                default: return -1;
+            }
+        }
+
+        /**
+         * Keeps references outside the unicode range as is and replaces null and surrogates with the replacement character
+         */
+        private int decodeCodePoint(int codePoint) {
+            if (!Character.isValidCodePoint(codePoint)) {
+                return -1;
+            }
+            if (codePoint == 0 || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+                return '\uFFFD';
+            }
+            return codePoint;
+        }
+
+        private void foundLink(String href) {
+            if (baseKnown) {
+                links.accept(resolve(href));
+            } else {
+                pendingLinks.add(href);
+            }
+        }
+
+        /**
+         * Marks the base url as final and emits the links held back until now
+         */
+        private void baseKnown() {
+            if (baseKnown) {
+                return;
+            }
+            baseKnown = true;
+            pendingLinks.forEach(href -> links.accept(resolve(href)));
+            pendingLinks.clear();
+        }
+
+        private void setBase(String url) {
+            baseUrl = url;
+            try {
+                base = new URL(url);
+            } catch (MalformedURLException e) {
+                base = null;
+            }
+        }
+
+        /**
+         * Resolves a link against the base url, returning an empty string if it can't be resolved like jsoup
+         */
+        private String resolve(String href) {
+            if (base == null) {
+                return StringUtil.resolve(baseUrl, href);
+            }
+            try {
+                return StringUtil.resolve(base, href).toExternalForm();
+            } catch (MalformedURLException e) {
+                return "";
+            }
+        }
+
+        private void readTagName(int c) throws IOException {
+            name.setLength(0);
+            while (c != EOF && (isLetter(c) || isDigit(c))) {
+                name.append(Character.toLowerCase((char) c));
+                c = next();
+            }
+            unread(c);
+        }
+
+        private boolean nameEquals(String expected) {
+            if (name.length() != expected.length()) {
+                return false;
+            }
+            for (int i = 0; i < expected.length(); i++) {
+                if (name.charAt(i) != expected.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Skips past the next occurrence of a terminator
+         *
+         * @param terminator The text to skip past
+         * @param ignoreCase Whether to match the terminator case insensitively, the terminator must be lowercase
+         */
+        private void skipPast(String terminator, boolean ignoreCase) throws IOException {
+            int length = terminator.length();
+            char[] window = new char[length];
+            int seen = 0;
+
+            int c;
+            while ((c = next()) != EOF) {
+                window[seen % length] = ignoreCase ? Character.toLowerCase((char) c) : (char) c;
+                seen++;
+                if (seen >= length && windowMatches(window, seen, terminator)) {
+                    return;
+                }
+            }
+        }
+
+        private static boolean windowMatches(char[] window, int seen, String terminator) {
+            int length = terminator.length();
+            for (int i = 0; i < length; i++) {
+                if (window[(seen + i) % length] != terminator.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int skipWhitespace() throws IOException {
+            int c;
+            do {
+                c = next();
+            } while (isWhitespace(c));
+            return c;
+        }
+
+        private int next() throws IOException {
+            if (position == limit) {
+                limit = reader.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return EOF;
+                }
+            }
+            return buffer[position++];
+        }
+
+        /**
+         * Pushes back the character just read, only valid directly after {@link #next()}
+         */
+        private void unread(int c) {
+            if (c != EOF) {
+                position--;
+            }
+        }
+
+        private static boolean isWhitespace(int c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+        }
+
+        private static boolean isLetter(int c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+        }
+
+        private static boolean isDigit(int c) {
+            return c >= '0' && c <= '9';
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.jasminefortich.crawler.services;
+
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Task executor that runs every task on its own virtual thread.
+ *
+ * The number of running tasks is bounded by a semaphore, {@link #execute(Runnable)} blocks the submitting
+ * thread until a permit is free so the crawl coordinator can't outrun the outstanding request limit.
+ */
+public class VirtualThreadTaskExecutor implements TaskExecutor {
+
+    private final int maxOutstanding;
+    private final Semaphore permits;
+    private final ThreadFactory threadFactory;
+
+    /**
+     * Creates a virtual thread executor
+     *
+     * @param maxOutstanding The maximum number of tasks running at once
+     * @param threadNamePrefix The prefix of the virtual thread names
+     */
+    public VirtualThreadTaskExecutor(int maxOutstanding, String threadNamePrefix) {
+        this.maxOutstanding = maxOutstanding;
+        this.permits = new Semaphore(maxOutstanding);
+        this.threadFactory = Thread.ofVirtual().name(threadNamePrefix, 0).factory();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TaskRejectedException("Interrupted while waiting for an outstanding request permit", e);
+        }
+
+        try {
+            threadFactory.newThread(() -> {
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            }).start();
+        } catch (RuntimeException e) {
+            permits.release();
+            throw new TaskRejectedException("Could not start virtual thread", e);
+        }
+    }
+
+    /**
+     * Getter for the number of running tasks
+     *
+     * @return The number of tasks currently running
+     */
+    public int getActiveCount() {
+        return maxOutstanding - permits.availablePermits();
+    }
+
+}
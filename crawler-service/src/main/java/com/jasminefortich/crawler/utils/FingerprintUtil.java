@@ -0,0 +1,55 @@
+package com.jasminefortich.crawler.utils;
+
+public class FingerprintUtil {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Computes a 64 bit fingerprint of a character sequence without allocating.
+     * FNV-1a over the UTF-16 chars, followed by the MurmurHash3 finalizer to spread the bits.
+     * Never returns 0 so callers can use 0 as an empty marker.
+     *
+     * @param value The value to fingerprint
+     * @return The non zero 64 bit fingerprint
+     */
+    public static long fingerprint(CharSequence value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            hash ^= c & 0xff;
+            hash *= FNV_PRIME;
+            hash ^= c >>> 8;
+            hash *= FNV_PRIME;
+        }
+        return finish(hash);
+    }
+
+    /**
+     * Computes a 64 bit fingerprint of a byte array.
+     * FNV-1a over the bytes, followed by the MurmurHash3 finalizer to spread the bits.
+     * Never returns 0 so callers can use 0 as an empty marker.
+     *
+     * @param bytes The bytes to fingerprint
+     * @return The non zero 64 bit fingerprint
+     */
+    public static long fingerprint(byte[] bytes) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : bytes) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return finish(hash);
+    }
+
+    private static long finish(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+
+        return hash == 0 ? 1 : hash;
+    }
+
+}
@@ -1,17 +1,26 @@
 package com.jasminefortich.crawler.utils;
 
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.URL;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
 
 public class JsonUtil {
 
+    private static final String LINKS_FIELD = "links";
+
     /**
      * Reads JSON data from the given URL
      *
@@ -21,7 +30,7 @@ public class JsonUtil {
      */
     public static JSONObject readJsonFromUrl(URL url) throws IOException, JSONException {
         try (InputStream inputStream = url.openStream()) {
-            InputStreamReader inputStreamReader = new InputStreamReader(inputStream, Charset.forName("UTF-8"));
+            InputStreamReader inputStreamReader = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
             BufferedReader bufferedReader = new BufferedReader(inputStreamReader);
 
             String jsonString = readContent(bufferedReader);
@@ -33,6 +42,67 @@ public class JsonUtil {
         return null;
     }
 
+    /**
+     * Streams the "links" array of a JSON document at the given URL, handing each link over as soon as it
+     * has been read. Memory use doesn't grow with the number of links.
+     *
+     * @param url The URL to download the json from
+     * @param links Receives every link in document order
+     * @return The number of links read
+     * @throws IOException Thrown if error opening the url stream or reading the content
+     * @throws JSONException Thrown if the content is not a JSON object
+     */
+    public static int readLinksFromUrl(URL url, Consumer<String> links) throws IOException, JSONException {
+        try (InputStream inputStream = url.openStream()) {
+            return readLinks(new InputStreamReader(inputStream, StandardCharsets.UTF_8), links);
+        }
+    }
+
+    /**
+     * Streams the "links" array of a JSON document token by token. Other fields are skipped, as are
+     * non string entries of the array. An empty document has no links.
+     *
+     * @param reader The JSON document
+     * @param links Receives every link in document order
+     * @return The number of links read
+     * @throws IOException Thrown if error reading the content
+     * @throws JSONException Thrown if the content is not a JSON object
+     */
+    public static int readLinks(Reader reader, Consumer<String> links) throws IOException, JSONException {
+        JsonReader json = new JsonReader(reader);
+        int count = 0;
+        try {
+            try {
+                json.peek();
+            } catch (EOFException e) {
+                return 0;
+            }
+
+            json.beginObject();
+            while (json.hasNext()) {
+                if (LINKS_FIELD.equals(json.nextName()) && json.peek() == JsonToken.BEGIN_ARRAY) {
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        if (json.peek() == JsonToken.STRING) {
+                            links.accept(json.nextString());
+                            count++;
+                        } else {
+                            json.skipValue();
+                        }
+                    }
+                    json.endArray();
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+
+        } catch (MalformedJsonException | JsonParseException | IllegalStateException e) {
+            throw new JSONException(e);
+        }
+        return count;
+    }
+
     /**
      * Reads string content from a buffered reader
      *
@@ -42,9 +112,10 @@ public class JsonUtil {
      */
     private static String readContent(BufferedReader reader) throws IOException {
         StringBuilder content = new StringBuilder();
-        int line;
-        while ((line = reader.read()) != -1) {
-            content.append((char) line);
+        char[] buffer = new char[8192];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            content.append(buffer, 0, read);
         }
         return content.toString();
     }
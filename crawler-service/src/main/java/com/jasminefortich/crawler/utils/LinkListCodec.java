@@ -0,0 +1,89 @@
+package com.jasminefortich.crawler.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Packs a list of links into a byte array, front coding each link against the link before it.
+ *
+ * Every link is stored as the length of the prefix it shares with the previous link and its remaining UTF-8
+ * bytes, both lengths as variable length ints. Links of one page mostly share their scheme and host, so a
+ * list usually takes a fraction of the memory of the strings.
+ */
+public class LinkListCodec {
+
+    /**
+     * Encodes links
+     *
+     * @param links The links to encode
+     * @return The encoded links
+     */
+    public static byte[] encode(Collection<String> links) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(links.size() * 16);
+        byte[] previous = new byte[0];
+        for (String link : links) {
+            byte[] bytes = link.getBytes(StandardCharsets.UTF_8);
+            int shared = 0;
+            int length = Math.min(previous.length, bytes.length);
+            while (shared < length && previous[shared] == bytes[shared]) {
+                shared++;
+            }
+
+            writeVarInt(out, shared);
+            writeVarInt(out, bytes.length - shared);
+            out.write(bytes, shared, bytes.length - shared);
+            previous = bytes;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes links encoded by {@link #encode(Collection)}
+     *
+     * @param encoded The encoded links
+     * @param links Receives the links in their original order
+     * @throws IllegalArgumentException Thrown if the bytes aren't an encoded list of links
+     */
+    public static void decode(byte[] encoded, Consumer<String> links) {
+        byte[] previous = new byte[0];
+        int[] position = { 0 };
+        while (position[0] < encoded.length) {
+            int shared = readVarInt(encoded, position);
+            int suffix = readVarInt(encoded, position);
+            if (shared > previous.length || suffix > encoded.length - position[0]) {
+                throw new IllegalArgumentException("Malformed link list");
+            }
+
+            byte[] bytes = new byte[shared + suffix];
+            System.arraycopy(previous, 0, bytes, 0, shared);
+            System.arraycopy(encoded, position[0], bytes, shared, suffix);
+            position[0] += suffix;
+
+            links.accept(new String(bytes, StandardCharsets.UTF_8));
+            previous = bytes;
+        }
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(byte[] bytes, int[] position) {
+        int value = 0;
+        for (int shift = 0; shift < 32 && position[0] < bytes.length; shift += 7) {
+            int b = bytes[position[0]++] & 0xff;
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed link list");
+    }
+
+}
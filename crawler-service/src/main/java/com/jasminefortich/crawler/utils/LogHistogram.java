@@ -0,0 +1,134 @@
+package com.jasminefortich.crawler.utils;
+
+import com.jasminefortich.crawler.models.HistogramSnapshot;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free histogram of non negative longs with log-linear buckets.
+ *
+ * Every power of two range is split into 16 linear buckets, so a recorded value is known to within 1/16th
+ * (about 6%) of itself while the whole long range fits in under a thousand buckets. Recording is a couple of
+ * shifts and an atomic increment, and can run concurrently with taking snapshots.
+ */
+public class LogHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Records a value, negative values are recorded as 0
+     *
+     * @param value The value
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+
+        buckets.incrementAndGet(bucketIndex(value));
+        count.increment();
+        sum.add(value);
+
+        // Plain reads first so the common case of an unchanged min and max doesn't write
+        long currentMin;
+        while (value < (currentMin = min.get()) && !min.compareAndSet(currentMin, value)) { }
+        long currentMax;
+        while (value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value)) { }
+    }
+
+    /**
+     * Takes a snapshot of the recorded values. Values recorded while the snapshot is taken may or may not be included.
+     *
+     * @return The snapshot
+     */
+    public HistogramSnapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+
+        if (total == 0) {
+            return new HistogramSnapshot(0, 0, 0, 0, 0, 0, 0);
+        }
+
+        long minValue = min.get();
+        long maxValue = max.get();
+        return new HistogramSnapshot(
+                total,
+                minValue,
+                maxValue,
+                (double) sum.sum() / count.sum(),
+                percentile(counts, total, 0.50, minValue, maxValue),
+                percentile(counts, total, 0.90, minValue, maxValue),
+                percentile(counts, total, 0.99, minValue, maxValue)
+        );
+    }
+
+    /**
+     * Clears all recorded values
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        min.set(Long.MAX_VALUE);
+        max.set(Long.MIN_VALUE);
+    }
+
+    /**
+     * Finds the upper bound of the bucket holding a percentile, clamped to the recorded range
+     */
+    private static long percentile(long[] counts, long total, double percentile, long minValue, long maxValue) {
+        long rank = Math.max(1, (long) Math.ceil(total * percentile));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.max(minValue, Math.min(maxValue, bucketUpperBound(i)));
+            }
+        }
+        return maxValue;
+    }
+
+    /**
+     * Maps a value to its bucket: values below 16 get a bucket each, larger values are bucketed by their
+     * highest set bit and the 4 bits below it
+     */
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * The largest value mapped to a bucket
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        int shift = exponent - SUB_BUCKET_BITS;
+        long lower = (SUB_BUCKETS + subBucket) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+}
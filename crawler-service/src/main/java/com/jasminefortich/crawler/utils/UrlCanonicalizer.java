@@ -0,0 +1,388 @@
+package com.jasminefortich.crawler.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rewrites absolute links into a canonical form so equivalent links are only crawled once.
+ *
+ * The scheme and host are lowercased, default ports and fragments are stripped, percent-encoding is
+ * normalized (unreserved characters decoded, hex digits uppercased), dot segments are collapsed and an empty
+ * path becomes "/". Query parameters can optionally be sorted and tracking parameters dropped.
+ *
+ * Links that are already canonical are returned as is without allocating. Links that aren't hierarchical
+ * ("mailto:", relative or invalid links) are returned unchanged.
+ */
+public class UrlCanonicalizer {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final boolean sortQuery;
+    private final List<String> dropParams = new ArrayList<>();
+    private final List<String> dropParamPrefixes = new ArrayList<>();
+
+    /**
+     * Creates a canonicalizer that keeps the query as is
+     */
+    public UrlCanonicalizer() {
+        this(false, Collections.emptyList());
+    }
+
+    /**
+     * Creates a canonicalizer
+     *
+     * @param sortQuery Whether to sort query parameters by name
+     * @param dropParams Query parameter names to drop, a trailing '*' drops every parameter with that prefix
+     */
+    public UrlCanonicalizer(boolean sortQuery, Collection<String> dropParams) {
+        this.sortQuery = sortQuery;
+        for (String param : dropParams) {
+            String name = param.trim();
+            if (name.endsWith("*")) {
+                dropParamPrefixes.add(name.substring(0, name.length() - 1));
+            } else if (!name.isEmpty()) {
+                this.dropParams.add(name);
+            }
+        }
+    }
+
+    /**
+     * Canonicalizes a link
+     *
+     * @param link The absolute link
+     * @return The canonical link, or the link itself if it is already canonical or can't be canonicalized
+     */
+    public String canonicalize(String link) {
+        if (link == null) {
+            return null;
+        }
+
+        int schemeEnd = link.indexOf("://");
+        if (schemeEnd <= 0 || !isScheme(link, schemeEnd)) {
+            return link;
+        }
+
+        int authorityStart = schemeEnd + 3;
+        int authorityEnd = indexOfAny(link, authorityStart, link.length(), "/?#");
+        int pathEnd = indexOfAny(link, authorityEnd, link.length(), "?#");
+        int queryEnd = indexOfAny(link, pathEnd, link.length(), "#");
+
+        int hostStart = link.lastIndexOf('@', authorityEnd - 1) + 1;
+        if (hostStart < authorityStart) {
+            hostStart = authorityStart;
+        }
+        int portStart = link.lastIndexOf(':', authorityEnd - 1);
+        if (portStart < hostStart || link.lastIndexOf(']', authorityEnd - 1) > portStart) {
+            portStart = -1;
+        }
+        int hostEnd = portStart >= 0 ? portStart : authorityEnd;
+
+        boolean keepPort = portStart >= 0 && !isDefaultPort(link, 0, schemeEnd, portStart + 1, authorityEnd);
+
+        if (isCanonical(link, schemeEnd, hostStart, hostEnd, portStart, keepPort, authorityEnd, pathEnd, queryEnd)) {
+            return link;
+        }
+
+        StringBuilder canonical = new StringBuilder(link.length());
+        appendLowerCase(canonical, link, 0, schemeEnd);
+        canonical.append("://");
+        canonical.append(link, authorityStart, hostStart);
+        appendLowerCase(canonical, link, hostStart, hostEnd);
+        if (keepPort) {
+            canonical.append(link, portStart, authorityEnd);
+        }
+
+        int pathStart = canonical.length();
+        if (pathEnd == authorityEnd) {
+            canonical.append('/');
+        } else {
+            appendPercentNormalized(canonical, link, authorityEnd, pathEnd);
+            removeDotSegments(canonical, pathStart);
+        }
+
+        if (pathEnd < queryEnd) {
+            appendQuery(canonical, link, pathEnd + 1, queryEnd);
+        }
+
+        return canonical.toString();
+    }
+
+    /**
+     * Scans a link for anything the canonical form would change, without allocating
+     *
+     * @return True if the link is already canonical
+     */
+    private boolean isCanonical(String link, int schemeEnd, int hostStart, int hostEnd, int portStart, boolean keepPort,
+                                int authorityEnd, int pathEnd, int queryEnd) {
+        if (queryEnd < link.length()) {                       // Fragment
+            return false;
+        }
+        if (portStart >= 0 && !keepPort) {                    // Default or empty port
+            return false;
+        }
+        if (pathEnd == authorityEnd) {                        // Empty path
+            return false;
+        }
+        if (hasUpperCase(link, 0, schemeEnd) || hasUpperCase(link, hostStart, hostEnd)) {
+            return false;
+        }
+        if (link.indexOf('%', authorityEnd) >= 0) {           // Percent-encoding to normalize
+            return false;
+        }
+        if (hasDotSegment(link, authorityEnd, pathEnd)) {
+            return false;
+        }
+        return pathEnd == queryEnd || isQueryCanonical(link, pathEnd + 1, queryEnd);
+    }
+
+    /**
+     * Scans a query for empty, dropped or out of order parameters, without allocating
+     *
+     * @return True if the query is already canonical
+     */
+    private boolean isQueryCanonical(String link, int start, int end) {
+        if (start == end) {
+            return false;
+        }
+
+        int previousStart = -1, previousEnd = -1;
+        int paramStart = start;
+        while (paramStart <= end) {
+            int paramEnd = link.indexOf('&', paramStart);
+            if (paramEnd < 0 || paramEnd > end) {
+                paramEnd = end;
+            }
+
+            if (paramEnd == paramStart || isDropped(link, paramStart, paramEnd)) {
+                return false;
+            }
+            if (sortQuery && previousStart >= 0 && compareRegions(link, previousStart, previousEnd, paramStart, paramEnd) > 0) {
+                return false;
+            }
+
+            previousStart = paramStart;
+            previousEnd = paramEnd;
+            paramStart = paramEnd + 1;
+        }
+        return true;
+    }
+
+    /**
+     * Appends the query parameters in canonical form, dropping tracking and empty parameters
+     */
+    private void appendQuery(StringBuilder canonical, String link, int start, int end) {
+        List<String> params = new ArrayList<>();
+        int paramStart = start;
+        while (paramStart <= end) {
+            int paramEnd = link.indexOf('&', paramStart);
+            if (paramEnd < 0 || paramEnd > end) {
+                paramEnd = end;
+            }
+
+            if (paramEnd > paramStart && !isDropped(link, paramStart, paramEnd)) {
+                StringBuilder param = new StringBuilder(paramEnd - paramStart);
+                appendPercentNormalized(param, link, paramStart, paramEnd);
+                params.add(param.toString());
+            }
+            paramStart = paramEnd + 1;
+        }
+
+        if (params.isEmpty()) {
+            return;
+        }
+        if (sortQuery) {
+            Collections.sort(params);
+        }
+
+        canonical.append('?');
+        for (int i = 0; i < params.size(); i++) {
+            if (i > 0) {
+                canonical.append('&');
+            }
+            canonical.append(params.get(i));
+        }
+    }
+
+    /**
+     * Checks whether a query parameter is one of the dropped tracking parameters
+     */
+    private boolean isDropped(String link, int start, int end) {
+        int nameEnd = link.indexOf('=', start);
+        if (nameEnd < 0 || nameEnd > end) {
+            nameEnd = end;
+        }
+        int nameLength = nameEnd - start;
+
+        for (String name : dropParams) {
+            if (name.length() == nameLength && link.regionMatches(start, name, 0, nameLength)) {
+                return true;
+            }
+        }
+        for (String prefix : dropParamPrefixes) {
+            if (prefix.length() <= nameLength && link.regionMatches(start, prefix, 0, prefix.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Appends a range of a link, decoding percent-encoded unreserved characters and uppercasing the hex
+     * digits of the remaining escapes
+     */
+    private static void appendPercentNormalized(StringBuilder out, String link, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = link.charAt(i);
+            if (c == '%' && i + 2 < end) {
+                int high = Character.digit(link.charAt(i + 1), 16);
+                int low = Character.digit(link.charAt(i + 2), 16);
+                if (high >= 0 && low >= 0) {
+                    char decoded = (char) ((high << 4) | low);
+                    if (isUnreserved(decoded)) {
+                        out.append(decoded);
+                    } else {
+                        out.append('%').append(HEX[high]).append(HEX[low]);
+                    }
+                    i += 2;
+                    continue;
+                }
+            }
+            out.append(c);
+        }
+    }
+
+    /**
+     * Collapses "." and ".." segments of the path starting at the given offset (RFC 3986 section 5.2.4)
+     */
+    private static void removeDotSegments(StringBuilder url, int pathStart) {
+        if (!hasDotSegment(url, pathStart, url.length())) {
+            return;
+        }
+
+        String path = url.substring(pathStart);
+        url.setLength(pathStart);
+
+        List<String> segments = new ArrayList<>();
+        int start = 1;
+        boolean trailingSlash = false;
+        while (start <= path.length()) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            String segment = path.substring(start, end);
+            boolean last = end == path.length();
+
+            if (segment.equals(".")) {
+                trailingSlash = last;
+            } else if (segment.equals("..")) {
+                if (!segments.isEmpty()) {
+                    segments.remove(segments.size() - 1);
+                }
+                trailingSlash = last;
+            } else {
+                segments.add(segment);
+                trailingSlash = false;
+            }
+            start = end + 1;
+        }
+
+        for (String segment : segments) {
+            url.append('/').append(segment);
+        }
+        if (trailingSlash || segments.isEmpty()) {
+            url.append('/');
+        }
+    }
+
+    /**
+     * Checks whether a path contains a "." or ".." segment
+     */
+    private static boolean hasDotSegment(CharSequence path, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (path.charAt(i) != '.' || (i > start && path.charAt(i - 1) != '/')) {
+                continue;
+            }
+            int next = i + 1;
+            if (next < end && path.charAt(next) == '.') {
+                next++;
+            }
+            if (next == end || path.charAt(next) == '/') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int compareRegions(String value, int start1, int end1, int start2, int end2) {
+        int length = Math.min(end1 - start1, end2 - start2);
+        for (int i = 0; i < length; i++) {
+            int difference = value.charAt(start1 + i) - value.charAt(start2 + i);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return (end1 - start1) - (end2 - start2);
+    }
+
+    private static boolean isScheme(String link, int end) {
+        if (!Character.isLetter(link.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < end; i++) {
+            char c = link.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '+' && c != '-' && c != '.') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDefaultPort(String link, int schemeStart, int schemeEnd, int portStart, int portEnd) {
+        if (portStart == portEnd) {
+            return true;
+        }
+        int schemeLength = schemeEnd - schemeStart;
+        int portLength = portEnd - portStart;
+        if (schemeLength == 4 && link.regionMatches(true, schemeStart, "http", 0, 4)) {
+            return portLength == 2 && link.regionMatches(portStart, "80", 0, 2);
+        }
+        if (schemeLength == 5 && link.regionMatches(true, schemeStart, "https", 0, 5)) {
+            return portLength == 3 && link.regionMatches(portStart, "443", 0, 3);
+        }
+        return false;
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    private static boolean hasUpperCase(String link, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = link.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void appendLowerCase(StringBuilder out, String link, int start, int end) {
+        for (int i = start; i < end; i++) {
+            out.append(Character.toLowerCase(link.charAt(i)));
+        }
+    }
+
+    private static int indexOfAny(String link, int start, int end, String chars) {
+        for (int i = start; i < end; i++) {
+            if (chars.indexOf(link.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.jasminefortich.crawler.utils;
+
+public class UrlUtil {
+
+    /**
+     * Extracts the lowercase host of an absolute link without allocating a URL object.
+     * User info and port are stripped, links without a scheme return an empty host.
+     *
+     * @param link The link
+     * @return The host, or an empty string if the link has no host
+     */
+    public static String getHost(String link) {
+        if (link == null) {
+            return "";
+        }
+
+        int schemeEnd = link.indexOf("://");
+        if (schemeEnd < 0) {
+            return "";
+        }
+
+        int start = schemeEnd + 3;
+        int end = link.length();
+        for (int i = start; i < link.length(); i++) {
+            char c = link.charAt(i);
+            if (c == '/' || c == '?' || c == '#') {
+                end = i;
+                break;
+            }
+        }
+
+        int userInfoEnd = link.lastIndexOf('@', end - 1);
+        if (userInfoEnd >= start) {
+            start = userInfoEnd + 1;
+        }
+
+        // Strip the port, ignoring colons inside a bracketed IPv6 address
+        int portStart = link.lastIndexOf(':', end - 1);
+        if (portStart >= start && link.lastIndexOf(']', end - 1) < portStart) {
+            end = portStart;
+        }
+
+        return link.substring(start, end).toLowerCase();
+    }
+
+    /**
+     * Extracts the path and query of an absolute link without allocating a URL object. The fragment is stripped.
+     *
+     * @param link The link
+     * @return The path and query, "/" if the link has a host but no path, or an empty string if the link has no scheme
+     */
+    public static String getPath(String link) {
+        if (link == null) {
+            return "";
+        }
+
+        int schemeEnd = link.indexOf("://");
+        if (schemeEnd < 0) {
+            return "";
+        }
+
+        int end = link.indexOf('#', schemeEnd + 3);
+        if (end < 0) {
+            end = link.length();
+        }
+
+        for (int i = schemeEnd + 3; i < end; i++) {
+            char c = link.charAt(i);
+            if (c == '/') {
+                return link.substring(i, end);
+            }
+            if (c == '?') {
+                return "/" + link.substring(i, end);
+            }
+        }
+        return "/";
+    }
+
+}
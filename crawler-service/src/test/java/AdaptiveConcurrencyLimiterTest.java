@@ -0,0 +1,291 @@
+import com.jasminefortich.crawler.services.AdaptiveConcurrencyLimiter;
+import com.jasminefortich.crawler.services.AimdLimit;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static final long LATENCY = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    public void slowStartGrowsByOnePerRequest() {
+        AimdLimit limit = new AimdLimit(4, 1, 100, 0.5, 2.0);
+
+        for (int i = 0; i < 10; i++) {
+            limit.onSample(LATENCY, false, limit.get());
+        }
+
+        Assert.assertEquals(14, limit.get());
+    }
+
+    @Test
+    public void failureBacksOffOncePerRound() {
+        AimdLimit limit = new AimdLimit(40, 1, 100, 0.5, 2.0);
+
+        limit.onSample(LATENCY, true, 40);
+        limit.onSample(LATENCY, true, 40);
+        Assert.assertEquals(20, limit.get());
+
+        // A round is a limit's worth of requests
+        for (int i = 0; i < 17; i++) {
+            limit.onSample(LATENCY, false, 0);
+        }
+        limit.onSample(LATENCY, true, 40);
+        Assert.assertEquals(20, limit.get());
+        limit.onSample(LATENCY, true, 40);
+        Assert.assertEquals(10, limit.get());
+
+        // After congestion the limit grows by one per limit's worth of requests
+        for (int i = 0; i < 10; i++) {
+            limit.onSample(LATENCY, false, 10);
+        }
+        Assert.assertEquals(10, limit.get());
+        limit.onSample(LATENCY, false, 10);
+        Assert.assertEquals(11, limit.get());
+    }
+
+    @Test
+    public void risingLatencyBacksOff() {
+        AimdLimit limit = new AimdLimit(32, 1, 100, 0.5, 2.0);
+        for (int i = 0; i < 50; i++) {
+            limit.onSample(LATENCY, false, 0);
+        }
+        Assert.assertEquals(32, limit.get());
+
+        for (int i = 0; i < 32; i++) {
+            limit.onSample(10 * LATENCY, false, 0);
+        }
+
+        Assert.assertTrue(limit.get() < 32);
+    }
+
+    @Test
+    public void singleSlowRequestDoesNotBackOff() {
+        AimdLimit limit = new AimdLimit(16, 1, 100, 0.5, 2.0);
+
+        for (int i = 0; i < 200; i++) {
+            limit.onSample(i % 20 == 0 ? 10 * LATENCY : LATENCY, false, 0);
+        }
+
+        Assert.assertEquals(16, limit.get());
+    }
+
+    @Test
+    public void idleLimitDoesNotGrow() {
+        AimdLimit limit = new AimdLimit(16, 1, 100, 0.5, 2.0);
+
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(LATENCY, false, 2);
+        }
+
+        Assert.assertEquals(16, limit.get());
+    }
+
+    @Test
+    public void limitStaysWithinBounds() {
+        AimdLimit limit = new AimdLimit(2, 2, 3, 0.5, 2.0);
+
+        for (int i = 0; i < 10; i++) {
+            limit.onSample(LATENCY, false, 3);
+        }
+        Assert.assertEquals(3, limit.get());
+
+        for (int i = 0; i < 10; i++) {
+            limit.onSample(LATENCY, true, 3);
+        }
+        Assert.assertEquals(2, limit.get());
+    }
+
+    @Test
+    public void acquireBlocksAtLimit() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 4);
+        limiter.acquire();
+        Assert.assertFalse(limiter.tryAcquire());
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                limiter.acquire();
+                acquired.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+
+        Assert.assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+        limiter.release("a", LATENCY, false);
+        Assert.assertTrue(acquired.await(1, TimeUnit.SECONDS));
+        Assert.assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    public void fixedLimiterKeepsMaximums() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 4);
+
+        limiter.tryAcquire();
+        limiter.release("a", LATENCY, true);
+
+        Assert.assertEquals(8, limiter.getLimit());
+        Assert.assertEquals(4, limiter.getHostLimit("a"));
+        Assert.assertTrue(limiter.getThrottledHostLimits().isEmpty());
+    }
+
+    @Test
+    public void overloadedHostIsThrottled() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(true, 8, 64, 4, 4, 0.5, 2.0);
+
+        for (int i = 0; i < 8; i++) {
+            limiter.tryAcquire();
+        }
+        limiter.release("slow", LATENCY, true);
+        for (int i = 0; i < 7; i++) {
+            limiter.release("fast", LATENCY, false);
+        }
+
+        Assert.assertEquals(2, limiter.getHostLimit("slow"));
+        Assert.assertEquals(4, limiter.getHostLimit("fast"));
+        Assert.assertEquals(Integer.valueOf(2), limiter.getThrottledHostLimits().get("slow"));
+        Assert.assertFalse(limiter.getThrottledHostLimits().containsKey("fast"));
+        Assert.assertTrue(limiter.getLimit() < 8);
+    }
+
+    @Test
+    public void hostLimitGrowsWithSuccesses() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(true, 8, 64, 1, 16, 0.5, 2.0);
+
+        for (int i = 0; i < 8; i++) {
+            limiter.tryAcquire();
+            limiter.release("a", LATENCY, false);
+        }
+
+        Assert.assertTrue(limiter.getHostLimit("a") > 1);
+    }
+
+    @Test
+    public void hostLimitDoesNotGrowWhileHostIsIdle() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(true, 8, 64, 4, 16, 0.5, 2.0);
+
+        // One request at a time never uses half of the host's limit
+        for (int i = 0; i < 20; i++) {
+            limiter.tryAcquire();
+            limiter.requestStarted("a");
+            limiter.release("a", LATENCY, false);
+        }
+
+        Assert.assertEquals(4, limiter.getHostLimit("a"));
+    }
+
+    @Test
+    public void busyHostLimitGrows() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(true, 8, 64, 4, 16, 0.5, 2.0);
+
+        for (int i = 0; i < 4; i++) {
+            limiter.tryAcquire();
+            limiter.requestStarted("a");
+        }
+        for (int i = 0; i < 4; i++) {
+            limiter.release("a", LATENCY, false);
+        }
+
+        Assert.assertTrue(limiter.getHostLimit("a") > 4);
+    }
+
+    @Test
+    public void idleHostsAreForgotten() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(true, 8, 64, 4, 16, 0.5, 2.0);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire();
+            limiter.requestStarted("host-" + i);
+            limiter.release("host-" + i, LATENCY, false);
+        }
+        Assert.assertEquals(0, limiter.getHostCount());
+
+        limiter.tryAcquire();
+        limiter.requestStarted("slow");
+        Assert.assertEquals(1, limiter.getHostCount());
+        limiter.release("slow", LATENCY, true);
+
+        // A throttled host is kept until its limit has recovered
+        Assert.assertEquals(1, limiter.getHostCount());
+        Assert.assertEquals(2, limiter.getHostLimit("slow"));
+    }
+
+    @Test
+    public void hostsIdleForTheTimeoutAreForgotten() throws InterruptedException {
+        // The default settings, where a host's first success already raises its limit above the initial value
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(true, 16, 1000, 1, 4, 0.9, 2.0,
+                TimeUnit.MILLISECONDS.toNanos(500));
+
+        for (int i = 0; i < 1000; i++) {
+            limiter.tryAcquire();
+            limiter.requestStarted("host-" + i);
+            limiter.release("host-" + i, LATENCY, false);
+        }
+        Assert.assertEquals(2, limiter.getHostLimit("host-0"));
+        Assert.assertEquals(1000, limiter.getHostCount());
+
+        Thread.sleep(600);
+        limiter.tryAcquire();
+        limiter.requestStarted("busy");
+        limiter.tryAcquire();
+        limiter.requestStarted("last");
+        limiter.release("last", LATENCY, false);
+
+        // Only the host still in flight and the host that just went idle are kept
+        Assert.assertEquals(2, limiter.getHostCount());
+        Assert.assertEquals(1, limiter.getHostLimit("host-0"));
+        Assert.assertEquals(2, limiter.getHostLimit("last"));
+    }
+
+    @Test
+    public void raisingFixedMaximumsWakesWaiters() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 4);
+        limiter.acquire();
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                limiter.acquire();
+                acquired.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+        Assert.assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+
+        limiter.setMaxLimits(2, 8);
+        Assert.assertTrue(acquired.await(1, TimeUnit.SECONDS));
+        Assert.assertEquals(2, limiter.getLimit());
+        Assert.assertEquals(8, limiter.getHostLimit("a"));
+    }
+
+    @Test
+    public void loweringMaximumsClampsAdaptiveLimits() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(true, 32, 64, 8, 16, 0.5, 2.0);
+        limiter.tryAcquire();
+        limiter.release("a", LATENCY, false);
+
+        limiter.setMaxLimits(10, 2);
+
+        Assert.assertEquals(10, limiter.getLimit());
+        Assert.assertEquals(2, limiter.getHostLimit("a"));
+        Assert.assertEquals(2, limiter.getHostLimit("b"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maximumBelowOneFails() {
+        new AdaptiveConcurrencyLimiter(8, 4).setMaxLimits(0, 4);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void releaseWithoutAcquireFails() {
+        new AdaptiveConcurrencyLimiter(8, 4).release();
+    }
+
+}
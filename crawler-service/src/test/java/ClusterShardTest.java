@@ -0,0 +1,193 @@
+import com.jasminefortich.crawler.models.ClusterStatus;
+import com.jasminefortich.crawler.services.ClusterShard;
+import com.jasminefortich.crawler.services.ClusterTransport;
+import com.jasminefortich.crawler.services.ConsistentHashRing;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ClusterShardTest {
+
+    private static final long HOUR = 60 * 60 * 1000;
+
+    private final ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("http://node-0", "http://node-1"), 64);
+    private final StubTransport transport = new StubTransport();
+    private final List<ClusterShard> shards = new ArrayList<>();
+
+    @After
+    public void teardown() {
+        shards.forEach(ClusterShard::close);
+    }
+
+    @Test
+    public void forwardsFullBatchesToOwner() throws InterruptedException {
+        ClusterShard shard = createShard(0, 2, HOUR, HOUR, () -> { });
+        String host = hostOf(1);
+
+        shard.forward("http://" + host + "/a", 1);
+        Assert.assertFalse(shard.getStatus().isIdle());
+        shard.forward("http://" + host + "/b", 2);
+
+        Assert.assertTrue(transport.sent.await(1, TimeUnit.SECONDS));
+        String batch = transport.batches.get(0);
+        Assert.assertTrue(batch.startsWith("#batch\t0-"));
+        Assert.assertEquals("1\thttp://" + host + "/a\n2\thttp://" + host + "/b\n", batch.substring(batch.indexOf('\n') + 1));
+        Assert.assertEquals("http://node-1", transport.batchNodes.get(0));
+        awaitSent(shard, 2);
+        Assert.assertTrue(shard.getStatus().isIdle());
+    }
+
+    @Test
+    public void retriesUndeliveredLinks() throws InterruptedException {
+        transport.failures.set(2);
+        ClusterShard shard = createShard(0, 100, 10, HOUR, () -> { });
+
+        shard.forward("http://" + hostOf(1) + "/a", 1);
+
+        awaitSent(shard, 1);
+        Assert.assertEquals(1, transport.batches.size());
+        Assert.assertTrue(shard.getStatus().isIdle());
+    }
+
+    @Test
+    public void resentBatchIsReceivedOnce() throws InterruptedException {
+        List<String> received = new CopyOnWriteArrayList<>();
+        ClusterShard receiver = createShard(1, 100, HOUR, HOUR, () -> { });
+        AtomicInteger lostAnswers = new AtomicInteger(2);
+        ClusterTransport transport = new StubTransport() {
+            @Override
+            public void sendLinks(String node, String batch) throws IOException {
+                receiver.receive(batch, (link, depth) -> received.add(link));
+                // The batch was queued, but its answer never arrives
+                if (lostAnswers.getAndDecrement() > 0) {
+                    throw new IOException("Timed out");
+                }
+            }
+        };
+        ClusterShard sender = new ClusterShard(ring, 0, transport, 1, 10, HOUR, () -> true, () -> { });
+        sender.start();
+        shards.add(sender);
+
+        sender.forward("http://" + hostOf(1) + "/a", 1);
+        sender.forward("http://" + hostOf(1) + "/b", 1);
+
+        awaitSent(sender, 2);
+        Assert.assertEquals(Arrays.asList("http://" + hostOf(1) + "/a", "http://" + hostOf(1) + "/b"), received);
+        Assert.assertEquals(sender.getSentLinks(), receiver.getReceivedLinks());
+    }
+
+    @Test
+    public void coordinatorFinishesIdleCluster() throws InterruptedException {
+        transport.statuses.put("http://node-1", new ClusterStatus(true, true, 0, 0));
+        CountDownLatch finished = new CountDownLatch(1);
+        ClusterShard shard = createShard(0, 100, 10, 10, finished::countDown);
+
+        Assert.assertTrue(finished.await(1, TimeUnit.SECONDS));
+        Assert.assertEquals(Arrays.asList("http://node-1"), transport.finished);
+        Assert.assertFalse(shard.isCrawling());
+    }
+
+    @Test
+    public void coordinatorWaitsForLinksInTransit() throws InterruptedException {
+        // Node 1 has sent a link node 0 hasn't received yet
+        transport.statuses.put("http://node-1", new ClusterStatus(true, true, 1, 0));
+        CountDownLatch finished = new CountDownLatch(1);
+        List<String> received = new CopyOnWriteArrayList<>();
+        ClusterShard shard = createShard(0, 100, 10, 10, finished::countDown);
+
+        Assert.assertFalse(finished.await(200, TimeUnit.MILLISECONDS));
+
+        Assert.assertEquals(1, shard.receive("3\thttp://" + hostOf(0) + "/a\n", (link, depth) -> received.add(depth + " " + link)));
+        Assert.assertTrue(finished.await(1, TimeUnit.SECONDS));
+        Assert.assertEquals(Arrays.asList("3 http://" + hostOf(0) + "/a"), received);
+    }
+
+    @Test
+    public void coordinatorWaitsForNodesToStart() throws InterruptedException {
+        transport.statuses.put("http://node-1", new ClusterStatus(false, false, 0, 0));
+        CountDownLatch finished = new CountDownLatch(1);
+        createShard(0, 100, 10, 10, finished::countDown);
+
+        Assert.assertFalse(finished.await(200, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(transport.finished.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void malformedBatchFails() {
+        ClusterShard.decode("http://a.com/\n", (link, depth) -> { });
+    }
+
+    private ClusterShard createShard(int nodeIndex, int batchSize, long flushIntervalMillis, long statusIntervalMillis,
+                                     Runnable onFinished) {
+        ClusterShard shard = new ClusterShard(ring, nodeIndex, transport, batchSize, flushIntervalMillis, statusIntervalMillis,
+                () -> true, onFinished);
+        shard.start();
+        shards.add(shard);
+        return shard;
+    }
+
+    /**
+     * Finds a host owned by a node
+     */
+    private String hostOf(int node) {
+        for (int i = 0; ; i++) {
+            String host = "host-" + i + ".com";
+            if (ring.getOwner(host) == node) {
+                return host;
+            }
+        }
+    }
+
+    private static void awaitSent(ClusterShard shard, long links) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (shard.getSentLinks() < links && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(links, shard.getSentLinks());
+    }
+
+    private static class StubTransport implements ClusterTransport {
+        private final List<String> batches = new CopyOnWriteArrayList<>();
+        private final List<String> batchNodes = new CopyOnWriteArrayList<>();
+        private final List<String> finished = new CopyOnWriteArrayList<>();
+        private final Map<String, ClusterStatus> statuses = new ConcurrentHashMap<>();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final CountDownLatch sent = new CountDownLatch(1);
+
+        @Override
+        public void sendLinks(String node, String batch) throws IOException {
+            if (failures.getAndDecrement() > 0) {
+                throw new IOException("Unavailable");
+            }
+            batches.add(batch);
+            batchNodes.add(node);
+            sent.countDown();
+        }
+
+        @Override
+        public ClusterStatus getStatus(String node) throws IOException {
+            ClusterStatus status = statuses.get(node);
+            if (status == null) {
+                throw new IOException("Unreachable");
+            }
+            return status;
+        }
+
+        @Override
+        public void finish(String node) {
+            finished.add(node);
+        }
+    }
+
+}
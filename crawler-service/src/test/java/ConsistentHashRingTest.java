@@ -0,0 +1,58 @@
+import com.jasminefortich.crawler.services.ConsistentHashRing;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class ConsistentHashRingTest {
+
+    @Test
+    public void ownerDoesNotDependOnNodeOrder() {
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("a", "b", "c"), 64);
+        ConsistentHashRing reordered = new ConsistentHashRing(Arrays.asList("c", "a", "b"), 64);
+
+        for (int i = 0; i < 1000; i++) {
+            String host = "host-" + i + ".com";
+            Assert.assertEquals(ring.getNodes().get(ring.getOwner(host)), reordered.getNodes().get(reordered.getOwner(host)));
+        }
+    }
+
+    @Test
+    public void spreadsHostsEvenly() {
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("a", "b", "c"), 128);
+
+        int[] counts = new int[3];
+        for (int i = 0; i < 30_000; i++) {
+            counts[ring.getOwner("host-" + i + ".com")]++;
+        }
+
+        for (int count : counts) {
+            Assert.assertTrue("Uneven share " + count, count > 7_000 && count < 13_000);
+        }
+    }
+
+    @Test
+    public void addingNodeOnlyMovesHostsToIt() {
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("a", "b", "c"), 128);
+        ConsistentHashRing grown = new ConsistentHashRing(Arrays.asList("a", "b", "c", "d"), 128);
+
+        int moved = 0;
+        for (int i = 0; i < 10_000; i++) {
+            String host = "host-" + i + ".com";
+            String before = ring.getNodes().get(ring.getOwner(host));
+            String after = grown.getNodes().get(grown.getOwner(host));
+            if (!before.equals(after)) {
+                Assert.assertEquals("d", after);
+                moved++;
+            }
+        }
+        Assert.assertTrue("Moved " + moved, moved > 1_500 && moved < 3_500);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyRingFails() {
+        new ConsistentHashRing(List.of(), 128);
+    }
+
+}
@@ -0,0 +1,45 @@
+import com.jasminefortich.crawler.services.ContentPolicy;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+public class ContentPolicyTest {
+
+    @Test
+    public void parsesHtmlByDefault() {
+        ContentPolicy policy = new ContentPolicy();
+
+        Assert.assertTrue(policy.isParsed("text/html"));
+        Assert.assertTrue(policy.isParsed("Application/XHTML+XML"));
+        Assert.assertTrue(policy.isParsed(null));
+        Assert.assertFalse(policy.isParsed("application/pdf"));
+        Assert.assertFalse(policy.isParsed("image/png"));
+        Assert.assertEquals(0, policy.getMaxBodyBytes("text/html"));
+        Assert.assertFalse(policy.isHeadRequests());
+    }
+
+    @Test
+    public void looksUpMaximumByTypeThenWildcard() {
+        Map<String, Long> maximums = ContentPolicy.parseTypeMaxBodyBytes(Arrays.asList("text/html=2000", " text/* = 500 ", ""));
+        ContentPolicy policy = new ContentPolicy(Arrays.asList("text/html", "text/plain"), 1000, maximums, false);
+
+        Assert.assertEquals(2000, policy.getMaxBodyBytes("text/html"));
+        Assert.assertEquals(500, policy.getMaxBodyBytes("TEXT/PLAIN"));
+        Assert.assertEquals(1000, policy.getMaxBodyBytes("application/xml"));
+        Assert.assertEquals(1000, policy.getMaxBodyBytes(null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void malformedMaximumFails() {
+        ContentPolicy.parseTypeMaxBodyBytes(Collections.singletonList("text/html:2000"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeMaximumFails() {
+        new ContentPolicy(Collections.singletonList("text/html"), -1, Collections.emptyMap(), false);
+    }
+
+}
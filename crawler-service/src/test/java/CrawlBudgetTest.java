@@ -0,0 +1,55 @@
+import com.jasminefortich.crawler.services.CrawlBudget;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CrawlBudgetTest {
+
+    @Test
+    public void unlimitedBudgetAdmitsEverything() {
+        CrawlBudget budget = new CrawlBudget();
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertTrue(budget.tryAdmit("example.com"));
+        }
+        budget.recordBytes(Long.MAX_VALUE / 2);
+
+        Assert.assertFalse(budget.isExhausted());
+        Assert.assertNull(budget.getExhaustedReason());
+    }
+
+    @Test
+    public void capsPages() {
+        CrawlBudget budget = new CrawlBudget(3, 2, 0, 0);
+
+        Assert.assertTrue(budget.tryAdmit("a"));
+        Assert.assertTrue(budget.tryAdmit("a"));
+        Assert.assertFalse(budget.tryAdmit("a"));
+        Assert.assertTrue(budget.tryAdmit("b"));
+        // The global cap rejection doesn't use up a page of host c
+        Assert.assertFalse(budget.tryAdmit("c"));
+        Assert.assertFalse(budget.isExhausted());
+    }
+
+    @Test
+    public void exhaustsAtByteLimit() {
+        CrawlBudget budget = new CrawlBudget(0, 0, 100, 0);
+
+        budget.recordBytes(99);
+        Assert.assertFalse(budget.isExhausted());
+
+        budget.recordBytes(1);
+        Assert.assertTrue(budget.isExhausted());
+        Assert.assertEquals(CrawlBudget.BYTE_LIMIT, budget.getExhaustedReason());
+        Assert.assertFalse(budget.tryAdmit("a"));
+    }
+
+    @Test
+    public void exhaustsAtTimeLimit() throws InterruptedException {
+        CrawlBudget budget = new CrawlBudget(0, 0, 0, 20);
+        Assert.assertFalse(budget.isExhausted());
+
+        Thread.sleep(30);
+        Assert.assertTrue(budget.isExhausted());
+        Assert.assertEquals(CrawlBudget.TIME_LIMIT, budget.getExhaustedReason());
+    }
+
+}
@@ -0,0 +1,215 @@
+import com.jasminefortich.crawler.services.CrawlCheckpoint;
+import com.jasminefortich.crawler.services.CrawlFrontier;
+import com.jasminefortich.crawler.services.FingerprintSeenUrlStore;
+import com.jasminefortich.crawler.services.SeenUrlStore;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class CrawlCheckpointTest {
+
+    private static final String ENDPOINT = "http://localhost/start";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CrawlCheckpoint createCheckpoint() {
+        return new CrawlCheckpoint(folder.getRoot().toPath(), 1 << 20, 60_000, 60_000);
+    }
+
+    /**
+     * Queues links in a frontier the way the crawler does, journaling them after they are queued
+     */
+    private void enqueue(CrawlCheckpoint checkpoint, SeenUrlStore seen, CrawlFrontier frontier, String... links) {
+        for (String link : links) {
+            if (seen.add(link)) {
+                frontier.add(link);
+                checkpoint.enqueued(link);
+            }
+        }
+    }
+
+    /**
+     * Takes and completes the next link the way the crawler does
+     */
+    private String crawlNext(CrawlCheckpoint checkpoint, CrawlFrontier frontier) throws InterruptedException {
+        String link = frontier.take();
+        frontier.complete(link);
+        checkpoint.visited(link);
+        return link;
+    }
+
+    private List<String> files(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            return files.map(file -> file.getFileName().toString()).filter(name -> name.startsWith(prefix)).sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void nothingToResume() throws IOException {
+        CrawlCheckpoint checkpoint = createCheckpoint();
+
+        Assert.assertEquals(-1, checkpoint.open(ENDPOINT, new FingerprintSeenUrlStore(16, 1), new CrawlFrontier()));
+        checkpoint.close();
+    }
+
+    @Test
+    public void resumesFromJournal() throws IOException, InterruptedException {
+        SeenUrlStore seen = new FingerprintSeenUrlStore(16, 1);
+        CrawlFrontier frontier = new CrawlFrontier();
+        CrawlCheckpoint checkpoint = createCheckpoint();
+        checkpoint.open(ENDPOINT, seen, frontier);
+
+        enqueue(checkpoint, seen, frontier, "http://a/1", "http://a/2", "http://a/3");
+        Assert.assertEquals("http://a/1", crawlNext(checkpoint, frontier));
+        Assert.assertEquals("http://a/2", frontier.take());
+        checkpoint.close();
+
+        SeenUrlStore resumedSeen = new FingerprintSeenUrlStore(16, 1);
+        CrawlFrontier resumedFrontier = new CrawlFrontier();
+        CrawlCheckpoint resumed = createCheckpoint();
+
+        Assert.assertEquals(2, resumed.open(ENDPOINT, resumedSeen, resumedFrontier));
+        Assert.assertEquals(3, resumedSeen.size());
+        Assert.assertTrue(resumedSeen.contains("http://a/1"));
+        Assert.assertEquals(Arrays.asList("http://a/2", "http://a/3"), resumedFrontier.getPendingLinks());
+        resumed.close();
+    }
+
+    @Test
+    public void snapshotCompactsJournal() throws IOException, InterruptedException {
+        SeenUrlStore seen = new FingerprintSeenUrlStore(16, 1);
+        CrawlFrontier frontier = new CrawlFrontier();
+        CrawlCheckpoint checkpoint = createCheckpoint();
+        checkpoint.open(ENDPOINT, seen, frontier);
+
+        enqueue(checkpoint, seen, frontier, "http://a/1", "http://a/2");
+        crawlNext(checkpoint, frontier);
+        checkpoint.snapshot();
+        enqueue(checkpoint, seen, frontier, "http://a/3", "http://a/1");
+        crawlNext(checkpoint, frontier);
+        checkpoint.snapshot();
+        enqueue(checkpoint, seen, frontier, "http://a/4");
+        checkpoint.close();
+
+        Assert.assertEquals(1, files("snapshot-").size());
+        Assert.assertEquals(1, files("journal-").size());
+
+        SeenUrlStore resumedSeen = new FingerprintSeenUrlStore(16, 1);
+        CrawlFrontier resumedFrontier = new CrawlFrontier();
+        CrawlCheckpoint resumed = createCheckpoint();
+
+        Assert.assertEquals(2, resumed.open(ENDPOINT, resumedSeen, resumedFrontier));
+        Assert.assertEquals(4, resumedSeen.size());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("http://a/3", "http://a/4")), new HashSet<>(resumedFrontier.getPendingLinks()));
+        resumed.close();
+    }
+
+    @Test
+    public void snapshotIncludesSpilledLinks() throws IOException, InterruptedException {
+        SeenUrlStore seen = new FingerprintSeenUrlStore(16, 1);
+        CrawlFrontier frontier = new CrawlFrontier(Integer.MAX_VALUE, 0, 2, folder.newFolder("spill").toPath());
+        CrawlCheckpoint checkpoint = createCheckpoint();
+        checkpoint.open(ENDPOINT, seen, frontier);
+
+        enqueue(checkpoint, seen, frontier, "http://a/1", "http://a/2", "http://a/3", "http://a/4", "http://a/5");
+        crawlNext(checkpoint, frontier);
+        checkpoint.snapshot();
+        checkpoint.close();
+
+        CrawlFrontier resumedFrontier = new CrawlFrontier();
+        CrawlCheckpoint resumed = createCheckpoint();
+        Assert.assertEquals(4, resumed.open(ENDPOINT, new FingerprintSeenUrlStore(16, 1), resumedFrontier));
+        Assert.assertEquals(Arrays.asList("http://a/2", "http://a/3", "http://a/4", "http://a/5"), resumedFrontier.getPendingLinks());
+        resumed.close();
+    }
+
+    @Test
+    public void tornRecordEndsReplay() throws IOException {
+        SeenUrlStore seen = new FingerprintSeenUrlStore(16, 1);
+        CrawlFrontier frontier = new CrawlFrontier();
+        CrawlCheckpoint checkpoint = createCheckpoint();
+        checkpoint.open(ENDPOINT, seen, frontier);
+        enqueue(checkpoint, seen, frontier, "http://a/1", "http://a/2");
+        checkpoint.close();
+
+        // Corrupt the last byte of the second record, as if the crash happened while writing it
+        Path journal = folder.getRoot().toPath().resolve(files("journal-").get(0));
+        try (RandomAccessFile file = new RandomAccessFile(journal.toFile(), "rw")) {
+            long secondRecordEnd = 2 * (4 + 4 + 1 + "http://a/1".length());
+            file.seek(secondRecordEnd - 1);
+            file.write('X');
+        }
+
+        CrawlFrontier resumedFrontier = new CrawlFrontier();
+        CrawlCheckpoint resumed = createCheckpoint();
+        Assert.assertEquals(1, resumed.open(ENDPOINT, new FingerprintSeenUrlStore(16, 1), resumedFrontier));
+        Assert.assertEquals(Arrays.asList("http://a/1"), resumedFrontier.getPendingLinks());
+        resumed.close();
+    }
+
+    @Test
+    public void otherEndpointStartsOver() throws IOException {
+        SeenUrlStore seen = new FingerprintSeenUrlStore(16, 1);
+        CrawlFrontier frontier = new CrawlFrontier();
+        CrawlCheckpoint checkpoint = createCheckpoint();
+        checkpoint.open(ENDPOINT, seen, frontier);
+        enqueue(checkpoint, seen, frontier, "http://a/1");
+        checkpoint.close();
+
+        SeenUrlStore otherSeen = new FingerprintSeenUrlStore(16, 1);
+        CrawlCheckpoint other = createCheckpoint();
+        Assert.assertEquals(-1, other.open("http://localhost/other", otherSeen, new CrawlFrontier()));
+        Assert.assertEquals(0, otherSeen.size());
+        other.close();
+    }
+
+    @Test
+    public void finishDeletesCheckpoint() throws IOException {
+        SeenUrlStore seen = new FingerprintSeenUrlStore(16, 1);
+        CrawlFrontier frontier = new CrawlFrontier();
+        CrawlCheckpoint checkpoint = createCheckpoint();
+        checkpoint.open(ENDPOINT, seen, frontier);
+        enqueue(checkpoint, seen, frontier, "http://a/1");
+        checkpoint.snapshot();
+        checkpoint.finish();
+
+        Assert.assertTrue(files("").isEmpty());
+        CrawlCheckpoint next = createCheckpoint();
+        Assert.assertEquals(-1, next.open(ENDPOINT, new FingerprintSeenUrlStore(16, 1), new CrawlFrontier()));
+        next.close();
+    }
+
+    @Test
+    public void unreadableSnapshotStartsOver() throws IOException {
+        SeenUrlStore seen = new FingerprintSeenUrlStore(16, 1);
+        CrawlFrontier frontier = new CrawlFrontier();
+        CrawlCheckpoint checkpoint = createCheckpoint();
+        checkpoint.open(ENDPOINT, seen, frontier);
+        enqueue(checkpoint, seen, frontier, "http://a/1");
+        checkpoint.snapshot();
+        checkpoint.close();
+
+        Files.write(folder.getRoot().toPath().resolve(files("snapshot-").get(0)), new byte[] { 1, 2, 3 });
+
+        SeenUrlStore resumedSeen = new FingerprintSeenUrlStore(16, 1);
+        CrawlFrontier resumedFrontier = new CrawlFrontier();
+        CrawlCheckpoint resumed = createCheckpoint();
+        Assert.assertEquals(-1, resumed.open(ENDPOINT, resumedSeen, resumedFrontier));
+        Assert.assertEquals(0, resumedSeen.size());
+        Assert.assertEquals(0, resumedFrontier.size());
+        resumed.close();
+    }
+
+}
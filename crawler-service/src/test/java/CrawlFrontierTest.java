@@ -0,0 +1,257 @@
+import com.jasminefortich.crawler.services.CrawlFrontier;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class CrawlFrontierTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void emptyFrontierIsFinished() throws InterruptedException {
+        CrawlFrontier frontier = new CrawlFrontier();
+
+        Assert.assertNull(frontier.take());
+    }
+
+    @Test
+    public void takesLinksInOrder() throws InterruptedException {
+        CrawlFrontier frontier = new CrawlFrontier();
+        frontier.addAll(Arrays.asList("http://a", "http://b"));
+
+        Assert.assertEquals("http://a", frontier.take());
+        Assert.assertEquals("http://b", frontier.take());
+        Assert.assertEquals(2, frontier.getInFlightCount());
+    }
+
+    @Test
+    public void takeReturnsNullOnceAllLinksComplete() throws InterruptedException {
+        CrawlFrontier frontier = new CrawlFrontier();
+        frontier.add("http://a");
+
+        String link = frontier.take();
+        frontier.complete(link);
+
+        Assert.assertNull(frontier.take());
+        Assert.assertEquals(0, frontier.getInFlightCount());
+    }
+
+    @Test
+    public void takeBlocksUntilInFlightLinkAddsWork() throws InterruptedException {
+        CrawlFrontier frontier = new CrawlFrontier();
+        frontier.add("http://a");
+        String parent = frontier.take();
+
+        CountDownLatch waiting = new CountDownLatch(1);
+        AtomicReference<String> taken = new AtomicReference<>();
+        Thread coordinator = new Thread(() -> {
+            try {
+                waiting.countDown();
+                taken.set(frontier.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        coordinator.start();
+
+        waiting.await();
+        Thread.sleep(100);
+        Assert.assertTrue(coordinator.isAlive());
+
+        frontier.add("http://a/child");
+        frontier.complete(parent);
+        coordinator.join(TimeUnit.SECONDS.toMillis(5));
+
+        Assert.assertEquals("http://a/child", taken.get());
+    }
+
+    @Test
+    public void takeReturnsNullWhenLastInFlightLinkCompletes() throws InterruptedException {
+        CrawlFrontier frontier = new CrawlFrontier();
+        frontier.add("http://a");
+        String parent = frontier.take();
+
+        AtomicReference<String> taken = new AtomicReference<>("unset");
+        Thread coordinator = new Thread(() -> {
+            try {
+                taken.set(frontier.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        coordinator.start();
+
+        frontier.complete(parent);
+        coordinator.join(TimeUnit.SECONDS.toMillis(5));
+
+        Assert.assertFalse(coordinator.isAlive());
+        Assert.assertNull(taken.get());
+    }
+
+    @Test
+    public void roundRobinsAcrossHosts() throws InterruptedException {
+        CrawlFrontier frontier = new CrawlFrontier();
+        frontier.addAll(Arrays.asList("http://a/1", "http://a/2", "http://a/3", "http://b/1", "http://c/1"));
+
+        Assert.assertEquals("http://a/1", frontier.take());
+        Assert.assertEquals("http://b/1", frontier.take());
+        Assert.assertEquals("http://c/1", frontier.take());
+        Assert.assertEquals("http://a/2", frontier.take());
+        Assert.assertEquals("http://a/3", frontier.take());
+    }
+
+    @Test
+    public void limitsInFlightLinksPerHost() throws InterruptedException {
+        CrawlFrontier frontier = new CrawlFrontier(1, 0);
+        frontier.addAll(Arrays.asList("http://a/1", "http://a/2", "http://b/1"));
+
+        Assert.assertEquals("http://a/1", frontier.take());
+        Assert.assertEquals("http://b/1", frontier.take());
+
+        frontier.complete("http://a/1");
+        Assert.assertEquals("http://a/2", frontier.take());
+    }
+
+    @Test
+    public void delaysLinksOfTheSameHost() throws InterruptedException {
+        CrawlFrontier frontier = new CrawlFrontier(10, 200);
+        frontier.addAll(Arrays.asList("http://a/1", "http://a/2", "http://b/1"));
+
+        long start = System.nanoTime();
+        Assert.assertEquals("http://a/1", frontier.take());
+        Assert.assertEquals("http://b/1", frontier.take());
+        Assert.assertEquals("http://a/2", frontier.take());
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Assert.assertTrue("Expected a delay but took " + elapsedMillis + "ms", elapsedMillis >= 200);
+    }
+
+    @Test
+    public void delayAppliesToLinksAddedAfterHostDrained() throws InterruptedException {
+        CrawlFrontier frontier = new CrawlFrontier(10, 200);
+        frontier.add("http://a/1");
+
+        long start = System.nanoTime();
+        frontier.complete(frontier.take());
+        frontier.add("http://a/2");
+        Assert.assertEquals("http://a/2", frontier.take());
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Assert.assertTrue("Expected a delay but took " + elapsedMillis + "ms", elapsedMillis >= 200);
+    }
+
+    @Test
+    public void takeBlocksWhileHeld() throws InterruptedException {
+        CrawlFrontier frontier = new CrawlFrontier();
+        frontier.hold();
+
+        AtomicReference<String> taken = new AtomicReference<>("unset");
+        Thread coordinator = new Thread(() -> {
+            try {
+                taken.set(frontier.take());
+                frontier.complete(taken.get());
+                taken.set(frontier.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        coordinator.start();
+
+        Thread.sleep(100);
+        Assert.assertTrue(coordinator.isAlive());
+
+        frontier.add("http://a");
+        Thread.sleep(100);
+        Assert.assertTrue(coordinator.isAlive());
+
+        frontier.release();
+        coordinator.join(TimeUnit.SECONDS.toMillis(5));
+
+        Assert.assertFalse(coordinator.isAlive());
+        Assert.assertNull(taken.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void releaseWithoutHoldFails() {
+        new CrawlFrontier().release();
+    }
+
+    @Test
+    public void pendingLinksIncludeInFlightLinks() throws InterruptedException {
+        CrawlFrontier frontier = new CrawlFrontier();
+        frontier.addAll(Arrays.asList("http://a/1", "http://a/2", "http://a/3"));
+
+        frontier.complete(frontier.take());
+        frontier.take();
+
+        Assert.assertEquals(Arrays.asList("http://a/2", "http://a/3"), frontier.getPendingLinks());
+    }
+
+    @Test
+    public void spillsBeyondWindowInOrder() throws InterruptedException, IOException {
+        CrawlFrontier frontier = new CrawlFrontier(Integer.MAX_VALUE, 0, 4, folder.getRoot().toPath());
+        List<String> links = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            links.add("http://a/" + i);
+        }
+        frontier.addAll(links);
+
+        Assert.assertEquals(20, frontier.size());
+        Assert.assertEquals(16, frontier.getSpilledCount());
+        Assert.assertEquals(links, frontier.getPendingLinks());
+
+        List<String> taken = new ArrayList<>();
+        String link;
+        while ((link = frontier.take()) != null) {
+            taken.add(link);
+            frontier.complete(link);
+        }
+
+        Assert.assertEquals(links, taken);
+        Assert.assertEquals(0, frontier.getSpilledCount());
+        Assert.assertEquals(0, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void clearDeletesSpilledLinks() {
+        CrawlFrontier frontier = new CrawlFrontier(Integer.MAX_VALUE, 0, 2, folder.getRoot().toPath());
+        frontier.addAll(Arrays.asList("http://a/1", "http://a/2", "http://a/3", "http://a/4"));
+        Assert.assertEquals(1, folder.getRoot().list().length);
+
+        frontier.clear();
+
+        Assert.assertEquals(0, frontier.size());
+        Assert.assertEquals(0, folder.getRoot().list().length);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void completeWithoutTakeFails() {
+        new CrawlFrontier().complete("http://a");
+    }
+
+    @Test
+    public void discardQueuedKeepsLinksInFlight() throws InterruptedException {
+        CrawlFrontier frontier = new CrawlFrontier(Integer.MAX_VALUE, 0, 2, folder.getRoot().toPath());
+        frontier.addAll(Arrays.asList("http://a/1", "http://a/2", "http://a/3", "http://b/1"));
+        String link = frontier.take();
+
+        Assert.assertEquals(3, frontier.discardQueued());
+        Assert.assertEquals(0, frontier.size());
+        Assert.assertEquals(0, folder.getRoot().list().length);
+        Assert.assertEquals(1, frontier.getInFlightCount());
+
+        frontier.complete(link);
+        Assert.assertNull(frontier.take());
+    }
+
+}
@@ -0,0 +1,146 @@
+import com.jasminefortich.crawler.models.CrawlStatistics;
+import com.jasminefortich.crawler.models.HistogramSnapshot;
+import com.jasminefortich.crawler.services.CrawlMetrics;
+import com.jasminefortich.crawler.utils.LogHistogram;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class CrawlMetricsTest {
+
+    @Test
+    public void emptyHistogram() {
+        HistogramSnapshot snapshot = new LogHistogram().snapshot();
+
+        Assert.assertEquals(0, snapshot.getCount());
+        Assert.assertEquals(0, snapshot.getP99());
+    }
+
+    @Test
+    public void histogramKeepsSmallValuesExact() {
+        LogHistogram histogram = new LogHistogram();
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(10, snapshot.getCount());
+        Assert.assertEquals(1, snapshot.getMin());
+        Assert.assertEquals(10, snapshot.getMax());
+        Assert.assertEquals(5.5, snapshot.getMean(), 0.0001);
+        Assert.assertEquals(5, snapshot.getP50());
+        Assert.assertEquals(9, snapshot.getP90());
+        Assert.assertEquals(10, snapshot.getP99());
+    }
+
+    @Test
+    public void histogramPercentilesWithinBucketPrecision() {
+        LogHistogram histogram = new LogHistogram();
+        for (int i = 1; i <= 100_000; i++) {
+            histogram.record(i);
+        }
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertWithinPercent(50_000, snapshot.getP50(), 6.25);
+        assertWithinPercent(90_000, snapshot.getP90(), 6.25);
+        assertWithinPercent(99_000, snapshot.getP99(), 6.25);
+        Assert.assertEquals(100_000, snapshot.getMax());
+    }
+
+    @Test
+    public void histogramRecordsExtremes() {
+        LogHistogram histogram = new LogHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(0, snapshot.getMin());
+        Assert.assertEquals(Long.MAX_VALUE, snapshot.getMax());
+        Assert.assertEquals(Long.MAX_VALUE, snapshot.getP99());
+    }
+
+    @Test
+    public void recordsResponsesAndErrors() {
+        CrawlMetrics metrics = new CrawlMetrics();
+        metrics.recordResponse("http://a.com/1", 200, true, 1000, TimeUnit.MILLISECONDS.toNanos(20));
+        metrics.recordResponse("http://a.com/2", 200, true, 3000, TimeUnit.MILLISECONDS.toNanos(40));
+        metrics.recordResponse("http://B.com/1", 404, false, 0, TimeUnit.MILLISECONDS.toNanos(10));
+        metrics.recordError("http://c.com:8080/1", TimeUnit.MILLISECONDS.toNanos(30));
+        metrics.finish();
+
+        CrawlStatistics statistics = metrics.snapshot(1, 2, 7);
+        Assert.assertFalse(statistics.isRunning());
+        Assert.assertEquals(4, statistics.getRequestCount());
+        Assert.assertEquals(2, statistics.getSuccessCount());
+        Assert.assertEquals(2, statistics.getFailedCount());
+        Assert.assertEquals(1, statistics.getErrorCount());
+        Assert.assertEquals(4000, statistics.getBytesTransferred());
+        Assert.assertEquals(1, statistics.getQueuedLinks());
+        Assert.assertEquals(2, statistics.getInFlightLinks());
+        Assert.assertEquals(7, statistics.getSeenLinks());
+
+        Assert.assertEquals(Long.valueOf(2), statistics.getStatusCounts().get(200));
+        Assert.assertEquals(Long.valueOf(1), statistics.getStatusCounts().get(404));
+        Assert.assertEquals(Long.valueOf(2), statistics.getHostCounts().get("a.com"));
+        Assert.assertEquals(Long.valueOf(1), statistics.getHostCounts().get("b.com"));
+        Assert.assertEquals(Long.valueOf(1), statistics.getHostCounts().get("c.com"));
+
+        Assert.assertEquals(4, statistics.getLatencyMicros().getCount());
+        Assert.assertEquals(10_000, statistics.getLatencyMicros().getMin());
+        Assert.assertEquals(40_000, statistics.getLatencyMicros().getMax());
+        Assert.assertEquals(3, statistics.getPageSizeBytes().getCount());
+    }
+
+    @Test
+    public void recordsBackpressure() {
+        CrawlMetrics metrics = new CrawlMetrics();
+        metrics.recordDropped();
+        metrics.recordDropped();
+        metrics.recordUnchanged();
+        metrics.recordBackpressureWait(TimeUnit.MILLISECONDS.toNanos(15));
+        metrics.recordBackpressureWait(TimeUnit.MILLISECONDS.toNanos(5));
+
+        CrawlStatistics statistics = metrics.snapshot(0, 0, 0);
+        Assert.assertEquals(2, statistics.getDroppedLinks());
+        Assert.assertEquals(1, statistics.getUnchangedCount());
+        Assert.assertEquals(20, statistics.getBackpressureWaitMillis());
+    }
+
+    @Test
+    public void concurrentRecordingLosesNothing() throws InterruptedException {
+        CrawlMetrics metrics = new CrawlMetrics();
+        int threads = 8, perThread = 50_000;
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String link = "http://host" + (t % 4) + ".com/";
+            Thread worker = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    metrics.recordResponse(link, 200, true, 100, 1000);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        CrawlStatistics statistics = metrics.snapshot(0, 0, 0);
+        Assert.assertTrue(statistics.isRunning());
+        Assert.assertEquals(threads * perThread, statistics.getRequestCount());
+        Assert.assertEquals(threads * perThread * 100L, statistics.getBytesTransferred());
+        Assert.assertEquals(Long.valueOf(threads * perThread), statistics.getStatusCounts().get(200));
+        Assert.assertEquals(Long.valueOf(2 * perThread), statistics.getHostCounts().get("host0.com"));
+        Assert.assertEquals(threads * perThread, statistics.getLatencyMicros().getCount());
+    }
+
+    private static void assertWithinPercent(long expected, long actual, double percent) {
+        double error = Math.abs(actual - expected) * 100.0 / expected;
+        Assert.assertTrue("Expected " + expected + " but was " + actual, error <= percent);
+    }
+
+}
@@ -0,0 +1,76 @@
+import com.jasminefortich.crawler.services.CrawlScope;
+import com.jasminefortich.crawler.utils.UrlUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class CrawlScopeTest {
+
+    private static final List<String> NONE = Collections.emptyList();
+
+    @Test
+    public void defaultScopeAllowsEverything() {
+        CrawlScope scope = new CrawlScope();
+
+        Assert.assertTrue(scope.allows("http://example.com/a", 1000));
+        Assert.assertTrue(scope.allows("mailto:someone@example.com", 0));
+    }
+
+    @Test
+    public void limitsDepth() {
+        CrawlScope scope = new CrawlScope(1, NONE, NONE, NONE, NONE, NONE, NONE);
+
+        Assert.assertTrue(scope.allows("http://example.com/", 0));
+        Assert.assertTrue(scope.allows("http://example.com/a", 1));
+        Assert.assertFalse(scope.allows("http://example.com/a/b", 2));
+    }
+
+    @Test
+    public void allowsListedHostsAndDomains() {
+        CrawlScope scope = new CrawlScope(-1, Arrays.asList("www.example.com"), NONE, Arrays.asList(".Example.org"), NONE, NONE, NONE);
+
+        Assert.assertTrue(scope.allows("http://www.example.com/", 0));
+        Assert.assertFalse(scope.allows("http://example.com/", 0));
+        Assert.assertFalse(scope.allows("http://cdn.www.example.com/", 0));
+        Assert.assertTrue(scope.allows("http://example.org/", 0));
+        Assert.assertTrue(scope.allows("http://a.b.example.org:8080/", 0));
+        Assert.assertFalse(scope.allows("http://notexample.org/", 0));
+        Assert.assertFalse(scope.allows("mailto:someone@example.org", 0));
+    }
+
+    @Test
+    public void denialsWinOverAllowLists() {
+        CrawlScope scope = new CrawlScope(-1, Arrays.asList("ads.example.com"), Arrays.asList("www.example.com"),
+                Arrays.asList("example.com"), Arrays.asList("ads.example.com"), NONE, NONE);
+
+        Assert.assertTrue(scope.allows("http://example.com/", 0));
+        Assert.assertFalse(scope.allows("http://www.example.com/", 0));
+        Assert.assertFalse(scope.allows("http://ads.example.com/", 0));
+        Assert.assertFalse(scope.allows("http://x.ads.example.com/", 0));
+    }
+
+    @Test
+    public void filtersPaths() {
+        CrawlScope scope = new CrawlScope(-1, NONE, NONE, NONE, NONE, Arrays.asList("^/docs/", "^/blog/"), Arrays.asList("\\.pdf$", "[?&]print="));
+
+        Assert.assertTrue(scope.allows("http://example.com/docs/intro", 0));
+        Assert.assertTrue(scope.allows("http://example.com/blog/post#comments", 0));
+        Assert.assertFalse(scope.allows("http://example.com/about", 0));
+        Assert.assertFalse(scope.allows("http://example.com/other/docs/", 0));
+        Assert.assertFalse(scope.allows("http://example.com/docs/manual.pdf", 0));
+        Assert.assertFalse(scope.allows("http://example.com/docs/intro?print=1", 0));
+    }
+
+    @Test
+    public void extractsPath() {
+        Assert.assertEquals("/a/b?c=d", UrlUtil.getPath("http://example.com:80/a/b?c=d#e"));
+        Assert.assertEquals("/?c=d", UrlUtil.getPath("http://example.com?c=d"));
+        Assert.assertEquals("/", UrlUtil.getPath("http://example.com"));
+        Assert.assertEquals("/", UrlUtil.getPath("http://example.com#top"));
+        Assert.assertEquals("", UrlUtil.getPath("mailto:someone@example.com"));
+    }
+
+}
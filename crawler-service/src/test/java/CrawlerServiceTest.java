@@ -2,27 +2,77 @@ import static com.github.tomakehurst.wiremock.client.WireMock.*;
 
 import com.github.tomakehurst.wiremock.junit.WireMockRule;
 import com.jasminefortich.crawler.exceptions.CrawlerException;
+import com.jasminefortich.crawler.models.ClusterStatus;
+import com.jasminefortich.crawler.models.CrawlJobState;
+import com.jasminefortich.crawler.models.CrawlProgress;
+import com.jasminefortich.crawler.models.CrawlStatistics;
+import com.jasminefortich.crawler.models.ExecutionMode;
+import com.jasminefortich.crawler.models.FetchResult;
+import com.jasminefortich.crawler.models.PageResult;
+import com.jasminefortich.crawler.models.ResultFormat;
+import com.jasminefortich.crawler.services.ClusterTransport;
+import com.jasminefortich.crawler.services.ColumnarResultEncoder;
+import com.jasminefortich.crawler.services.CrawlBudget;
+import com.jasminefortich.crawler.services.CrawlCheckpoint;
+import com.jasminefortich.crawler.services.CrawlContext;
+import com.jasminefortich.crawler.services.CrawlControl;
+import com.jasminefortich.crawler.services.CrawlFrontier;
+import com.jasminefortich.crawler.services.CrawlJob;
+import com.jasminefortich.crawler.services.CrawlJobService;
 import com.jasminefortich.crawler.services.CrawlerService;
+import com.jasminefortich.crawler.services.DnsCache;
+import com.jasminefortich.crawler.services.Fetcher;
+import com.jasminefortich.crawler.services.HashSetSeenUrlStore;
+import com.jasminefortich.crawler.services.OkHttpFetcher;
+import com.jasminefortich.crawler.services.SeenUrlStore;
+import com.jasminefortich.crawler.services.StreamingLinkExtractor;
+import com.jasminefortich.crawler.services.VirtualThreadTaskExecutor;
+import okhttp3.Dns;
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.InjectMocks;
 import org.mockito.MockitoAnnotations;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.util.ReflectionUtils;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Field;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
 
 public class CrawlerServiceTest {
 
     @InjectMocks
     private CrawlerService crawlerService;
 
+    private Fetcher fetcher;
+
     @Rule
     public ExpectedException failure = ExpectedException.none();
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Rule
     public WireMockRule wireMockRule = new WireMockRule(8089);
 
@@ -37,6 +87,46 @@ public class CrawlerServiceTest {
         Field executorField = ReflectionUtils.findField(CrawlerService.class, "threadPool");
         ReflectionUtils.makeAccessible(executorField);
         ReflectionUtils.setField(executorField, crawlerService, threadPoolTaskExecutor);
+
+        fetcher = new OkHttpFetcher(64, 8, 32, 300000, 30000);
+        Field fetcherField = ReflectionUtils.findField(CrawlerService.class, "fetcher");
+        ReflectionUtils.makeAccessible(fetcherField);
+        ReflectionUtils.setField(fetcherField, crawlerService, fetcher);
+
+        Field extractorField = ReflectionUtils.findField(CrawlerService.class, "linkExtractor");
+        ReflectionUtils.makeAccessible(extractorField);
+        ReflectionUtils.setField(extractorField, crawlerService, new StreamingLinkExtractor());
+
+        // Hosts without a robots.txt allow every path, tests that need one override this stub
+        stubFor(get(urlEqualTo("/robots.txt")).willReturn(aResponse().withStatus(404)));
+    }
+
+    /**
+     * Sets a configuration field of the crawler service
+     *
+     * @param name The field name
+     * @param value The field value
+     */
+    private void setField(String name, Object value) {
+        setField(crawlerService, name, value);
+    }
+
+    /**
+     * Sets a configuration field of a service
+     *
+     * @param service The crawler or crawl job service
+     * @param name The field name
+     * @param value The field value
+     */
+    private static void setField(Object service, String name, Object value) {
+        Field field = ReflectionUtils.findField(service.getClass(), name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, service, value);
+    }
+
+    @After
+    public void teardown() {
+        fetcher.close();
     }
 
     /**
@@ -69,6 +159,29 @@ public class CrawlerServiceTest {
         );
     }
 
+    /**
+     * Creates a mock html page at the given path containing links to the given paths
+     *
+     * @param path The path of the page
+     * @param linkPaths The paths the page links to
+     */
+    private void createHtmlPage(String path, String... linkPaths) {
+        StringBuilder body = new StringBuilder("<html><body>");
+        for (String linkPath : linkPaths) {
+            body.append("<a href=\"").append(linkPath).append("\">").append(linkPath).append("</a>");
+        }
+        body.append("</body></html>");
+
+        stubFor(get(urlEqualTo(path))
+                .willReturn(
+                        aResponse()
+                                .withStatus(200)
+                                .withHeader("Content-type", "text/html")
+                                .withBody(body.toString())
+                )
+        );
+    }
+
     @Test
     public void nullEndpoint() throws CrawlerException {
         failure.expect(CrawlerException.class);
@@ -94,6 +207,26 @@ public class CrawlerServiceTest {
         crawlerService.crawlEndpoint(invalidEndpoint);
     }
 
+    @Test
+    public void invalidJsonEndpoint() throws CrawlerException {
+        failure.expect(CrawlerException.class);
+        failure.expectMessage("Invalid json");
+
+        createCrawlEndpoint("{ \"links\": } }");
+
+        crawlerService.crawlEndpoint(MOCK_ENDPOINT);
+    }
+
+    @Test
+    public void missingEndpoint() throws CrawlerException {
+        failure.expect(CrawlerException.class);
+        failure.expectMessage("Could not crawl starting endpoint");
+
+        stubFor(get(urlEqualTo("/start-endpoint")).willReturn(aResponse().withStatus(404)));
+
+        crawlerService.crawlEndpoint(MOCK_ENDPOINT);
+    }
+
     @Test
     public void crawl200Status() throws CrawlerException {
         String jsonString = "{ \"links\": [ \"https://httpbin.org/status/200\" ] }";
@@ -262,6 +395,770 @@ public class CrawlerServiceTest {
         Assert.assertEquals(0, crawlerService.getFailedCount().longValue());
     }
 
+    @Test
+    public void crawlFetchesEachPageOnce() throws CrawlerException {
+        String jsonString = "{ \"links\": [ \"http://localhost:8089/page-a\", \"http://localhost:8089/page-b\" ] }";
+        createCrawlEndpoint(jsonString);
+        createHtmlPage("/page-a", "/page-b", "/page-c");
+        createHtmlPage("/page-b", "/page-a");
+        createHtmlPage("/page-c", "/page-a", "/page-b");
+
+        crawlerService.crawlEndpoint(MOCK_ENDPOINT);
+
+        verify(1, getRequestedFor(urlEqualTo("/page-a")));
+        verify(1, getRequestedFor(urlEqualTo("/page-b")));
+        verify(1, getRequestedFor(urlEqualTo("/page-c")));
+        Assert.assertEquals(3, crawlerService.getRequestCount().longValue());
+        Assert.assertEquals(3, crawlerService.getSuccessCount().longValue());
+        Assert.assertEquals(0, crawlerService.getFailedCount().longValue());
+    }
+
+    @Test
+    public void crawlStatistics() throws CrawlerException {
+        String jsonString = "{ \"links\": [ \"http://localhost:8089/page-a\", \"http://localhost:8089/missing\" ] }";
+        createCrawlEndpoint(jsonString);
+        createHtmlPage("/page-a", "/page-b");
+        createHtmlPage("/page-b");
+        stubFor(get(urlEqualTo("/missing")).willReturn(aResponse().withStatus(404)));
+
+        crawlerService.crawlEndpoint(MOCK_ENDPOINT);
+
+        CrawlStatistics statistics = crawlerService.getCrawlStatistics();
+        Assert.assertFalse(statistics.isRunning());
+        Assert.assertEquals(3, statistics.getRequestCount());
+        Assert.assertEquals(2, statistics.getSuccessCount());
+        Assert.assertEquals(1, statistics.getFailedCount());
+        Assert.assertEquals(Long.valueOf(2), statistics.getStatusCounts().get(200));
+        Assert.assertEquals(Long.valueOf(1), statistics.getStatusCounts().get(404));
+        Assert.assertEquals(Long.valueOf(3), statistics.getHostCounts().get("localhost"));
+        Assert.assertEquals(3, statistics.getLatencyMicros().getCount());
+        Assert.assertTrue(statistics.getBytesTransferred() > 0);
+        Assert.assertEquals(0, statistics.getInFlightLinks());
+    }
+
+    @Test
+    public void crawlResumesFromCheckpoint() throws CrawlerException, IOException, InterruptedException {
+        File directory = temporaryFolder.newFolder("checkpoint");
+        setField("checkpointEnabled", true);
+        setField("checkpointDirectory", directory.getPath());
+
+        // A crawl interrupted after crawling page-a, with page-b still pending
+        SeenUrlStore seen = new HashSetSeenUrlStore();
+        CrawlFrontier frontier = new CrawlFrontier();
+        CrawlCheckpoint checkpoint = new CrawlCheckpoint(directory.toPath(), 1 << 20, 1000, 60_000);
+        checkpoint.open(MOCK_ENDPOINT, seen, frontier);
+        for (String link : new String[] { "http://localhost:8089/page-a", "http://localhost:8089/page-b" }) {
+            seen.add(link);
+            frontier.add(link);
+            checkpoint.enqueued(link);
+        }
+        String crawled = frontier.take();
+        frontier.complete(crawled);
+        checkpoint.visited(crawled);
+        checkpoint.close();
+
+        String jsonString = "{ \"links\": [ \"http://localhost:8089/page-a\", \"http://localhost:8089/page-b\" ] }";
+        createCrawlEndpoint(jsonString);
+        createHtmlPage("/page-a", "/page-b");
+        createHtmlPage("/page-b", "/page-a", "/page-c");
+        createHtmlPage("/page-c");
+
+        crawlerService.crawlEndpoint(MOCK_ENDPOINT);
+
+        verify(0, getRequestedFor(urlEqualTo("/page-a")));
+        verify(1, getRequestedFor(urlEqualTo("/page-b")));
+        verify(1, getRequestedFor(urlEqualTo("/page-c")));
+        Assert.assertEquals(2, crawlerService.getRequestCount().longValue());
+        Assert.assertArrayEquals(new String[0], directory.list());
+    }
+
+    @Test
+    public void crawlSpillsFrontierToDisk() throws CrawlerException, IOException {
+        File spillDirectory = temporaryFolder.newFolder("spill");
+        setField("frontierMaxInMemoryLinks", 2);
+        setField("frontierSpillDirectory", spillDirectory.getPath());
+
+        String jsonString = "{ \"links\": [ \"http://localhost:8089/page-a\" ] }";
+        createCrawlEndpoint(jsonString);
+        createHtmlPage("/page-a", "/page-b", "/page-c", "/page-d", "/page-e", "/page-f");
+        createHtmlPage("/page-b", "/page-a", "/page-g");
+        createHtmlPage("/page-c");
+        createHtmlPage("/page-d");
+        createHtmlPage("/page-e");
+        createHtmlPage("/page-f", "/page-g");
+        createHtmlPage("/page-g");
+
+        crawlerService.crawlEndpoint(MOCK_ENDPOINT);
+
+        for (String page : new String[] { "a", "b", "c", "d", "e", "f", "g" }) {
+            verify(1, getRequestedFor(urlEqualTo("/page-" + page)));
+        }
+        Assert.assertEquals(7, crawlerService.getRequestCount().longValue());
+        Assert.assertArrayEquals(new String[0], spillDirectory.list());
+    }
+
+    @Test
+    public void incrementalCrawlReusesUnchangedPages() throws CrawlerException, IOException {
+        setField("incrementalEnabled", true);
+        setField("incrementalDirectory", temporaryFolder.newFolder("incremental").getPath());
+
+        String jsonString = "{ \"links\": [ \"http://localhost:8089/page-a\", \"http://localhost:8089/page-b\" ] }";
+        createCrawlEndpoint(jsonString);
+        stubFor(get(urlEqualTo("/page-a"))
+                .willReturn(aResponse().withStatus(200).withHeader("Content-type", "text/html").withHeader("ETag", "\"v1\"")
+                        .withBody("<html><body><a href=\"/page-c\">c</a></body></html>")));
+        stubFor(get(urlEqualTo("/page-a")).withHeader("If-None-Match", equalTo("\"v1\""))
+                .willReturn(aResponse().withStatus(304)));
+        createHtmlPage("/page-b", "/page-d");
+        createHtmlPage("/page-c");
+        createHtmlPage("/page-d");
+
+        crawlerService.crawlEndpoint(MOCK_ENDPOINT);
+        Assert.assertEquals(0, crawlerService.getCrawlStatistics().getUnchangedCount());
+
+        crawlerService.crawlEndpoint(MOCK_ENDPOINT);
+
+        // page-a answers the conditional request with a 304 and page-b hashes the same, both keep their links
+        verify(1, getRequestedFor(urlEqualTo("/page-a")).withHeader("If-None-Match", equalTo("\"v1\"")));
+        verify(2, getRequestedFor(urlEqualTo("/page-c")));
+        verify(2, getRequestedFor(urlEqualTo("/page-d")));
+        CrawlStatistics statistics = crawlerService.getCrawlStatistics();
+        Assert.assertEquals(4, statistics.getRequestCount());
+        Assert.assertEquals(Long.valueOf(1), statistics.getStatusCounts().get(304));
+        Assert.assertEquals(4, statistics.getUnchangedCount());
+    }
+
+    @Test
+    public void crawlClosesCheckpointWhenResultsFailToOpen() throws IOException {
+        File directory = temporaryFolder.newFolder("checkpoint");
+        setField("checkpointEnabled", true);
+        setField("checkpointDirectory", directory.getPath());
+        setField("resultsEnabled", true);
+        setField("resultsDirectory", temporaryFolder.newFile("results").getPath());
+
+        createCrawlEndpoint("{ \"links\": [ \"http://localhost:8089/page-a\" ] }");
+        CrawlContext crawl = crawlerService.createCrawl(MOCK_ENDPOINT, new CrawlControl(), null);
+        try {
+            crawlerService.crawl(crawl);
+            Assert.fail("Expected the results directory to fail to open");
+        } catch (CrawlerException e) {
+            Assert.assertNull(crawl.getCheckpoint());
+            Assert.assertNull(crawl.getResultSink());
+        }
+        verify(0, getRequestedFor(urlEqualTo("/start-endpoint")));
+    }
+
+    @Test
+    public void crawlWritesResults() throws CrawlerException, IOException {
+        File directory = temporaryFolder.newFolder("results");
+        setField("resultsEnabled", true);
+        setField("resultsFormat", ResultFormat.COLUMNAR);
+        setField("resultsDirectory", directory.getPath());
+
+        String jsonString = "{ \"links\": [ \"http://localhost:8089/page-a\", \"http://localhost:8089/page-missing\" ] }";
+        createCrawlEndpoint(jsonString);
+        createHtmlPage("/page-a", "/page-b", "/page-a");
+        createHtmlPage("/page-b");
+        stubFor(get(urlEqualTo("/page-missing")).willReturn(aResponse().withStatus(404).withBody("Not found")));
+
+        crawlerService.crawlEndpoint(MOCK_ENDPOINT);
+
+        File[] files = directory.listFiles();
+        Assert.assertEquals(1, files.length);
+        Map<String, PageResult> results = new HashMap<>();
+        try (InputStream in = new GZIPInputStream(new FileInputStream(files[0]))) {
+            ColumnarResultEncoder.read(in, result -> results.put(result.getLink(), result));
+        }
+        Assert.assertEquals(3, results.size());
+
+        PageResult pageA = results.get("http://localhost:8089/page-a");
+        Assert.assertEquals(200, pageA.getStatusCode());
+        Assert.assertEquals(Arrays.asList("http://localhost:8089/page-b", "http://localhost:8089/page-a"), pageA.getOutlinks());
+        Assert.assertNotEquals(0, pageA.getContentHash());
+        Assert.assertEquals(1, results.get("http://localhost:8089/page-b").getDepth());
+        Assert.assertEquals(404, results.get("http://localhost:8089/page-missing").getStatusCode());
+        Assert.assertNull(results.get("http://localhost:8089/page-missing").getError());
+        Assert.assertEquals(0, results.get("http://localhost:8089/page-missing").getContentHash());
+
+        CrawlStatistics statistics = crawlerService.getCrawlStatistics();
+        Assert.assertEquals(3, statistics.getWrittenResults());
+        Assert.assertEquals(0, statistics.getDroppedResults());
+    }
+
+    @Test
+    public void crawlLimitsOutstandingRequests() throws CrawlerException {
+        setField("maxOutstandingRequests", 1);
+
+        String jsonString = "{ \"links\": [ \"http://localhost:8089/page-a\", \"http://localhost:8089/page-b\", \"http://localhost:8089/page-c\" ] }";
+        createCrawlEndpoint(jsonString);
+        for (String page : new String[] { "/page-a", "/page-b", "/page-c" }) {
+            stubFor(get(urlEqualTo(page)).willReturn(aResponse().withStatus(200).withHeader("Content-type", "text/html")
+                    .withBody("<html></html>").withFixedDelay(50)));
+        }
+
+        crawlerService.crawlEndpoint(MOCK_ENDPOINT);
+
+        CrawlStatistics statistics = crawlerService.getCrawlStatistics();
+        Assert.assertEquals(3, statistics.getRequestCount());
+        Assert.assertEquals(0, statistics.getOutstandingRequests());
+        Assert.assertEquals(1, statistics.getMaxOutstandingRequests());
+        Assert.assertTrue(statistics.getBackpressureWaitMillis() >= 50);
+        Assert.assertTrue(statistics.getLatencyMicros().getMax() < 1_000_000);
+    }
+
+    @Test
+    public void crawlBacksOffOverloadedHost() throws CrawlerException {
+        // Starts above the lowest limit, since a host back at its initial limit is forgotten once idle
+        setField("initialHostConcurrencyLimit", 4);
+        StringBuilder links = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            stubFor(get(urlEqualTo("/busy-" + i)).willReturn(aResponse().withStatus(503)));
+            links.append(i > 0 ? ", " : "").append("\"http://localhost:8089/busy-").append(i).append("\"");
+        }
+        createCrawlEndpoint("{ \"links\": [ " + links + " ] }");
+
+        crawlerService.crawlEndpoint(MOCK_ENDPOINT);
+
+        CrawlStatistics statistics = crawlerService.getCrawlStatistics();
+        Assert.assertEquals(10, statistics.getFailedCount());
+        Assert.assertTrue(statistics.getConcurrencyLimit() < 16);
+        Assert.assertTrue(statistics.getThrottledHostLimits().get("localhost") < 4);
+    }
+
+    @Test
+    public void crawlDropsLinksBeyondFrontierLimit() throws CrawlerException {
+        setField("maxOutstandingRequests", 1);
+        setField("frontierMaxQueuedLinks", 1L);
+
+        String jsonString = "{ \"links\": [ \"http://localhost:8089/page-a\" ] }";
+        createCrawlEndpoint(jsonString);
+        createHtmlPage("/page-a", "/page-b", "/page-c", "/page-d");
+        createHtmlPage("/page-b", "/page-c");
+        createHtmlPage("/page-c");
+        createHtmlPage("/page-d");
+
+        crawlerService.crawlEndpoint(MOCK_ENDPOINT);
+
+        // page-c and page-d are dropped while page-b is queued, page-c is queued when found again on page-b
+        verify(1, getRequestedFor(urlEqualTo("/page-b")));
+        verify(1, getRequestedFor(urlEqualTo("/page-c")));
+        verify(0, getRequestedFor(urlEqualTo("/page-d")));
+        CrawlStatistics statistics = crawlerService.getCrawlStatistics();
+        Assert.assertEquals(2, statistics.getDroppedLinks());
+        Assert.assertEquals(1, statistics.getMaxQueuedLinks());
+    }
+
+    @Test
+    public void crawlStaysInScope() throws CrawlerException {
+        setField("scopeMaxDepth", 1);
+        setField("scopeExcludePaths", new String[] { "^/private/" });
+        setField("scopeDeniedHosts", new String[] { "127.0.0.1" });
+
+        String jsonString = "{ \"links\": [ \"http://localhost:8089/page-a\" ] }";
+        createCrawlEndpoint(jsonString);
+        createHtmlPage("/page-a", "/page-b", "/private/page", "http://127.0.0.1:8089/page-b");
+        createHtmlPage("/page-b", "/page-c");
+
+        crawlerService.crawlEndpoint(MOCK_ENDPOINT);
+
+        verify(1, getRequestedFor(urlEqualTo("/page-b")));
+        verify(0, getRequestedFor(urlEqualTo("/page-c")));
+        verify(0, getRequestedFor(urlEqualTo("/private/page")));
+        Assert.assertEquals(2, crawlerService.getRequestCount().longValue());
+        Assert.assertEquals(3, crawlerService.getCrawlStatistics().getOutOfScopeLinks());
+    }
+
+    @Test
+    public void crawlStopsAtBudget() throws CrawlerException {
+        setField("budgetMaxPages", 3L);
+
+        String jsonString = "{ \"links\": [ \"http://localhost:8089/page-a\" ] }";
+        createCrawlEndpoint(jsonString);
+        createHtmlPage("/page-a", "/page-b", "/page-c", "/page-d");
+        createHtmlPage("/page-b");
+        createHtmlPage("/page-c");
+
+        crawlerService.crawlEndpoint(MOCK_ENDPOINT);
+
+        verify(0, getRequestedFor(urlEqualTo("/page-d")));
+        CrawlStatistics statistics = crawlerService.getCrawlStatistics();
+        Assert.assertEquals(3, statistics.getRequestCount());
+        Assert.assertEquals(1, statistics.getOverBudgetLinks());
+        Assert.assertNull(statistics.getBudgetExhausted());
+    }
+
+    @Test
+    public void crawlStopsAtByteLimit() throws CrawlerException {
+        setField("maxOutstandingRequests", 1);
+        setField("budgetMaxBytes", 1L);
+
+        String jsonString = "{ \"links\": [ \"http://localhost:8089/page-a\", \"http://localhost:8089/page-b\" ] }";
+        createCrawlEndpoint(jsonString);
+        createHtmlPage("/page-a", "/page-c");
+        createHtmlPage("/page-b");
+
+        crawlerService.crawlEndpoint(MOCK_ENDPOINT);
+
+        verify(1, getRequestedFor(urlEqualTo("/page-a")));
+        verify(0, getRequestedFor(urlEqualTo("/page-b")));
+        verify(0, getRequestedFor(urlEqualTo("/page-c")));
+        CrawlStatistics statistics = crawlerService.getCrawlStatistics();
+        Assert.assertEquals(1, statistics.getRequestCount());
+        Assert.assertEquals(CrawlBudget.BYTE_LIMIT, statistics.getBudgetExhausted());
+        Assert.assertEquals(0, statistics.getQueuedLinks());
+    }
+
+    @Test
+    public void crawlSkipsBodiesOfUnparsedTypes() throws CrawlerException {
+        String jsonString = "{ \"links\": [ \"http://localhost:8089/page-a\", \"http://localhost:8089/report.pdf\" ] }";
+        createCrawlEndpoint(jsonString);
+        createHtmlPage("/page-a");
+        stubFor(get(urlEqualTo("/report.pdf"))
+                .willReturn(
+                        aResponse()
+                                .withStatus(200)
+                                .withHeader("Content-type", "application/pdf")
+                                .withBody("<a href=\"/page-b\">page-b</a>")
+                )
+        );
+
+        crawlerService.crawlEndpoint(MOCK_ENDPOINT);
+
+        verify(0, getRequestedFor(urlEqualTo("/page-b")));
+        CrawlStatistics statistics = crawlerService.getCrawlStatistics();
+        Assert.assertEquals(2, statistics.getSuccessCount());
+        Assert.assertEquals(1, statistics.getSkippedBodies());
+        Assert.assertEquals(0, statistics.getTruncatedBodies());
+    }
+
+    @Test
+    public void crawlTruncatesLargeBodies() throws CrawlerException {
+        setField("contentMaxBodyBytes", 200L);
+
+        StringBuilder body = new StringBuilder("<html><body><a href=\"/page-b\">page-b</a>");
+        for (int i = 0; i < 100; i++) {
+            body.append("<p>padding</p>");
+        }
+        body.append("<a href=\"/page-c\">page-c</a></body></html>");
+
+        String jsonString = "{ \"links\": [ \"http://localhost:8089/page-a\" ] }";
+        createCrawlEndpoint(jsonString);
+        stubFor(get(urlEqualTo("/page-a"))
+                .willReturn(
+                        aResponse()
+                                .withStatus(200)
+                                .withHeader("Content-type", "text/html")
+                                .withBody(body.toString())
+                )
+        );
+        createHtmlPage("/page-b");
+
+        crawlerService.crawlEndpoint(MOCK_ENDPOINT);
+
+        verify(1, getRequestedFor(urlEqualTo("/page-b")));
+        verify(0, getRequestedFor(urlEqualTo("/page-c")));
+        CrawlStatistics statistics = crawlerService.getCrawlStatistics();
+        Assert.assertEquals(1, statistics.getTruncatedBodies());
+        Assert.assertTrue(statistics.getBytesTransferred() < body.length());
+    }
+
+    @Test
+    public void crawlChecksLinksWithHeadRequests() throws CrawlerException {
+        setField("contentHeadRequests", true);
+
+        String jsonString = "{ \"links\": [ \"http://localhost:8089/page-a\", \"http://localhost:8089/no-head\" ] }";
+        createCrawlEndpoint(jsonString);
+        createHtmlPage("/page-a", "/page-b");
+        stubFor(head(urlEqualTo("/page-a")).willReturn(aResponse().withStatus(200).withHeader("Content-type", "text/html")));
+        stubFor(head(urlEqualTo("/no-head")).willReturn(aResponse().withStatus(405)));
+        createHtmlPage("/no-head", "/page-b");
+
+        crawlerService.crawlEndpoint(MOCK_ENDPOINT);
+
+        verify(0, getRequestedFor(urlEqualTo("/page-a")));
+        verify(1, getRequestedFor(urlEqualTo("/no-head")));
+        verify(0, getRequestedFor(urlEqualTo("/page-b")));
+        Assert.assertEquals(2, crawlerService.getRequestCount().longValue());
+        Assert.assertEquals(2, crawlerService.getSuccessCount().longValue());
+    }
+
+    @Test
+    public void crawlJobPausesAndResumes() throws Exception {
+        String jsonString = "{ \"links\": [ \"http://localhost:8089/page-a\" ] }";
+        createCrawlEndpoint(jsonString);
+        createHtmlPage("/page-a", "/page-b");
+        createHtmlPage("/page-b");
+
+        CrawlJob job = new CrawlJob("job", MOCK_ENDPOINT, null, crawlerService);
+        List<CrawlProgress> samples = new CopyOnWriteArrayList<>();
+        job.subscribe(samples::add);
+        Assert.assertTrue(job.pause());
+        Thread runner = new Thread(job::run);
+        runner.start();
+
+        Thread.sleep(200);
+        Assert.assertEquals(CrawlJobState.PAUSED, job.getState());
+        verify(0, getRequestedFor(urlEqualTo("/page-a")));
+
+        Assert.assertTrue(job.resume());
+        job.getCompletion().get(10, TimeUnit.SECONDS);
+
+        Assert.assertEquals(CrawlJobState.FINISHED, job.getState());
+        Assert.assertEquals(2, job.getStatus().getStatistics().getRequestCount());
+        Assert.assertEquals(1, samples.size());
+        Assert.assertEquals(CrawlJobState.FINISHED, samples.get(0).getState());
+        Assert.assertFalse(job.cancel());
+    }
+
+    @Test
+    public void crawlJobCancelsQueuedLinks() throws Exception {
+        String jsonString = "{ \"links\": [ \"http://localhost:8089/page-a\", \"http://localhost:8089/page-b\" ] }";
+        createCrawlEndpoint(jsonString);
+        createHtmlPage("/page-a");
+        createHtmlPage("/page-b");
+
+        CrawlJob job = new CrawlJob("job", MOCK_ENDPOINT, null, crawlerService);
+        job.pause();
+        Thread runner = new Thread(job::run);
+        runner.start();
+        Thread.sleep(200);
+
+        Assert.assertTrue(job.cancel());
+        job.getCompletion().get(10, TimeUnit.SECONDS);
+
+        Assert.assertEquals(CrawlJobState.CANCELLED, job.getState());
+        Assert.assertFalse(job.resume());
+        verify(0, getRequestedFor(urlEqualTo("/page-a")));
+        verify(0, getRequestedFor(urlEqualTo("/page-b")));
+        Assert.assertEquals(0, crawlerService.getCrawlStatistics().getQueuedLinks());
+    }
+
+    @Test
+    public void cancelledCrawlStopsReadingSeeds() throws Exception {
+        StringBuilder links = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            links.append(i > 0 ? ", " : "").append("\"http://localhost:8089/page-").append(i).append("\"");
+        }
+        stubFor(get(urlEqualTo("/start-endpoint")).willReturn(aResponse().withStatus(200)
+                .withHeader("Content-type", "application/json")
+                .withBody("{ \"links\": [ " + links + " ] }")
+                .withChunkedDribbleDelay(20, 4000)));
+
+        CrawlJob job = new CrawlJob("job", MOCK_ENDPOINT, null, crawlerService);
+        job.pause();
+        Thread runner = new Thread(job::run);
+        runner.start();
+        Thread.sleep(500);
+
+        Assert.assertTrue(job.cancel());
+        job.getCompletion().get(3, TimeUnit.SECONDS);
+
+        Assert.assertEquals(CrawlJobState.CANCELLED, job.getState());
+        Assert.assertTrue(job.getStatistics().getSeenLinks() < 200);
+    }
+
+    @Test
+    public void slowProgressListenerDoesNotHoldUpOthers() throws Exception {
+        stubFor(get(urlEqualTo("/start-endpoint")).willReturn(aResponse().withStatus(200)
+                .withHeader("Content-type", "application/json")
+                .withBody("{ \"links\": [ \"http://localhost:8089/page-a\" ] }")
+                .withChunkedDribbleDelay(5, 2000)));
+        createHtmlPage("/page-a");
+        CrawlJobService jobService = new CrawlJobService();
+        setField(jobService, "crawlerService", crawlerService);
+        setField(jobService, "progressIntervalMillis", 20L);
+
+        CrawlJob job = jobService.submit(MOCK_ENDPOINT);
+        CountDownLatch blocked = new CountDownLatch(1);
+        AtomicInteger slowSamples = new AtomicInteger();
+        jobService.subscribe(job, progress -> {
+            slowSamples.incrementAndGet();
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        List<CrawlProgress> samples = new CopyOnWriteArrayList<>();
+        jobService.subscribe(job, samples::add);
+
+        try {
+            Thread.sleep(300);
+            Assert.assertTrue(samples.size() >= 3);
+            Assert.assertEquals(1, slowSamples.get());
+
+            // Samples published while the slow listener was blocked are sent as one, the latest
+            blocked.countDown();
+            Thread.sleep(100);
+            Assert.assertTrue(slowSamples.get() < samples.size());
+        } finally {
+            job.cancel();
+            job.getCompletion().get(10, TimeUnit.SECONDS);
+            jobService.shutdown();
+        }
+    }
+
+    @Test
+    public void concurrentCrawlsKeepTheirOwnState() throws Exception {
+        stubFor(get(urlEqualTo("/start-a")).willReturn(aResponse().withStatus(200)
+                .withBody("{ \"links\": [ \"http://localhost:8089/page-a\", \"http://localhost:8089/shared\" ] }")));
+        stubFor(get(urlEqualTo("/start-b")).willReturn(aResponse().withStatus(200)
+                .withBody("{ \"links\": [ \"http://localhost:8089/page-b\", \"http://localhost:8089/shared\" ] }")));
+        createHtmlPage("/page-a", "/page-c");
+        createHtmlPage("/page-b");
+        createHtmlPage("/page-c");
+        createHtmlPage("/shared");
+
+        CrawlContext first = crawlerService.createCrawl("http://localhost:8089/start-a", new CrawlControl(), null);
+        CrawlContext second = crawlerService.createCrawl("http://localhost:8089/start-b", new CrawlControl(), null);
+        CompletableFuture<Void> firstDone = CompletableFuture.runAsync(() -> crawl(first));
+        CompletableFuture<Void> secondDone = CompletableFuture.runAsync(() -> crawl(second));
+        CompletableFuture.allOf(firstDone, secondDone).get(10, TimeUnit.SECONDS);
+
+        // Each crawl has its own seen links, so a page linked from both is fetched by both
+        verify(2, getRequestedFor(urlEqualTo("/shared")));
+        Assert.assertEquals(3, crawlerService.getCrawlStatistics(first).getRequestCount());
+        Assert.assertEquals(3, crawlerService.getCrawlStatistics(first).getSeenLinks());
+        Assert.assertEquals(2, crawlerService.getCrawlStatistics(second).getRequestCount());
+        Assert.assertEquals(2, crawlerService.getCrawlStatistics(second).getSeenLinks());
+    }
+
+    @Test
+    public void concurrentCrawlsTakeTurns() throws Exception {
+        setField("maxOutstandingRequests", 1);
+
+        StringBuilder large = new StringBuilder("{ \"links\": [ ");
+        for (int i = 0; i < 10; i++) {
+            large.append(i > 0 ? ", " : "").append("\"http://localhost:8089/large-").append(i).append("\"");
+            stubFor(get(urlEqualTo("/large-" + i)).willReturn(aResponse().withStatus(200).withFixedDelay(50).withBody("<html></html>")));
+        }
+        stubFor(get(urlEqualTo("/start-large")).willReturn(aResponse().withStatus(200).withBody(large.append(" ] }").toString())));
+        stubFor(get(urlEqualTo("/start-small")).willReturn(aResponse().withStatus(200)
+                .withBody("{ \"links\": [ \"http://localhost:8089/small-0\", \"http://localhost:8089/small-1\" ] }")));
+        stubFor(get(urlMatching("/small-.*")).willReturn(aResponse().withStatus(200).withFixedDelay(50).withBody("<html></html>")));
+
+        CrawlContext largeCrawl = crawlerService.createCrawl("http://localhost:8089/start-large", new CrawlControl(), null);
+        CrawlContext smallCrawl = crawlerService.createCrawl("http://localhost:8089/start-small", new CrawlControl(), null);
+        CompletableFuture<Void> largeDone = CompletableFuture.runAsync(() -> crawl(largeCrawl));
+        Thread.sleep(100);
+        CompletableFuture<Void> smallDone = CompletableFuture.runAsync(() -> crawl(smallCrawl));
+
+        // With a single request slot the small crawl gets every other slot instead of waiting for the large one
+        smallDone.get(10, TimeUnit.SECONDS);
+        Assert.assertFalse(largeDone.isDone());
+        largeDone.get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(10, crawlerService.getCrawlStatistics(largeCrawl).getRequestCount());
+        Assert.assertEquals(2, crawlerService.getCrawlStatistics(smallCrawl).getRequestCount());
+    }
+
+    /**
+     * Runs a crawl, rethrowing a failure unchecked
+     *
+     * @param crawl The crawl
+     */
+    private void crawl(CrawlContext crawl) {
+        try {
+            crawlerService.crawl(crawl);
+        } catch (CrawlerException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    public void crawlHonoursRobotsTxt() throws CrawlerException {
+        stubFor(get(urlEqualTo("/robots.txt"))
+                .willReturn(
+                        aResponse()
+                                .withStatus(200)
+                                .withHeader("Content-type", "text/plain")
+                                .withBody("User-agent: *\nDisallow: /private\nAllow: /private/open$\n")
+                ));
+
+        String jsonString = "{ \"links\": [ \"http://localhost:8089/page-a\", \"http://localhost:8089/private/page\" ] }";
+        createCrawlEndpoint(jsonString);
+        createHtmlPage("/page-a", "/private/open", "/private/other");
+        createHtmlPage("/private/open");
+
+        crawlerService.crawlEndpoint(MOCK_ENDPOINT);
+
+        verify(1, getRequestedFor(urlEqualTo("/robots.txt")));
+        verify(1, getRequestedFor(urlEqualTo("/private/open")));
+        verify(0, getRequestedFor(urlEqualTo("/private/page")));
+        verify(0, getRequestedFor(urlEqualTo("/private/other")));
+        CrawlStatistics statistics = crawlerService.getCrawlStatistics();
+        Assert.assertEquals(2, statistics.getRequestCount());
+        Assert.assertEquals(0, statistics.getFailedCount());
+        Assert.assertEquals(2, statistics.getRobotsDisallowedLinks());
+    }
+
+    @Test
+    public void crawlResolvesHostsThroughDnsCache() throws CrawlerException {
+        // Every host resolves to the mock server, hosts ending in ".invalid" don't resolve
+        Dns resolver = hostname -> {
+            if (hostname.endsWith(".invalid")) {
+                throw new UnknownHostException(hostname);
+            }
+            return Collections.singletonList(InetAddress.getLoopbackAddress());
+        };
+        DnsCache dnsCache = new DnsCache(resolver, Runnable::run, 60_000, 60_000, 100, 100);
+        setField("dnsCache", dnsCache);
+        fetcher.close();
+        fetcher = new OkHttpFetcher(64, 8, 32, 300000, 30000, dnsCache);
+        setField("fetcher", fetcher);
+
+        String jsonString = "{ \"links\": [ \"http://site-a.test:8089/page-a\", \"http://site-b.test:8089/page-b\" ] }";
+        createCrawlEndpoint(jsonString);
+        createHtmlPage("/page-a", "http://site-b.test:8089/page-c", "http://gone.invalid:8089/page-d");
+        createHtmlPage("/page-b");
+        createHtmlPage("/page-c");
+
+        crawlerService.crawlEndpoint(MOCK_ENDPOINT);
+
+        CrawlStatistics statistics = crawlerService.getCrawlStatistics();
+        Assert.assertEquals(3, statistics.getSuccessCount());
+        Assert.assertEquals(1, statistics.getErrorCount());
+        Assert.assertEquals(3, statistics.getDnsPrefetches());
+        Assert.assertEquals(0, statistics.getDnsCacheMisses());
+        Assert.assertEquals(1, statistics.getDnsFailures());
+    }
+
+    @Test(timeout = 30000)
+    public void crawlSplitsHostsAcrossClusterNodes() throws Exception {
+        // Every host resolves to the mock server, so each host can belong to either node
+        Dns resolver = hostname -> Collections.singletonList(InetAddress.getLoopbackAddress());
+        fetcher.close();
+        fetcher = new OkHttpFetcher(64, 8, 32, 300000, 30000, new DnsCache(resolver, Runnable::run, 60_000, 60_000, 100, 100));
+        setField("fetcher", fetcher);
+
+        ThreadPoolTaskExecutor otherPool = createThreadPoolTaskExecutor();
+        otherPool.initialize();
+        CrawlerService otherNode = new CrawlerService();
+        setField(otherNode, "threadPool", otherPool);
+        setField(otherNode, "fetcher", fetcher);
+        setField(otherNode, "linkExtractor", new StreamingLinkExtractor());
+
+        // Delivers cluster messages by calling the other node's service directly
+        CrawlerService[] nodes = { crawlerService, otherNode };
+        ClusterTransport transport = new ClusterTransport() {
+            @Override
+            public void sendLinks(String node, String batch) throws IOException {
+                if (!node(node).receiveClusterLinks(batch)) {
+                    throw new IOException("Not crawling");
+                }
+            }
+
+            @Override
+            public ClusterStatus getStatus(String node) {
+                return node(node).getClusterStatus();
+            }
+
+            @Override
+            public void finish(String node) {
+                node(node).finishClusterCrawl();
+            }
+
+            private CrawlerService node(String node) {
+                return nodes[Integer.parseInt(node.substring("http://node-".length()))];
+            }
+        };
+        for (int i = 0; i < nodes.length; i++) {
+            setField(nodes[i], "clusterEnabled", true);
+            setField(nodes[i], "clusterNodes", new String[] { "http://node-0", "http://node-1" });
+            setField(nodes[i], "clusterNodeIndex", i);
+            setField(nodes[i], "clusterTransport", transport);
+            setField(nodes[i], "clusterFlushIntervalMillis", 10L);
+            setField(nodes[i], "clusterStatusIntervalMillis", 20L);
+        }
+
+        String jsonString = "{ \"links\": [ \"http://site-a.test:8089/a1\", \"http://site-b.test:8089/b1\" ] }";
+        createCrawlEndpoint(jsonString);
+        createHtmlPage("/a1", "http://site-c.test:8089/c1", "http://site-d.test:8089/d1");
+        createHtmlPage("/b1", "http://site-e.test:8089/e1", "http://site-a.test:8089/a2");
+        createHtmlPage("/c1", "http://site-f.test:8089/f1", "http://site-b.test:8089/b1");
+        String[] leaves = { "/d1", "/e1", "/a2", "/f1" };
+        for (String leaf : leaves) {
+            createHtmlPage(leaf);
+        }
+
+        AtomicReference<Exception> otherFailure = new AtomicReference<>();
+        Thread otherCrawl = new Thread(() -> {
+            try {
+                otherNode.crawlEndpoint(MOCK_ENDPOINT);
+            } catch (Exception e) {
+                otherFailure.set(e);
+            }
+        });
+        otherCrawl.start();
+        crawlerService.crawlEndpoint(MOCK_ENDPOINT);
+        otherCrawl.join();
+        Assert.assertNull(otherFailure.get());
+
+        for (String page : new String[] { "/a1", "/b1", "/c1", "/d1", "/e1", "/a2", "/f1" }) {
+            verify(1, getRequestedFor(urlEqualTo(page)));
+        }
+        CrawlStatistics first = crawlerService.getCrawlStatistics();
+        CrawlStatistics second = otherNode.getCrawlStatistics();
+        Assert.assertEquals(7, first.getSuccessCount() + second.getSuccessCount());
+        Assert.assertTrue(first.getForwardedLinks() + second.getForwardedLinks() > 0);
+        Assert.assertEquals(first.getForwardedLinks() + second.getForwardedLinks(), first.getReceivedLinks() + second.getReceivedLinks());
+    }
+
+    @Test
+    public void fetcherTimesRequestsFromWhenTheyRun() throws Exception {
+        stubFor(get(urlEqualTo("/slow")).willReturn(aResponse().withStatus(200).withFixedDelay(300)));
+        OkHttpFetcher singleRequestFetcher = new OkHttpFetcher(1, 1, 1, 300000, 30000);
+
+        long startNanos = System.nanoTime();
+        CompletableFuture<FetchResult> first = singleRequestFetcher.fetch("http://localhost:8089/slow", null, null);
+        CompletableFuture<FetchResult> second = singleRequestFetcher.fetch("http://localhost:8089/slow", null, null);
+        long secondNanos = second.get(5, TimeUnit.SECONDS).getFetchNanos();
+
+        // The second request waited for the first in the client's queue, which isn't part of its fetch time
+        Assert.assertTrue(System.nanoTime() - startNanos >= TimeUnit.MILLISECONDS.toNanos(600));
+        Assert.assertTrue(secondNanos >= TimeUnit.MILLISECONDS.toNanos(300));
+        Assert.assertTrue(secondNanos < TimeUnit.MILLISECONDS.toNanos(550));
+        Assert.assertTrue(first.get().getFetchNanos() > 0);
+    }
+
+    @Test
+    public void crawlSkipsEquivalentLinks() throws CrawlerException {
+        String jsonString = "{ \"links\": [ \"http://localhost:8089/page-a\", \"HTTP://LOCALHOST:8089/page-a#top\" ] }";
+        createCrawlEndpoint(jsonString);
+        createHtmlPage("/page-a", "/page-b#section", "./page-b", "/other/../page-b");
+        createHtmlPage("/page-b");
+
+        crawlerService.crawlEndpoint(MOCK_ENDPOINT);
+
+        verify(1, getRequestedFor(urlEqualTo("/page-a")));
+        verify(1, getRequestedFor(urlEqualTo("/page-b")));
+        Assert.assertEquals(2, crawlerService.getRequestCount().longValue());
+    }
+
+    @Test
+    public void crawlWithVirtualThreads() throws CrawlerException {
+        Field executorField = ReflectionUtils.findField(CrawlerService.class, "threadPool");
+        ReflectionUtils.makeAccessible(executorField);
+        ReflectionUtils.setField(executorField, crawlerService, new VirtualThreadTaskExecutor(2, "VirtualCrawlerThread-"));
+
+        Field modeField = ReflectionUtils.findField(CrawlerService.class, "executionMode");
+        ReflectionUtils.makeAccessible(modeField);
+        ReflectionUtils.setField(modeField, crawlerService, ExecutionMode.VIRTUAL);
+
+        String jsonString = "{ \"links\": [ \"http://localhost:8089/page-a\", \"http://localhost:8089/missing\" ] }";
+        createCrawlEndpoint(jsonString);
+        createHtmlPage("/page-a", "/page-b", "/page-c");
+        createHtmlPage("/page-b", "/page-a");
+        createHtmlPage("/page-c", "/page-a", "/page-b");
+        stubFor(get(urlEqualTo("/missing")).willReturn(aResponse().withStatus(404)));
+
+        crawlerService.crawlEndpoint(MOCK_ENDPOINT);
+
+        verify(1, getRequestedFor(urlEqualTo("/page-a")));
+        Assert.assertEquals(4, crawlerService.getRequestCount().longValue());
+        Assert.assertEquals(3, crawlerService.getSuccessCount().longValue());
+        Assert.assertEquals(1, crawlerService.getFailedCount().longValue());
+    }
+
     @Test
     public void crawlRequestsWithInvalidLink() throws CrawlerException {
         String jsonString = "{ \"links\": [ \"someinvalidlink\" ] }";
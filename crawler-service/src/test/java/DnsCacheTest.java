@@ -0,0 +1,149 @@
+import com.jasminefortich.crawler.services.DnsCache;
+import okhttp3.Dns;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class DnsCacheTest {
+
+    private static final InetAddress ADDRESS = InetAddress.getLoopbackAddress();
+
+    @Test
+    public void cachesLookups() throws UnknownHostException {
+        StubResolver resolver = new StubResolver();
+        DnsCache cache = new DnsCache(resolver, Runnable::run, 60_000, 60_000, 10, 10);
+
+        Assert.assertEquals(Collections.singletonList(ADDRESS), cache.lookup("a.com"));
+        Assert.assertEquals(Collections.singletonList(ADDRESS), cache.lookup("A.com"));
+
+        Assert.assertEquals(1, resolver.lookups.size());
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void cachesFailedLookups() {
+        StubResolver resolver = new StubResolver();
+        DnsCache cache = new DnsCache(resolver, Runnable::run, 60_000, 60_000, 10, 10);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.lookup("unknown.invalid");
+                Assert.fail("Expected an unknown host");
+            } catch (UnknownHostException e) {
+                Assert.assertEquals("unknown.invalid", e.getMessage());
+            }
+        }
+
+        Assert.assertEquals(1, resolver.lookups.size());
+        Assert.assertEquals(1, cache.getFailureCount());
+    }
+
+    @Test
+    public void expiresEntries() throws UnknownHostException, InterruptedException {
+        StubResolver resolver = new StubResolver();
+        DnsCache cache = new DnsCache(resolver, Runnable::run, 10, 10, 10, 10);
+
+        cache.lookup("a.com");
+        Thread.sleep(20);
+        cache.lookup("a.com");
+
+        Assert.assertEquals(2, resolver.lookups.size());
+        Assert.assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedHosts() throws UnknownHostException {
+        StubResolver resolver = new StubResolver();
+        DnsCache cache = new DnsCache(resolver, Runnable::run, 60_000, 60_000, 2, 10);
+
+        cache.lookup("a.com");
+        cache.lookup("b.com");
+        cache.lookup("a.com");
+        cache.lookup("c.com");
+        Assert.assertEquals(2, cache.size());
+
+        cache.lookup("a.com");
+        Assert.assertEquals(3, resolver.lookups.size());
+        cache.lookup("b.com");
+        Assert.assertEquals(4, resolver.lookups.size());
+    }
+
+    @Test
+    public void lookupWaitsForPrefetch() throws Exception {
+        CountDownLatch resolving = new CountDownLatch(1);
+        CountDownLatch resolve = new CountDownLatch(1);
+        StubResolver resolver = new StubResolver() {
+            @Override
+            public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+                resolving.countDown();
+                try {
+                    resolve.await();
+                } catch (InterruptedException e) {
+                    throw new UnknownHostException(hostname);
+                }
+                return super.lookup(hostname);
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            DnsCache cache = new DnsCache(resolver, executor, 60_000, 60_000, 10, 10);
+
+            cache.prefetch("a.com");
+            cache.prefetch("a.com");
+            Assert.assertTrue(resolving.await(5, TimeUnit.SECONDS));
+
+            Future<List<InetAddress>> lookup = executor.submit(() -> cache.lookup("a.com"));
+            Thread.sleep(20);
+            Assert.assertFalse(lookup.isDone());
+
+            resolve.countDown();
+            Assert.assertEquals(Collections.singletonList(ADDRESS), lookup.get(5, TimeUnit.SECONDS));
+            Assert.assertEquals(1, resolver.lookups.size());
+            Assert.assertEquals(1, cache.getPrefetchCount());
+            Assert.assertEquals(1, cache.getHitCount());
+            Assert.assertEquals(0, cache.getMissCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void skipsPrefetchesBeyondLimit() {
+        List<Runnable> queued = new ArrayList<>();
+        DnsCache cache = new DnsCache(new StubResolver(), queued::add, 60_000, 60_000, 10, 1);
+
+        cache.prefetch("a.com");
+        cache.prefetch("b.com");
+
+        Assert.assertEquals(1, queued.size());
+        Assert.assertEquals(1, cache.getPrefetchCount());
+    }
+
+    /**
+     * Resolver that resolves hosts ending in ".invalid" to nothing and every other host to the loopback address
+     */
+    private static class StubResolver implements Dns {
+        private final List<String> lookups = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+            lookups.add(hostname);
+            if (hostname.endsWith(".invalid")) {
+                throw new UnknownHostException(hostname);
+            }
+            return Collections.singletonList(ADDRESS);
+        }
+    }
+
+}
@@ -7,6 +7,9 @@ import org.mockito.Mockito;
 
 import java.io.*;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class JsonUtilTests {
 
@@ -49,4 +52,44 @@ public class JsonUtilTests {
         Assert.assertNull(object);
     }
 
+    @Test
+    public void streamLinks() throws IOException, JSONException {
+        String jsonString = "{ \"name\": { \"links\": [ \"nested\" ] }, \"links\": [ \"https://httpbin.org/status/200\", 7, null, \"https://httpbin.org/links/1\" ], \"count\": 2 }";
+
+        URL url = Mockito.mock(URL.class);
+        Mockito.when(url.openStream()).thenReturn(new ByteArrayInputStream(jsonString.getBytes()));
+
+        List<String> links = new ArrayList<>();
+        int count = JsonUtil.readLinksFromUrl(url, links::add);
+
+        Assert.assertEquals(2, count);
+        Assert.assertEquals(Arrays.asList("https://httpbin.org/status/200", "https://httpbin.org/links/1"), links);
+    }
+
+    @Test
+    public void streamLinksFromEmptyDocument() throws IOException, JSONException {
+        List<String> links = new ArrayList<>();
+
+        Assert.assertEquals(0, JsonUtil.readLinks(new StringReader(""), links::add));
+        Assert.assertEquals(0, JsonUtil.readLinks(new StringReader("{}"), links::add));
+        Assert.assertTrue(links.isEmpty());
+    }
+
+    @Test
+    public void streamLinksStopsAtInvalidJson() throws IOException {
+        List<String> links = new ArrayList<>();
+
+        try {
+            JsonUtil.readLinks(new StringReader("{ \"links\": [ \"https://httpbin.org/status/200\" } }"), links::add);
+            Assert.fail("Expected invalid json to fail");
+        } catch (JSONException e) {
+            Assert.assertEquals(Arrays.asList("https://httpbin.org/status/200"), links);
+        }
+    }
+
+    @Test(expected = JSONException.class)
+    public void streamLinksFromArray() throws IOException, JSONException {
+        JsonUtil.readLinks(new StringReader("[ \"https://httpbin.org/status/200\" ]"), link -> { });
+    }
+
 }
@@ -0,0 +1,128 @@
+import com.jasminefortich.crawler.models.FetchResult;
+import com.jasminefortich.crawler.services.JsoupLinkExtractor;
+import com.jasminefortich.crawler.services.LinkExtractor;
+import com.jasminefortich.crawler.services.StreamingLinkExtractor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class LinkExtractorTest {
+
+    private static final String PAGE_URL = "http://example.com/dir/page.html";
+
+    /**
+     * Extracts the links of an html page
+     *
+     * @param extractor The extractor to use
+     * @param html The page html
+     * @return The extracted links
+     */
+    private List<String> extract(LinkExtractor extractor, String html) throws IOException {
+        FetchResult page = new FetchResult(PAGE_URL, 200, "text/html", "UTF-8", html.getBytes(StandardCharsets.UTF_8), null, null);
+        List<String> links = new ArrayList<>();
+        extractor.extract(page, links::add);
+        return links;
+    }
+
+    /**
+     * Asserts the streaming extractor finds the expected links and agrees with the jsoup extractor
+     *
+     * @param html The page html
+     * @param expected The expected links in document order
+     */
+    private void assertLinks(String html, String... expected) throws IOException {
+        List<String> streamed = extract(new StreamingLinkExtractor(), html);
+
+        Assert.assertEquals(Arrays.asList(expected), streamed);
+        Assert.assertEquals(extract(new JsoupLinkExtractor(), html), streamed);
+    }
+
+    @Test
+    public void resolvesRelativeLinks() throws IOException {
+        assertLinks("<html><body><a href=\"other.html\">x</a><a href='/root'>y</a><a href=../up>z</a></body></html>",
+                "http://example.com/dir/other.html", "http://example.com/root", "http://example.com/up");
+    }
+
+    @Test
+    public void keepsAbsoluteLinks() throws IOException {
+        assertLinks("<a href=\"https://other.com/a?b=1\">x</a>", "https://other.com/a?b=1");
+    }
+
+    @Test
+    public void handlesAttributeVariations() throws IOException {
+        assertLinks("<A class=\"nav\" HREF = \"/a\" data-x='1'>x</A><a title=\"<a href='/no'>\" href=\"/b\">y</a><a name=top>z</a>",
+                "http://example.com/a", "http://example.com/b");
+    }
+
+    @Test
+    public void decodesEntities() throws IOException {
+        assertLinks("<a href=\"/a?x=1&amp;y=2&#38;z=3&#x26;w=4\">x</a>", "http://example.com/a?x=1&y=2&z=3&w=4");
+    }
+
+    @Test
+    public void keepsReadingPastInvalidNumericEntities() throws IOException {
+        List<String> links = extract(new StreamingLinkExtractor(),
+                "<a href=\"/a?x=&#99999999;\">x</a><a href=\"/b?x=&#x110000;\">y</a><a href=\"/c?x=&#0;&#xD800;\">z</a><a href=\"/d\">w</a>");
+
+        Assert.assertEquals(Arrays.asList("http://example.com/a?x=&#99999999;", "http://example.com/b?x=&#x110000;",
+                "http://example.com/c?x=\uFFFD\uFFFD", "http://example.com/d"), links);
+    }
+
+    @Test
+    public void skipsCommentsScriptsAndStyles() throws IOException {
+        assertLinks("<!-- <a href=\"/comment\"> --><script>var s = '<a href=\"/script\">';</script>"
+                        + "<style>a[href=\"/style\"] {}</style><a href=\"/real\">x</a>",
+                "http://example.com/real");
+    }
+
+    @Test
+    public void appliesBaseHrefToEarlierLinks() throws IOException {
+        assertLinks("<html><head><base href=\"http://cdn.example.com/base/\"></head>"
+                        + "<body><a href=\"page\">x</a></body></html>",
+                "http://cdn.example.com/base/page");
+    }
+
+    @Test
+    public void ignoresBaseHrefOutsideHead() throws IOException {
+        // Links are emitted once the head has ended, so an invalid base in the body no longer applies
+        String html = "<html><head></head><body><a href=\"page\">x</a><base href=\"http://cdn.example.com/\"></body></html>";
+
+        Assert.assertEquals(Arrays.asList("http://example.com/dir/page"), extract(new StreamingLinkExtractor(), html));
+    }
+
+    @Test
+    public void resolvesRelativeBaseHref() throws IOException {
+        assertLinks("<head><base href=\"/other/\"></head><a href=\"page\">x</a>", "http://example.com/other/page");
+    }
+
+    @Test
+    public void readsLinksSpanningBufferBoundaries() throws IOException {
+        StringBuilder html = new StringBuilder("<html><body>");
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            html.append("<p>filler text ").append(i).append("</p><a href=\"/page/").append(i).append("\">link</a>");
+            expected.add("http://example.com/page/" + i);
+        }
+        html.append("</body></html>");
+
+        assertLinks(html.toString(), expected.toArray(new String[0]));
+    }
+
+    @Test
+    public void readsFromReader() throws IOException {
+        Reader reader = new StringReader("<a href=\"/a\">x</a>");
+        List<String> links = new ArrayList<>();
+
+        new StreamingLinkExtractor().extract(reader, PAGE_URL, links::add);
+
+        Assert.assertEquals(Arrays.asList("http://example.com/a"), links);
+    }
+
+}
@@ -0,0 +1,82 @@
+import com.jasminefortich.crawler.services.LinkSpillQueue;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class LinkSpillQueueTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void pollsLinksInOrderAcrossSegments() throws IOException {
+        List<String> links = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            links.add("https://example.com/category/" + (i % 7) + "/page/" + i);
+        }
+        links.add("https://example.com/caf\u00e9/\u65e5\u672c");
+        links.add("https://other.example.com");
+
+        try (LinkSpillQueue queue = new LinkSpillQueue(folder.getRoot().toPath(), 64)) {
+            for (String link : links) {
+                queue.add(link);
+            }
+            Assert.assertEquals(links.size(), queue.size());
+
+            List<String> polled = new ArrayList<>();
+            while (queue.poll(100, polled::add) > 0) {
+                queue.add("https://example.com/late/" + polled.size());
+                links.add("https://example.com/late/" + polled.size());
+                if (polled.size() > 2000) {
+                    break;
+                }
+            }
+            Assert.assertEquals(links.subList(0, polled.size()), polled);
+        }
+    }
+
+    @Test
+    public void forEachKeepsLinks() throws IOException {
+        try (LinkSpillQueue queue = new LinkSpillQueue(folder.getRoot().toPath(), 3)) {
+            for (int i = 0; i < 10; i++) {
+                queue.add("http://a/" + i);
+            }
+            queue.poll(4, link -> { });
+
+            List<String> remaining = new ArrayList<>();
+            queue.forEach(remaining::add);
+
+            Assert.assertEquals(Arrays.asList("http://a/4", "http://a/5", "http://a/6", "http://a/7", "http://a/8", "http://a/9"), remaining);
+            Assert.assertEquals(6, queue.size());
+
+            List<String> polled = new ArrayList<>();
+            queue.poll(10, polled::add);
+            Assert.assertEquals(remaining, polled);
+        }
+    }
+
+    @Test
+    public void segmentsAreDeletedOnceRead() throws IOException {
+        LinkSpillQueue queue = new LinkSpillQueue(folder.getRoot().toPath(), 2);
+        for (int i = 0; i < 5; i++) {
+            queue.add("http://a/" + i);
+        }
+        Assert.assertEquals(1, folder.getRoot().list().length);
+
+        queue.poll(5, link -> { });
+        Assert.assertEquals(0, queue.size());
+        Assert.assertEquals(0, folder.getRoot().listFiles()[0].list().length);
+
+        queue.add("http://a/5");
+        queue.close();
+        Assert.assertEquals(0, folder.getRoot().list().length);
+        Assert.assertEquals(0, queue.size());
+    }
+
+}
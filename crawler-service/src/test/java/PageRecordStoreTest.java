@@ -0,0 +1,84 @@
+import com.jasminefortich.crawler.models.PageRecord;
+import com.jasminefortich.crawler.services.PageRecordStore;
+import com.jasminefortich.crawler.utils.LinkListCodec;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class PageRecordStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void nothingSaved() throws IOException {
+        PageRecordStore store = new PageRecordStore(folder.getRoot().toPath());
+
+        Assert.assertEquals(0, store.load());
+        Assert.assertNull(store.get("http://a/1"));
+    }
+
+    @Test
+    public void savesRecordsOfCurrentCrawl() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        byte[] outlinks = LinkListCodec.encode(Arrays.asList("http://a/2", "http://a/3"));
+
+        PageRecordStore first = new PageRecordStore(directory);
+        first.load();
+        first.put("http://a/1", new PageRecord("\"v1\"", null, 42, outlinks));
+        first.put("http://a/2", new PageRecord(null, "Sat, 17 Oct 2026 04:00:00 GMT", 7, new byte[0]));
+        first.save();
+
+        PageRecordStore second = new PageRecordStore(directory);
+        Assert.assertEquals(2, second.load());
+        PageRecord record = second.get("http://a/1");
+        Assert.assertEquals("\"v1\"", record.getEtag());
+        Assert.assertNull(record.getLastModified());
+        Assert.assertEquals(42, record.getContentHash());
+        Assert.assertArrayEquals(outlinks, record.getOutlinks());
+        Assert.assertEquals("Sat, 17 Oct 2026 04:00:00 GMT", second.get("http://a/2").getLastModified());
+
+        // Only page 1 is reached again, page 2 is forgotten
+        Assert.assertSame(record, second.keep("http://a/1"));
+        Assert.assertNull(second.get("http://a/1"));
+        Assert.assertNull(second.keep("http://a/3"));
+        second.save();
+
+        PageRecordStore third = new PageRecordStore(directory);
+        Assert.assertEquals(1, third.load());
+        Assert.assertNotNull(third.get("http://a/1"));
+        Assert.assertNull(third.get("http://a/2"));
+    }
+
+    @Test(expected = IOException.class)
+    public void unreadableRecordsFail() throws IOException {
+        Files.write(folder.getRoot().toPath().resolve("pages.bin"), new byte[] { 1, 2, 3 });
+
+        new PageRecordStore(folder.getRoot().toPath()).load();
+    }
+
+    @Test
+    public void linkListRoundTrips() {
+        List<String> links = Arrays.asList("https://example.com/a/b", "https://example.com/a/c", "https://example.com/café",
+                "http://other.example.com", "", "https://example.com/a/b");
+
+        List<String> decoded = new ArrayList<>();
+        LinkListCodec.decode(LinkListCodec.encode(links), decoded::add);
+
+        Assert.assertEquals(links, decoded);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void malformedLinkListFails() {
+        LinkListCodec.decode(new byte[] { 5, 1, 'a' }, link -> { });
+    }
+
+}
@@ -0,0 +1,129 @@
+import com.jasminefortich.crawler.models.PageResult;
+import com.jasminefortich.crawler.services.ColumnarResultEncoder;
+import com.jasminefortich.crawler.services.NdjsonResultEncoder;
+import com.jasminefortich.crawler.services.ResultSink;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+public class ResultSinkTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writesCompressedNdjson() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        ResultSink sink = new ResultSink(directory, "results", new NdjsonResultEncoder(), 16, 4, 0, true, 10);
+        sink.offer(new PageResult("http://a.com/1", 0, 200, null, 1500, 12, 0x0abcL, 1_000,
+                Arrays.asList("http://a.com/2", "/3")));
+        sink.offer(new PageResult("http://a.com/\"2\"", 1, 0, "Connection refused", 30, 0, 0, 1_001, Collections.emptyList()));
+        sink.close();
+
+        List<Path> files = list(directory);
+        Assert.assertEquals(1, files.size());
+        Assert.assertEquals("results-00000.ndjson.gz", files.get(0).getFileName().toString());
+        List<String> lines;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(files.get(0))), StandardCharsets.UTF_8))) {
+            lines = reader.lines().collect(Collectors.toList());
+        }
+        Assert.assertEquals(2, lines.size());
+
+        JSONObject first = new JSONObject(lines.get(0));
+        Assert.assertEquals("http://a.com/1", first.getString("link"));
+        Assert.assertEquals(200, first.getInt("statusCode"));
+        Assert.assertTrue(first.isNull("error"));
+        Assert.assertEquals(1500, first.getLong("latencyMicros"));
+        Assert.assertEquals("0000000000000abc", first.getString("contentHash"));
+        Assert.assertEquals("/3", first.getJSONArray("outlinks").getString(1));
+
+        JSONObject second = new JSONObject(lines.get(1));
+        Assert.assertEquals("http://a.com/\"2\"", second.getString("link"));
+        Assert.assertEquals(1, second.getInt("depth"));
+        Assert.assertEquals("Connection refused", second.getString("error"));
+        Assert.assertEquals(0, second.getJSONArray("outlinks").length());
+        Assert.assertEquals(2, sink.getWrittenCount());
+        Assert.assertEquals(0, sink.getDroppedCount());
+    }
+
+    @Test
+    public void columnarRoundTrip() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        List<PageResult> results = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            results.add(new PageResult("http://a.com/page-" + i, i % 3, i % 10 == 0 ? 0 : 200, i % 10 == 0 ? "Timeout" : null,
+                    1000 + i, 10 * i, -i, 1_700_000_000_000L + (i % 2 == 0 ? i : -i),
+                    i % 4 == 0 ? Collections.emptyList() : Arrays.asList("http://a.com/" + i, "http://b.com/" + i)));
+        }
+
+        ResultSink sink = new ResultSink(directory, "results", new ColumnarResultEncoder(), 1000, 32, 0, false, 10);
+        results.forEach(sink::offer);
+        sink.close();
+
+        List<Path> files = list(directory);
+        Assert.assertEquals(1, files.size());
+        Assert.assertEquals("results-00000.crc", files.get(0).getFileName().toString());
+        List<PageResult> read = new ArrayList<>();
+        try (InputStream in = Files.newInputStream(files.get(0))) {
+            ColumnarResultEncoder.read(in, read::add);
+        }
+        Assert.assertEquals(results, read);
+    }
+
+    @Test
+    public void rotatesFilesBySize() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        ResultSink sink = new ResultSink(directory, "results", new NdjsonResultEncoder(), 1000, 10, 1000, false, 10);
+        for (int i = 0; i < 200; i++) {
+            sink.offer(new PageResult("http://a.com/page-" + i, 0, 200, null, 1000, 100, i, 1_000, Collections.emptyList()));
+        }
+        sink.close();
+
+        List<Path> files = list(directory);
+        Assert.assertTrue(files.size() > 1);
+        long lines = 0;
+        for (Path file : files) {
+            List<String> contents = Files.readAllLines(file);
+            Assert.assertTrue(Files.size(file) < 1000 + 2 * contents.get(0).length() * 10);
+            lines += contents.size();
+        }
+        Assert.assertEquals(200, lines);
+        Assert.assertEquals(200, sink.getWrittenCount());
+    }
+
+    @Test
+    public void dropsResultsAfterClose() throws IOException {
+        ResultSink sink = new ResultSink(folder.getRoot().toPath(), "results", new NdjsonResultEncoder(), 16, 4, 0, true, 10);
+        sink.close();
+
+        Assert.assertFalse(sink.offer(new PageResult("http://a.com/1", 0, 200, null, 0, 0, 0, 0, Collections.emptyList())));
+        Assert.assertEquals(0, sink.getWrittenCount());
+        Assert.assertEquals(1, sink.getDroppedCount());
+        Assert.assertEquals(0, list(folder.getRoot().toPath()).size());
+    }
+
+    private static List<Path> list(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+import com.jasminefortich.crawler.models.FetchResult;
+import com.jasminefortich.crawler.services.Fetcher;
+import com.jasminefortich.crawler.services.RobotsCache;
+import com.jasminefortich.crawler.services.RobotsRules;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class RobotsCacheTest {
+
+    @Test
+    public void fetchesOncePerHost() {
+        StubFetcher fetcher = new StubFetcher();
+        RobotsCache cache = new RobotsCache(fetcher, "CyberCodersCrawler", 60_000, 1_000, 10, 30_000);
+
+        CompletableFuture<RobotsRules> first = cache.getRules("http://a.com:8080/page-1");
+        CompletableFuture<RobotsRules> second = cache.getRules("http://a.com:8080/page-2");
+        Assert.assertSame(first, second);
+        Assert.assertFalse(first.isDone());
+        Assert.assertEquals(0, cache.getCrawlDelayMillis("a.com"));
+
+        fetcher.respond(200, "User-agent: *\nDisallow: /private\nCrawl-delay: 60\n");
+
+        Assert.assertEquals(1, fetcher.links.size());
+        Assert.assertEquals("http://a.com:8080/robots.txt", fetcher.links.get(0));
+        Assert.assertFalse(cache.getRules("http://a.com/private").join().allows("/private"));
+        Assert.assertEquals(30_000, cache.getCrawlDelayMillis("a.com"));
+        Assert.assertEquals(1, fetcher.links.size());
+    }
+
+    @Test
+    public void serverErrorDisallowsUntilItExpires() throws InterruptedException {
+        StubFetcher fetcher = new StubFetcher();
+        RobotsCache cache = new RobotsCache(fetcher, "CyberCodersCrawler", 60_000, 10, 10, 30_000);
+
+        CompletableFuture<RobotsRules> rules = cache.getRules("http://a.com/");
+        fetcher.respond(503, "");
+        Assert.assertFalse(rules.join().allows("/"));
+
+        Thread.sleep(20);
+        CompletableFuture<RobotsRules> refetched = cache.getRules("http://a.com/");
+        fetcher.respond(404, "");
+        Assert.assertEquals(2, fetcher.links.size());
+        Assert.assertTrue(refetched.join().allows("/"));
+    }
+
+    @Test
+    public void failedFetchAllowsEverything() {
+        StubFetcher fetcher = new StubFetcher();
+        RobotsCache cache = new RobotsCache(fetcher, "CyberCodersCrawler", 60_000, 1_000, 10, 30_000);
+
+        CompletableFuture<RobotsRules> rules = cache.getRules("http://a.com/");
+        fetcher.futures.get(0).completeExceptionally(new IOException("Connection refused"));
+
+        Assert.assertTrue(rules.join().allows("/"));
+        Assert.assertTrue(cache.getRules("someinvalidlink").join().allows(""));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedHosts() {
+        StubFetcher fetcher = new StubFetcher();
+        RobotsCache cache = new RobotsCache(fetcher, "CyberCodersCrawler", 60_000, 1_000, 2, 30_000);
+
+        cache.getRules("http://a.com/");
+        cache.getRules("http://b.com/");
+        cache.getRules("http://a.com/");
+        cache.getRules("http://c.com/");
+        Assert.assertEquals(2, cache.size());
+
+        cache.getRules("http://a.com/");
+        Assert.assertEquals(3, fetcher.links.size());
+        cache.getRules("http://b.com/");
+        Assert.assertEquals(4, fetcher.links.size());
+    }
+
+    /**
+     * Fetcher whose responses are completed by the test, in the order the links were fetched
+     */
+    private static class StubFetcher implements Fetcher {
+        private final List<String> links = new ArrayList<>();
+        private final List<CompletableFuture<FetchResult>> futures = new ArrayList<>();
+        private int responded = 0;
+
+        @Override
+        public CompletableFuture<FetchResult> fetch(String link, String etag, String lastModified) {
+            CompletableFuture<FetchResult> future = new CompletableFuture<>();
+            links.add(link);
+            futures.add(future);
+            return future;
+        }
+
+        @Override
+        public FetchResult execute(String link, String etag, String lastModified) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private void respond(int statusCode, String body) {
+            futures.get(responded++).complete(new FetchResult(links.get(responded - 1), statusCode, "text/plain", "UTF-8",
+                    body.getBytes(StandardCharsets.UTF_8), null, null));
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+import com.jasminefortich.crawler.services.RobotsRules;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RobotsRulesTest {
+
+    private static final String AGENT = "CyberCodersCrawler";
+
+    @Test
+    public void emptyRobotsAllowsEverything() {
+        RobotsRules rules = RobotsRules.parse("", AGENT);
+
+        Assert.assertTrue(rules.allows("/"));
+        Assert.assertTrue(rules.allows("/anything?at=all"));
+        Assert.assertEquals(0, rules.getCrawlDelayMillis());
+    }
+
+    @Test
+    public void longestMatchWins() {
+        RobotsRules rules = RobotsRules.parse("User-agent: *\nDisallow: /a\nAllow: /a/b\nDisallow: /a/b/c\n", AGENT);
+
+        Assert.assertTrue(rules.allows("/"));
+        Assert.assertFalse(rules.allows("/a"));
+        Assert.assertFalse(rules.allows("/about"));
+        Assert.assertTrue(rules.allows("/a/b"));
+        Assert.assertTrue(rules.allows("/a/bc"));
+        Assert.assertFalse(rules.allows("/a/b/c/d"));
+    }
+
+    @Test
+    public void allowWinsTies() {
+        RobotsRules rules = RobotsRules.parse("User-agent: *\nDisallow: /page\nAllow: /page\n", AGENT);
+
+        Assert.assertTrue(rules.allows("/page"));
+    }
+
+    @Test
+    public void matchesWildcardsAndAnchors() {
+        RobotsRules rules = RobotsRules.parse("User-agent: *\nDisallow: /*.pdf$\nDisallow: /*?sessionid=\nDisallow: /private*/draft\n", AGENT);
+
+        Assert.assertFalse(rules.allows("/docs/manual.pdf"));
+        Assert.assertTrue(rules.allows("/docs/manual.pdf?download=1"));
+        Assert.assertTrue(rules.allows("/docs/manual.pdfx"));
+        Assert.assertFalse(rules.allows("/shop?sessionid=42"));
+        Assert.assertTrue(rules.allows("/shop?id=42"));
+        Assert.assertFalse(rules.allows("/private/a/b/draft/1"));
+        Assert.assertTrue(rules.allows("/private/a/b/final"));
+    }
+
+    @Test
+    public void usesOwnGroupOverWildcardGroup() {
+        String robots = "# Comment\n"
+                + "User-agent: *\n"
+                + "Disallow: /\n"
+                + "\n"
+                + "User-agent: OtherBot\n"
+                + "User-agent: cybercoderscrawler\n"
+                + "Disallow: /private # Not for crawlers\n"
+                + "Crawl-delay: 1.5\n";
+        RobotsRules rules = RobotsRules.parse(robots, AGENT);
+
+        Assert.assertTrue(rules.allows("/public"));
+        Assert.assertFalse(rules.allows("/private"));
+        Assert.assertEquals(1500, rules.getCrawlDelayMillis());
+
+        RobotsRules otherRules = RobotsRules.parse(robots, "SomeOtherCrawler");
+        Assert.assertFalse(otherRules.allows("/public"));
+        Assert.assertEquals(0, otherRules.getCrawlDelayMillis());
+    }
+
+    @Test
+    public void disallowAllRejectsEveryPath() {
+        Assert.assertFalse(RobotsRules.DISALLOW_ALL.allows("/"));
+        Assert.assertFalse(RobotsRules.DISALLOW_ALL.allows(""));
+        Assert.assertTrue(RobotsRules.ALLOW_ALL.allows("/"));
+    }
+
+}
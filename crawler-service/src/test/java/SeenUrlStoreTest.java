@@ -0,0 +1,204 @@
+import com.jasminefortich.crawler.services.BloomFilterSeenUrlStore;
+import com.jasminefortich.crawler.services.FingerprintSeenUrlStore;
+import com.jasminefortich.crawler.services.HashSetSeenUrlStore;
+import com.jasminefortich.crawler.services.SeenUrlStore;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+public class SeenUrlStoreTest {
+
+    private static final Logger LOGGER = Logger.getLogger(SeenUrlStoreTest.class.getSimpleName());
+
+    /**
+     * Checks the basic add and contains contract of a store
+     *
+     * @param store The store to check
+     */
+    private void assertDeduplicates(SeenUrlStore store) {
+        Assert.assertFalse(store.contains("https://example.com/a"));
+        Assert.assertTrue(store.add("https://example.com/a"));
+        Assert.assertFalse(store.add("https://example.com/a"));
+        Assert.assertTrue(store.add("https://example.com/b"));
+        Assert.assertTrue(store.contains("https://example.com/a"));
+        Assert.assertEquals(2, store.size());
+
+        store.clear();
+        Assert.assertEquals(0, store.size());
+        Assert.assertFalse(store.contains("https://example.com/a"));
+    }
+
+    /**
+     * Adds the same links to a store from several threads at once
+     *
+     * @param store The store to fill
+     * @param links The number of unique links
+     * @param threads The number of threads adding every link
+     * @return The number of adds that reported a new link
+     */
+    private int addConcurrently(SeenUrlStore store, int links, int threads) throws InterruptedException {
+        AtomicInteger added = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                for (int i = 0; i < links; i++) {
+                    if (store.add("https://example.com/page/" + i)) {
+                        added.incrementAndGet();
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return added.get();
+    }
+
+    @Test
+    public void hashSetDeduplicates() {
+        assertDeduplicates(new HashSetSeenUrlStore());
+    }
+
+    @Test
+    public void fingerprintDeduplicates() {
+        assertDeduplicates(new FingerprintSeenUrlStore(16, 4));
+    }
+
+    @Test
+    public void fingerprintWithBloomFilterDeduplicates() {
+        assertDeduplicates(new BloomFilterSeenUrlStore(1000, 0.01, new FingerprintSeenUrlStore(16, 4)));
+    }
+
+    @Test
+    public void bloomFilterDeduplicates() {
+        assertDeduplicates(new BloomFilterSeenUrlStore(1000, 0.01, null));
+    }
+
+    @Test
+    public void fingerprintGrowsPastExpectedSize() {
+        FingerprintSeenUrlStore store = new FingerprintSeenUrlStore(16, 1);
+        for (int i = 0; i < 10_000; i++) {
+            Assert.assertTrue(store.add("https://example.com/page/" + i));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            Assert.assertTrue(store.contains("https://example.com/page/" + i));
+        }
+        Assert.assertEquals(10_000, store.size());
+    }
+
+    @Test
+    public void fingerprintAddsEachLinkOnceAcrossThreads() throws InterruptedException {
+        FingerprintSeenUrlStore store = new FingerprintSeenUrlStore(1000, 8);
+
+        int added = addConcurrently(store, 50_000, 4);
+
+        Assert.assertEquals(50_000, added);
+        Assert.assertEquals(50_000, store.size());
+    }
+
+    @Test
+    public void bloomFilterAddsEachLinkAtMostOnceAcrossThreads() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            BloomFilterSeenUrlStore store = new BloomFilterSeenUrlStore(1_000_000, 0.0001, null);
+
+            int added = addConcurrently(store, 10_000, 8);
+
+            // A false positive may hide a new link, but no link is reported new twice
+            Assert.assertTrue(added <= 10_000);
+            Assert.assertEquals(added, store.size());
+        }
+    }
+
+    @Test
+    public void bloomFilterFalsePositiveRateIsNearConfigured() {
+        int expected = 100_000;
+        BloomFilterSeenUrlStore store = new BloomFilterSeenUrlStore(expected, 0.01, null);
+        for (int i = 0; i < expected; i++) {
+            store.add("https://example.com/seen/" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < expected; i++) {
+            if (store.contains("https://example.com/unseen/" + i)) {
+                falsePositives++;
+            }
+        }
+
+        double rate = (double) falsePositives / expected;
+        LOGGER.info(String.format("Bloom filter false positive rate %.4f with %d hashes", rate, store.getHashCount()));
+        Assert.assertTrue("False positive rate " + rate, rate < 0.02);
+    }
+
+    @Test
+    public void memoryAndThroughputFigures() throws InterruptedException {
+        int links = 1_000_000;
+
+        SeenUrlStore hashSet = new HashSetSeenUrlStore();
+        SeenUrlStore fingerprint = new FingerprintSeenUrlStore(links, 64);
+        SeenUrlStore bloomFilter = new BloomFilterSeenUrlStore(links, 0.01, null);
+
+        for (SeenUrlStore store : new SeenUrlStore[] { hashSet, fingerprint, bloomFilter }) {
+            long start = System.nanoTime();
+            addConcurrently(store, links, 4);
+            long elapsedNanos = System.nanoTime() - start;
+
+            double bytesPerLink = (double) store.getMemoryBytes() / links;
+            double addsPerSecond = links * 4 / (elapsedNanos / 1e9);
+            LOGGER.info(String.format("%s: %.1f bytes per link, %.0f adds per second",
+                    store.getClass().getSimpleName(), bytesPerLink, addsPerSecond));
+        }
+
+        Assert.assertTrue(fingerprint.getMemoryBytes() <= 24L * links);
+        Assert.assertTrue(bloomFilter.getMemoryBytes() <= 2L * links);
+        Assert.assertTrue(fingerprint.getMemoryBytes() < hashSet.getMemoryBytes() / 4);
+    }
+
+    /**
+     * Writes a filled store and reads it back into an empty store of the same kind
+     *
+     * @param store The store to fill
+     * @param empty The store to read into
+     */
+    private void assertRoundTrips(SeenUrlStore store, SeenUrlStore empty) throws IOException {
+        for (int i = 0; i < 1000; i++) {
+            store.add("https://example.com/page/" + i);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        store.writeTo(new DataOutputStream(bytes));
+        empty.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        Assert.assertEquals(store.size(), empty.size());
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertFalse(empty.add("https://example.com/page/" + i));
+        }
+    }
+
+    @Test
+    public void storesRoundTrip() throws IOException {
+        assertRoundTrips(new HashSetSeenUrlStore(), new HashSetSeenUrlStore());
+        assertRoundTrips(new FingerprintSeenUrlStore(16, 4), new FingerprintSeenUrlStore(1000, 16));
+        assertRoundTrips(new BloomFilterSeenUrlStore(1000, 0.01, new FingerprintSeenUrlStore(16, 4)),
+                new BloomFilterSeenUrlStore(1000, 0.01, new FingerprintSeenUrlStore(16, 4)));
+        assertRoundTrips(new BloomFilterSeenUrlStore(1000, 0.01, null), new BloomFilterSeenUrlStore(1000, 0.01, null));
+    }
+
+    @Test(expected = IOException.class)
+    public void readingOtherStoreFails() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new HashSetSeenUrlStore().writeTo(new DataOutputStream(bytes));
+        new FingerprintSeenUrlStore(16, 4).readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+}
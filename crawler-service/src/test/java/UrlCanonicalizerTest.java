@@ -0,0 +1,97 @@
+import com.jasminefortich.crawler.utils.UrlCanonicalizer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class UrlCanonicalizerTest {
+
+    private final UrlCanonicalizer canonicalizer = new UrlCanonicalizer(true, Arrays.asList("utm_*", "gclid"));
+
+    @Test
+    public void lowercasesSchemeAndHost() {
+        Assert.assertEquals("http://host/A", canonicalizer.canonicalize("HTTP://Host/A"));
+    }
+
+    @Test
+    public void stripsFragment() {
+        Assert.assertEquals("http://host/a", canonicalizer.canonicalize("http://host/a#frag"));
+    }
+
+    @Test
+    public void stripsDefaultPorts() {
+        Assert.assertEquals("http://host/a", canonicalizer.canonicalize("http://host:80/a"));
+        Assert.assertEquals("https://host/a", canonicalizer.canonicalize("https://host:443/a"));
+        Assert.assertEquals("http://host:8080/a", canonicalizer.canonicalize("http://host:8080/a"));
+        Assert.assertEquals("https://host:80/a", canonicalizer.canonicalize("https://host:80/a"));
+    }
+
+    @Test
+    public void addsEmptyPath() {
+        Assert.assertEquals("http://host/", canonicalizer.canonicalize("http://host"));
+        Assert.assertEquals("http://host/?a=1", canonicalizer.canonicalize("http://host?a=1"));
+    }
+
+    @Test
+    public void normalizesPercentEncoding() {
+        Assert.assertEquals("http://host/a~b%2F%C3%A9", canonicalizer.canonicalize("http://host/a%7Eb%2f%c3%a9"));
+    }
+
+    @Test
+    public void collapsesDotSegments() {
+        Assert.assertEquals("http://host/a/c", canonicalizer.canonicalize("http://host/a/./b/../c"));
+        Assert.assertEquals("http://host/a/", canonicalizer.canonicalize("http://host/a/b/.."));
+        Assert.assertEquals("http://host/", canonicalizer.canonicalize("http://host/../.."));
+        Assert.assertEquals("http://host/a/.b/..c", canonicalizer.canonicalize("http://host/a/.b/..c"));
+    }
+
+    @Test
+    public void sortsQueryAndDropsTrackingParameters() {
+        Assert.assertEquals("http://host/a?a=1&b=2",
+                canonicalizer.canonicalize("http://host/a?b=2&utm_source=x&a=1&gclid=y"));
+        Assert.assertEquals("http://host/a", canonicalizer.canonicalize("http://host/a?utm_medium=x"));
+        Assert.assertEquals("http://host/a", canonicalizer.canonicalize("http://host/a?"));
+        Assert.assertEquals("http://host/a?a=1&b=2", canonicalizer.canonicalize("http://host/a?&a=1&&b=2&"));
+    }
+
+    @Test
+    public void keepsQueryOrderWhenNotSorting() {
+        UrlCanonicalizer unsorted = new UrlCanonicalizer();
+
+        Assert.assertEquals("http://host/a?b=2&a=1", unsorted.canonicalize("http://host/a?b=2&a=1"));
+    }
+
+    @Test
+    public void equivalentLinksHaveTheSameCanonicalForm() {
+        String canonical = canonicalizer.canonicalize("http://host/a");
+
+        Assert.assertEquals(canonical, canonicalizer.canonicalize("http://Host/a"));
+        Assert.assertEquals(canonical, canonicalizer.canonicalize("http://host/a#frag"));
+        Assert.assertEquals(canonical, canonicalizer.canonicalize("http://host:80/a"));
+        Assert.assertEquals(
+                canonicalizer.canonicalize("http://host/a?x=1&y=2"),
+                canonicalizer.canonicalize("http://host/a?y=2&x=1"));
+    }
+
+    @Test
+    public void returnsCanonicalLinksWithoutCopying() {
+        String link = "https://example.com/path/page?a=1&b=2";
+
+        Assert.assertSame(link, canonicalizer.canonicalize(link));
+    }
+
+    @Test
+    public void leavesNonHierarchicalLinksUnchanged() {
+        Assert.assertEquals("mailto:someone@example.com", canonicalizer.canonicalize("mailto:someone@example.com"));
+        Assert.assertEquals("someinvalidlink", canonicalizer.canonicalize("someinvalidlink"));
+        Assert.assertEquals("", canonicalizer.canonicalize(""));
+    }
+
+    @Test
+    public void keepsUserInfoAndIpv6Hosts() {
+        Assert.assertEquals("http://User@host/", canonicalizer.canonicalize("http://User@HOST:80"));
+        Assert.assertEquals("http://[::1]:8080/", canonicalizer.canonicalize("http://[::1]:8080"));
+        Assert.assertEquals("http://[::1]/", canonicalizer.canonicalize("http://[::1]:80/"));
+    }
+
+}